@@ -0,0 +1,83 @@
+package com.sctrcd.beans;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sctrcd.payments.facts.AnnotationLevel;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+import com.sctrcd.payments.validation.BenchmarkCorpus;
+import com.sctrcd.payments.validation.CorpusCursor;
+import com.sctrcd.payments.validation.iban.RuleBasedIbanValidator;
+
+/**
+ * Matching the annotations raised by the rules, which is how the tests look
+ * for particular facts in working memory. The annotations are those raised for
+ * the invalid IBANs of the {@link BenchmarkCorpus}, so they are a realistic
+ * mix of rule names.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanMatcherBenchmark {
+
+    private static final String[] STRING_FILTERS = {
+        "ruleName=IBAN failed the Mod-97 checksum test.", "level=REJECT"
+    };
+
+    private static final BeanPropertyFilter[] PROPERTY_FILTERS = {
+        new BeanPropertyFilter("ruleName", "IBAN failed the Mod-97 checksum test."),
+        new BeanPropertyFilter("level", AnnotationLevel.REJECT)
+    };
+
+    private BeanMatcher matcher;
+    private CompiledBeanMatcher compiled;
+    private PaymentValidationAnnotation[] annotations;
+
+    @Setup
+    public void setUp() {
+        matcher = new BeanMatcher();
+        compiled = matcher.compile(PROPERTY_FILTERS);
+        RuleBasedIbanValidator validator = new RuleBasedIbanValidator();
+        List<PaymentValidationAnnotation> raised = new ArrayList<PaymentValidationAnnotation>();
+        for (String iban : BenchmarkCorpus.invalidIbans()) {
+            raised.addAll(validator.validateIban(iban).getAnnotations());
+        }
+        annotations = new PaymentValidationAnnotation[BenchmarkCorpus.SIZE];
+        for (int i = 0; i < annotations.length; i++) {
+            annotations[i] = raised.get(i % raised.size());
+        }
+    }
+
+    @Benchmark
+    public boolean matchStringFilters(CorpusCursor cursor) {
+        return matcher.matches(annotations[cursor.next()], STRING_FILTERS);
+    }
+
+    @Benchmark
+    public boolean matchPropertyFilters(CorpusCursor cursor) {
+        return matcher.matches(annotations[cursor.next()], PROPERTY_FILTERS);
+    }
+
+    @Benchmark
+    public boolean matchCompiledFilters(CorpusCursor cursor) {
+        return compiled.matches(annotations[cursor.next()]);
+    }
+
+}
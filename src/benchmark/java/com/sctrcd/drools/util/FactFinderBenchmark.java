@@ -0,0 +1,139 @@
+package com.sctrcd.drools.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.beanutils.BeanUtils;
+import org.drools.KnowledgeBaseFactory;
+import org.drools.runtime.ObjectFilter;
+import org.drools.runtime.StatefulKnowledgeSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sctrcd.beans.BeanPropertyFilter;
+import com.sctrcd.payments.facts.AnnotationLevel;
+import com.sctrcd.payments.facts.PaymentAttribute;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+
+/**
+ * Finding annotations in a session of many facts with the {@link FactFinder},
+ * which compiles its filters to cached getters, against the way it used to
+ * match each fact, by describing every property of it to a map of strings
+ * with commons-beanutils. The <code>indexed</code> benchmarks find the same
+ * facts through a {@link FactIndex}, with and without a property index on
+ * the rule name.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactFinderBenchmark {
+
+    private static final BeanPropertyFilter[] FILTERS = {
+        new BeanPropertyFilter("ruleName", "Rule 7"),
+        new BeanPropertyFilter("level", AnnotationLevel.REJECT)
+    };
+
+    @Param({ "10000", "50000" })
+    public int facts;
+
+    private StatefulKnowledgeSession session;
+    private FactFinder finder;
+    private FactIndex classIndex;
+    private FactIndex propertyIndex;
+
+    @Setup
+    public void setUp() {
+        session = KnowledgeBaseFactory.newKnowledgeBase().newStatefulKnowledgeSession();
+        for (int i = 0; i < facts; i++) {
+            session.insert(new PaymentValidationAnnotation("Rule " + (i % 100),
+                    i % 3 == 0 ? AnnotationLevel.WARN : AnnotationLevel.REJECT,
+                    "Message " + i, PaymentAttribute.iban));
+        }
+        finder = new FactFinder();
+        classIndex = FactIndex.attach(session);
+        propertyIndex = FactIndex.attach(session);
+        propertyIndex.addPropertyIndex(PaymentValidationAnnotation.class, "ruleName");
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.dispose();
+    }
+
+    @Benchmark
+    public int compiled() {
+        return finder.findFacts(session, "PaymentValidationAnnotation", FILTERS).size();
+    }
+
+    @Benchmark
+    public int describe() {
+        return legacyFindFacts(session, "PaymentValidationAnnotation", FILTERS).size();
+    }
+
+    @Benchmark
+    public int indexed() {
+        return finder.findFacts(classIndex, "PaymentValidationAnnotation", FILTERS).size();
+    }
+
+    @Benchmark
+    public int indexedByProperty() {
+        return finder.findFacts(propertyIndex, "PaymentValidationAnnotation", FILTERS).size();
+    }
+
+    /**
+     * Matching as it was done before the filters were compiled.
+     */
+    @SuppressWarnings("unchecked")
+    static Collection<Object> legacyFindFacts(StatefulKnowledgeSession session,
+            final String factClass, BeanPropertyFilter... filters) {
+        Collection<Object> found = new ArrayList<Object>();
+        for (Object fact : session.getObjects(new ObjectFilter() {
+            @Override
+            public boolean accept(Object object) {
+                return object.getClass().getSimpleName().equals(factClass);
+            }
+        })) {
+            Map<String, Object> properties;
+            try {
+                properties = BeanUtils.describe(fact);
+            } catch (IllegalAccessException e) {
+                continue;
+            } catch (InvocationTargetException e) {
+                continue;
+            } catch (NoSuchMethodException e) {
+                continue;
+            }
+            boolean matches = true;
+            for (BeanPropertyFilter filter : filters) {
+                Object value = properties.get(filter.getPropertyName());
+                if (value == null || !filter.getPropertyValue().toString().equals(value.toString())) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                found.add(fact);
+            }
+        }
+        return found;
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.sctrcd.drools.util;
+
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.drools.definition.rule.Rule;
+import org.drools.event.rule.AfterActivationFiredEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Checking whether a rule has fired, after a long history of activations,
+ * with the {@link TrackingAgendaEventListener}, which scans its activations,
+ * and the {@link ConcurrentTrackingAgendaEventListener}, which counts them by
+ * rule.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackingAgendaEventListenerBenchmark {
+
+    private static final int RULES = 100;
+
+    @Param({ "1000", "100000" })
+    public int activations;
+
+    private TrackingAgendaEventListener tracking;
+    private ConcurrentTrackingAgendaEventListener concurrent;
+
+    @Setup
+    public void setUp() {
+        tracking = new TrackingAgendaEventListener();
+        concurrent = new ConcurrentTrackingAgendaEventListener();
+        AfterActivationFiredEvent[] events = new AfterActivationFiredEvent[RULES];
+        for (int i = 0; i < RULES; i++) {
+            events[i] = firedEvent("Rule " + i);
+        }
+        for (int i = 0; i < activations; i++) {
+            tracking.afterActivationFired(events[i % RULES]);
+            concurrent.afterActivationFired(events[i % RULES]);
+        }
+    }
+
+    @Benchmark
+    public boolean tracking() {
+        return tracking.isRuleFired("Rule " + (RULES - 1)) | tracking.isRuleFired("Not a rule");
+    }
+
+    @Benchmark
+    public boolean concurrent() {
+        return concurrent.isRuleFired("Rule " + (RULES - 1)) | concurrent.isRuleFired("Not a rule");
+    }
+
+    private static AfterActivationFiredEvent firedEvent(String ruleName) {
+        Rule rule = mock(Rule.class);
+        when(rule.getName()).thenReturn(ruleName);
+        org.drools.runtime.rule.Activation activation = mock(org.drools.runtime.rule.Activation.class);
+        when(activation.getRule()).thenReturn(rule);
+        AfterActivationFiredEvent event = mock(AfterActivationFiredEvent.class);
+        when(event.getActivation()).thenReturn(activation);
+        return event;
+    }
+
+}
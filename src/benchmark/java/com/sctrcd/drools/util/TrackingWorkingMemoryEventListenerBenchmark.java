@@ -0,0 +1,74 @@
+package com.sctrcd.drools.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.drools.KnowledgeBaseFactory;
+import org.drools.runtime.StatefulKnowledgeSession;
+import org.drools.runtime.rule.FactHandle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sctrcd.payments.facts.Country;
+
+/**
+ * Updating a fact in a session which is tracked by a
+ * {@link TrackingWorkingMemoryEventListener}, which either keeps every event
+ * and a description of every update, or is bounded and keeps the most recent
+ * events, with or without snapshots. Run with <code>-prof gc</code> to see
+ * what each update allocates. The unbounded listener is replaced for each
+ * iteration, or it would soon fill the heap.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackingWorkingMemoryEventListenerBenchmark {
+
+    @Param({ "unbounded", "bounded", "boundedWithSnapshots" })
+    public String mode;
+
+    private StatefulKnowledgeSession session;
+    private TrackingWorkingMemoryEventListener listener;
+    private Country country;
+    private FactHandle handle;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        session = KnowledgeBaseFactory.newKnowledgeBase().newStatefulKnowledgeSession();
+        if ("unbounded".equals(mode)) {
+            listener = new TrackingWorkingMemoryEventListener();
+        } else {
+            listener = new TrackingWorkingMemoryEventListener(10000, "boundedWithSnapshots".equals(mode));
+        }
+        session.addEventListener(listener);
+        country = new Country("GB", "United Kingdom");
+        handle = session.insert(country);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        session.dispose();
+    }
+
+    @Benchmark
+    public long update() {
+        session.update(handle, country);
+        return listener.getUpdateCount();
+    }
+
+}
@@ -0,0 +1,260 @@
+package com.sctrcd.payments.validation;
+
+import java.util.List;
+import java.util.Random;
+
+import com.sctrcd.payments.enums.CountryEnum;
+import com.sctrcd.payments.facts.Payment;
+import com.sctrcd.payments.validation.iban.IbanMod97Check;
+import com.sctrcd.payments.validation.iban.IbanRegistry;
+import com.sctrcd.payments.validation.iban.IbanStructure;
+
+/**
+ * Generates the IBANs, BICs and payments which the benchmarks validate.
+ * <p>
+ * The valid IBANs are spread across every country in the {@link IbanRegistry},
+ * with correct check digits. Some are compact and some are in the print format
+ * with a space every four characters, as customers provide both. The invalid
+ * IBANs are the mistakes people actually make: a mistyped character, two
+ * characters transposed, characters missing, and country codes which don't
+ * exist.
+ * </p>
+ * <p>
+ * Everything is generated from a fixed seed, so every run of a benchmark
+ * validates exactly the same data, and results can be compared between runs.
+ * Each corpus has {@link #SIZE} entries, which is a power of two so that a
+ * benchmark can cycle through it with a mask rather than a modulo.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public final class BenchmarkCorpus {
+
+    public static final int SIZE = 1024;
+
+    public static final String VALID = "valid";
+    public static final String INVALID = "invalid";
+    public static final String MIXED = "mixed";
+
+    private static final long SEED = 97L;
+
+    private static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String DIGITS = "0123456789";
+    private static final String ALPHANUMERIC = LETTERS + DIGITS;
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * @param corpus
+     *            {@link #VALID}, {@link #INVALID} or {@link #MIXED}, which has
+     *            one invalid IBAN for every four valid ones.
+     */
+    public static String[] ibans(String corpus) {
+        if (VALID.equals(corpus)) {
+            return validIbans();
+        } else if (INVALID.equals(corpus)) {
+            return invalidIbans();
+        } else if (MIXED.equals(corpus)) {
+            return mix(validIbans(), invalidIbans());
+        }
+        throw new IllegalArgumentException("Unknown corpus: " + corpus);
+    }
+
+    /**
+     * @see #ibans(String)
+     */
+    public static String[] bics(String corpus) {
+        if (VALID.equals(corpus)) {
+            return validBics();
+        } else if (INVALID.equals(corpus)) {
+            return invalidBics();
+        } else if (MIXED.equals(corpus)) {
+            return mix(validBics(), invalidBics());
+        }
+        throw new IllegalArgumentException("Unknown corpus: " + corpus);
+    }
+
+    public static String[] validIbans() {
+        Random random = new Random(SEED);
+        List<IbanStructure> structures = IbanRegistry.getDefault().getStructures();
+        String[] ibans = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            String iban = randomIban(random, structures.get(i % structures.size()));
+            ibans[i] = random.nextInt(3) == 0 ? printFormat(iban) : iban;
+        }
+        return ibans;
+    }
+
+    public static String[] invalidIbans() {
+        Random random = new Random(SEED + 1);
+        List<IbanStructure> structures = IbanRegistry.getDefault().getStructures();
+        String[] ibans = new String[SIZE];
+        int i = 0;
+        while (i < SIZE) {
+            String iban = randomIban(random, structures.get(random.nextInt(structures.size())));
+            char[] chars = iban.toCharArray();
+            switch (i % 4) {
+            case 0:
+                // A mistyped digit, which the check digits always catch.
+                int digit = 4 + random.nextInt(chars.length - 4);
+                while (!Character.isDigit(chars[digit])) {
+                    digit = 4 + random.nextInt(chars.length - 4);
+                }
+                chars[digit] = (char) ('0' + (chars[digit] - '0' + 1 + random.nextInt(9)) % 10);
+                iban = new String(chars);
+                break;
+            case 1:
+                // Two different characters transposed.
+                int pos = 4 + random.nextInt(chars.length - 5);
+                while (chars[pos] == chars[pos + 1]) {
+                    pos = 4 + random.nextInt(chars.length - 5);
+                }
+                char c = chars[pos];
+                chars[pos] = chars[pos + 1];
+                chars[pos + 1] = c;
+                iban = new String(chars);
+                break;
+            case 2:
+                // The last few characters missing.
+                iban = iban.substring(0, iban.length() - 1 - random.nextInt(3));
+                break;
+            default:
+                // A country which doesn't exist, with check digits to match.
+                iban = withCheckDigits("XX", iban.substring(4));
+                break;
+            }
+            // A transposed letter and digit can occasionally still pass the
+            // checks, in which case try again with another IBAN.
+            if (!IbanMod97Check.isValid(iban) || !IbanRegistry.getDefault().matches(iban)) {
+                ibans[i++] = iban;
+            }
+        }
+        return ibans;
+    }
+
+    public static String[] validBics() {
+        Random random = new Random(SEED + 2);
+        CountryEnum[] countries = CountryEnum.values();
+        String[] bics = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            StringBuilder bic = new StringBuilder(11);
+            append(random, bic, LETTERS, 4);
+            bic.append(countries[random.nextInt(countries.length)].isoCode);
+            append(random, bic, ALPHANUMERIC, 2);
+            // Most BICs are given without a branch code.
+            switch (random.nextInt(4)) {
+            case 0:
+                bic.append("XXX");
+                break;
+            case 1:
+                append(random, bic, ALPHANUMERIC, 3);
+                break;
+            default:
+                break;
+            }
+            bics[i] = bic.toString();
+        }
+        return bics;
+    }
+
+    public static String[] invalidBics() {
+        Random random = new Random(SEED + 3);
+        String[] valid = validBics();
+        String[] bics = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            String bic = valid[random.nextInt(SIZE)];
+            switch (i % 4) {
+            case 0:
+                // Wrong length.
+                bic = bic.length() == 8 ? bic + "X" : bic.substring(0, 10);
+                break;
+            case 1:
+                // Digit in the bank code.
+                bic = bic.substring(0, 2) + DIGITS.charAt(random.nextInt(10)) + bic.substring(3);
+                break;
+            case 2:
+                // A country which doesn't exist.
+                bic = bic.substring(0, 4) + "XX" + bic.substring(6);
+                break;
+            default:
+                // Truncated.
+                bic = bic.substring(0, 4 + random.nextInt(3));
+                break;
+            }
+            bics[i] = bic;
+        }
+        return bics;
+    }
+
+    /**
+     * Payments with an IBAN and BIC each taken from the corpora.
+     */
+    public static Payment[] payments(String corpus) {
+        String[] ibans = ibans(corpus);
+        String[] bics = bics(corpus);
+        Payment[] payments = new Payment[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            Payment payment = new Payment();
+            payment.setIban(ibans[i]);
+            payment.setBic(bics[i]);
+            payments[i] = payment;
+        }
+        return payments;
+    }
+
+    /**
+     * Generates a random IBAN with the structure for a country, and the check
+     * digits to make it valid.
+     */
+    static String randomIban(Random random, IbanStructure structure) {
+        StringBuilder bban = new StringBuilder(structure.getLength());
+        String format = structure.getBbanFormat();
+        int i = 0;
+        while (i < format.length()) {
+            int count = 0;
+            while (Character.isDigit(format.charAt(i))) {
+                count = count * 10 + (format.charAt(i++) - '0');
+            }
+            i++; // Skip the "!".
+            char charClass = format.charAt(i++);
+            append(random, bban, charClass == 'n' ? DIGITS : charClass == 'a' ? LETTERS : ALPHANUMERIC, count);
+        }
+        String iban = withCheckDigits(structure.getCountryCode(), bban.toString());
+        if (!IbanMod97Check.isValid(iban) || !structure.matches(iban)) {
+            throw new IllegalStateException("Generated an invalid IBAN: " + iban);
+        }
+        return iban;
+    }
+
+    private static String withCheckDigits(String countryCode, String bban) {
+        int check = 98 - IbanMod97Check.remainder(countryCode + "00" + bban);
+        return countryCode + (check < 10 ? "0" : "") + check + bban;
+    }
+
+    private static String printFormat(String iban) {
+        StringBuilder printed = new StringBuilder(iban.length() + iban.length() / 4);
+        for (int i = 0; i < iban.length(); i++) {
+            if (i > 0 && i % 4 == 0) {
+                printed.append(' ');
+            }
+            printed.append(iban.charAt(i));
+        }
+        return printed.toString();
+    }
+
+    private static void append(Random random, StringBuilder sb, String alphabet, int count) {
+        for (int i = 0; i < count; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+    }
+
+    private static String[] mix(String[] valid, String[] invalid) {
+        String[] mixed = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            mixed[i] = i % 5 == 4 ? invalid[i] : valid[i];
+        }
+        return mixed;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.sctrcd.payments.validation;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.sctrcd.payments.validation.iban.IbanValidationResult;
+import com.sctrcd.payments.validation.iban.RuleBasedIbanValidator;
+
+/**
+ * Validating the whole IBAN corpus with the {@link BulkValidationService},
+ * compared with validating it one IBAN at a time on a single thread. Results
+ * are per IBAN.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulkValidationBenchmark {
+
+    @Param({ BenchmarkCorpus.VALID, BenchmarkCorpus.MIXED })
+    public String corpus;
+
+    private List<String> ibans;
+    private RuleBasedIbanValidator validator;
+    private BulkValidationService service;
+
+    @Setup
+    public void setUp() {
+        ibans = Arrays.asList(BenchmarkCorpus.ibans(corpus));
+        validator = new RuleBasedIbanValidator();
+        service = new BulkValidationService();
+        service.setIbanValidator(validator);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.destroy();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void sequential(Blackhole blackhole) {
+        for (String iban : ibans) {
+            blackhole.consume(validator.validateIban(iban));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public void bulk(Blackhole blackhole) {
+        for (Iterator<IbanValidationResult> it = service.validateIbans(ibans); it.hasNext();) {
+            blackhole.consume(it.next());
+        }
+    }
+
+}
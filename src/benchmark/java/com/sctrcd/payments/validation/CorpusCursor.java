@@ -0,0 +1,26 @@
+package com.sctrcd.payments.validation;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Each benchmark thread's position in a {@link BenchmarkCorpus}, so that the
+ * threads work through the corpus independently, while sharing the validator
+ * under test.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Thread)
+public class CorpusCursor {
+
+    private int next;
+
+    /**
+     * @return The index of the next entry, going back to the start at the end
+     *         of the corpus.
+     */
+    public int next() {
+        return next++ & (BenchmarkCorpus.SIZE - 1);
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.sctrcd.payments.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.KnowledgeBase;
+import org.drools.builder.ResourceType;
+import org.drools.conf.EventProcessingOption;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sctrcd.drools.util.DroolsResource;
+import com.sctrcd.drools.util.DroolsUtil;
+import com.sctrcd.drools.util.ResourcePathType;
+import com.sctrcd.drools.util.StatelessSessionExecutor;
+import com.sctrcd.payments.enums.CountryEnum;
+import com.sctrcd.payments.facts.BicValidationRequest;
+import com.sctrcd.payments.facts.Country;
+import com.sctrcd.payments.facts.IbanValidationRequest;
+import com.sctrcd.payments.validation.iban.IbanRegistry;
+
+/**
+ * Compares the IBAN and BIC rules using the {@link CountryCodeIndex} against
+ * copies of the rules as they were before, which scanned the
+ * <code>countryList</code> global with <code>from</code>. The legacy copies
+ * are in src/benchmark/resources/rules/legacy.
+ * <p>
+ * The country codes are for the UK, which is near the end of the list, and
+ * for "XX", which isn't a country at all, so the scan goes all the way to the
+ * end.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountryLookupBenchmark {
+
+    @Param({ "GB", "XX" })
+    public String country;
+
+    private String iban;
+    private String bic;
+
+    private StatelessSessionExecutor ibanCountryList;
+    private StatelessSessionExecutor ibanCountryIndex;
+    private StatelessSessionExecutor bicCountryList;
+    private StatelessSessionExecutor bicCountryIndex;
+
+    @Setup
+    public void setUp() {
+        iban = country + "29NWBK60161331926819";
+        bic = "NWBK" + country + "2L";
+
+        List<Country> countries = new ArrayList<Country>();
+        for (CountryEnum c : CountryEnum.values()) {
+            countries.add(new Country(c.isoCode, c.name));
+        }
+
+        ibanCountryList = executor("rules/legacy/IbanRules.drl", "countryList", countries);
+        Map<String, Object> ibanGlobals = new HashMap<String, Object>();
+        ibanGlobals.put("countryIndex", new CountryCodeIndex(countries));
+        ibanGlobals.put("ibanRegistry", IbanRegistry.getDefault());
+        ibanCountryIndex = executor("rules/payments/validation/IbanRules.drl", ibanGlobals);
+        bicCountryList = executor("rules/legacy/BicRules.drl", "countryList", countries);
+        bicCountryIndex = executor("rules/payments/validation/BicRules.drl",
+                "countryIndex", new CountryCodeIndex(countries));
+    }
+
+    @Benchmark
+    public boolean ibanCountryList() {
+        IbanValidationRequest request = new IbanValidationRequest(iban);
+        ibanCountryList.execute(request);
+        return request.isValid();
+    }
+
+    @Benchmark
+    public boolean ibanCountryIndex() {
+        IbanValidationRequest request = new IbanValidationRequest(iban);
+        ibanCountryIndex.execute(request);
+        return request.isValid();
+    }
+
+    @Benchmark
+    public boolean bicCountryList() {
+        BicValidationRequest request = new BicValidationRequest(bic);
+        bicCountryList.execute(request);
+        return request.isValid();
+    }
+
+    @Benchmark
+    public boolean bicCountryIndex() {
+        BicValidationRequest request = new BicValidationRequest(bic);
+        bicCountryIndex.execute(request);
+        return request.isValid();
+    }
+
+    private static StatelessSessionExecutor executor(String path, String global, Object value) {
+        return executor(path, Collections.<String, Object> singletonMap(global, value));
+    }
+
+    private static StatelessSessionExecutor executor(String path, Map<String, Object> globals) {
+        KnowledgeBase kbase = DroolsUtil.createKnowledgeBase(
+                new DroolsResource[] {
+                        new DroolsResource(path, ResourcePathType.CLASSPATH, ResourceType.DRL)
+                },
+                EventProcessingOption.CLOUD);
+        return new StatelessSessionExecutor(kbase, globals);
+    }
+
+}
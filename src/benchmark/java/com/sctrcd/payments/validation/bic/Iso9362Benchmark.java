@@ -0,0 +1,86 @@
+package com.sctrcd.payments.validation.bic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sctrcd.payments.validation.BenchmarkCorpus;
+import com.sctrcd.payments.validation.CorpusCursor;
+import com.sctrcd.payments.validation.CountryCodeIndex;
+
+/**
+ * Compares the {@link Iso9362} lookup-table check against the upper-casing
+ * regular expression match which the {@link SimpleBicValidator} used before,
+ * with its length check and expression corrected, and against the whole of the
+ * {@link SimpleBicValidator} and {@link RuleBasedBicValidator}. Run with
+ * <code>-prof gc</code> to compare the allocation per check.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Iso9362Benchmark {
+
+    @Param({ BenchmarkCorpus.VALID, BenchmarkCorpus.INVALID, BenchmarkCorpus.MIXED })
+    public String corpus;
+
+    private String[] bics;
+    private SimpleBicValidator simpleValidator;
+    private RuleBasedBicValidator ruleBasedValidator;
+
+    @Setup
+    public void setUp() {
+        bics = BenchmarkCorpus.bics(corpus);
+        simpleValidator = new SimpleBicValidator();
+        ruleBasedValidator = new RuleBasedBicValidator();
+    }
+
+    @Benchmark
+    public boolean lookupTable(CorpusCursor cursor) {
+        return Iso9362.isValid(bics[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean regex(CorpusCursor cursor) {
+        return legacyIsValid(bics[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean simpleValidator(CorpusCursor cursor) {
+        return simpleValidator.validate(bics[cursor.next()]).isValid();
+    }
+
+    @Benchmark
+    public boolean ruleBasedValidator(CorpusCursor cursor) {
+        return ruleBasedValidator.validate(bics[cursor.next()]).isValid();
+    }
+
+    /**
+     * The check as it was implemented before, but with the length check and
+     * the regular expression fixed, and the country check added.
+     */
+    static boolean legacyIsValid(String bic) {
+        int len = bic.length();
+        if (len != 8 && len != 11) {
+            return false;
+        }
+        String upper = bic.toUpperCase();
+        return upper.matches("[a-zA-Z]{6}([0-9a-zA-Z]{2}|[0-9a-zA-Z]{5})")
+                && CountryCodeIndex.allCountries().contains(upper.substring(4, 6));
+    }
+
+}
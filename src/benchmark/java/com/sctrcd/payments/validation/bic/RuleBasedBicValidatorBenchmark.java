@@ -0,0 +1,51 @@
+package com.sctrcd.payments.validation.bic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sctrcd.payments.validation.BenchmarkCorpus;
+import com.sctrcd.payments.validation.CorpusCursor;
+
+/**
+ * Throughput of the {@link RuleBasedBicValidator} against each
+ * {@link BenchmarkCorpus} of BICs.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleBasedBicValidatorBenchmark {
+
+    @Param({ BenchmarkCorpus.VALID, BenchmarkCorpus.INVALID, BenchmarkCorpus.MIXED })
+    public String corpus;
+
+    private String[] bics;
+    private RuleBasedBicValidator validator;
+
+    @Setup
+    public void setUp() {
+        bics = BenchmarkCorpus.bics(corpus);
+        validator = new RuleBasedBicValidator();
+    }
+
+    @Benchmark
+    public boolean validate(CorpusCursor cursor) {
+        return validator.validate(bics[cursor.next()]).isValid();
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.sctrcd.payments.validation.iban;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sctrcd.payments.validation.BenchmarkCorpus;
+import com.sctrcd.payments.validation.CorpusCursor;
+
+/**
+ * The IBAN checks which don't involve the rules, run against a
+ * {@link BenchmarkCorpus} of IBANs from every country, rather than the
+ * handful of examples in {@link IbanMod97CheckBenchmark}.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IbanCorpusBenchmark {
+
+    @Param({ BenchmarkCorpus.VALID, BenchmarkCorpus.INVALID })
+    public String corpus;
+
+    private String[] ibans;
+    private IbanRegistry registry;
+    private SimpleIbanValidator validator;
+
+    @Setup
+    public void setUp() {
+        ibans = BenchmarkCorpus.ibans(corpus);
+        registry = IbanRegistry.getDefault();
+        validator = new SimpleIbanValidator();
+    }
+
+    @Benchmark
+    public boolean mod97Check(CorpusCursor cursor) {
+        return IbanMod97Check.isValid(ibans[cursor.next()]);
+    }
+
+    @Benchmark
+    public String sanitize(CorpusCursor cursor) {
+        return IbanUtil.sanitize(ibans[cursor.next()]);
+    }
+
+    /**
+     * Parsing into an {@link Iban} and checking it, as the rules do.
+     */
+    @Benchmark
+    public boolean parseAndCheck(CorpusCursor cursor) {
+        return Iban.valueOf(ibans[cursor.next()]).isMod97Valid();
+    }
+
+    @Benchmark
+    public boolean structure(CorpusCursor cursor) {
+        return registry.matches(ibans[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean simpleValidator(CorpusCursor cursor) {
+        return validator.validateIban(ibans[cursor.next()]).isValid();
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.sctrcd.payments.validation.iban;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the single-pass {@link IbanMod97Check} against the original
+ * sanitize, shuffle, numerize and <code>BigInteger</code> implementation. Run
+ * with <code>-prof gc</code> to compare the allocation per check.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IbanMod97CheckBenchmark {
+
+    @Param({
+        "GB29NWBK60161331926819",
+        "GB29 NWBK 6016 1331 9268 19",
+        "MT84 MALT 0110 0001 2345 MTLC AST001S",
+        "ES95 0217 0100 17"
+    })
+    public String iban;
+
+    @Benchmark
+    public boolean singlePass() {
+        return IbanMod97Check.isValid(iban);
+    }
+
+    @Benchmark
+    public boolean bigInteger() {
+        return legacyIsValid(iban);
+    }
+
+    /**
+     * The MOD-97 check as it was implemented before the single-pass version.
+     */
+    static boolean legacyIsValid(String iban) {
+        if (iban == null)
+            return false;
+        String cleanIban = iban.toUpperCase().replaceAll("[^A-Z0-9]", "");
+        String shuffledIban = IbanMod97Check.shuffle(cleanIban);
+        BigInteger checkSum = IbanMod97Check.numerize(shuffledIban);
+        return new BigInteger(checkSum.toString()).remainder(new BigInteger("97"))
+                .equals(BigInteger.ONE);
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.sctrcd.payments.validation.iban;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.drools.KnowledgeBase;
+import org.drools.builder.ResourceType;
+import org.drools.conf.EventProcessingOption;
+import org.drools.runtime.StatelessKnowledgeSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sctrcd.drools.util.DroolsResource;
+import com.sctrcd.drools.util.DroolsUtil;
+import com.sctrcd.drools.util.ResourcePathType;
+import com.sctrcd.drools.util.TrackingAgendaEventListener;
+import com.sctrcd.drools.util.TrackingWorkingMemoryEventListener;
+import com.sctrcd.payments.facts.IbanValidationRequest;
+import com.sctrcd.payments.validation.BenchmarkCorpus;
+import com.sctrcd.payments.validation.CorpusCursor;
+import com.sctrcd.payments.validation.CountryCodeIndex;
+
+/**
+ * Compares {@link RuleBasedIbanValidator}, which executes against a shared
+ * session, with the original approach of configuring a new session for every
+ * request, against each {@link BenchmarkCorpus} of IBANs. Run at 1, 8 and 32
+ * threads to see how each scales, i.e.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="RuleBasedIbanValidatorBenchmark -t 8"
+ * </pre>
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleBasedIbanValidatorBenchmark {
+
+    @Param({ BenchmarkCorpus.VALID, BenchmarkCorpus.INVALID, BenchmarkCorpus.MIXED })
+    public String corpus;
+
+    private String[] ibans;
+    private RuleBasedIbanValidator validator;
+    private KnowledgeBase kbase;
+    private CountryCodeIndex countryIndex;
+
+    @Setup
+    public void setUp() {
+        ibans = BenchmarkCorpus.ibans(corpus);
+        validator = new RuleBasedIbanValidator();
+        countryIndex = new CountryCodeIndex(validator.countries);
+        kbase = DroolsUtil.createKnowledgeBase(
+                new DroolsResource[] {
+                        new DroolsResource("rules/payments/validation/IbanRules.drl",
+                                ResourcePathType.CLASSPATH,
+                                ResourceType.DRL)
+                },
+                EventProcessingOption.CLOUD);
+    }
+
+    @Benchmark
+    public boolean sharedSession(CorpusCursor cursor) {
+        return validator.validateIban(ibans[cursor.next()]).isValid();
+    }
+
+    /**
+     * The validation as it was before sessions were shared.
+     */
+    @Benchmark
+    public boolean sessionPerRequest(CorpusCursor cursor) {
+        StatelessKnowledgeSession ksession = kbase.newStatelessKnowledgeSession();
+        ksession.setGlobal("countryIndex", countryIndex);
+        ksession.setGlobal("ibanRegistry", IbanRegistry.getDefault());
+
+        TrackingAgendaEventListener agendaEventListener = new TrackingAgendaEventListener();
+        TrackingWorkingMemoryEventListener workingMemoryEventListener = new TrackingWorkingMemoryEventListener();
+        ksession.addEventListener(agendaEventListener);
+        ksession.addEventListener(workingMemoryEventListener);
+
+        IbanValidationRequest request = new IbanValidationRequest(ibans[cursor.next()]);
+        List<Object> facts = new ArrayList<Object>();
+        facts.add(request);
+        ksession.execute(facts);
+
+        ksession.removeEventListener(agendaEventListener);
+        ksession.removeEventListener(workingMemoryEventListener);
+        return request.isValid();
+    }
+
+}
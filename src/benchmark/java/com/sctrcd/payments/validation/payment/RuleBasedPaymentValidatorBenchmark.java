@@ -0,0 +1,64 @@
+package com.sctrcd.payments.validation.payment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sctrcd.payments.facts.Payment;
+import com.sctrcd.payments.validation.BenchmarkCorpus;
+import com.sctrcd.payments.validation.CorpusCursor;
+
+/**
+ * The {@link RuleBasedPaymentValidator} validating payments from a
+ * {@link BenchmarkCorpus} one at a time, and the whole corpus as a batch.
+ * Results are per payment in both cases, so the two can be compared directly.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleBasedPaymentValidatorBenchmark {
+
+    @Param({ BenchmarkCorpus.VALID, BenchmarkCorpus.MIXED })
+    public String corpus;
+
+    private Payment[] payments;
+    private List<Payment> batch;
+    private RuleBasedPaymentValidator validator;
+
+    @Setup
+    public void setUp() {
+        payments = BenchmarkCorpus.payments(corpus);
+        batch = Arrays.asList(payments);
+        validator = new RuleBasedPaymentValidator();
+    }
+
+    @Benchmark
+    public boolean validatePayment(CorpusCursor cursor) {
+        return validator.validatePayment(payments[cursor.next()]).isValid();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public List<FxPaymentValidationResult> validatePayments() {
+        return validator.validatePayments(batch);
+    }
+
+}
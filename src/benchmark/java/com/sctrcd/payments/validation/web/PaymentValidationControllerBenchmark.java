@@ -0,0 +1,113 @@
+package com.sctrcd.payments.validation.web;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sctrcd.payments.validation.BenchmarkCorpus;
+import com.sctrcd.payments.validation.CorpusCursor;
+import com.sctrcd.payments.validation.bic.SimpleBicValidator;
+import com.sctrcd.payments.validation.iban.RuleBasedIbanValidator;
+import com.sctrcd.payments.validation.payment.RuleBasedPaymentValidator;
+
+/**
+ * Requests through the Spring MVC dispatcher to the
+ * {@link PaymentValidationControllerImpl}, using {@link MockMvc} rather than
+ * a servlet container. This covers the request mapping, the JSON message
+ * conversion and the serialization of the results, on top of the validation
+ * itself. Batch results are per IBAN or payment in the batch.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentValidationControllerBenchmark {
+
+    @Param({ BenchmarkCorpus.VALID, BenchmarkCorpus.MIXED })
+    public String corpus;
+
+    private String[] ibans;
+    private byte[] ibanLines;
+    private byte[] paymentsJson;
+    private MockMvc mockMvc;
+
+    @Setup
+    public void setUp() throws Exception {
+        ibans = BenchmarkCorpus.ibans(corpus);
+
+        StringBuilder lines = new StringBuilder();
+        for (String iban : ibans) {
+            lines.append(iban).append('\n');
+        }
+        ibanLines = lines.toString().getBytes("UTF-8");
+        paymentsJson = new ObjectMapper().writeValueAsBytes(Arrays.asList(BenchmarkCorpus.payments(corpus)));
+
+        PaymentValidationControllerImpl controller = new PaymentValidationControllerImpl();
+        RuleBasedIbanValidator ibanValidator = new RuleBasedIbanValidator();
+        controller.setIbanValidator(ibanValidator);
+        controller.setBatchIbanValidator(ibanValidator);
+        controller.setBicValidator(new SimpleBicValidator());
+        controller.setPaymentValidator(new RuleBasedPaymentValidator());
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        // Make sure that every request is handled, rather than measuring how
+        // quickly they can fail.
+        checkStatus(validateIban(new CorpusCursor()));
+        checkStatus(validateIbanBatch());
+        checkStatus(validatePayments());
+    }
+
+    @Benchmark
+    public MvcResult validateIban(CorpusCursor cursor) throws Exception {
+        return mockMvc.perform(get("/iban/validate/{iban}", ibans[cursor.next()])
+                .accept(MediaType.APPLICATION_JSON)).andReturn();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public MvcResult validateIbanBatch() throws Exception {
+        return mockMvc.perform(post("/iban/validate")
+                .contentType(MediaType.TEXT_PLAIN).content(ibanLines)).andReturn();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCorpus.SIZE)
+    public MvcResult validatePayments() throws Exception {
+        return mockMvc.perform(post("/payment/validate")
+                .contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON)
+                .content(paymentsJson)).andReturn();
+    }
+
+    private static void checkStatus(MvcResult result) throws Exception {
+        int status = result.getResponse().getStatus();
+        if (status != 200 || result.getResponse().getContentAsString().length() == 0) {
+            throw new IllegalStateException("Request to " + result.getRequest().getRequestURI()
+                    + " failed with status " + status);
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.sctrcd.payments.validation.web;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.varia.NullAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sctrcd.payments.validation.BenchmarkCorpus;
+import com.sctrcd.payments.validation.CorpusCursor;
+import com.sctrcd.payments.validation.bic.SimpleBicValidator;
+import com.sctrcd.payments.validation.iban.IbanValidationResult;
+import com.sctrcd.payments.validation.iban.RuleBasedIbanValidator;
+import com.sctrcd.payments.validation.payment.RuleBasedPaymentValidator;
+
+/**
+ * Validating an IBAN through the {@link PaymentValidationControllerImpl} and
+ * the {@link RuleBasedIbanValidator}, with the application's loggers at INFO,
+ * as in production, or at DEBUG. Run with <code>-prof gc</code> and compare
+ * <code>gc.alloc.rate.norm</code>, which is the bytes allocated per request.
+ * At INFO, the debug calls on the path should add nothing to it, so it should
+ * be no higher than before the logging was added. At DEBUG, it shows what
+ * building the messages costs. Log events go to a {@link NullAppender}, so
+ * only the formatting of the messages is measured, not the writing of them.
+ *
+ * @author Stephen Masters
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationLoggingBenchmark {
+
+    @Param({ "INFO", "DEBUG" })
+    public String level;
+
+    private String[] ibans;
+    private PaymentValidationControllerImpl controller;
+
+    @Setup
+    public void setUp() {
+        Logger logger = Logger.getLogger("com.sctrcd");
+        logger.setAdditivity(false);
+        logger.removeAllAppenders();
+        logger.addAppender(new NullAppender());
+        logger.setLevel(Level.toLevel(level));
+
+        ibans = BenchmarkCorpus.ibans(BenchmarkCorpus.VALID);
+        controller = new PaymentValidationControllerImpl();
+        controller.setIbanValidator(new RuleBasedIbanValidator());
+        controller.setBicValidator(new SimpleBicValidator());
+        controller.setPaymentValidator(new RuleBasedPaymentValidator());
+    }
+
+    @Benchmark
+    public IbanValidationResult validateIban(CorpusCursor cursor) {
+        return controller.validateIban(ibans[cursor.next()], false);
+    }
+
+}
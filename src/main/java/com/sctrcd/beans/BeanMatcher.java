@@ -1,21 +1,23 @@
 package com.sctrcd.beans;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.apache.commons.beanutils.BeanUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * This class provides some general utility methods to make it easier to match
- * whether particular fields and values exist on a bean. Because it uses the
- * apache commons {@link BeanUtils}, it performs matches on the string values
- * rather than the actual object values. i.e.:
+ * whether particular fields and values exist on a bean. Property values are
+ * read through the getters cached by {@link BeanPropertyAccessors}, and only
+ * the filtered properties are read. A value matches if it equals the filter
+ * value, or failing that, if their string values are the same. i.e.:
  * <pre>
  *     o1.property.toString().equals(filterValue.toString())
  * </pre>
+ * When the same filters are matched against many beans, {@link #compile}
+ * them first.
  * 
  * @author Stephen Masters
  */
@@ -51,11 +53,13 @@ public class BeanMatcher {
      */
     public boolean matches(Object bean, BeanPropertyFilter... filters) {
         if (filters.length == 0) return true;
-        Map<String, Object> filtermap = new HashMap<String, Object>();
+        BeanPropertyAccessors accessors = BeanPropertyAccessors.forClass(bean.getClass());
         for (BeanPropertyFilter filter : filters) {
-            filtermap.put(filter.getPropertyName(), filter.getPropertyValue());
-        }        
-        return matches(bean, filtermap);
+            if (!matches(bean, accessors, filter.getPropertyName(), filter.getPropertyValue())) {
+                return false;
+            }
+        }
+        return true;
     }
     
     /**
@@ -63,18 +67,51 @@ public class BeanMatcher {
      * If any filter is not in the bean properties or the value differs, then
      * this will return false.
      */
-    @SuppressWarnings("unchecked")
     public boolean matches(Object bean, Map<String, Object> filters) {
         if (filters.size() == 0) return true;
-        try {
-            return matches(BeanUtils.describe(bean), filters);
-        } catch (IllegalAccessException e) {
-            return false;
-        } catch (InvocationTargetException e) {
-            return false;
-        } catch (NoSuchMethodException e) {
+        BeanPropertyAccessors accessors = BeanPropertyAccessors.forClass(bean.getClass());
+        for (Map.Entry<String, Object> filter : filters.entrySet()) {
+            if (!matches(bean, accessors, filter.getKey(), filter.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Looks up the getters of the filtered properties once for each class of
+     * bean, for matching the same filters against many beans.
+     * 
+     * @param filters Vararg list of filters.
+     * @return A matcher which can be shared between threads.
+     */
+    public CompiledBeanMatcher compile(BeanPropertyFilter... filters) {
+        return new CompiledBeanMatcher(filters);
+    }
+
+    /**
+     * Compiles filters defined as an array of String, as for
+     * {@link #matches(Object, String[])}.
+     */
+    public CompiledBeanMatcher compile(String[] filters) {
+        Map<String, Object> map = parseFilters(filters);
+        BeanPropertyFilter[] parsed = new BeanPropertyFilter[map.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> filter : map.entrySet()) {
+            parsed[i++] = new BeanPropertyFilter(filter.getKey(), filter.getValue());
+        }
+        return new CompiledBeanMatcher(parsed);
+    }
+
+    private boolean matches(Object bean, BeanPropertyAccessors accessors, String name, Object value) {
+        MethodHandle getter = accessors.getter(name);
+        if (getter == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("No property {} on {}", name, accessors.getBeanClass().getName());
+            }
             return false;
         }
+        return CompiledBeanMatcher.matches(bean, getter, value);
     }
 
     /**
@@ -116,7 +153,7 @@ public class BeanMatcher {
             }
         }
         
-        log.debug("Matching filters: " + filterValues.toString() + "\nto bean properties:" + beanValues.toString());
+        log.debug("Matching filters: {}\nto bean properties:{}", filterValues, beanValues);
     }
 
     /**
@@ -162,16 +199,15 @@ public class BeanMatcher {
     }
 
     /**
-     * As the commons BeanUtils give us the String value of each property, we
-     * match on whether that String value is the same, rather than being able to
-     * test whether one object truly equals the other.
+     * The values match if they are equal, or if their String values are the
+     * same, so that filters parsed from strings can match properties of any
+     * type.
      */
     protected boolean isEquivalent(Object o1, Object o2) {
-        log.debug("    matching: " + o1 + " and " + o2);
-        if (o1 == null && o2 == null) return true;
-        if (o1 == o2) return true;
-        if (o1.toString().equals(o2.toString())) return true;
-        return false;
+        if (log.isDebugEnabled()) {
+            log.debug("    matching: {} and {}", o1, o2);
+        }
+        return CompiledBeanMatcher.isEquivalent(o1, o2);
     }
 
 }
@@ -0,0 +1,108 @@
+package com.sctrcd.beans;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The getters of a bean class, as method handles which take the bean as an
+ * <code>Object</code> and return the property value as an
+ * <code>Object</code>. The class is introspected once, the first time it is
+ * asked for, and the accessors are cached against the class from then on, so
+ * reading a property is a map lookup and a direct call rather than a trip
+ * through reflection.
+ *
+ * @author Stephen Masters
+ */
+public final class BeanPropertyAccessors {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<BeanPropertyAccessors> CACHE = new ClassValue<BeanPropertyAccessors>() {
+        @Override
+        protected BeanPropertyAccessors computeValue(Class<?> type) {
+            return new BeanPropertyAccessors(type);
+        }
+    };
+
+    private final Class<?> beanClass;
+    private final Map<String, MethodHandle> getters;
+
+    private BeanPropertyAccessors(Class<?> beanClass) {
+        this.beanClass = beanClass;
+        Map<String, MethodHandle> map = new HashMap<String, MethodHandle>();
+        try {
+            for (PropertyDescriptor descriptor : Introspector.getBeanInfo(beanClass).getPropertyDescriptors()) {
+                MethodHandle getter = getter(descriptor.getReadMethod());
+                if (getter != null) {
+                    map.put(descriptor.getName(), getter);
+                }
+            }
+        } catch (IntrospectionException e) {
+            // Treated as a bean with no properties, so nothing will match.
+        }
+        this.getters = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * @return The accessors of a class, introspecting it if this is the first
+     *         time it has been asked for.
+     */
+    public static BeanPropertyAccessors forClass(Class<?> beanClass) {
+        return CACHE.get(beanClass);
+    }
+
+    /**
+     * @return The getter for a property, with the type
+     *         <code>(Object)Object</code>, or null if there is no readable
+     *         property with that name.
+     */
+    public MethodHandle getter(String propertyName) {
+        return getters.get(propertyName);
+    }
+
+    /**
+     * @return The names of the readable properties, in no particular order.
+     */
+    public Set<String> getPropertyNames() {
+        return getters.keySet();
+    }
+
+    public boolean hasProperty(String propertyName) {
+        return getters.containsKey(propertyName);
+    }
+
+    public Class<?> getBeanClass() {
+        return beanClass;
+    }
+
+    /**
+     * Non-public bean classes, such as those nested in tests, have public
+     * getters which can't be called from outside without making them
+     * accessible first.
+     */
+    private static MethodHandle getter(Method method) {
+        if (method == null || method.getParameterTypes().length != 0) {
+            return null;
+        }
+        try {
+            method.setAccessible(true);
+        } catch (SecurityException e) {
+            // Try it anyway, in case it's accessible already.
+        }
+        try {
+            return MethodHandles.lookup().unreflect(method).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+}
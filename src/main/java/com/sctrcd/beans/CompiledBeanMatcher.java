@@ -0,0 +1,137 @@
+package com.sctrcd.beans;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * A set of {@link BeanPropertyFilter}s, ready to be matched against any
+ * number of beans. It looks up the getters of the filtered properties for
+ * the class of the last bean it saw, and keeps them in the same order as the
+ * filters until it sees a bean of another class. Matching a bean then only
+ * calls the getters of the filtered properties, and stops at the first which
+ * doesn't match, rather than reading and converting every property of the
+ * bean to a string.
+ * <p>
+ * Values are compared with <code>equals</code> first. If they are not equal,
+ * their string values are compared, which is how the {@link BeanMatcher}
+ * has always compared them, so a filter of <code>"REJECT"</code> still
+ * matches an enum property of <code>REJECT</code>.
+ * </p>
+ * <p>
+ * Its filters are immutable once created, and the getters are replaced
+ * whole, so it can be shared between threads.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public final class CompiledBeanMatcher {
+
+    private final String[] names;
+    private final Object[] values;
+
+    /**
+     * The getters of the filtered properties for the last class of bean
+     * matched. A matcher is usually created for one search over beans of one
+     * class, so this saves looking them up for every bean, while the
+     * accessors themselves stay cached by {@link BeanPropertyAccessors}.
+     */
+    private volatile Getters last;
+
+    /**
+     * The getters of the filtered properties for a class, with no handles if
+     * the class is missing one of them, in which case nothing of that class
+     * can match.
+     */
+    private static final class Getters {
+
+        final Class<?> type;
+        final MethodHandle[] handles;
+
+        Getters(Class<?> type, MethodHandle[] handles) {
+            this.type = type;
+            this.handles = handles;
+        }
+    }
+
+    public CompiledBeanMatcher(BeanPropertyFilter... filters) {
+        this.names = new String[filters.length];
+        this.values = new Object[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            names[i] = filters[i].getPropertyName();
+            values[i] = filters[i].getPropertyValue();
+        }
+    }
+
+    /**
+     * @return True if every filtered property of the bean has the value of
+     *         its filter. Always true if there are no filters.
+     */
+    public boolean matches(Object bean) {
+        if (names.length == 0) {
+            return true;
+        }
+        Getters getters = last;
+        if (getters == null || getters.type != bean.getClass()) {
+            getters = new Getters(bean.getClass(), resolve(bean.getClass()));
+            last = getters;
+        }
+        MethodHandle[] handles = getters.handles;
+        if (handles == null) {
+            return false;
+        }
+        for (int i = 0; i < handles.length; i++) {
+            if (!matches(bean, handles[i], values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The getters of the filtered properties, in the same order as
+     *         the filters, or null if the class is missing one of them.
+     */
+    private MethodHandle[] resolve(Class<?> type) {
+        BeanPropertyAccessors accessors = BeanPropertyAccessors.forClass(type);
+        MethodHandle[] handles = new MethodHandle[names.length];
+        for (int i = 0; i < names.length; i++) {
+            handles[i] = accessors.getter(names[i]);
+            if (handles[i] == null) {
+                return null;
+            }
+        }
+        return handles;
+    }
+
+    /**
+     * @param getter
+     *            A getter from {@link BeanPropertyAccessors}.
+     * @return True if the getter returns the expected value.
+     */
+    static boolean matches(Object bean, MethodHandle getter, Object expected) {
+        Object value;
+        try {
+            value = (Object) getter.invokeExact(bean);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // A getter which throws can't be matched.
+            return false;
+        }
+        return isEquivalent(expected, value);
+    }
+
+    /**
+     * @return True if both values are null, equal, or have equal string
+     *         values.
+     */
+    static boolean isEquivalent(Object expected, Object actual) {
+        if (expected == actual) {
+            return true;
+        }
+        if (expected == null || actual == null) {
+            return false;
+        }
+        return expected.equals(actual) || expected.toString().equals(actual.toString());
+    }
+
+}
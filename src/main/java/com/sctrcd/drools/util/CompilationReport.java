@@ -0,0 +1,96 @@
+package com.sctrcd.drools.util;
+
+/**
+ * A record of how long it took to compile a {@link DroolsResource} into
+ * knowledge packages, and how much memory was allocated while doing so. If
+ * the packages were compiled by the build, this is how long it took to load
+ * them.
+ *
+ * @author Stephen Masters
+ */
+public class CompilationReport {
+
+    private final String resource;
+    private final long compileMillis;
+    private final long allocatedBytes;
+    private final int packageCount;
+    private final int ruleCount;
+    private final int serializedBytes;
+    private final boolean precompiled;
+
+    public CompilationReport(String resource, long compileMillis,
+            long allocatedBytes, int packageCount, int ruleCount,
+            int serializedBytes) {
+        this(resource, compileMillis, allocatedBytes, packageCount, ruleCount,
+                serializedBytes, false);
+    }
+
+    public CompilationReport(String resource, long compileMillis,
+            long allocatedBytes, int packageCount, int ruleCount,
+            int serializedBytes, boolean precompiled) {
+        this.resource = resource;
+        this.compileMillis = compileMillis;
+        this.allocatedBytes = allocatedBytes;
+        this.packageCount = packageCount;
+        this.ruleCount = ruleCount;
+        this.serializedBytes = serializedBytes;
+        this.precompiled = precompiled;
+    }
+
+    /**
+     * @return A description of the resource which was compiled.
+     */
+    public String getResource() {
+        return resource;
+    }
+
+    /**
+     * @return The time taken to compile the resource, in milliseconds.
+     */
+    public long getCompileMillis() {
+        return compileMillis;
+    }
+
+    /**
+     * @return The number of bytes allocated by the compiling thread, or -1 if
+     *         the JVM does not support measuring thread allocation.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public int getPackageCount() {
+        return packageCount;
+    }
+
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * @return The size of the compiled packages once serialized, which is the
+     *         form in which they are cached.
+     */
+    public int getSerializedBytes() {
+        return serializedBytes;
+    }
+
+    /**
+     * @return Whether the packages were loaded from those compiled by the
+     *         build, rather than compiled from the resource.
+     */
+    public boolean isPrecompiled() {
+        return precompiled;
+    }
+
+    public String toString() {
+        return "CompilationReport[resource=" + resource
+                + ", compileMillis=" + compileMillis
+                + ", allocatedBytes=" + allocatedBytes
+                + ", packages=" + packageCount
+                + ", rules=" + ruleCount
+                + ", serializedBytes=" + serializedBytes
+                + ", precompiled=" + precompiled + "]";
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.sctrcd.drools.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.drools.event.rule.AfterActivationFiredEvent;
+
+/**
+ * A {@link TrackingAgendaEventListener} which can be shared by sessions
+ * firing rules on several threads at once, such as a stateless session
+ * executed by many requests.
+ * <p>
+ * Activations are appended to a lock-free queue, and each rule has a counter
+ * of the times it has fired, so {@link #isRuleFired(String)} is a map lookup
+ * rather than a scan of the activations. The counter holds the name of its
+ * rule, and that same string is used for every {@link Activation} of the
+ * rule.
+ * </p>
+ * <p>
+ * The activation list is a copy of the activations at the time it is asked
+ * for. A {@link #reset()} while rules are firing may leave the activations
+ * and the counts slightly out of step with each other.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class ConcurrentTrackingAgendaEventListener extends TrackingAgendaEventListener {
+
+    private final Queue<Activation> activations = new ConcurrentLinkedQueue<Activation>();
+    private final ConcurrentMap<String, RuleCount> counts = new ConcurrentHashMap<String, RuleCount>();
+
+    @Override
+    public void afterActivationFired(AfterActivationFiredEvent event) {
+        String ruleName = event.getActivation().getRule().getName();
+        RuleCount count = counts.get(ruleName);
+        if (count == null) {
+            RuleCount created = new RuleCount(ruleName);
+            count = counts.putIfAbsent(ruleName, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.fired.incrementAndGet();
+        activations.add(new Activation(count.ruleName));
+        logActivation(event);
+    }
+
+    @Override
+    public boolean isRuleFired(String ruleName) {
+        return getFiredCount(ruleName) > 0;
+    }
+
+    /**
+     * @return The number of times a rule has fired since the listener was
+     *         created or reset.
+     */
+    public long getFiredCount(String ruleName) {
+        RuleCount count = counts.get(ruleName);
+        return count == null ? 0 : count.fired.get();
+    }
+
+    @Override
+    public void reset() {
+        activations.clear();
+        counts.clear();
+    }
+
+    @Override
+    public List<Activation> getActivationList() {
+        return new ArrayList<Activation>(activations);
+    }
+
+    private static class RuleCount {
+        private final String ruleName;
+        private final AtomicLong fired = new AtomicLong();
+
+        private RuleCount(String ruleName) {
+            this.ruleName = ruleName;
+        }
+    }
+
+}
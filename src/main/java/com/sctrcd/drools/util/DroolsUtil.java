@@ -21,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.sctrcd.beans.BeanMatcher;
+import com.sctrcd.beans.CompiledBeanMatcher;
 
 
 /**
@@ -50,12 +51,62 @@ public class DroolsUtil {
     public static KnowledgeBase createKnowledgeBase(
             DroolsResource[] resources,
             EventProcessingOption eventProcessingOption) {
+        return createKnowledgeBase(buildKnowledgePackages(resources),
+                eventProcessingOption);
+    }
+
+    /**
+     * Creates a new knowledge base from packages which have already been
+     * compiled.
+     * 
+     * @param packages
+     *            The compiled packages. They should not already belong to
+     *            another knowledge base.
+     * @return A new knowledge base.
+     */
+    public static KnowledgeBase createKnowledgeBase(
+            Collection<KnowledgePackage> packages,
+            EventProcessingOption eventProcessingOption) {
+        KnowledgeBaseConfiguration conf = KnowledgeBaseFactory
+                .newKnowledgeBaseConfiguration();
+        conf.setOption(eventProcessingOption);
+
+        KnowledgeBase knowledgeBase = KnowledgeBaseFactory
+                .newKnowledgeBase(conf);
+        knowledgeBase.addKnowledgePackages(packages);
+
+        // Output the packages in this knowledge base.
+        StringBuilder sb = new StringBuilder();
+        for (KnowledgePackage p : knowledgeBase.getKnowledgePackages()) {
+            sb.append("\n  Package : " + p.getName());
+            for (Rule r : p.getRules()) {
+                sb.append("\n    Rule: " + r.getName());
+            }
+        }
+        log.info("Knowledge base built with packages: {}", sb);
+
+        return knowledgeBase;
+    }
+
+    /**
+     * Compiles a collection of resources into knowledge packages.
+     * 
+     * @param resources
+     *            An array of {@link DroolsResource} indicating where the
+     *            various resources should be loaded from. These could be
+     *            classpath, file or URL resources.
+     * @return The compiled packages.
+     */
+    public static Collection<KnowledgePackage> buildKnowledgePackages(
+            DroolsResource[] resources) {
         KnowledgeBuilder builder = KnowledgeBuilderFactory
                 .newKnowledgeBuilder();
 
         for (DroolsResource resource : resources) {
-            log.info("Resource: " + resource.getType() + ", path type="
-                    + resource.getPathType() + ", path=" + resource.getPath());
+            if (log.isInfoEnabled()) {
+                log.info("Resource: {}, path type={}, path={}", new Object[] {
+                        resource.getType(), resource.getPathType(), resource.getPath() });
+            }
             switch (resource.getPathType()) {
             case CLASSPATH:
                 builder.add(ResourceFactory.newClassPathResource(resource
@@ -71,8 +122,7 @@ public class DroolsUtil {
                         .newUrlResource(resource.getPath());
 
                 if (resource.getUsername() != null) {
-                    log.info("Setting authentication for: "
-                            + resource.getUsername());
+                    log.info("Setting authentication for: {}", resource.getUsername());
                     urlResource.setBasicAuthentication("enabled");
                     urlResource.setUsername(resource.getUsername());
                     urlResource.setPassword(resource.getPassword());
@@ -91,28 +141,7 @@ public class DroolsUtil {
             throw new RuntimeException(builder.getErrors().toString());
         }
 
-        KnowledgeBaseConfiguration conf = KnowledgeBaseFactory
-                .newKnowledgeBaseConfiguration();
-        conf.setOption(eventProcessingOption);
-
-        KnowledgeBase knowledgeBase = KnowledgeBaseFactory
-                .newKnowledgeBase(conf);
-        knowledgeBase.addKnowledgePackages(builder.getKnowledgePackages());
-
-        // Output the packages in this knowledge base.
-        Collection<KnowledgePackage> packages = knowledgeBase
-                .getKnowledgePackages();
-
-        StringBuilder sb = new StringBuilder();
-        for (KnowledgePackage p : packages) {
-            sb.append("\n  Package : " + p.getName());
-            for (Rule r : p.getRules()) {
-                sb.append("\n    Rule: " + r.getName());
-            }
-        }
-        log.info("Knowledge base built with packages: " + sb.toString());
-
-        return knowledgeBase;
+        return builder.getKnowledgePackages();
     }
     
     /**
@@ -122,18 +151,23 @@ public class DroolsUtil {
         if (kbase == null) {
             return "Knowledge Base is null.";
         } else {
-            StringBuilder sb = new StringBuilder(
-                    "Knowledge base built from the following packages:");
-            Collection<KnowledgePackage> packages = kbase
-                    .getKnowledgePackages();
-            for (KnowledgePackage kp : packages) {
-                sb.append("\n    Package: [" + kp.getName() + "]");
-                for (Rule rule : kp.getRules()) {
-                    sb.append("\n        Rule: [" + rule.getName() + "]");
-                }
+            return knowledgePackageDetails(kbase.getKnowledgePackages());
+        }
+    }
+
+    /**
+     * @return A description of the packages and the rules in each of them.
+     */
+    public static String knowledgePackageDetails(Collection<KnowledgePackage> packages) {
+        StringBuilder sb = new StringBuilder(
+                "Knowledge base built from the following packages:");
+        for (KnowledgePackage kp : packages) {
+            sb.append("\n    Package: [" + kp.getName() + "]");
+            for (Rule rule : kp.getRules()) {
+                sb.append("\n        Rule: [" + rule.getName() + "]");
             }
-            return sb.toString();
         }
+        return sb.toString();
     }
 
     public static String objectDetails(Object o) {
@@ -158,11 +192,12 @@ public class DroolsUtil {
 
     public static Object findInsertedFact(List<ObjectInsertedEvent> insertions,
             String factType, String[] filters) {
+        CompiledBeanMatcher compiled = matcher.compile(filters);
         for (ObjectInsertedEvent event : insertions) {
             Object fact = event.getObject();
 
             if (factType.equals(fact.getClass().getSimpleName())) {
-                if (matcher.matches(fact, filters)) {
+                if (compiled.matches(fact)) {
                     return fact;
                 }
             }
@@ -6,10 +6,10 @@ import java.util.Collection;
 
 import org.drools.runtime.ObjectFilter;
 import org.drools.runtime.StatefulKnowledgeSession;
-import org.drools.runtime.rule.FactHandle;
 
 import com.sctrcd.beans.BeanMatcher;
 import com.sctrcd.beans.BeanPropertyFilter;
+import com.sctrcd.beans.CompiledBeanMatcher;
 
 
 public class FactFinder {
@@ -34,9 +34,31 @@ public class FactFinder {
     public Collection<Object> findFacts(final KnowledgeEnvironment kenv,
             final String factClass,
             final BeanPropertyFilter... expectedProperties) {
+        if (kenv.getFactIndex() != null) {
+            return findFacts(kenv.getFactIndex(), factClass, expectedProperties);
+        }
         return findFacts(kenv.getKnowledgeSession(), factClass, expectedProperties);
     }
 
+    /**
+     * Finds facts through a {@link FactIndex}, which only looks at the facts
+     * of the class, or fewer if there is a property index for one of the
+     * filters, rather than every fact in the session.
+     * 
+     * @param index
+     *            An index attached to the session in which we are looking for
+     *            the fact.
+     * @param factClass
+     *            The simple name of the class of the fact we're looking for.
+     * @param expectedProperties
+     *            A sequence of expected property name/value pairs.
+     */
+    public Collection<Object> findFacts(final FactIndex index,
+            final String factClass,
+            final BeanPropertyFilter... expectedProperties) {
+        return index.findFacts(factClass, expectedProperties);
+    }
+
     /**
      * An assertion that a fact of the expected class with specified properties
      * is in working memory.
@@ -63,15 +85,7 @@ public class FactFinder {
             }
         };
 
-        Collection<FactHandle> factHandles = session.getFactHandles(filter);
-        Collection<Object> facts = new ArrayList<Object>();
-        for (FactHandle handle : factHandles) {
-            Object fact = session.getObject(handle);
-            if (beanMatcher.matches(fact, expectedProperties)) {
-                facts.add(fact);
-            }
-        }
-        return facts;
+        return findFacts(session, filter, expectedProperties);
     }
     
     public Collection<Object> findFacts(final StatefulKnowledgeSession session,
@@ -85,11 +99,20 @@ public class FactFinder {
             }
         };
 
-        Collection<FactHandle> factHandles = session.getFactHandles(filter);
+        return findFacts(session, filter, expectedProperties);
+    }
+
+    /**
+     * The filters are compiled once, so that only the filtered properties of
+     * each fact are read, through getters looked up once per class.
+     */
+    private Collection<Object> findFacts(final StatefulKnowledgeSession session,
+            final ObjectFilter filter,
+            final BeanPropertyFilter... expectedProperties) {
+        CompiledBeanMatcher matcher = beanMatcher.compile(expectedProperties);
         Collection<Object> facts = new ArrayList<Object>();
-        for (FactHandle handle : factHandles) {
-            Object fact = session.getObject(handle);
-            if (beanMatcher.matches(fact, expectedProperties)) {
+        for (Object fact : session.getObjects(filter)) {
+            if (matcher.matches(fact)) {
                 facts.add(fact);
             }
         }
@@ -0,0 +1,341 @@
+package com.sctrcd.drools.util;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.drools.event.rule.DefaultWorkingMemoryEventListener;
+import org.drools.event.rule.ObjectInsertedEvent;
+import org.drools.event.rule.ObjectRetractedEvent;
+import org.drools.event.rule.ObjectUpdatedEvent;
+import org.drools.runtime.StatefulKnowledgeSession;
+import org.drools.runtime.rule.FactHandle;
+
+import com.sctrcd.beans.BeanPropertyAccessors;
+import com.sctrcd.beans.BeanPropertyFilter;
+import com.sctrcd.beans.CompiledBeanMatcher;
+
+/**
+ * Indexes the facts in a session by their class, and optionally by the values
+ * of some of their properties, so that finding facts costs about the size of
+ * the result rather than the size of the session. It is a working memory
+ * listener, so the index follows every insert, update and retract made
+ * once it has been attached.
+ * <p>
+ * A property index is declared for a simple class name, such as
+ * <code>addPropertyIndex("PaymentValidationAnnotation", "ruleName")</code>.
+ * Facts are indexed by the string value of the property, which is how the
+ * {@link com.sctrcd.beans.BeanMatcher} compares values, so a property index
+ * narrows a search down to the facts which might match, and each of those is
+ * then checked against all the filters. Updates re-index a fact, but a fact
+ * which is changed without telling the session will be indexed under its old
+ * value, as it would be for the rules.
+ * </p>
+ * <p>
+ * The index is synchronized, so it can be read from other threads while the
+ * session is firing rules.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class FactIndex extends DefaultWorkingMemoryEventListener {
+
+    /** The key for a property value of null. */
+    private static final Object NULL = new Object();
+
+    /** The key for a property whose getter threw, which nothing matches. */
+    private static final Object UNREADABLE = new Object();
+
+    private final Map<Class<?>, ClassIndex> classes = new HashMap<Class<?>, ClassIndex>();
+    private final Map<String, List<ClassIndex>> bySimpleName = new HashMap<String, List<ClassIndex>>();
+    private final Map<String, Set<String>> indexedProperties = new HashMap<String, Set<String>>();
+
+    /**
+     * Creates an index which is attached to a session, containing the facts
+     * already in the session.
+     */
+    public static FactIndex attach(StatefulKnowledgeSession session) {
+        FactIndex index = new FactIndex();
+        session.addEventListener(index);
+        index.addExisting(session);
+        return index;
+    }
+
+    /**
+     * Adds the facts already in a session, for an index attached to a session
+     * which is not empty.
+     */
+    public synchronized void addExisting(StatefulKnowledgeSession session) {
+        for (FactHandle handle : session.getFactHandles()) {
+            add(handle, session.getObject(handle));
+        }
+    }
+
+    /**
+     * Indexes the facts with a simple class name by the value of one of their
+     * properties, including those already in the index.
+     */
+    public synchronized void addPropertyIndex(String simpleName, String propertyName) {
+        Set<String> properties = indexedProperties.get(simpleName);
+        if (properties == null) {
+            properties = new HashSet<String>();
+            indexedProperties.put(simpleName, properties);
+        }
+        if (properties.add(propertyName)) {
+            for (ClassIndex classIndex : classes(simpleName)) {
+                classIndex.addPropertyIndex(propertyName);
+            }
+        }
+    }
+
+    /**
+     * @see #addPropertyIndex(String, String)
+     */
+    public void addPropertyIndex(Class<?> factClass, String propertyName) {
+        addPropertyIndex(factClass.getSimpleName(), propertyName);
+    }
+
+    @Override
+    public synchronized void objectInserted(ObjectInsertedEvent event) {
+        add(event.getFactHandle(), event.getObject());
+    }
+
+    @Override
+    public synchronized void objectUpdated(ObjectUpdatedEvent event) {
+        remove(event.getFactHandle(), event.getOldObject());
+        add(event.getFactHandle(), event.getObject());
+    }
+
+    @Override
+    public synchronized void objectRetracted(ObjectRetractedEvent event) {
+        remove(event.getFactHandle(), event.getOldObject());
+    }
+
+    /**
+     * @return The facts whose class has this simple name.
+     */
+    public synchronized List<Object> getFacts(String simpleName) {
+        List<Object> facts = new ArrayList<Object>();
+        for (ClassIndex classIndex : classes(simpleName)) {
+            facts.addAll(classIndex.facts.values());
+        }
+        return facts;
+    }
+
+    /**
+     * @return The facts of exactly this class.
+     */
+    public synchronized List<Object> getFacts(Class<?> factClass) {
+        ClassIndex classIndex = classes.get(factClass);
+        return classIndex == null ? new ArrayList<Object>() : new ArrayList<Object>(classIndex.facts.values());
+    }
+
+    /**
+     * @return The facts whose class has this simple name, and which match
+     *         all of the filters.
+     */
+    public synchronized List<Object> findFacts(String simpleName, BeanPropertyFilter... filters) {
+        CompiledBeanMatcher matcher = new CompiledBeanMatcher(filters);
+        List<Object> facts = new ArrayList<Object>();
+        for (ClassIndex classIndex : classes(simpleName)) {
+            classIndex.find(matcher, filters, facts);
+        }
+        return facts;
+    }
+
+    /**
+     * @return The facts of exactly this class which match all of the
+     *         filters.
+     */
+    public synchronized List<Object> findFacts(Class<?> factClass, BeanPropertyFilter... filters) {
+        List<Object> facts = new ArrayList<Object>();
+        ClassIndex classIndex = classes.get(factClass);
+        if (classIndex != null) {
+            classIndex.find(new CompiledBeanMatcher(filters), filters, facts);
+        }
+        return facts;
+    }
+
+    /**
+     * @return The number of facts in the index.
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (ClassIndex classIndex : classes.values()) {
+            size += classIndex.facts.size();
+        }
+        return size;
+    }
+
+    private List<ClassIndex> classes(String simpleName) {
+        List<ClassIndex> list = bySimpleName.get(simpleName);
+        return list == null ? Collections.<ClassIndex> emptyList() : list;
+    }
+
+    private void add(FactHandle handle, Object fact) {
+        if (fact == null) {
+            return;
+        }
+        ClassIndex classIndex = classes.get(fact.getClass());
+        if (classIndex == null) {
+            classIndex = new ClassIndex(fact.getClass());
+            classes.put(fact.getClass(), classIndex);
+            String simpleName = fact.getClass().getSimpleName();
+            List<ClassIndex> list = bySimpleName.get(simpleName);
+            if (list == null) {
+                list = new ArrayList<ClassIndex>(1);
+                bySimpleName.put(simpleName, list);
+            }
+            list.add(classIndex);
+            Set<String> properties = indexedProperties.get(simpleName);
+            if (properties != null) {
+                for (String property : properties) {
+                    classIndex.addPropertyIndex(property);
+                }
+            }
+        }
+        classIndex.add(handle, fact);
+    }
+
+    private void remove(FactHandle handle, Object oldFact) {
+        if (oldFact != null) {
+            ClassIndex classIndex = classes.get(oldFact.getClass());
+            if (classIndex != null && classIndex.remove(handle)) {
+                return;
+            }
+        }
+        // The old object isn't always available, so look for the handle.
+        for (ClassIndex classIndex : classes.values()) {
+            if (classIndex.remove(handle)) {
+                return;
+            }
+        }
+    }
+
+    private static Object key(Object value) {
+        return value == null ? NULL : value.toString();
+    }
+
+    /**
+     * The facts of a single class, in the order they were inserted.
+     */
+    private static class ClassIndex {
+        private final Class<?> type;
+        private final Map<FactHandle, Object> facts = new LinkedHashMap<FactHandle, Object>();
+        private final Map<String, PropertyIndex> properties = new HashMap<String, PropertyIndex>();
+
+        private ClassIndex(Class<?> type) {
+            this.type = type;
+        }
+
+        private void addPropertyIndex(String propertyName) {
+            MethodHandle getter = BeanPropertyAccessors.forClass(type).getter(propertyName);
+            if (getter == null) {
+                // Nothing of this class can match a filter on the property,
+                // and the matcher will find that out without an index.
+                return;
+            }
+            PropertyIndex index = new PropertyIndex(getter);
+            for (Map.Entry<FactHandle, Object> fact : facts.entrySet()) {
+                index.add(fact.getKey(), fact.getValue());
+            }
+            properties.put(propertyName, index);
+        }
+
+        private void add(FactHandle handle, Object fact) {
+            facts.put(handle, fact);
+            for (PropertyIndex index : properties.values()) {
+                index.add(handle, fact);
+            }
+        }
+
+        private boolean remove(FactHandle handle) {
+            if (facts.remove(handle) == null) {
+                return false;
+            }
+            for (PropertyIndex index : properties.values()) {
+                index.remove(handle);
+            }
+            return true;
+        }
+
+        /**
+         * Checks the smallest set of candidates which the property indexes
+         * allow against the filters.
+         */
+        private void find(CompiledBeanMatcher matcher, BeanPropertyFilter[] filters, List<Object> found) {
+            Collection<Object> candidates = facts.values();
+            for (BeanPropertyFilter filter : filters) {
+                PropertyIndex index = properties.get(filter.getPropertyName());
+                if (index != null) {
+                    Collection<Object> matching = index.get(filter.getPropertyValue());
+                    if (matching.size() < candidates.size()) {
+                        candidates = matching;
+                    }
+                }
+            }
+            for (Object fact : candidates) {
+                if (matcher.matches(fact)) {
+                    found.add(fact);
+                }
+            }
+        }
+    }
+
+    /**
+     * The facts of a class grouped by the string value of a property. The key
+     * of each fact is kept, as the fact may have changed by the time it is
+     * updated or retracted.
+     */
+    private static class PropertyIndex {
+        private final MethodHandle getter;
+        private final Map<Object, Map<FactHandle, Object>> byValue = new HashMap<Object, Map<FactHandle, Object>>();
+        private final Map<FactHandle, Object> keys = new HashMap<FactHandle, Object>();
+
+        private PropertyIndex(MethodHandle getter) {
+            this.getter = getter;
+        }
+
+        private void add(FactHandle handle, Object fact) {
+            Object key;
+            try {
+                key = key((Object) getter.invokeExact(fact));
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                key = UNREADABLE;
+            }
+            Map<FactHandle, Object> facts = byValue.get(key);
+            if (facts == null) {
+                facts = new LinkedHashMap<FactHandle, Object>();
+                byValue.put(key, facts);
+            }
+            facts.put(handle, fact);
+            keys.put(handle, key);
+        }
+
+        private void remove(FactHandle handle) {
+            Object key = keys.remove(handle);
+            Map<FactHandle, Object> facts = byValue.get(key);
+            if (facts != null) {
+                facts.remove(handle);
+                if (facts.isEmpty()) {
+                    byValue.remove(key);
+                }
+            }
+        }
+
+        private Collection<Object> get(Object value) {
+            Map<FactHandle, Object> facts = byValue.get(key(value));
+            return facts == null ? Collections.<Object> emptyList() : facts.values();
+        }
+    }
+
+}
@@ -0,0 +1,290 @@
+package com.sctrcd.drools.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.drools.KnowledgeBase;
+import org.drools.conf.EventProcessingOption;
+import org.drools.definition.KnowledgePackage;
+import org.drools.event.rule.AgendaEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the {@link StatelessSessionExecutor} for a set of rule resources, and
+ * replaces it with a new one when the resources change, without redeploying.
+ * <p>
+ * The current executor is held in an <code>AtomicReference</code>. Callers
+ * should get it once per request, using {@link #getExecutor()}, and use that
+ * for the whole request. A reload compiles the resources into a complete new
+ * knowledge base, with its own executor, before swapping it in. So requests
+ * already in flight finish against the old rules, new requests get the new
+ * rules as soon as they are ready, and no request ever waits for
+ * compilation. If the resources fail to compile, the old rules stay in use.
+ * </p>
+ * <p>
+ * The manager doesn't watch the resources itself. Something should call
+ * {@link #reloadIfModified()} from a background thread every so often. It
+ * compares the last modified time of each resource with the time it had when
+ * the rules were last built. A <code>FILE</code> resource is checked on disk,
+ * a <code>URL</code> resource with a <code>HEAD</code> request, and a
+ * <code>CLASSPATH</code> resource only if it is a file rather than an entry in
+ * a jar, which can't change without a redeploy.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class KnowledgeBaseManager {
+
+    private static Logger log = LoggerFactory.getLogger(KnowledgeBaseManager.class);
+
+    private final String name;
+    private final DroolsResource[] resources;
+    private final EventProcessingOption eventProcessingOption;
+    private final Map<String, Object> globals;
+    private final AgendaEventListener[] listeners;
+    private final KnowledgeBaseRegistry registry;
+
+    private final AtomicReference<StatelessSessionExecutor> executor =
+            new AtomicReference<StatelessSessionExecutor>();
+
+    private final List<KnowledgeBaseSwapListener> swapListeners =
+            new CopyOnWriteArrayList<KnowledgeBaseSwapListener>();
+
+    /**
+     * The last modified time of each resource when the current rules were
+     * built. Only read and written by whichever thread is reloading.
+     */
+    private long[] lastModified;
+
+    private volatile KnowledgeBaseSwap lastSwap;
+
+    /**
+     * Passed on to every executor, including those created by reloads.
+     */
+    private volatile double listenerSampleRate = 1;
+
+    /**
+     * Builds the initial knowledge base, using the
+     * {@link KnowledgeBaseRegistry#getDefault() default registry}.
+     *
+     * @param name
+     *            A name for the rules, for logging and reporting.
+     * @param resources
+     *            The resources to build the knowledge base from.
+     * @param eventProcessingOption
+     *            The event processing mode for the knowledge base.
+     * @param globals
+     *            The globals to set on every session, keyed by name.
+     * @param listeners
+     *            Listeners to attach to the sampled executions, which must be
+     *            safe to call from multiple threads.
+     */
+    public KnowledgeBaseManager(String name, DroolsResource[] resources,
+            EventProcessingOption eventProcessingOption, Map<String, Object> globals,
+            AgendaEventListener... listeners) {
+        this(KnowledgeBaseRegistry.getDefault(), name, resources, eventProcessingOption,
+                globals, listeners);
+    }
+
+    public KnowledgeBaseManager(KnowledgeBaseRegistry registry, String name,
+            DroolsResource[] resources, EventProcessingOption eventProcessingOption,
+            Map<String, Object> globals, AgendaEventListener... listeners) {
+        this.registry = registry;
+        this.name = name;
+        this.resources = resources.clone();
+        this.eventProcessingOption = eventProcessingOption;
+        this.globals = globals;
+        this.listeners = listeners.clone();
+
+        this.lastModified = lastModified();
+        this.executor.set(new StatelessSessionExecutor(
+                registry.createKnowledgeBase(this.resources, eventProcessingOption),
+                globals, this.listeners));
+    }
+
+    /**
+     * @return The executor for the current rules. Get it once per request, so
+     *         that the whole request runs against the same rules.
+     */
+    public StatelessSessionExecutor getExecutor() {
+        return executor.get();
+    }
+
+    /**
+     * Reloads the rules if any of the resources have changed since they were
+     * last built.
+     *
+     * @return The result of the reload, or null if nothing had changed.
+     */
+    public synchronized KnowledgeBaseSwap reloadIfModified() {
+        long[] modified = lastModified();
+        if (Arrays.equals(modified, lastModified)) {
+            return null;
+        }
+        log.info("Rules for {} have been modified.", name);
+        return reload(modified);
+    }
+
+    /**
+     * Compiles the resources again and swaps the new rules in, whether or not
+     * they have changed.
+     *
+     * @return The result of the reload.
+     */
+    public synchronized KnowledgeBaseSwap reload() {
+        return reload(lastModified());
+    }
+
+    private KnowledgeBaseSwap reload(long[] modified) {
+        // Even if this attempt fails, there's no point trying again until the
+        // resources have been changed again.
+        this.lastModified = modified;
+
+        long start = System.nanoTime();
+        KnowledgeBaseSwap swap;
+        try {
+            KnowledgeBase kbase = registry.refreshKnowledgeBase(resources, eventProcessingOption);
+            StatelessSessionExecutor newExecutor = new StatelessSessionExecutor(kbase, globals, listeners);
+            newExecutor.setListenerSampleRate(listenerSampleRate);
+            long compileMillis = (System.nanoTime() - start) / 1000000;
+
+            executor.set(newExecutor);
+            swap = new KnowledgeBaseSwap(name, System.currentTimeMillis(), compileMillis,
+                    ruleCount(kbase), null);
+            log.info("Swapped in new rules: {}", swap);
+        } catch (RuntimeException e) {
+            long compileMillis = (System.nanoTime() - start) / 1000000;
+            swap = new KnowledgeBaseSwap(name, System.currentTimeMillis(), compileMillis, 0,
+                    e.getMessage());
+            log.error("Unable to reload rules for " + name + ", so keeping the old rules.", e);
+        }
+        lastSwap = swap;
+
+        if (swap.isSwapped()) {
+            for (KnowledgeBaseSwapListener listener : swapListeners) {
+                listener.knowledgeBaseSwapped(this, swap);
+            }
+        }
+        return swap;
+    }
+
+    public void addSwapListener(KnowledgeBaseSwapListener listener) {
+        swapListeners.add(listener);
+    }
+
+    public void removeSwapListener(KnowledgeBaseSwapListener listener) {
+        swapListeners.remove(listener);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getListenerSampleRate() {
+        return listenerSampleRate;
+    }
+
+    /**
+     * @param listenerSampleRate
+     *            The proportion of executions, between 0 and 1, which have
+     *            the listeners attached, now and after every reload.
+     * @see StatelessSessionExecutor#setListenerSampleRate(double)
+     */
+    public synchronized void setListenerSampleRate(double listenerSampleRate) {
+        executor.get().setListenerSampleRate(listenerSampleRate);
+        this.listenerSampleRate = listenerSampleRate;
+    }
+
+    /**
+     * @return The result of the last reload, or null if the rules have not
+     *         been reloaded since they were first built.
+     */
+    public KnowledgeBaseSwap getLastSwap() {
+        return lastSwap;
+    }
+
+    private static int ruleCount(KnowledgeBase kbase) {
+        int count = 0;
+        for (KnowledgePackage p : kbase.getKnowledgePackages()) {
+            count += p.getRules().size();
+        }
+        return count;
+    }
+
+    private long[] lastModified() {
+        long[] modified = new long[resources.length];
+        for (int i = 0; i < resources.length; i++) {
+            try {
+                modified[i] = lastModified(resources[i]);
+            } catch (IOException e) {
+                // Leave it as it was, rather than reloading every time a
+                // server is unreachable.
+                log.warn("Unable to check whether {} has been modified: {}", resources[i].getPath(), e.getMessage());
+                modified[i] = lastModified == null ? 0 : lastModified[i];
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * @return The last modified time of a resource, or 0 if it can't change.
+     */
+    static long lastModified(DroolsResource resource) throws IOException {
+        switch (resource.getPathType()) {
+        case FILE:
+            return new File(resource.getPath()).lastModified();
+        case CLASSPATH:
+            URL url = KnowledgeBaseManager.class.getClassLoader().getResource(resource.getPath());
+            if (url == null || !"file".equals(url.getProtocol())) {
+                return 0;
+            }
+            try {
+                return new File(url.toURI()).lastModified();
+            } catch (URISyntaxException e) {
+                return 0;
+            }
+        case URL:
+            return lastModified(new URL(resource.getPath()), resource);
+        default:
+            throw new IllegalArgumentException(
+                    "Unable to check this resource path type: " + resource.getPathType());
+        }
+    }
+
+    private static long lastModified(URL url, DroolsResource resource) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        if (resource.getUsername() != null) {
+            String credentials = resource.getUsername() + ":" + resource.getPassword();
+            connection.setRequestProperty("Authorization", "Basic "
+                    + DatatypeConverter.printBase64Binary(credentials.getBytes("UTF-8")));
+        }
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection http = (HttpURLConnection) connection;
+            try {
+                http.setRequestMethod("HEAD");
+                return http.getLastModified();
+            } finally {
+                http.disconnect();
+            }
+        }
+        long modified = connection.getLastModified();
+        InputStream in = connection.getInputStream();
+        in.close();
+        return modified;
+    }
+
+}
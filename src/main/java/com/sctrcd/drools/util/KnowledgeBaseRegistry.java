@@ -0,0 +1,440 @@
+package com.sctrcd.drools.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.drools.KnowledgeBase;
+import org.drools.KnowledgeBaseConfiguration;
+import org.drools.KnowledgeBaseFactory;
+import org.drools.builder.ResourceType;
+import org.drools.conf.EventProcessingOption;
+import org.drools.core.util.DroolsStreamUtils;
+import org.drools.definition.KnowledgePackage;
+import org.drools.impl.KnowledgeBaseImpl;
+import org.drools.rule.JavaDialectRuntimeData;
+import org.drools.rule.Package;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles each {@link DroolsResource} once, and assembles knowledge bases from
+ * the cached result. Several validators can then be built from the same DRL
+ * without it being compiled for each of them.
+ * <p>
+ * A compiled {@link KnowledgePackage} cannot be shared between knowledge
+ * bases. When a package is added to a knowledge base, its rules are wired to
+ * that knowledge base's class loader, which would break any other knowledge
+ * base using the same package, particularly if it declares types. So the
+ * packages are cached in serialized form, and every knowledge base is given
+ * its own copy. Reading a compiled package back in is far cheaper than
+ * compiling it.
+ * </p>
+ * <p>
+ * Resources are identified by their path type, resource type and path. If two
+ * threads ask for the same resource at the same time, one compiles it and the
+ * other waits for the result.
+ * </p>
+ * <p>
+ * The build compiles each DRL on the classpath into a <code>.pkg</code> file
+ * alongside it, using the {@link KnowledgePackageCompiler}. When one is
+ * present, and not older than the DRL, it is loaded instead of compiling the
+ * DRL, which saves most of the time taken to start up. Otherwise, such as
+ * when running from an IDE, the DRL is compiled as normal.
+ * {@link #refreshKnowledgeBase(DroolsResource[], EventProcessingOption)}
+ * always compiles the DRL, as that is what will have been changed.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class KnowledgeBaseRegistry {
+
+    private static Logger log = LoggerFactory.getLogger(KnowledgeBaseRegistry.class);
+
+    private static final KnowledgeBaseRegistry DEFAULT = new KnowledgeBaseRegistry();
+
+    private final ConcurrentMap<String, FutureTask<CompiledResource>> compiled =
+            new ConcurrentHashMap<String, FutureTask<CompiledResource>>();
+
+    /**
+     * @return The registry shared by everything in this class loader.
+     */
+    public static KnowledgeBaseRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Creates a new knowledge base from a collection of resources, compiling
+     * only those resources which have not been compiled before.
+     *
+     * @param resources
+     *            An array of {@link DroolsResource} indicating where the
+     *            various resources should be loaded from.
+     * @param eventProcessingOption
+     *            The event processing mode for the new knowledge base.
+     * @return A new knowledge base.
+     */
+    public KnowledgeBase createKnowledgeBase(DroolsResource[] resources,
+            EventProcessingOption eventProcessingOption) {
+        KnowledgeBaseConfiguration conf = KnowledgeBaseFactory
+                .newKnowledgeBaseConfiguration();
+        conf.setOption(eventProcessingOption);
+        KnowledgeBase knowledgeBase = KnowledgeBaseFactory.newKnowledgeBase(conf);
+
+        // Packages read back from their serialized form can't all be added
+        // in one go when they share a package name. Drools loses track of
+        // the consequences of some of the rules as it merges them. Adding
+        // each resource separately merges them correctly.
+        for (DroolsResource resource : resources) {
+            knowledgeBase.addKnowledgePackages(getKnowledgePackages(resource, true));
+        }
+        defineRuleClasses(knowledgeBase);
+
+        if (log.isInfoEnabled()) {
+            log.info(DroolsUtil.knowledgeBaseDetails(knowledgeBase));
+        }
+        return knowledgeBase;
+    }
+
+    /**
+     * Creates a new knowledge base from a collection of resources, compiling
+     * all of them again, as they may have changed since they were cached.
+     *
+     * @param resources
+     *            An array of {@link DroolsResource} indicating where the
+     *            various resources should be loaded from.
+     * @param eventProcessingOption
+     *            The event processing mode for the new knowledge base.
+     * @return A new knowledge base.
+     */
+    public KnowledgeBase refreshKnowledgeBase(DroolsResource[] resources,
+            EventProcessingOption eventProcessingOption) {
+        KnowledgeBaseConfiguration conf = KnowledgeBaseFactory
+                .newKnowledgeBaseConfiguration();
+        conf.setOption(eventProcessingOption);
+        KnowledgeBase knowledgeBase = KnowledgeBaseFactory.newKnowledgeBase(conf);
+        for (DroolsResource resource : resources) {
+            knowledgeBase.addKnowledgePackages(packagesOf(recompile(resource), resource));
+        }
+        defineRuleClasses(knowledgeBase);
+
+        if (log.isInfoEnabled()) {
+            log.info(DroolsUtil.knowledgeBaseDetails(knowledgeBase));
+        }
+        return knowledgeBase;
+    }
+
+    /**
+     * The classes holding the consequences and evals of deserialized packages
+     * are only defined when a rule first needs them. The package class loader
+     * doesn't guard against two threads doing that at once, so the first
+     * concurrent requests against a shared session can fail with a duplicate
+     * class definition. Defining them all here, while the knowledge base is
+     * still private to this thread, avoids that.
+     */
+    private static void defineRuleClasses(KnowledgeBase knowledgeBase) {
+        for (Package pkg : ((KnowledgeBaseImpl) knowledgeBase).getRuleBase().getPackages()) {
+            JavaDialectRuntimeData data = (JavaDialectRuntimeData) pkg
+                    .getDialectRuntimeRegistry().getDialectData("java");
+            if (data == null) {
+                continue;
+            }
+            for (String resourcePath : data.getStore().keySet()) {
+                String className = JavaDialectRuntimeData.convertResourceToClassName(resourcePath);
+                try {
+                    data.getClassLoader().loadClass(className);
+                } catch (ClassNotFoundException e) {
+                    throw new RuntimeException("Unable to define rule class " + className, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a fresh copy of the packages compiled from a resource, compiling
+     * it if this is the first time it has been asked for.
+     *
+     * @param resource The resource.
+     * @return Packages which may be added to a single knowledge base.
+     */
+    public Collection<KnowledgePackage> getKnowledgePackages(DroolsResource resource) {
+        return getKnowledgePackages(resource, true);
+    }
+
+    private Collection<KnowledgePackage> getKnowledgePackages(DroolsResource resource,
+            boolean usePrecompiled) {
+        return packagesOf(compile(resource, usePrecompiled), resource);
+    }
+
+    private static Collection<KnowledgePackage> packagesOf(CompiledResource compiledResource,
+            DroolsResource resource) {
+        try {
+            return streamIn(compiledResource.packages);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read compiled packages for " + key(resource), e);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("Unable to read compiled packages for " + key(resource), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<KnowledgePackage> streamIn(byte[] packages)
+            throws IOException, ClassNotFoundException {
+        return (Collection<KnowledgePackage>) DroolsStreamUtils.streamIn(
+                packages, KnowledgeBaseRegistry.class.getClassLoader());
+    }
+
+    /**
+     * @return A report for each resource compiled so far.
+     */
+    public List<CompilationReport> getCompilationReports() {
+        List<CompilationReport> reports = new ArrayList<CompilationReport>();
+        for (FutureTask<CompiledResource> task : compiled.values()) {
+            if (task.isDone()) {
+                try {
+                    reports.add(task.get().report);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    // Compilation failed, so there is nothing to report.
+                }
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * Discards all compiled resources, so that they will be compiled again
+     * the next time they are asked for.
+     */
+    public void clear() {
+        compiled.clear();
+    }
+
+    private CompiledResource compile(final DroolsResource resource, final boolean usePrecompiled) {
+        String key = key(resource);
+        FutureTask<CompiledResource> task = compiled.get(key);
+        if (task == null) {
+            FutureTask<CompiledResource> newTask = new FutureTask<CompiledResource>(
+                    new Callable<CompiledResource>() {
+                        public CompiledResource call() throws Exception {
+                            CompiledResource precompiled = usePrecompiled
+                                    ? loadPrecompiled(resource) : null;
+                            return precompiled != null ? precompiled : doCompile(resource);
+                        }
+                    });
+            task = compiled.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                task.run();
+            }
+        }
+        return await(key, task);
+    }
+
+    /**
+     * Compiles a resource again, whether or not it has been compiled before.
+     * The new compilation replaces the old one in a single step, so anyone
+     * asking for the resource meanwhile waits for the new packages, and
+     * can't put the old ones back.
+     */
+    private CompiledResource recompile(final DroolsResource resource) {
+        String key = key(resource);
+        FutureTask<CompiledResource> task = new FutureTask<CompiledResource>(
+                new Callable<CompiledResource>() {
+                    public CompiledResource call() throws Exception {
+                        return doCompile(resource);
+                    }
+                });
+        compiled.put(key, task);
+        task.run();
+        return await(key, task);
+    }
+
+    private CompiledResource await(String key, FutureTask<CompiledResource> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for " + key + " to compile.", e);
+        } catch (ExecutionException e) {
+            // Don't cache the failure, so that a corrected resource can be
+            // compiled on the next attempt.
+            compiled.remove(key, task);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Unable to compile " + key, e.getCause());
+        }
+    }
+
+    /**
+     * Compiles a resource and reports on it, without caching it. This is
+     * also how the {@link KnowledgePackageCompiler} compiles the packages it
+     * writes, so that they are built and reported in the same way.
+     */
+    static CompiledResource doCompile(DroolsResource resource) throws IOException {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes(threadBean);
+        long start = System.nanoTime();
+
+        Collection<KnowledgePackage> packages = DroolsUtil.buildKnowledgePackages(
+                new DroolsResource[] { resource });
+        byte[] serialized = DroolsStreamUtils.streamOut(new ArrayList<KnowledgePackage>(packages));
+
+        return compiledResource(resource, packages, serialized, start, threadBean, allocatedBefore, false);
+    }
+
+    /**
+     * Loads the package which the build compiled from a DRL on the classpath.
+     *
+     * @return The package, or null if there isn't one, it is older than the
+     *         DRL, or it can't be read, in which case the DRL should be
+     *         compiled instead.
+     */
+    private CompiledResource loadPrecompiled(DroolsResource resource) {
+        if (resource.getPathType() != ResourcePathType.CLASSPATH
+                || resource.getType() != ResourceType.DRL
+                || !resource.getPath().endsWith(KnowledgePackageCompiler.DRL_EXTENSION)) {
+            return null;
+        }
+        ClassLoader classLoader = KnowledgeBaseRegistry.class.getClassLoader();
+        URL pkg = classLoader.getResource(KnowledgePackageCompiler.pkgPath(resource.getPath()));
+        if (pkg == null) {
+            return null;
+        }
+        URL drl = classLoader.getResource(resource.getPath());
+        if (drl != null && lastModified(drl) > lastModified(pkg)) {
+            log.info("Ignoring {} as it is older than {}", pkg, drl);
+            return null;
+        }
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes(threadBean);
+        long start = System.nanoTime();
+        try {
+            byte[] serialized = readFully(pkg);
+            // Reading the packages in checks that they were built by this
+            // version of Drools, and gives the counts for the report.
+            Collection<KnowledgePackage> packages = streamIn(serialized);
+            return compiledResource(resource, packages, serialized, start, threadBean, allocatedBefore, true);
+        } catch (Exception e) {
+            log.warn("Unable to load {}, so compiling {} instead: {}", new Object[] { pkg, resource.getPath(), e });
+            return null;
+        }
+    }
+
+    /**
+     * Reports on the packages which have been compiled or loaded from a
+     * resource, measuring the time and memory taken since they were started.
+     */
+    private static CompiledResource compiledResource(DroolsResource resource,
+            Collection<KnowledgePackage> packages, byte[] serialized, long start,
+            ThreadMXBean threadBean, long allocatedBefore, boolean precompiled) {
+        long millis = (System.nanoTime() - start) / 1000000;
+        long allocatedAfter = allocatedBytes(threadBean);
+
+        int ruleCount = 0;
+        for (KnowledgePackage p : packages) {
+            ruleCount += p.getRules().size();
+        }
+        CompilationReport report = new CompilationReport(key(resource), millis,
+                allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore,
+                packages.size(), ruleCount, serialized.length, precompiled);
+        if (log.isInfoEnabled()) {
+            log.info("{}: {}", precompiled ? "Loaded precompiled" : "Compiled", report);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(DroolsUtil.knowledgePackageDetails(packages));
+        }
+        return new CompiledResource(serialized, report);
+    }
+
+    /**
+     * @return The last modified time of a file on the classpath, or 0 if it
+     *         is in a jar, in which case it was built along with everything
+     *         else in the jar.
+     */
+    private static long lastModified(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return 0;
+        }
+        try {
+            return new File(url.toURI()).lastModified();
+        } catch (URISyntaxException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] readFully(URL url) throws IOException {
+        InputStream in = url.openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The bytes allocated so far by the current thread, if the JVM is able to
+     * say.
+     */
+    private static long allocatedBytes(ThreadMXBean threadBean) {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+            if (sunThreadBean.isThreadAllocatedMemorySupported()
+                    && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static String key(DroolsResource resource) {
+        return resource.getPathType() + ":" + resource.getType().getName() + ":" + resource.getPath();
+    }
+
+    /**
+     * The serialized packages compiled from a resource, along with the report
+     * of compiling them.
+     */
+    static class CompiledResource {
+
+        private final byte[] packages;
+        private final CompilationReport report;
+
+        private CompiledResource(byte[] packages, CompilationReport report) {
+            this.packages = packages;
+            this.report = report;
+        }
+
+        byte[] getPackages() {
+            return packages;
+        }
+
+        CompilationReport getReport() {
+            return report;
+        }
+
+    }
+
+}
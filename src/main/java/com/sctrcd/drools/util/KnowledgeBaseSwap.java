@@ -0,0 +1,77 @@
+package com.sctrcd.drools.util;
+
+/**
+ * A record of an attempt by a {@link KnowledgeBaseManager} to compile its
+ * resources and swap the new knowledge base in.
+ *
+ * @author Stephen Masters
+ */
+public class KnowledgeBaseSwap {
+
+    private final String name;
+    private final long timestamp;
+    private final long compileMillis;
+    private final int ruleCount;
+    private final String error;
+
+    public KnowledgeBaseSwap(String name, long timestamp, long compileMillis,
+            int ruleCount, String error) {
+        this.name = name;
+        this.timestamp = timestamp;
+        this.compileMillis = compileMillis;
+        this.ruleCount = ruleCount;
+        this.error = error;
+    }
+
+    /**
+     * @return The name of the manager which made the attempt.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return When the attempt finished, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return The time taken to compile the resources and build the knowledge
+     *         base, in milliseconds.
+     */
+    public long getCompileMillis() {
+        return compileMillis;
+    }
+
+    /**
+     * @return The number of rules in the new knowledge base, or 0 if it could
+     *         not be built.
+     */
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * @return Why the resources could not be compiled, or null if the new
+     *         knowledge base was swapped in.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public boolean isSwapped() {
+        return error == null;
+    }
+
+    public String toString() {
+        return "KnowledgeBaseSwap[name=" + name
+                + ", timestamp=" + timestamp
+                + ", compileMillis=" + compileMillis
+                + ", rules=" + ruleCount
+                + ", swapped=" + isSwapped()
+                + (error == null ? "" : ", error=" + error) + "]";
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.sctrcd.drools.util;
+
+/**
+ * Told whenever a {@link KnowledgeBaseManager} has swapped in a new knowledge
+ * base, so that anything derived from the old rules can be discarded.
+ *
+ * @author Stephen Masters
+ */
+public interface KnowledgeBaseSwapListener {
+
+    /**
+     * Called on the thread which compiled the new knowledge base, after it has
+     * been swapped in.
+     */
+    void knowledgeBaseSwapped(KnowledgeBaseManager manager, KnowledgeBaseSwap swap);
+
+}
@@ -41,6 +41,9 @@ public class KnowledgeEnvironment {
     private StatefulKnowledgeSession ksession;
     private TrackingAgendaEventListener agendaEventListener;
     private TrackingWorkingMemoryEventListener workingMemoryEventListener;
+    private FactIndex factIndex;
+    private boolean indexFacts;
+    private int trackingCapacity;
 
     /**
      * Constructor supporting setting up a knowledge environment using just a
@@ -125,28 +128,32 @@ public class KnowledgeEnvironment {
      * previously in the constructor.
      */
     public void initialise() {
-        log.info("Initialising KnowledgeEnvironment with resources: " + this.resources);
+        log.info("Initialising KnowledgeEnvironment with resources: {}", this.resources);
         this.kbase = DroolsUtil.createKnowledgeBase(
                 this.resources, 
                 EventProcessingOption.STREAM);
 
         // Log a description of the new knowledge base.
-        log.info(toString());
+        log.info("{}", this);
         
         initialiseSession();
     }
 
     /**
      * Starts up a new stateless session, and attaches a number of working
-     * memory listeners.
+     * memory listeners, including a {@link FactIndex} of the facts in the
+     * session if facts are indexed.
      */
     public void initialiseSession() {
         log.info("Initialising session...");
         if (this.ksession == null) {
             this.ksession = kbase.newStatefulKnowledgeSession();
-            this.agendaEventListener = new TrackingAgendaEventListener();
+            if (this.indexFacts) {
+                this.factIndex = FactIndex.attach(this.ksession);
+            }
+            this.agendaEventListener = new ConcurrentTrackingAgendaEventListener();
             this.ksession.addEventListener(this.agendaEventListener);
-            this.workingMemoryEventListener = new TrackingWorkingMemoryEventListener();
+            this.workingMemoryEventListener = newWorkingMemoryEventListener();
             this.ksession.addEventListener(this.workingMemoryEventListener);
         } else {
             retractAll();
@@ -169,13 +176,20 @@ public class KnowledgeEnvironment {
         this.ksession.removeEventListener(this.agendaEventListener);
         this.ksession.removeEventListener(this.workingMemoryEventListener);
 
-        this.agendaEventListener = new TrackingAgendaEventListener();
-        this.workingMemoryEventListener = new TrackingWorkingMemoryEventListener();
+        this.agendaEventListener = new ConcurrentTrackingAgendaEventListener();
+        this.workingMemoryEventListener = newWorkingMemoryEventListener();
 
         this.ksession.addEventListener(this.agendaEventListener);
         this.ksession.addEventListener(this.workingMemoryEventListener);
     }
 
+    private TrackingWorkingMemoryEventListener newWorkingMemoryEventListener() {
+        if (trackingCapacity > 0) {
+            return new TrackingWorkingMemoryEventListener(trackingCapacity, false);
+        }
+        return new TrackingWorkingMemoryEventListener();
+    }
+
     public List<FactHandle> insert(Object... objects) {
         List<FactHandle> handles = new ArrayList<FactHandle>();
         for (Object o : objects) {
@@ -346,8 +360,10 @@ public class KnowledgeEnvironment {
                 .newKnowledgeBuilder();
 
         for (DroolsResource resource : resources) {
-            log.info("Resource: " + resource.getType() + ", path type="
-                    + resource.getPathType() + ", path=" + resource.getPath());
+            if (log.isInfoEnabled()) {
+                log.info("Resource: {}, path type={}, path={}", new Object[] {
+                        resource.getType(), resource.getPathType(), resource.getPath() });
+            }
             switch (resource.getPathType()) {
             case CLASSPATH:
                 builder.add(ResourceFactory.newClassPathResource(resource
@@ -363,7 +379,7 @@ public class KnowledgeEnvironment {
                         .newUrlResource(resource.getPath());
                 
                 if (resource.getUsername() != null) {
-                    log.info("Setting authentication for: " + resource.getUsername());
+                    log.info("Setting authentication for: {}", resource.getUsername());
                     urlResource.setBasicAuthentication("enabled");
                     urlResource.setUsername(resource.getUsername());
                     urlResource.setPassword(resource.getPassword());
@@ -419,7 +435,7 @@ public class KnowledgeEnvironment {
             sb.append("\n\nFact: " + DroolsUtil.objectDetails(fact));
         }
         sb.append("\n************************************************************\n");
-        log.info(sb.toString());
+        log.info("{}", sb);
     }
 
     public DroolsResource[] getResources() {
@@ -434,6 +450,65 @@ public class KnowledgeEnvironment {
         return ksession;
     }
 
+    /**
+     * An index of the facts in the session, which the {@link FactFinder}
+     * searches rather than scanning the session. Add property indexes to it
+     * for the properties which are most often searched on.
+     * 
+     * @return The index, or null unless facts are indexed.
+     */
+    public FactIndex getFactIndex() {
+        return factIndex;
+    }
+
+    public boolean isIndexFacts() {
+        return indexFacts;
+    }
+
+    /**
+     * Keeps a {@link FactIndex} of the facts in the session, which costs a
+     * little on every insert, update and retraction, so is only worth it for
+     * a session which is searched often. When switched on, the index is
+     * attached straight away and includes the facts already in the session.
+     * When switched off, it is detached and discarded.
+     * 
+     * @param indexFacts
+     *            Whether to index the facts in the session.
+     */
+    public void setIndexFacts(boolean indexFacts) {
+        this.indexFacts = indexFacts;
+        if (this.ksession != null) {
+            if (indexFacts && this.factIndex == null) {
+                this.factIndex = FactIndex.attach(this.ksession);
+            } else if (!indexFacts && this.factIndex != null) {
+                this.ksession.removeEventListener(this.factIndex);
+                this.factIndex = null;
+            }
+        }
+    }
+
+    public int getTrackingCapacity() {
+        return trackingCapacity;
+    }
+
+    /**
+     * Limits the working memory events which are tracked to the most recent,
+     * which is what you want for a session which lives for a long time. The
+     * tracking listener is replaced straight away with a bounded one, so the
+     * events tracked so far are discarded.
+     * 
+     * @param trackingCapacity
+     *            The number of events to keep, or zero to keep them all.
+     */
+    public void setTrackingCapacity(int trackingCapacity) {
+        this.trackingCapacity = trackingCapacity;
+        if (this.ksession != null) {
+            this.ksession.removeEventListener(this.workingMemoryEventListener);
+            this.workingMemoryEventListener = newWorkingMemoryEventListener();
+            this.ksession.addEventListener(this.workingMemoryEventListener);
+        }
+    }
+
     public TrackingAgendaEventListener getAgendaEventListener() {
         return agendaEventListener;
     }
@@ -0,0 +1,109 @@
+package com.sctrcd.drools.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.drools.builder.ResourceType;
+import org.drools.definition.KnowledgePackage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles every DRL file under a directory into serialized knowledge
+ * packages, written alongside it with a <code>.pkg</code> extension. This is
+ * run by the build over the compiled classes, so that the packages can be
+ * loaded by the {@link KnowledgeBaseRegistry} when the application starts,
+ * rather than the DRL being compiled every time.
+ * <p>
+ * The packages are written in the same form as the registry caches them,
+ * which is a serialized collection of {@link KnowledgePackage}. They can also
+ * be loaded as a {@link ResourceType#PKG} resource.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class KnowledgePackageCompiler {
+
+    private static Logger log = LoggerFactory.getLogger(KnowledgePackageCompiler.class);
+
+    public static final String DRL_EXTENSION = ".drl";
+    public static final String PKG_EXTENSION = ".pkg";
+
+    /**
+     * @param args
+     *            The directories to search for DRL files.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: KnowledgePackageCompiler <directory>...");
+            System.exit(1);
+        }
+        for (String dir : args) {
+            List<CompilationReport> reports = compileAll(new File(dir));
+            log.info("Precompiled {} DRL files under {}", reports.size(), dir);
+        }
+    }
+
+    /**
+     * Compiles every DRL file under a directory.
+     *
+     * @return A report for each file compiled.
+     */
+    public static List<CompilationReport> compileAll(File dir) throws IOException {
+        List<File> drls = new ArrayList<File>();
+        findDrls(dir, drls);
+        List<CompilationReport> reports = new ArrayList<CompilationReport>(drls.size());
+        for (File drl : drls) {
+            reports.add(compile(drl));
+        }
+        return reports;
+    }
+
+    /**
+     * Compiles a DRL file into a <code>.pkg</code> file alongside it.
+     *
+     * @return The report of compiling it.
+     */
+    public static CompilationReport compile(File drl) throws IOException {
+        KnowledgeBaseRegistry.CompiledResource compiled = KnowledgeBaseRegistry.doCompile(
+                new DroolsResource(drl.getPath(), ResourcePathType.FILE, ResourceType.DRL));
+
+        OutputStream out = new FileOutputStream(pkgFile(drl));
+        try {
+            out.write(compiled.getPackages());
+        } finally {
+            out.close();
+        }
+        return compiled.getReport();
+    }
+
+    /**
+     * @return The path of the package compiled from a DRL path.
+     */
+    public static String pkgPath(String drlPath) {
+        return drlPath.substring(0, drlPath.length() - DRL_EXTENSION.length()) + PKG_EXTENSION;
+    }
+
+    private static File pkgFile(File drl) {
+        return new File(drl.getParentFile(), pkgPath(drl.getName()));
+    }
+
+    private static void findDrls(File dir, List<File> drls) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                findDrls(file, drls);
+            } else if (file.getName().endsWith(DRL_EXTENSION)) {
+                drls.add(file);
+            }
+        }
+    }
+
+}
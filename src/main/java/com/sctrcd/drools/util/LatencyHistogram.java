@@ -0,0 +1,148 @@
+package com.sctrcd.drools.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies, in nanoseconds, for recording from
+ * many threads at once.
+ * <p>
+ * Latencies are counted in buckets in the same way as HdrHistogram. Each
+ * power of two is split into 16 equal sub-buckets, so every bucket is within
+ * 1/16 of the latencies it counts, whatever their magnitude. Latencies below
+ * 16 nanoseconds get a bucket each. That is cheap enough to leave running in
+ * production, and precise enough for tail percentiles. Percentiles are
+ * reported as the upper bound of the bucket they fall in, so they may be up
+ * to about 6% above the real value.
+ * </p>
+ * <p>
+ * Threads recording different latencies mostly update different buckets,
+ * so the counts are spread over the bucket array rather than all contending
+ * on one counter. The total and maximum are single values.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Enough buckets for every positive long: the exact values below
+     * <code>SUB_BUCKETS</code>, then <code>SUB_BUCKETS</code> per power of two
+     * up to 2^63.
+     */
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records a latency. Negative latencies, which can only come from a
+     * clock going backwards, are counted as zero.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucketOf(nanos));
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return The largest latency which is counted in a bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long lowerBound = (SUB_BUCKETS + subBucket) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    public long getTotal(TimeUnit unit) {
+        return unit.convert(totalNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMax(TimeUnit unit) {
+        return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMean(TimeUnit unit) {
+        long count = getCount();
+        return count == 0 ? 0 : unit.convert(totalNanos.get() / count, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param percentile
+     *            Between 0 and 100.
+     * @return The latency which the given percentage of recorded latencies
+     *         were no greater than, rounded up to the top of its bucket, or
+     *         zero if nothing has been recorded.
+     */
+    public long getPercentile(double percentile, TimeUnit unit) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        int bucket = 0;
+        while (bucket < BUCKETS - 1) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                break;
+            }
+            bucket++;
+        }
+        return unit.convert(Math.min(upperBoundOf(bucket), maxNanos.get()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets every count back to zero. Latencies recorded while this is running
+     * may be partly lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.sctrcd.drools.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts how many times each rule fires, and how long its consequence takes,
+ * across every session which has a {@link RuleMetricsAgendaEventListener}
+ * recording into it. Safe to record into from many threads at once.
+ * <p>
+ * Rules are identified by package and name, so rules with the same name in
+ * different packages are counted separately.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class RuleMetrics {
+
+    private final ConcurrentMap<String, RuleStats> rules = new ConcurrentHashMap<String, RuleStats>();
+
+    /**
+     * Holder for the lazily created default instance.
+     */
+    private static class DefaultHolder {
+        static final RuleMetrics INSTANCE = new RuleMetrics();
+    }
+
+    /**
+     * @return The metrics which the validators record into.
+     */
+    public static RuleMetrics getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Records a firing of a rule.
+     *
+     * @param packageName The package of the rule.
+     * @param ruleName The name of the rule.
+     * @param nanos How long the rule's consequence took.
+     */
+    public void record(String packageName, String ruleName, long nanos) {
+        String key = packageName + ':' + ruleName;
+        RuleStats stats = rules.get(key);
+        if (stats == null) {
+            RuleStats created = new RuleStats(packageName, ruleName);
+            stats = rules.putIfAbsent(key, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        stats.latency.record(nanos);
+    }
+
+    /**
+     * @return A snapshot of every rule which has fired, with those which have
+     *         taken the most time in total first.
+     */
+    public List<RuleTiming> getRuleTimings() {
+        List<RuleTiming> timings = new ArrayList<RuleTiming>(rules.size());
+        for (RuleStats stats : rules.values()) {
+            LatencyHistogram latency = stats.latency;
+            timings.add(new RuleTiming(stats.packageName, stats.ruleName,
+                    latency.getCount(),
+                    latency.getTotal(TimeUnit.MICROSECONDS),
+                    latency.getMean(TimeUnit.MICROSECONDS),
+                    latency.getPercentile(50, TimeUnit.MICROSECONDS),
+                    latency.getPercentile(99, TimeUnit.MICROSECONDS),
+                    latency.getMax(TimeUnit.MICROSECONDS)));
+        }
+        Collections.sort(timings, new Comparator<RuleTiming>() {
+            @Override
+            public int compare(RuleTiming a, RuleTiming b) {
+                return a.getTotalMicros() < b.getTotalMicros() ? 1
+                        : a.getTotalMicros() > b.getTotalMicros() ? -1
+                        : a.getRuleName().compareTo(b.getRuleName());
+            }
+        });
+        return timings;
+    }
+
+    /**
+     * @return The latencies of a rule, or null if it has never fired.
+     */
+    public LatencyHistogram getLatency(String packageName, String ruleName) {
+        RuleStats stats = rules.get(packageName + ':' + ruleName);
+        return stats == null ? null : stats.latency;
+    }
+
+    /**
+     * Forgets every rule, for instance to start measuring afresh before a
+     * load test.
+     */
+    public void reset() {
+        rules.clear();
+    }
+
+    private static final class RuleStats {
+        final String packageName;
+        final String ruleName;
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        RuleStats(String packageName, String ruleName) {
+            this.packageName = packageName;
+            this.ruleName = ruleName;
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.sctrcd.drools.util;
+
+import org.drools.definition.rule.Rule;
+import org.drools.event.rule.AfterActivationFiredEvent;
+import org.drools.event.rule.BeforeActivationFiredEvent;
+import org.drools.event.rule.DefaultAgendaEventListener;
+
+/**
+ * A listener which times every rule firing, from before to after its
+ * consequence, and records it in a {@link RuleMetrics}.
+ * <p>
+ * Unlike the {@link TrackingAgendaEventListener}, this holds nothing per
+ * session, so a single instance can be attached to a session which is
+ * executed by many threads at once. A working memory fires its rules one at
+ * a time on the thread which is executing it, so the start time is kept per
+ * thread.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class RuleMetricsAgendaEventListener extends DefaultAgendaEventListener {
+
+    private final RuleMetrics metrics;
+
+    private final ThreadLocal<long[]> startTime = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    public RuleMetricsAgendaEventListener(RuleMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void beforeActivationFired(BeforeActivationFiredEvent event) {
+        startTime.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void afterActivationFired(AfterActivationFiredEvent event) {
+        long nanos = System.nanoTime() - startTime.get()[0];
+        Rule rule = event.getActivation().getRule();
+        metrics.record(rule.getPackageName(), rule.getName(), nanos);
+    }
+
+    public RuleMetrics getMetrics() {
+        return metrics;
+    }
+
+}
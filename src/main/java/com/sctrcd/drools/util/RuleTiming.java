@@ -0,0 +1,73 @@
+package com.sctrcd.drools.util;
+
+/**
+ * A snapshot of how many times a rule has fired, and how long its
+ * consequence took, as recorded by {@link RuleMetrics}. Times are in
+ * microseconds.
+ *
+ * @author Stephen Masters
+ */
+public class RuleTiming {
+
+    private final String packageName;
+    private final String ruleName;
+    private final long fireCount;
+    private final long totalMicros;
+    private final long meanMicros;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long maxMicros;
+
+    public RuleTiming(String packageName, String ruleName, long fireCount, long totalMicros,
+            long meanMicros, long p50Micros, long p99Micros, long maxMicros) {
+        this.packageName = packageName;
+        this.ruleName = ruleName;
+        this.fireCount = fireCount;
+        this.totalMicros = totalMicros;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getRuleName() {
+        return ruleName;
+    }
+
+    public long getFireCount() {
+        return fireCount;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    public long getMeanMicros() {
+        return meanMicros;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "RuleTiming[" + packageName + ": " + ruleName + ", fireCount=" + fireCount
+                + ", totalMicros=" + totalMicros + ", meanMicros=" + meanMicros
+                + ", p50Micros=" + p50Micros + ", p99Micros=" + p99Micros
+                + ", maxMicros=" + maxMicros + "]";
+    }
+
+}
@@ -28,6 +28,10 @@ import org.slf4j.LoggerFactory;
  * Initialises and encapsulates the various components required for the rules engine.
  * Includes initialising the knowledge base, creating a stateful session and attaching 
  * listeners for the default events.
+ * <p>
+ * The stateless session may be executed by several threads at once, so the
+ * listeners attached to it are thread-safe, and can be read while it runs.
+ * </p>
  * 
  * @author Stephen Masters
  */
@@ -39,8 +43,8 @@ public class StatelessKnowledgeEnvironment {
 
     private KnowledgeBase knowledgeBase;
     private StatelessKnowledgeSession knowledgeSession;
-    private TrackingAgendaEventListener agendaEventListener;
-    private TrackingWorkingMemoryEventListener workingMemoryEventListener;
+    private volatile TrackingAgendaEventListener agendaEventListener;
+    private volatile TrackingWorkingMemoryEventListener workingMemoryEventListener;
 
     /**
      * Constructor supporting setting up a knowledge environment using just a
@@ -125,11 +129,11 @@ public class StatelessKnowledgeEnvironment {
 	 * previously in the constructor.
 	 */
     public void initialise() {
-        log.info("Initialising KnowledgeEnvironment with resources: " + this.resources);
+        log.info("Initialising KnowledgeEnvironment with resources: {}", this.resources);
         this.knowledgeBase = createKnowledgeBase(this.resources);
         
         // Log a description of the new knowledge base.
-        log.info(toString());
+        log.info("{}", this);
         
         initialiseSession();
     }
@@ -142,7 +146,7 @@ public class StatelessKnowledgeEnvironment {
         log.info("Initialising session...");
         if (this.knowledgeSession == null) {
             this.knowledgeSession = knowledgeBase.newStatelessKnowledgeSession();
-            this.agendaEventListener = new TrackingAgendaEventListener();
+            this.agendaEventListener = new ConcurrentTrackingAgendaEventListener();
             this.knowledgeSession.addEventListener(this.agendaEventListener);
             this.workingMemoryEventListener = new TrackingWorkingMemoryEventListener();
             this.knowledgeSession.addEventListener(this.workingMemoryEventListener);
@@ -158,7 +162,7 @@ public class StatelessKnowledgeEnvironment {
         this.knowledgeSession.removeEventListener(this.agendaEventListener);
         this.knowledgeSession.removeEventListener(this.workingMemoryEventListener);
 
-        this.agendaEventListener = new TrackingAgendaEventListener();
+        this.agendaEventListener = new ConcurrentTrackingAgendaEventListener();
         this.workingMemoryEventListener = new TrackingWorkingMemoryEventListener();
 
         this.knowledgeSession.addEventListener(this.agendaEventListener);
@@ -224,8 +228,10 @@ public class StatelessKnowledgeEnvironment {
                 .newKnowledgeBuilder();
 
         for (DroolsResource resource : resources) {
-            log.info("Resource: " + resource.getType() + ", path type="
-                    + resource.getPathType() + ", path=" + resource.getPath());
+            if (log.isInfoEnabled()) {
+                log.info("Resource: {}, path type={}, path={}", new Object[] {
+                        resource.getType(), resource.getPathType(), resource.getPath() });
+            }
             switch (resource.getPathType()) {
             case CLASSPATH:
                 builder.add(ResourceFactory.newClassPathResource(resource
@@ -241,7 +247,7 @@ public class StatelessKnowledgeEnvironment {
                         .newUrlResource(resource.getPath());
                 
                 if (resource.getUsername() != null) {
-                    log.info("Setting authentication for: " + resource.getUsername());
+                    log.info("Setting authentication for: {}", resource.getUsername());
                     urlResource.setBasicAuthentication("enabled");
                     urlResource.setUsername(resource.getUsername());
                     urlResource.setPassword(resource.getPassword());
@@ -269,6 +275,10 @@ public class StatelessKnowledgeEnvironment {
         return knowledgeBase;
     }
     
+    /**
+     * @return A copy of the activations so far, as the session may be
+     *         executed by other threads while it is being read.
+     */
     public List<Activation> getActivationList() {
         return this.agendaEventListener.getActivationList();
     }
@@ -301,7 +311,7 @@ public class StatelessKnowledgeEnvironment {
             sb.append("\n\nFact: " + DroolsUtil.objectDetails(fact));
         }
         sb.append("\n************************************************************\n");
-        log.info(sb.toString());
+        log.info("{}", sb);
     }
 
     public TrackingAgendaEventListener getAgendaEventListener() {
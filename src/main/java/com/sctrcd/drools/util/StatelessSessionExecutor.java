@@ -0,0 +1,200 @@
+package com.sctrcd.drools.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.drools.KnowledgeBase;
+import org.drools.event.rule.AgendaEventListener;
+import org.drools.runtime.StatelessKnowledgeSession;
+
+/**
+ * Executes facts against a {@link StatelessKnowledgeSession} which is
+ * configured once per {@link KnowledgeBase}, rather than once per request.
+ * <p>
+ * A stateless session is only a template. Each call to
+ * {@link StatelessKnowledgeSession#execute(Object)} creates and disposes its
+ * own working memory, which takes a read lock on the knowledge base and
+ * delegates to the globals held by the template. So once the globals are set,
+ * the same session can be executed by many threads at once. What it cannot
+ * do is have listeners added and removed per request, as those would be seen
+ * by every thread. Callers which need listeners should ask for a
+ * {@link #newSession()} instead, or use {@link #executeAndTrace(Object)}.
+ * Listeners which are safe to share between threads, such as the
+ * {@link RuleMetricsAgendaEventListener}, can be passed to the constructor.
+ * However, disposing a working memory resets the listeners of the session it
+ * came from, so the shared session would lose them after its first execution.
+ * They are therefore never attached to the shared session. Instead, a
+ * {@link #setListenerSampleRate(double) sample} of executions get a session
+ * of their own with the listeners attached, and the rest use the shared
+ * session. By default every execution is sampled, so an executor which should
+ * only pay for its listeners some of the time must be told so.
+ * </p>
+ * <p>
+ * Globals are set when the executor is constructed and never changed
+ * afterwards, so the objects passed in should not be modified while the
+ * executor is in use.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class StatelessSessionExecutor {
+
+    private final KnowledgeBase knowledgeBase;
+    private final Map<String, Object> globals;
+    private final List<AgendaEventListener> listeners;
+    private final StatelessKnowledgeSession session;
+
+    /**
+     * The proportion of executions, between 0 and 1, which have the listeners
+     * attached.
+     */
+    private volatile double listenerSampleRate = 1;
+
+    /**
+     * Constructor for a knowledge base which declares no globals.
+     *
+     * @param knowledgeBase The knowledge base to create sessions from.
+     */
+    public StatelessSessionExecutor(KnowledgeBase knowledgeBase) {
+        this(knowledgeBase, Collections.<String, Object> emptyMap());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param knowledgeBase The knowledge base to create sessions from.
+     * @param globals The globals to set on every session, keyed by name.
+     */
+    public StatelessSessionExecutor(KnowledgeBase knowledgeBase, Map<String, Object> globals) {
+        this(knowledgeBase, globals, new AgendaEventListener[0]);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param knowledgeBase The knowledge base to create sessions from.
+     * @param globals The globals to set on every session, keyed by name.
+     * @param listeners Listeners to attach to the sampled executions, which
+     *            must be safe to call from multiple threads.
+     */
+    public StatelessSessionExecutor(KnowledgeBase knowledgeBase, Map<String, Object> globals,
+            AgendaEventListener... listeners) {
+        this.knowledgeBase = knowledgeBase;
+        this.globals = Collections.unmodifiableMap(new LinkedHashMap<String, Object>(globals));
+        this.listeners = Collections.unmodifiableList(Arrays.asList(listeners.clone()));
+        this.session = newSession(false);
+
+        // The session lazily sets up the first working memory it creates,
+        // without any locking. Executing once here means that has happened
+        // before the session is shared between threads.
+        this.session.execute(Collections.emptyList());
+    }
+
+    /**
+     * Inserts a single fact into a new working memory and fires all rules.
+     * Safe to call from multiple threads.
+     *
+     * @param fact The fact to insert.
+     */
+    public void execute(Object fact) {
+        session().execute(fact);
+    }
+
+    /**
+     * Inserts a collection of facts into a new working memory and fires all
+     * rules. Safe to call from multiple threads.
+     *
+     * @param facts The facts to insert.
+     */
+    public void execute(Iterable<?> facts) {
+        session().execute(facts);
+    }
+
+    /**
+     * Inserts a single fact into a new working memory and fires all rules,
+     * tracking which rules fired. This uses a session of its own, so the
+     * shared session never has a listener attached and requests which are not
+     * traced pay nothing for it.
+     *
+     * @param fact The fact to insert.
+     * @return The activations, in the order the rules fired.
+     */
+    public List<Activation> executeAndTrace(Object fact) {
+        StatelessKnowledgeSession ksession = newSession(isSampled());
+        TrackingAgendaEventListener agendaEventListener = new TrackingAgendaEventListener();
+        ksession.addEventListener(agendaEventListener);
+        ksession.execute(fact);
+        return agendaEventListener.getActivationList();
+    }
+
+    /**
+     * @return The shared session, or a new one with the listeners attached if
+     *         this execution is sampled.
+     */
+    private StatelessKnowledgeSession session() {
+        return isSampled() ? newSession(true) : session;
+    }
+
+    private boolean isSampled() {
+        if (listeners.isEmpty()) {
+            return false;
+        }
+        double rate = listenerSampleRate;
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * Creates a new session with the same globals as the shared one, and the
+     * listeners passed to the constructor, for callers which need to attach
+     * their own listeners. The session returned should not be shared between
+     * threads.
+     *
+     * @return A new stateless session.
+     */
+    public StatelessKnowledgeSession newSession() {
+        return newSession(true);
+    }
+
+    private StatelessKnowledgeSession newSession(boolean withListeners) {
+        StatelessKnowledgeSession ksession = knowledgeBase.newStatelessKnowledgeSession();
+        for (Map.Entry<String, Object> global : globals.entrySet()) {
+            ksession.setGlobal(global.getKey(), global.getValue());
+        }
+        if (withListeners) {
+            for (AgendaEventListener listener : listeners) {
+                ksession.addEventListener(listener);
+            }
+        }
+        return ksession;
+    }
+
+    public double getListenerSampleRate() {
+        return listenerSampleRate;
+    }
+
+    /**
+     * @param listenerSampleRate
+     *            The proportion of executions, between 0 and 1, which have
+     *            the listeners attached. The rest use the shared session.
+     */
+    public void setListenerSampleRate(double listenerSampleRate) {
+        if (listenerSampleRate < 0 || listenerSampleRate > 1) {
+            throw new IllegalArgumentException(
+                    "The listener sample rate must be between 0 and 1: " + listenerSampleRate);
+        }
+        this.listenerSampleRate = listenerSampleRate;
+    }
+
+    public KnowledgeBase getKnowledgeBase() {
+        return knowledgeBase;
+    }
+
+    public Map<String, Object> getGlobals() {
+        return globals;
+    }
+
+}
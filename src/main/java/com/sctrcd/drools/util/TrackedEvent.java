@@ -0,0 +1,91 @@
+package com.sctrcd.drools.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A compact record of a working memory event, as kept by a bounded
+ * {@link TrackingWorkingMemoryEventListener}. Unlike the Drools event, it
+ * doesn't hold on to the fact or the session, just the class of the fact and
+ * the id of its handle.
+ * <p>
+ * If the listener takes snapshots of updated facts, the property values are
+ * turned into strings when they are read, as <code>BeanUtils.describe</code>
+ * would have done, so a snapshot doesn't keep other facts or collections
+ * alive, or change when they do. They are only put into a map when asked for.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public final class TrackedEvent {
+
+    public enum Type {
+        INSERTED, UPDATED, RETRACTED
+    }
+
+    private final Type type;
+    private final Class<?> factClass;
+    private final long handleId;
+    private final long timestamp;
+    private final String[] propertyNames;
+    private final String[] propertyValues;
+
+    TrackedEvent(Type type, Class<?> factClass, long handleId, long timestamp,
+            String[] propertyNames, String[] propertyValues) {
+        this.type = type;
+        this.factClass = factClass;
+        this.handleId = handleId;
+        this.timestamp = timestamp;
+        this.propertyNames = propertyNames;
+        this.propertyValues = propertyValues;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Class<?> getFactClass() {
+        return factClass;
+    }
+
+    /**
+     * @return The id of the fact handle, or -1 if the handle didn't have one.
+     */
+    public long getHandleId() {
+        return handleId;
+    }
+
+    /**
+     * @return When the event happened, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean hasSnapshot() {
+        return propertyValues != null;
+    }
+
+    /**
+     * @return The string values of the properties of the fact at the time of
+     *         the event, or an empty map if no snapshot was taken.
+     */
+    public Map<String, Object> getSnapshot() {
+        if (propertyValues == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < propertyNames.length; i++) {
+            snapshot.put(propertyNames[i], propertyValues[i]);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return "TrackedEvent: type=[" + type + "], factClass=[" + factClass.getName()
+                + "], handleId=[" + handleId + "], timestamp=[" + timestamp + "]";
+    }
+
+}
@@ -11,7 +11,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A listener that will track all rule firings in a session.
+ * A listener that will track all rule firings in a session. It is not thread
+ * safe, so use a {@link ConcurrentTrackingAgendaEventListener} for a session
+ * which fires rules on several threads at once.
  * 
  * @author Stephen Masters
  */
@@ -25,10 +27,21 @@ public class TrackingAgendaEventListener extends DefaultAgendaEventListener {
     public void afterActivationFired(AfterActivationFiredEvent event) {
         Rule rule = event.getActivation().getRule();
 
+        activationList.add(new Activation(rule.getName()));
+        logActivation(event);
+    }
+
+    /**
+     * Logs the rule which fired, and its meta-data, if debug is enabled.
+     */
+    protected void logActivation(AfterActivationFiredEvent event) {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
+
+        Rule rule = event.getActivation().getRule();
         String ruleName = rule.getName();
         Map<String, Object> ruleMetaDataMap = rule.getMetaData();
-
-        activationList.add(new Activation(ruleName));
         StringBuilder sb = new StringBuilder("Rule fired: " + ruleName);
 
         if (ruleMetaDataMap.size() > 0) {
@@ -39,7 +52,7 @@ public class TrackingAgendaEventListener extends DefaultAgendaEventListener {
             }
         }
 
-        log.debug(sb.toString());
+        log.debug("{}", sb);
     }
 
     public boolean isRuleFired(String ruleName) {
@@ -55,11 +68,12 @@ public class TrackingAgendaEventListener extends DefaultAgendaEventListener {
         activationList.clear();
     }
 
-    public final List<Activation> getActivationList() {
+    public List<Activation> getActivationList() {
         return activationList;
     }
 
     public String activationsToString() {
+        List<Activation> activationList = getActivationList();
         if (activationList.size() == 0) {
             return "No activations occurred.";
         } else {
@@ -1,10 +1,13 @@
 package com.sctrcd.drools.util;
 
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.beanutils.BeanUtils;
+import org.drools.common.InternalFactHandle;
 import org.drools.event.rule.ObjectInsertedEvent;
 import org.drools.event.rule.ObjectRetractedEvent;
 import org.drools.event.rule.ObjectUpdatedEvent;
@@ -14,13 +17,24 @@ import org.drools.runtime.rule.FactHandle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.sctrcd.beans.BeanPropertyAccessors;
+
 /**
  * When validation rules fire, they should insert a TradeValidationAnnotation
  * into the working memory. This class listens for these events, and adds them
  * to a list so that a client can query all the alerts raised for a request.
  * <p>
  * You should probably avoid using this outside testing, as the contained lists
- * of events will grow and grow.
+ * of events will grow and grow. For long-lived sessions, create it with a
+ * capacity instead. It then keeps only the most recent events, as compact
+ * {@link TrackedEvent} records in a ring buffer which is allocated up front,
+ * and doesn't hold on to the Drools events or the facts they refer to. The
+ * lists of events stay empty, but the counts of events are still kept.
+ * </p>
+ * <p>
+ * It is synchronized, so one listener can be shared by a stateless session
+ * which is executed by several threads at once. The lists it returns are
+ * copies, which can be read while the session goes on running.
  * </p>
  * 
  * @author Stephen Masters
@@ -30,6 +44,16 @@ public class TrackingWorkingMemoryEventListener
 
     private static Logger log = LoggerFactory.getLogger(TrackingWorkingMemoryEventListener.class);
 
+    /**
+     * The getters used to take snapshots of each class of fact.
+     */
+    private static final ClassValue<Getters> GETTERS = new ClassValue<Getters>() {
+        @Override
+        protected Getters computeValue(Class<?> type) {
+            return new Getters(BeanPropertyAccessors.forClass(type));
+        }
+    };
+
     private List<WorkingMemoryEvent> allEvents = new ArrayList<WorkingMemoryEvent>();
     private List<ObjectInsertedEvent> insertions = new ArrayList<ObjectInsertedEvent>();
     private List<ObjectRetractedEvent> retractions = new ArrayList<ObjectRetractedEvent>();
@@ -40,12 +64,21 @@ public class TrackingWorkingMemoryEventListener
     private FactHandle handleFilter;
     private Class<?> classFilter;
 
+    private final EventRing ring;
+    private final boolean snapshots;
+
+    private long insertionCount;
+    private long retractionCount;
+    private long updateCount;
+
     /**
      * Void constructor sets the listener to record all working memory events
      * with no filtering.
      */
     public TrackingWorkingMemoryEventListener() {
         this.handleFilter = null;
+        this.ring = null;
+        this.snapshots = false;
     }
     
     /**
@@ -57,87 +90,177 @@ public class TrackingWorkingMemoryEventListener
      */
     public TrackingWorkingMemoryEventListener(FactHandle handle) {
         this.handleFilter = handle;
+        this.ring = null;
+        this.snapshots = false;
     }
     
     public TrackingWorkingMemoryEventListener(Class<?> classFilter) {
         this.handleFilter = null;
         this.classFilter = classFilter;
+        this.ring = null;
+        this.snapshots = false;
+    }
+
+    /**
+     * Constructor for a bounded listener, which records all working memory
+     * events, but only keeps the most recent.
+     * 
+     * @param capacity
+     *            The number of {@link TrackedEvent}s to keep.
+     * @param snapshots
+     *            Whether to record the property values of facts when they are
+     *            updated.
+     */
+    public TrackingWorkingMemoryEventListener(int capacity, boolean snapshots) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, but was " + capacity);
+        }
+        this.handleFilter = null;
+        this.ring = new EventRing(capacity);
+        this.snapshots = snapshots;
     }
 
     @Override
-    public void objectInserted(final ObjectInsertedEvent event) {
+    public synchronized void objectInserted(final ObjectInsertedEvent event) {
         if ((handleFilter == null  && classFilter == null)
                 || event.getFactHandle() == handleFilter
                 || event.getObject().getClass().equals(classFilter)) {
-            insertions.add(event);
-            allEvents.add(event);
-            log.trace("Insertion: " + DroolsUtil.objectDetails(event.getObject()));
+            insertionCount++;
+            if (ring != null) {
+                ring.add(track(TrackedEvent.Type.INSERTED, event.getFactHandle(), event.getObject(), false));
+            } else {
+                insertions.add(event);
+                allEvents.add(event);
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("Insertion: {}", DroolsUtil.objectDetails(event.getObject()));
+            }
         }
     }
 
     @Override
-    public void objectRetracted(final ObjectRetractedEvent event) {
+    public synchronized void objectRetracted(final ObjectRetractedEvent event) {
         if ((handleFilter == null  && classFilter == null) 
                 || event.getFactHandle() == handleFilter
                 || event.getOldObject().getClass().equals(classFilter)) {
-            retractions.add(event);
-            allEvents.add(event);
-            log.trace("Retraction: " + DroolsUtil.objectDetails(event.getOldObject()));
+            retractionCount++;
+            if (ring != null) {
+                ring.add(track(TrackedEvent.Type.RETRACTED, event.getFactHandle(), event.getOldObject(), false));
+            } else {
+                retractions.add(event);
+                allEvents.add(event);
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("Retraction: {}", DroolsUtil.objectDetails(event.getOldObject()));
+            }
         }
     }
 
     @SuppressWarnings("unchecked")
     @Override
-    public void objectUpdated(final ObjectUpdatedEvent event) {
+    public synchronized void objectUpdated(final ObjectUpdatedEvent event) {
         if ((handleFilter == null  && classFilter == null) 
                 || event.getFactHandle() == handleFilter
                 || event.getObject().getClass().equals(classFilter)) {
-            updates.add(event);
-            allEvents.add(event);
-
+            updateCount++;
             Object fact = event.getObject();
-            try {
-                factChanges.add(BeanUtils.describe(fact));
-            } catch (Exception e) {
-                log.error("Unable to get object details for tracking: " + DroolsUtil.objectDetails(fact), e);
+            if (ring != null) {
+                ring.add(track(TrackedEvent.Type.UPDATED, event.getFactHandle(), fact, snapshots));
+            } else {
+                updates.add(event);
+                allEvents.add(event);
+                try {
+                    factChanges.add(BeanUtils.describe(fact));
+                } catch (Exception e) {
+                    log.error("Unable to get object details for tracking: " + DroolsUtil.objectDetails(fact), e);
+                }
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("Update: {}", DroolsUtil.objectDetails(fact));
+            }
+        }
+    }
+
+    public synchronized List<WorkingMemoryEvent> getAllEvents() {
+        return new ArrayList<WorkingMemoryEvent>(allEvents);
+    }
+
+    public synchronized List<ObjectInsertedEvent> getInsertions() {
+        return new ArrayList<ObjectInsertedEvent>(insertions);
+    }
+
+    public synchronized List<ObjectRetractedEvent> getRetractions() {
+        return new ArrayList<ObjectRetractedEvent>(retractions);
+    }
+
+    public synchronized List<ObjectUpdatedEvent> getUpdates() {
+        return new ArrayList<ObjectUpdatedEvent>(updates);
+    }
+
+    /**
+     * @return The property values of facts as they were updated. For a
+     *         bounded listener, these are the snapshots of the updates still
+     *         in its buffer.
+     */
+    public synchronized List<Map<String, Object>> getFactChanges() {
+        if (ring == null) {
+            return new ArrayList<Map<String, Object>>(factChanges);
+        }
+        List<Map<String, Object>> changes = new ArrayList<Map<String, Object>>();
+        for (TrackedEvent event : ring.toList()) {
+            if (event.hasSnapshot()) {
+                changes.add(event.getSnapshot());
             }
-            log.trace("Update: " + DroolsUtil.objectDetails(event.getObject()));
         }
+        return changes;
     }
 
-    public List<WorkingMemoryEvent> getAllEvents() {
-        return allEvents;
+    /**
+     * @return The events still in the buffer of a bounded listener, oldest
+     *         first, or an empty list if the listener is not bounded.
+     */
+    public List<TrackedEvent> getTrackedEvents() {
+        return ring == null ? Collections.<TrackedEvent> emptyList() : ring.toList();
     }
 
-    public List<ObjectInsertedEvent> getInsertions() {
-        return insertions;
+    public boolean isBounded() {
+        return ring != null;
     }
 
-    public List<ObjectRetractedEvent> getRetractions() {
-        return retractions;
+    /**
+     * @return The number of events which a bounded listener has dropped to
+     *         make room for newer ones.
+     */
+    public long getDroppedEventCount() {
+        return ring == null ? 0 : ring.getDropped();
     }
 
-    public List<ObjectUpdatedEvent> getUpdates() {
-        return updates;
+    public synchronized long getInsertionCount() {
+        return insertionCount;
     }
 
-    public List<Map<String, Object>> getFactChanges() {
-        return factChanges;
+    public synchronized long getRetractionCount() {
+        return retractionCount;
     }
 
-    public String getPrintableSummary() {
+    public synchronized long getUpdateCount() {
+        return updateCount;
+    }
+
+    public synchronized String getPrintableSummary() {
         return "TrackingWorkingMemoryEventListener: " +
-                "insertions=[" + insertions.size() + "], " +
-                "retractions=[" + retractions.size() + "], " +
-                "updates=[" + updates.size() + "]";
+                "insertions=[" + insertionCount + "], " +
+                "retractions=[" + retractionCount + "], " +
+                "updates=[" + updateCount + "]";
     }
 
-    public String getPrintableDetail() {
-        StringBuilder report = new StringBuilder(
-                "TrackingWorkingMemoryEventListener: " + "insertions=["
-                        + insertions.size() + "], " + "retractions=["
-                        + retractions.size() + "], " + "updates=["
-                        + updates.size() + "]");
+    public synchronized String getPrintableDetail() {
+        StringBuilder report = new StringBuilder(getPrintableSummary());
+        if (ring != null) {
+            for (TrackedEvent event : ring.toList()) {
+                report.append("\n" + event);
+            }
+        }
 
         for (ObjectInsertedEvent event : insertions) {
             report.append("\n" + DroolsUtil.objectDetails(event.getObject()));
@@ -152,4 +275,82 @@ public class TrackingWorkingMemoryEventListener
         return report.toString();
     }
 
+    private static TrackedEvent track(TrackedEvent.Type type, FactHandle handle, Object fact, boolean snapshot) {
+        long handleId = handle instanceof InternalFactHandle ? ((InternalFactHandle) handle).getId() : -1;
+        String[] values = null;
+        String[] names = null;
+        if (snapshot && fact != null) {
+            Getters getters = GETTERS.get(fact.getClass());
+            names = getters.names;
+            values = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                values[i] = snapshot(fact, getters.handles[i]);
+            }
+        }
+        return new TrackedEvent(type, fact == null ? Object.class : fact.getClass(), handleId,
+                System.currentTimeMillis(), names, values);
+    }
+
+    /**
+     * Reads a property value as a string straight away, so that the snapshot
+     * doesn't hold on to the value, which may be another fact or a collection
+     * which goes on changing after the update.
+     */
+    private static String snapshot(Object fact, MethodHandle getter) {
+        Object value;
+        try {
+            value = (Object) getter.invokeExact(fact);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            return null;
+        }
+        return value == null ? null : value.toString();
+    }
+
+    private static class Getters {
+        private final String[] names;
+        private final MethodHandle[] handles;
+
+        private Getters(BeanPropertyAccessors accessors) {
+            names = accessors.getPropertyNames().toArray(new String[0]);
+            handles = new MethodHandle[names.length];
+            for (int i = 0; i < names.length; i++) {
+                handles[i] = accessors.getter(names[i]);
+            }
+        }
+    }
+
+    /**
+     * A fixed number of slots, which are overwritten oldest first once they
+     * are all full. It is synchronized so that it can be read while the
+     * session is running.
+     */
+    private static class EventRing {
+        private final TrackedEvent[] slots;
+        private long added;
+
+        private EventRing(int capacity) {
+            slots = new TrackedEvent[capacity];
+        }
+
+        private synchronized void add(TrackedEvent event) {
+            slots[(int) (added % slots.length)] = event;
+            added++;
+        }
+
+        private synchronized long getDropped() {
+            return Math.max(0, added - slots.length);
+        }
+
+        private synchronized List<TrackedEvent> toList() {
+            int size = (int) Math.min(added, slots.length);
+            List<TrackedEvent> events = new ArrayList<TrackedEvent>(size);
+            for (long i = added - size; i < added; i++) {
+                events.add(slots[(int) (i % slots.length)]);
+            }
+            return events;
+        }
+    }
+
 }
@@ -12,6 +12,11 @@ public class BicValidationRequest extends ValidationRequest {
         super();
         this.setBic(bic);
     }
+    
+    public BicValidationRequest(String bic, ValidationRequest parent) {
+        this(bic);
+        this.setParent(parent);
+    }
 
     public String getBic() {
         return bic;
@@ -22,7 +27,7 @@ public class BicValidationRequest extends ValidationRequest {
      * Whitespace is not relevant to validation.
      */
     public void setBic(String bic) {
-        this.bic = bic.replace(" ", "");
+        this.bic = bic == null ? null : bic.replace(" ", "");
     }
     
     @Override
@@ -1,9 +1,13 @@
 package com.sctrcd.payments.facts;
 
+import com.sctrcd.payments.validation.iban.Iban;
+
 public class IbanValidationRequest extends ValidationRequest {
 
     private String iban;
 
+    private Iban parsedIban;
+
     public IbanValidationRequest() {
         super();
     }
@@ -12,17 +16,32 @@ public class IbanValidationRequest extends ValidationRequest {
         super();
         this.setIban(iban);
     }
+    
+    public IbanValidationRequest(String iban, ValidationRequest parent) {
+        this(iban);
+        this.setParent(parent);
+    }
 
     public String getIban() {
         return iban;
     }
 
+    /**
+     * The IBAN parsed once when it was set, so that the pre-filter and every
+     * rule share its country code and MOD-97 check rather than each parsing
+     * it again.
+     */
+    public Iban getParsedIban() {
+        return parsedIban;
+    }
+
     /**
      * Strips whitespace out of the IBAN before setting the field.
      * Whitespace is not relevant to validation.
      */
     public void setIban(String iban) {
-        this.iban = iban.replace(" ", "");
+        this.iban = iban == null ? null : iban.replace(" ", "");
+        this.parsedIban = Iban.valueOf(this.iban);
     }
     
     @Override
@@ -1,5 +1,7 @@
 package com.sctrcd.payments.facts;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public class PaymentValidationAnnotation {
 
     private final String ruleName;
@@ -11,6 +13,11 @@ public class PaymentValidationAnnotation {
      * field will refer to it.
      */
     private final PaymentAttribute attribute;
+    
+    /**
+     * The request which this annotation was raised against, if known.
+     */
+    private final ValidationRequest request;
 
     /**
      * Represents a general payment annotation, as opposed to an annotation
@@ -25,6 +32,7 @@ public class PaymentValidationAnnotation {
         this.level = level;
         this.message = message;
         this.attribute = null;
+        this.request = null;
     }
     
     /**
@@ -40,6 +48,43 @@ public class PaymentValidationAnnotation {
         this.level = level;
         this.message = message;
         this.attribute = attribute;
+        this.request = null;
+    }
+
+    /**
+     * Represents an annotation of a particular attribute of a payment, raised
+     * while validating a specific request.
+     * 
+     * @param request
+     * @param ruleName
+     * @param level
+     * @param message
+     * @param attribute
+     */
+    public PaymentValidationAnnotation(ValidationRequest request, String ruleName, AnnotationLevel level, String message, PaymentAttribute attribute) {
+        this.request = request;
+        this.ruleName = ruleName;
+        this.level = level;
+        this.message = message;
+        this.attribute = attribute;
+    }
+
+    /**
+     * The request being validated when this annotation was raised. Not part of
+     * the JSON representation, as the request refers back to its annotations.
+     */
+    @JsonIgnore
+    public ValidationRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Whether this annotation was raised against a request, or against one of
+     * the requests created for it.
+     */
+    public boolean belongsTo(ValidationRequest owner) {
+        return request != null 
+                && (request == owner || request.getParent() == owner);
     }
 
     public PaymentAttribute getAttribute() {
@@ -11,6 +11,22 @@ public abstract class ValidationRequest {
     private boolean isValid = true;
     private AnnotationLevel mostSevereAnnotation = null;
     private List<PaymentValidationAnnotation> annotations = new ArrayList<PaymentValidationAnnotation>();
+    
+    /**
+     * The request which caused this one to be created, if any. i.e. An IBAN
+     * validation request created for a payment validation request. When many
+     * requests are validated in the same session, rules use this to tell
+     * whose annotations are whose.
+     */
+    private ValidationRequest parent;
+
+    public ValidationRequest getParent() {
+        return parent;
+    }
+
+    public void setParent(ValidationRequest parent) {
+        this.parent = parent;
+    }
 
     public boolean isValid() {
         return isValid;
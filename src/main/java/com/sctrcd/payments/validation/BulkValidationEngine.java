@@ -0,0 +1,230 @@
+package com.sctrcd.payments.validation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validates large numbers of inputs in parallel, across all the cores of the
+ * machine, returning the results in the same order as the inputs.
+ * <p>
+ * The inputs are split into chunks, and each chunk is validated by a task in
+ * a work-stealing {@link ForkJoinPool}, so an idle thread takes whichever
+ * chunk is next, however long the others are taking. The results are read
+ * through an <code>Iterator</code>, which waits for each chunk in input
+ * order. Only a limited number of inputs are ever in flight, meaning read
+ * from the input but not yet read back as results. A new chunk is only read
+ * from the input when all the results of an earlier one have been read, so
+ * memory use stays the same however many inputs there are, and a slow reader
+ * of the results slows down the reading of the inputs rather than letting
+ * results pile up.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class BulkValidationEngine {
+
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+    public static final int DEFAULT_MAX_IN_FLIGHT = DEFAULT_PARALLELISM * DEFAULT_CHUNK_SIZE * 4;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final int maxInFlight;
+
+    public BulkValidationEngine() {
+        this(DEFAULT_PARALLELISM, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param parallelism
+     *            The number of threads validating at once.
+     * @param chunkSize
+     *            The number of inputs validated by each task.
+     * @param maxInFlight
+     *            The maximum number of inputs to read ahead of the results
+     *            being read. This is rounded down to a whole number of
+     *            chunks, but is always at least one chunk.
+     */
+    public BulkValidationEngine(int parallelism, int chunkSize, int maxInFlight) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1: " + chunkSize);
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Maximum in flight must be at least 1: " + maxInFlight);
+        }
+        this.pool = new ForkJoinPool(parallelism, new BulkValidationThreadFactory(), null, false);
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Validates inputs in parallel. Nothing is read from the inputs until
+     * this is called, and then only as far ahead of the results as the
+     * in-flight limit allows.
+     *
+     * @param inputs
+     *            The inputs to validate.
+     * @param validator
+     *            Validates each chunk of inputs.
+     * @return The results, in the same order as the inputs. If validating a
+     *         chunk throws an exception, it is thrown when its results are
+     *         reached.
+     */
+    public <I, R> Iterator<R> validate(Iterator<? extends I> inputs, ChunkValidator<I, R> validator) {
+        return new OrderedResults<I, R>(inputs, validator);
+    }
+
+    /**
+     * @see #validate(Iterator, ChunkValidator)
+     */
+    public <I, R> Iterator<R> validate(Iterable<? extends I> inputs, ChunkValidator<I, R> validator) {
+        return validate(inputs.iterator(), validator);
+    }
+
+    /**
+     * Validates inputs in parallel, and waits for all of the results.
+     *
+     * @return The results, in the same order as the inputs.
+     */
+    public <I, R> List<R> validateAll(Iterable<? extends I> inputs, ChunkValidator<I, R> validator) {
+        List<R> results = new ArrayList<R>();
+        for (Iterator<R> it = validate(inputs, validator); it.hasNext();) {
+            results.add(it.next());
+        }
+        return results;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Stops the threads once the chunks already submitted are done.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Hands back the results of each chunk in turn, submitting the next chunk
+     * of inputs as each one is finished with.
+     */
+    private class OrderedResults<I, R> implements Iterator<R> {
+
+        private final Iterator<? extends I> inputs;
+        private final ChunkValidator<I, R> validator;
+        private final int maxChunks = Math.max(1, maxInFlight / chunkSize);
+        private final ArrayDeque<ForkJoinTask<List<R>>> inFlight = new ArrayDeque<ForkJoinTask<List<R>>>(maxChunks);
+        private Iterator<R> current = Collections.<R> emptyList().iterator();
+
+        private OrderedResults(Iterator<? extends I> inputs, ChunkValidator<I, R> validator) {
+            this.inputs = inputs;
+            this.validator = validator;
+            submitChunks();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                // The last chunk has been handed back, so it no longer counts
+                // as in flight, and another can take its place.
+                submitChunks();
+                ForkJoinTask<List<R>> oldest = inFlight.poll();
+                if (oldest == null) {
+                    return false;
+                }
+                current = oldest.join().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void submitChunks() {
+            while (inFlight.size() < maxChunks && inputs.hasNext()) {
+                List<I> chunk = new ArrayList<I>(chunkSize);
+                while (chunk.size() < chunkSize && inputs.hasNext()) {
+                    chunk.add(inputs.next());
+                }
+                inFlight.add(pool.submit(new ChunkTask<I, R>(chunk, validator)));
+            }
+        }
+
+    }
+
+    private static class ChunkTask<I, R> extends RecursiveTask<List<R>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<I> chunk;
+        private final ChunkValidator<I, R> validator;
+
+        private ChunkTask(List<I> chunk, ChunkValidator<I, R> validator) {
+            this.chunk = chunk;
+            this.validator = validator;
+        }
+
+        @Override
+        protected List<R> compute() {
+            List<R> results = validator.validate(chunk);
+            if (results.size() != chunk.size()) {
+                throw new IllegalStateException("Expected " + chunk.size()
+                        + " results but got " + results.size());
+            }
+            return results;
+        }
+
+    }
+
+    /**
+     * Names threads so that they can be picked out in thread dumps. Fork/join
+     * worker threads are already daemons.
+     */
+    private static class BulkValidationThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private static final AtomicInteger poolNumber = new AtomicInteger();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+        private final String prefix = "bulk-validation-" + poolNumber.incrementAndGet() + "-";
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+            };
+            thread.setName(prefix + threadNumber.incrementAndGet());
+            return thread;
+        }
+    }
+
+}
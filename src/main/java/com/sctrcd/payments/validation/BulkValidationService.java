@@ -0,0 +1,157 @@
+package com.sctrcd.payments.validation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import com.sctrcd.payments.facts.Payment;
+import com.sctrcd.payments.validation.bic.BicValidationResult;
+import com.sctrcd.payments.validation.bic.BicValidator;
+import com.sctrcd.payments.validation.iban.IbanValidationResult;
+import com.sctrcd.payments.validation.iban.IbanValidator;
+import com.sctrcd.payments.validation.payment.FxPaymentValidationResult;
+import com.sctrcd.payments.validation.payment.PaymentValidator;
+
+/**
+ * Validates large numbers of IBANs, BICs or payments in parallel, within the
+ * same process, using a {@link BulkValidationEngine}. The results come back
+ * in the same order as the inputs.
+ * <p>
+ * This uses the rule-based validators directly rather than the caching ones,
+ * as a bulk run rarely sees the same input twice, and every thread would
+ * otherwise contend for the cache. Payments are validated a chunk at a time
+ * through {@link PaymentValidator#validatePayments(java.util.Collection)},
+ * so each chunk shares a single session.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+@Service("bulkValidationService")
+public class BulkValidationService implements DisposableBean {
+
+    @Autowired(required = true)
+    @Qualifier("ruleBasedIbanValidator")
+    private IbanValidator ibanValidator;
+
+    @Autowired(required = true)
+    @Qualifier("ruleBasedBicValidator")
+    private BicValidator bicValidator;
+
+    @Autowired(required = true)
+    @Qualifier("ruleBasedPaymentValidator")
+    private PaymentValidator paymentValidator;
+
+    private final BulkValidationEngine engine;
+
+    public BulkValidationService() {
+        this(new BulkValidationEngine());
+    }
+
+    public BulkValidationService(BulkValidationEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @return A result for each IBAN, in the same order as the IBANs.
+     */
+    public Iterator<IbanValidationResult> validateIbans(Iterator<String> ibans) {
+        return engine.validate(ibans, new ChunkValidator<String, IbanValidationResult>() {
+            @Override
+            public List<IbanValidationResult> validate(List<String> chunk) {
+                List<IbanValidationResult> results = new ArrayList<IbanValidationResult>(chunk.size());
+                for (String iban : chunk) {
+                    results.add(ibanValidator.validateIban(iban));
+                }
+                return results;
+            }
+        });
+    }
+
+    /**
+     * @see #validateIbans(Iterator)
+     */
+    public Iterator<IbanValidationResult> validateIbans(Iterable<String> ibans) {
+        return validateIbans(ibans.iterator());
+    }
+
+    /**
+     * @return A result for each BIC, in the same order as the BICs.
+     */
+    public Iterator<BicValidationResult> validateBics(Iterator<String> bics) {
+        return engine.validate(bics, new ChunkValidator<String, BicValidationResult>() {
+            @Override
+            public List<BicValidationResult> validate(List<String> chunk) {
+                List<BicValidationResult> results = new ArrayList<BicValidationResult>(chunk.size());
+                for (String bic : chunk) {
+                    results.add(bicValidator.validate(bic));
+                }
+                return results;
+            }
+        });
+    }
+
+    /**
+     * @see #validateBics(Iterator)
+     */
+    public Iterator<BicValidationResult> validateBics(Iterable<String> bics) {
+        return validateBics(bics.iterator());
+    }
+
+    /**
+     * @return A result for each payment, in the same order as the payments.
+     */
+    public Iterator<FxPaymentValidationResult> validatePayments(Iterator<Payment> payments) {
+        return engine.validate(payments, new ChunkValidator<Payment, FxPaymentValidationResult>() {
+            @Override
+            public List<FxPaymentValidationResult> validate(List<Payment> chunk) {
+                return paymentValidator.validatePayments(chunk);
+            }
+        });
+    }
+
+    /**
+     * @see #validatePayments(Iterator)
+     */
+    public Iterator<FxPaymentValidationResult> validatePayments(Iterable<Payment> payments) {
+        return validatePayments(payments.iterator());
+    }
+
+    @Override
+    public void destroy() {
+        engine.shutdown();
+    }
+
+    public BulkValidationEngine getEngine() {
+        return engine;
+    }
+
+    public IbanValidator getIbanValidator() {
+        return ibanValidator;
+    }
+
+    public void setIbanValidator(IbanValidator ibanValidator) {
+        this.ibanValidator = ibanValidator;
+    }
+
+    public BicValidator getBicValidator() {
+        return bicValidator;
+    }
+
+    public void setBicValidator(BicValidator bicValidator) {
+        this.bicValidator = bicValidator;
+    }
+
+    public PaymentValidator getPaymentValidator() {
+        return paymentValidator;
+    }
+
+    public void setPaymentValidator(PaymentValidator paymentValidator) {
+        this.paymentValidator = paymentValidator;
+    }
+
+}
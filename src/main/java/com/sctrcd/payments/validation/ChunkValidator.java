@@ -0,0 +1,20 @@
+package com.sctrcd.payments.validation;
+
+import java.util.List;
+
+/**
+ * Validates a chunk of inputs for the {@link BulkValidationEngine}. It may be
+ * called from several threads at once, each with a different chunk.
+ *
+ * @author Stephen Masters
+ */
+public interface ChunkValidator<I, R> {
+
+    /**
+     * @param chunk
+     *            The inputs to validate.
+     * @return A result for each input, in the same order as the inputs.
+     */
+    List<R> validate(List<I> chunk);
+
+}
@@ -0,0 +1,124 @@
+package com.sctrcd.payments.validation;
+
+import java.util.Collection;
+
+import com.sctrcd.payments.enums.CountryEnum;
+import com.sctrcd.payments.facts.Country;
+
+/**
+ * A set of ISO 3166-1 alpha-2 country codes, which the rules use to check
+ * whether an IBAN or BIC contains a real country. Every possible code of two
+ * upper-case letters has its own bit in a 26x26 bitset, so a lookup is a
+ * couple of subtractions and a bit test, and does not allocate anything.
+ * <p>
+ * The index is immutable, so a single instance can be set as a global and
+ * shared between any number of sessions.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public final class CountryCodeIndex {
+
+    private static final int LETTERS = 26;
+
+    private static final CountryCodeIndex ALL_COUNTRIES = new CountryCodeIndex(CountryEnum.values());
+
+    private final long[] bits = new long[(LETTERS * LETTERS + 63) / 64];
+
+    private final int size;
+
+    public CountryCodeIndex(CountryEnum[] countries) {
+        int count = 0;
+        for (CountryEnum country : countries) {
+            count += add(country.isoCode);
+        }
+        this.size = count;
+    }
+
+    public CountryCodeIndex(Collection<Country> countries) {
+        int count = 0;
+        for (Country country : countries) {
+            count += add(country.getIsoCode());
+        }
+        this.size = count;
+    }
+
+    /**
+     * @return An index of every country in {@link CountryEnum}.
+     */
+    public static CountryCodeIndex allCountries() {
+        return ALL_COUNTRIES;
+    }
+
+    /**
+     * @param code
+     *            A country code, which must be two upper-case letters to
+     *            match.
+     * @return Whether the code is for a country in the index.
+     */
+    public boolean contains(String code) {
+        return code != null && code.length() == 2 && containsAt(code, 0);
+    }
+
+    /**
+     * Checks the two characters of a string at an offset, without the caller
+     * needing to take a substring. i.e. <code>containsAt(bic, 4)</code>
+     * checks the country code in a BIC.
+     *
+     * @return Whether the two characters at the offset are a country code in
+     *         the index. False if the string is too short.
+     */
+    public boolean containsAt(String s, int offset) {
+        if (s == null || offset < 0 || s.length() < offset + 2) {
+            return false;
+        }
+        return contains(s.charAt(offset), s.charAt(offset + 1));
+    }
+
+    /**
+     * @return Whether the pair of characters is a country code in the index.
+     */
+    public boolean contains(char first, char second) {
+        int bit = bitFor(first, second);
+        return bit >= 0 && (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * @return The number of distinct country codes in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sets the bit for a code.
+     *
+     * @return 1 if the code was added, or 0 if it was already present.
+     */
+    private int add(String code) {
+        int bit = code == null || code.length() != 2 ? -1 : bitFor(code.charAt(0), code.charAt(1));
+        if (bit < 0) {
+            throw new IllegalArgumentException("Not an ISO 3166-1 alpha-2 country code: " + code);
+        }
+        long mask = 1L << bit;
+        if ((bits[bit >>> 6] & mask) != 0) {
+            return 0;
+        }
+        bits[bit >>> 6] |= mask;
+        return 1;
+    }
+
+    /**
+     * @return The bit position for a pair of upper-case letters, or -1 if
+     *         either is not an upper-case letter.
+     */
+    private static int bitFor(char first, char second) {
+        int a = first - 'A';
+        int b = second - 'A';
+        if (a < 0 || a >= LETTERS || b < 0 || b >= LETTERS) {
+            return -1;
+        }
+        return a * LETTERS + b;
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.sctrcd.payments.validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.stereotype.Service;
+
+import com.sctrcd.drools.util.KnowledgeBaseManager;
+import com.sctrcd.drools.util.KnowledgeBaseSwap;
+import com.sctrcd.drools.util.KnowledgeBaseSwapListener;
+import com.sctrcd.payments.validation.bic.RuleBasedBicValidator;
+import com.sctrcd.payments.validation.iban.RuleBasedIbanValidator;
+import com.sctrcd.payments.validation.payment.RuleBasedPaymentValidator;
+
+/**
+ * Watches the rules used by the rule-based validators, and reloads them when
+ * they change. The rules are compiled on a background thread of their own,
+ * so requests carry on against the old rules until the new ones are ready.
+ * See {@link KnowledgeBaseManager}.
+ * <p>
+ * Whenever new rules are swapped in, a {@link ValidationDataChangedEvent} is
+ * published, so that any cached results are discarded. The most recent
+ * reloads, whether or not they succeeded, are kept for reporting.
+ * </p>
+ * <p>
+ * As it holds the rules of every validator, it also sets the proportion of
+ * executions which record {@link com.sctrcd.drools.util.RuleMetrics}.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+@Service("ruleReloadService")
+public class RuleReloadService implements KnowledgeBaseSwapListener, ApplicationEventPublisherAware,
+        InitializingBean, DisposableBean {
+
+    private static Logger log = LoggerFactory.getLogger(RuleReloadService.class);
+
+    public static final long DEFAULT_INTERVAL_SECONDS = 10;
+    public static final int MAX_HISTORY = 50;
+
+    @Autowired(required = true)
+    @Qualifier("ruleBasedIbanValidator")
+    private RuleBasedIbanValidator ibanValidator;
+
+    @Autowired(required = true)
+    @Qualifier("ruleBasedBicValidator")
+    private RuleBasedBicValidator bicValidator;
+
+    @Autowired(required = true)
+    @Qualifier("ruleBasedPaymentValidator")
+    private RuleBasedPaymentValidator paymentValidator;
+
+    private ApplicationEventPublisher publisher;
+
+    private long intervalSeconds = DEFAULT_INTERVAL_SECONDS;
+
+    /**
+     * The proportion of executions of every validator's rules which record
+     * rule metrics. Zero by default, as recording them means a session per
+     * execution rather than the shared one.
+     */
+    private volatile double ruleMetricsSampleRate = 0;
+
+    private List<KnowledgeBaseManager> managers;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Set while a reload requested with {@link #requestReloadAll()} is
+     * waiting for the reload thread, so that requests don't pile up.
+     */
+    private final AtomicBoolean reloadRequested = new AtomicBoolean();
+
+    /**
+     * The most recent reloads, oldest first. All access is synchronized on
+     * the list.
+     */
+    private final LinkedList<KnowledgeBaseSwap> history = new LinkedList<KnowledgeBaseSwap>();
+
+    /**
+     * Starts watching the rules of each validator.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        managers = Arrays.asList(
+                ibanValidator.getKnowledgeBaseManager(),
+                bicValidator.getKnowledgeBaseManager(),
+                paymentValidator.getKnowledgeBaseManager());
+        for (KnowledgeBaseManager manager : managers) {
+            manager.addSwapListener(this);
+            manager.setListenerSampleRate(ruleMetricsSampleRate);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "rule-reload");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                reloadIfModified();
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        log.info("Checking for modified rules every {} seconds.", intervalSeconds);
+    }
+
+    /**
+     * Reloads the rules of any validator whose rules have changed.
+     *
+     * @return The result of each reload.
+     */
+    public List<KnowledgeBaseSwap> reloadIfModified() {
+        List<KnowledgeBaseSwap> swaps = new ArrayList<KnowledgeBaseSwap>();
+        for (KnowledgeBaseManager manager : managers) {
+            try {
+                KnowledgeBaseSwap swap = manager.reloadIfModified();
+                if (swap != null) {
+                    swaps.add(swap);
+                }
+            } catch (RuntimeException e) {
+                // Don't let one failure stop the checks being scheduled.
+                log.error("Unable to check the rules for " + manager.getName(), e);
+            }
+        }
+        addToHistory(swaps);
+        return swaps;
+    }
+
+    /**
+     * Reloads the rules of every validator, whether or not they have changed.
+     * This is for resources which can't say when they were last modified.
+     *
+     * @return The result of each reload.
+     */
+    public List<KnowledgeBaseSwap> reloadAll() {
+        List<KnowledgeBaseSwap> swaps = new ArrayList<KnowledgeBaseSwap>();
+        for (KnowledgeBaseManager manager : managers) {
+            swaps.add(manager.reload());
+        }
+        addToHistory(swaps);
+        return swaps;
+    }
+
+    /**
+     * Queues a reload of every validator's rules on the reload thread, so
+     * that the caller doesn't wait for them to compile, and the reload can't
+     * overlap with the regular checks. If a reload is already waiting, this
+     * doesn't queue another. The results are added to the
+     * {@link #getHistory() history}.
+     *
+     * @return True if a reload was queued.
+     */
+    public boolean requestReloadAll() {
+        if (!reloadRequested.compareAndSet(false, true)) {
+            return false;
+        }
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                reloadRequested.set(false);
+                try {
+                    reloadAll();
+                } catch (RuntimeException e) {
+                    log.error("Unable to reload the rules.", e);
+                }
+            }
+        });
+        return true;
+    }
+
+    private void addToHistory(List<KnowledgeBaseSwap> swaps) {
+        synchronized (history) {
+            history.addAll(swaps);
+            while (history.size() > MAX_HISTORY) {
+                history.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * @return The most recent reloads, oldest first.
+     */
+    public List<KnowledgeBaseSwap> getHistory() {
+        synchronized (history) {
+            return new ArrayList<KnowledgeBaseSwap>(history);
+        }
+    }
+
+    @Override
+    public void knowledgeBaseSwapped(KnowledgeBaseManager manager, KnowledgeBaseSwap swap) {
+        if (publisher != null) {
+            publisher.publishEvent(new ValidationDataChangedEvent(this, "Reloaded " + manager.getName()));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (managers != null) {
+            for (KnowledgeBaseManager manager : managers) {
+                manager.removeSwapListener(this);
+            }
+        }
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    public double getRuleMetricsSampleRate() {
+        return ruleMetricsSampleRate;
+    }
+
+    /**
+     * @param ruleMetricsSampleRate
+     *            The proportion of executions, between 0 and 1, of every
+     *            validator's rules which record rule metrics. Takes effect
+     *            straight away if the service has been started.
+     */
+    public synchronized void setRuleMetricsSampleRate(double ruleMetricsSampleRate) {
+        if (ruleMetricsSampleRate < 0 || ruleMetricsSampleRate > 1) {
+            throw new IllegalArgumentException(
+                    "The rule metrics sample rate must be between 0 and 1: " + ruleMetricsSampleRate);
+        }
+        this.ruleMetricsSampleRate = ruleMetricsSampleRate;
+        if (managers != null) {
+            for (KnowledgeBaseManager manager : managers) {
+                manager.setListenerSampleRate(ruleMetricsSampleRate);
+            }
+        }
+        log.info("Recording rule metrics for a proportion of {} of executions.", ruleMetricsSampleRate);
+    }
+
+    public long getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    /**
+     * @param intervalSeconds
+     *            How often to check whether the rules have changed. Takes
+     *            effect when the service is started.
+     */
+    public void setIntervalSeconds(long intervalSeconds) {
+        if (intervalSeconds < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1 second: " + intervalSeconds);
+        }
+        this.intervalSeconds = intervalSeconds;
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.sctrcd.payments.validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.sctrcd.drools.util.LatencyHistogram;
+
+/**
+ * Latency histograms for each stage of handling a validation request, so
+ * that when requests slow down it is possible to see where the time went.
+ * <p>
+ * Each kind of request is a pipeline, such as {@link #IBAN}, which passes
+ * through stages, from the {@link #REQUEST} as a whole, through the
+ * controller's call to the validator, down to the rules, and back out
+ * through the serialization of the result. The stages nest, so for instance
+ * the time in {@link #RULES} is also counted in {@link #VALIDATE} and
+ * {@link #REQUEST}.
+ * </p>
+ * <p>
+ * The validators don't know which endpoint called them, so they record their
+ * stages under the pipeline for a single value. For instance, the rules run
+ * for each IBAN in an {@link #IBAN_BATCH} are counted under {@link #IBAN}.
+ * Payment batches are the exception, and record their stages for each chunk
+ * of payments under {@link #PAYMENT_BATCH}.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class StageLatencies {
+
+    public static final String IBAN = "iban";
+    public static final String IBAN_BATCH = "ibanBatch";
+    public static final String BIC = "bic";
+    public static final String PAYMENT = "payment";
+    public static final String PAYMENT_BATCH = "paymentBatch";
+
+    /**
+     * From the dispatcher handing the request to the controller, until the
+     * response has been written.
+     */
+    public static final String REQUEST = "request";
+
+    /**
+     * The controller's call to the validator, including any caching.
+     */
+    public static final String VALIDATE = "validate";
+
+    /**
+     * Checks which reject obviously invalid values without running the rules.
+     */
+    public static final String PRE_FILTER = "preFilter";
+
+    /**
+     * Creating a session, inserting the facts and firing the rules.
+     */
+    public static final String RULES = "rules";
+
+    /**
+     * Building the result from the facts after the rules have fired.
+     */
+    public static final String RESULT = "result";
+
+    /**
+     * Writing the result to the response as JSON.
+     */
+    public static final String SERIALIZE = "serialize";
+
+    /**
+     * The order in which stages are listed, which is the order a request
+     * passes through them.
+     */
+    private static final List<String> STAGE_ORDER = Arrays.asList(
+            REQUEST, VALIDATE, PRE_FILTER, RULES, RESULT, SERIALIZE);
+
+    private final ConcurrentMap<String, Stage> stages = new ConcurrentHashMap<String, Stage>();
+
+    /**
+     * Holder for the lazily created default instance.
+     */
+    private static class DefaultHolder {
+        static final StageLatencies INSTANCE = new StageLatencies();
+    }
+
+    /**
+     * @return The latencies which the validators and controllers record into.
+     */
+    public static StageLatencies getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Records how long a stage took.
+     *
+     * @param pipeline The kind of request, such as {@link #IBAN}.
+     * @param stage The stage, such as {@link #RULES}.
+     * @param nanos How long it took.
+     */
+    public void record(String pipeline, String stage, long nanos) {
+        String key = pipeline + '.' + stage;
+        Stage latency = stages.get(key);
+        if (latency == null) {
+            Stage created = new Stage(pipeline, stage);
+            latency = stages.putIfAbsent(key, created);
+            if (latency == null) {
+                latency = created;
+            }
+        }
+        latency.histogram.record(nanos);
+    }
+
+    /**
+     * Records the time from <code>startNanos</code> until now.
+     *
+     * @param startNanos A value of {@link System#nanoTime()} from when the
+     *            stage started.
+     */
+    public void recordSince(String pipeline, String stage, long startNanos) {
+        record(pipeline, stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return The latencies of a stage, or null if none have been recorded.
+     */
+    public LatencyHistogram getLatency(String pipeline, String stage) {
+        Stage latency = stages.get(pipeline + '.' + stage);
+        return latency == null ? null : latency.histogram;
+    }
+
+    /**
+     * @return A snapshot of every stage which has been recorded, by pipeline
+     *         and then in the order that requests pass through the stages.
+     */
+    public List<StageTiming> getStageTimings() {
+        List<Stage> sorted = new ArrayList<Stage>(stages.values());
+        Collections.sort(sorted, new Comparator<Stage>() {
+            @Override
+            public int compare(Stage a, Stage b) {
+                int byPipeline = a.pipeline.compareTo(b.pipeline);
+                if (byPipeline != 0) {
+                    return byPipeline;
+                }
+                int byOrder = order(a.stage) - order(b.stage);
+                return byOrder != 0 ? byOrder : a.stage.compareTo(b.stage);
+            }
+        });
+
+        List<StageTiming> timings = new ArrayList<StageTiming>(sorted.size());
+        for (Stage stage : sorted) {
+            LatencyHistogram histogram = stage.histogram;
+            timings.add(new StageTiming(stage.pipeline, stage.stage,
+                    histogram.getCount(),
+                    histogram.getMean(TimeUnit.MICROSECONDS),
+                    histogram.getPercentile(50, TimeUnit.MICROSECONDS),
+                    histogram.getPercentile(99, TimeUnit.MICROSECONDS),
+                    histogram.getPercentile(99.9, TimeUnit.MICROSECONDS),
+                    histogram.getMax(TimeUnit.MICROSECONDS)));
+        }
+        return timings;
+    }
+
+    private static int order(String stage) {
+        int index = STAGE_ORDER.indexOf(stage);
+        return index < 0 ? STAGE_ORDER.size() : index;
+    }
+
+    /**
+     * Forgets every stage, for instance to start measuring afresh before a
+     * load test.
+     */
+    public void reset() {
+        stages.clear();
+    }
+
+    private static final class Stage {
+        final String pipeline;
+        final String stage;
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        Stage(String pipeline, String stage) {
+            this.pipeline = pipeline;
+            this.stage = stage;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.sctrcd.payments.validation;
+
+/**
+ * A snapshot of the latencies of one stage of handling a validation request,
+ * as recorded by {@link StageLatencies}. Times are in microseconds.
+ *
+ * @author Stephen Masters
+ */
+public class StageTiming {
+
+    private final String pipeline;
+    private final String stage;
+    private final long count;
+    private final long meanMicros;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+    private final long maxMicros;
+
+    public StageTiming(String pipeline, String stage, long count, long meanMicros,
+            long p50Micros, long p99Micros, long p999Micros, long maxMicros) {
+        this.pipeline = pipeline;
+        this.stage = stage;
+        this.count = count;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMeanMicros() {
+        return meanMicros;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getP999Micros() {
+        return p999Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "StageTiming[" + pipeline + "." + stage + ", count=" + count
+                + ", meanMicros=" + meanMicros + ", p50Micros=" + p50Micros
+                + ", p99Micros=" + p99Micros + ", p999Micros=" + p999Micros
+                + ", maxMicros=" + maxMicros + "]";
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.sctrcd.payments.validation;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when anything which validation results depend on has changed,
+ * such as the rules or the country data. Anything holding on to results, such
+ * as a {@link ValidationResultCache}, should discard them.
+ *
+ * @author Stephen Masters
+ */
+public class ValidationDataChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String description;
+
+    /**
+     * @param source
+     *            The object which made the change.
+     * @param description
+     *            What changed, for logging.
+     */
+    public ValidationDataChangedEvent(Object source, String description) {
+        super(source);
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.sctrcd.payments.validation;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+/**
+ * A fixed pool of threads for running validations, so that the rules don't
+ * tie up the servlet container's request threads. Validations wait in a
+ * bounded queue for a free thread. When the queue is full, new validations
+ * are rejected rather than queued, which lets the controller tell clients to
+ * back off instead of letting the queue grow without limit.
+ * <p>
+ * The executor records how many validations were rejected and how long they
+ * waited in the queue before a thread picked them up. See
+ * {@link #getMetrics()}.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+@Service("validationExecutor")
+public class ValidationExecutor implements DisposableBean {
+
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ValidationExecutor() {
+        this(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param threads
+     *            The number of validations which can run at once.
+     * @param queueCapacity
+     *            The number of validations which can wait for a thread
+     *            before any more are rejected.
+     */
+    public ValidationExecutor(int threads, int queueCapacity) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("There must be at least 1 thread: " + threads);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ValidationThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues a validation to run on one of the validation threads.
+     *
+     * @throws RejectedExecutionException
+     *             If the queue is full, or the executor has been shut down.
+     */
+    public void execute(final Runnable validation) {
+        final long queued = System.nanoTime();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    recordWait(System.nanoTime() - queued);
+                    validation.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        started.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long max = maxWaitNanos.get();
+        while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+            max = maxWaitNanos.get();
+        }
+    }
+
+    /**
+     * @return A snapshot of the queue depth, thread usage and wait times.
+     */
+    public ValidationExecutorMetrics getMetrics() {
+        long count = started.get();
+        long total = totalWaitNanos.get();
+        return new ValidationExecutorMetrics(
+                executor.getQueue().size(),
+                queueCapacity,
+                executor.getActiveCount(),
+                executor.getMaximumPoolSize(),
+                executor.getCompletedTaskCount(),
+                rejected.get(),
+                count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(total / count),
+                TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()));
+    }
+
+    /**
+     * Stops accepting validations, and lets those already queued finish.
+     */
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * Names threads so that they can be picked out in thread dumps, and makes
+     * them daemons so that they don't keep the JVM alive.
+     */
+    private static class ValidationThreadFactory implements ThreadFactory {
+        private static final AtomicInteger poolNumber = new AtomicInteger();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+        private final String prefix = "validation-" + poolNumber.incrementAndGet() + "-";
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.sctrcd.payments.validation;
+
+/**
+ * A snapshot of the state of a {@link ValidationExecutor}. Wait times are
+ * how long validations spent in the queue before a thread picked them up, in
+ * microseconds.
+ *
+ * @author Stephen Masters
+ */
+public class ValidationExecutorMetrics {
+
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final int activeThreads;
+    private final int maxThreads;
+    private final long completed;
+    private final long rejected;
+    private final long meanWaitMicros;
+    private final long maxWaitMicros;
+
+    public ValidationExecutorMetrics(int queueDepth, int queueCapacity, int activeThreads,
+            int maxThreads, long completed, long rejected, long meanWaitMicros, long maxWaitMicros) {
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.activeThreads = activeThreads;
+        this.maxThreads = maxThreads;
+        this.completed = completed;
+        this.rejected = rejected;
+        this.meanWaitMicros = meanWaitMicros;
+        this.maxWaitMicros = maxWaitMicros;
+    }
+
+    /**
+     * @return The number of validations waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getActiveThreads() {
+        return activeThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return The number of validations turned away because the queue was
+     *         full.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getMeanWaitMicros() {
+        return meanWaitMicros;
+    }
+
+    public long getMaxWaitMicros() {
+        return maxWaitMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationExecutorMetrics[queueDepth=" + queueDepth + "/" + queueCapacity
+                + ", activeThreads=" + activeThreads + "/" + maxThreads
+                + ", completed=" + completed + ", rejected=" + rejected
+                + ", meanWaitMicros=" + meanWaitMicros + ", maxWaitMicros=" + maxWaitMicros + "]";
+    }
+
+}
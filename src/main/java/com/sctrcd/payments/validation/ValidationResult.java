@@ -5,6 +5,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.sctrcd.drools.util.Activation;
 import com.sctrcd.payments.facts.PaymentValidationAnnotation;
 import com.sctrcd.payments.facts.AnnotationLevel;
 
@@ -13,6 +16,7 @@ public abstract class ValidationResult {
 
     private boolean isValid = true;
     private List<PaymentValidationAnnotation> annotations = new ArrayList<PaymentValidationAnnotation>();
+    private List<Activation> ruleTrace;
 
     public ValidationResult() {
     }
@@ -50,6 +54,20 @@ public abstract class ValidationResult {
         rejectIfAnnotationRejects(annotations);
     }
 
+    /**
+     * The rules which fired during validation, in the order they fired. This
+     * is only populated when tracing was requested, and is left out of the
+     * JSON representation otherwise.
+     */
+    @JsonInclude(Include.NON_NULL)
+    public List<Activation> getRuleTrace() {
+        return ruleTrace;
+    }
+
+    public void setRuleTrace(List<Activation> ruleTrace) {
+        this.ruleTrace = ruleTrace;
+    }
+
     /**
      * For every annotation added to the result, 
      * @param annotation
@@ -0,0 +1,241 @@
+package com.sctrcd.payments.validation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of validation results, bounded in both size and age. When it is
+ * full, the least recently used result is evicted to make room for the next.
+ * Results older than the time to live are treated as missing, and are removed
+ * when they are next looked up.
+ * <p>
+ * The cache keeps counts of hits, misses, evictions and expiries, so that its
+ * size and time to live can be tuned against real traffic.
+ * </p>
+ * <p>
+ * A result which took a while to produce may have been produced from data
+ * which changed in the meantime. So callers read the generation of the cache
+ * before producing a result, and put it with that generation. If the cache
+ * has been invalidated since, the result is stale and is not put.
+ * </p>
+ * <p>
+ * Results are mutable, so callers should not hand out the instances they put
+ * into the cache, or the instances they get back from it. See the caching
+ * validators for examples.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class ValidationResultCache<R extends ValidationResult> {
+
+    private final int maxSize;
+    private final long timeToLiveNanos;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expiries = new AtomicLong();
+
+    /**
+     * A <code>LinkedHashMap</code> in access order, so that iterating from the
+     * start gives the least recently used entries first. All access is
+     * synchronized on the map.
+     */
+    private final LinkedHashMap<String, Entry<R>> entries;
+
+    /**
+     * Incremented each time the cache is invalidated. Guarded by the map.
+     */
+    private long generation;
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize
+     *            The maximum number of results to hold.
+     * @param timeToLive
+     *            How long a result may be used for after it was put in the
+     *            cache.
+     * @param unit
+     *            The unit of the time to live.
+     */
+    public ValidationResultCache(int maxSize, long timeToLive, TimeUnit unit) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1: " + maxSize);
+        }
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Time to live must be positive: " + timeToLive);
+        }
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.entries = new LinkedHashMap<String, Entry<R>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<R>> eldest) {
+                if (size() > ValidationResultCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return The cached result for a key, or null if there isn't one, or it
+     *         has expired.
+     */
+    public R get(String key) {
+        long now = nanoTime();
+        synchronized (entries) {
+            Entry<R> entry = entries.get(key);
+            if (entry != null && now - entry.created >= timeToLiveNanos) {
+                entries.remove(key);
+                expiries.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.result;
+        }
+    }
+
+    public void put(String key, R result) {
+        Entry<R> entry = new Entry<R>(result, nanoTime());
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Puts a result, unless the cache has been invalidated since it was
+     * produced.
+     *
+     * @param generation
+     *            The {@link #getGeneration()} read before the result was
+     *            produced.
+     * @return True if the result was put.
+     */
+    public boolean put(String key, R result, long generation) {
+        Entry<R> entry = new Entry<R>(result, nanoTime());
+        synchronized (entries) {
+            if (generation != this.generation) {
+                return false;
+            }
+            entries.put(key, entry);
+            return true;
+        }
+    }
+
+    /**
+     * @return The number of times the cache has been invalidated.
+     */
+    public long getGeneration() {
+        synchronized (entries) {
+            return generation;
+        }
+    }
+
+    /**
+     * Removes every result, and moves on to the next generation, so that
+     * results which are still being produced from the old data aren't put.
+     * This should be called whenever anything the results depend on changes,
+     * such as the rules or the list of countries.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            generation++;
+        }
+    }
+
+    /**
+     * Removes every expired result, rather than waiting for them to be looked
+     * up.
+     *
+     * @return The number of results removed.
+     */
+    public int removeExpired() {
+        long now = nanoTime();
+        int removed = 0;
+        synchronized (entries) {
+            for (Iterator<Entry<R>> it = entries.values().iterator(); it.hasNext();) {
+                if (now - it.next().created >= timeToLiveNanos) {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        expiries.addAndGet(removed);
+        return removed;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getTimeToLive(TimeUnit unit) {
+        return unit.convert(timeToLiveNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of results removed to make room for others.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return The number of results removed because they were too old.
+     */
+    public long getExpiries() {
+        return expiries.get();
+    }
+
+    /**
+     * The current time, which tests can override to avoid waiting for results
+     * to expire.
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationResultCache[size=" + size() + ", maxSize=" + maxSize
+                + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", evictions=" + getEvictions() + ", expiries=" + getExpiries() + "]";
+    }
+
+    private static final class Entry<R> {
+        final R result;
+        final long created;
+
+        Entry(R result, long created) {
+            this.result = result;
+            this.created = created;
+        }
+    }
+
+}
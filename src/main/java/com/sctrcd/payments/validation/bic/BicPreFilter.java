@@ -0,0 +1,75 @@
+package com.sctrcd.payments.validation.bic;
+
+import com.sctrcd.payments.facts.AnnotationLevel;
+import com.sctrcd.payments.facts.BicValidationRequest;
+import com.sctrcd.payments.facts.PaymentAttribute;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+
+/**
+ * Rejects BICs which don't follow the ISO 9362 structure before they get
+ * anywhere near the rule engine. The rules in <code>BicRules.drl</code> only
+ * check the country of a well structured BIC, so a badly structured one gets
+ * exactly one annotation, which this raises with the same rule name and
+ * message.
+ * <p>
+ * The rules can't handle a missing BIC at all, so that gets an annotation of
+ * its own.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class BicPreFilter {
+
+    public static final String NOT_DEFINED = "BIC was not defined.";
+    public static final String INVALID_STRUCTURE = "BIC doesn't follow ISO 9362 structure.";
+
+    /**
+     * If the BIC on a request is missing or badly structured, annotates the
+     * request in the same way as the rules would.
+     *
+     * @return True if the request was rejected, in which case there is no need
+     *         to run the rules.
+     */
+    public boolean reject(BicValidationRequest request) {
+        String bic = request.getBic();
+        if (bic == null) {
+            return rejectMissing(request);
+        }
+        if (!isWellStructured(bic)) {
+            request.addAnnotation(annotation(request, INVALID_STRUCTURE,
+                    "The BIC doesn't follow the standard ISO 9362 structure."));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Only rejects a request with no BIC, which the rules can't handle at
+     * all, leaving the structure to be checked by the rules.
+     *
+     * @return True if the request was rejected.
+     */
+    public boolean rejectMissing(BicValidationRequest request) {
+        if (request.getBic() != null) {
+            return false;
+        }
+        request.addAnnotation(annotation(request, NOT_DEFINED, "The BIC was not defined."));
+        return true;
+    }
+
+    /**
+     * The same check as the rule "BIC follows ISO 9362 structure.".
+     *
+     * @see Iso9362#isWellStructured(CharSequence)
+     */
+    static boolean isWellStructured(String bic) {
+        return Iso9362.isWellStructured(bic);
+    }
+
+    private static PaymentValidationAnnotation annotation(BicValidationRequest request,
+            String ruleName, String message) {
+        return new PaymentValidationAnnotation(request, ruleName, AnnotationLevel.REJECT,
+                message, PaymentAttribute.bic);
+    }
+
+}
@@ -4,4 +4,13 @@ public interface BicValidator {
 
     public BicValidationResult validate(String bic);
     
+    /**
+     * Validates a BIC, optionally returning a trace of the rules which fired
+     * with the result.
+     * 
+     * @param bic The BIC to validate.
+     * @param trace Whether to populate the rule trace on the result.
+     */
+    public BicValidationResult validate(String bic, boolean trace);
+    
 }
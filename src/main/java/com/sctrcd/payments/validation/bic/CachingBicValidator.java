@@ -0,0 +1,105 @@
+package com.sctrcd.payments.validation.bic;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import com.sctrcd.payments.validation.ValidationDataChangedEvent;
+import com.sctrcd.payments.validation.ValidationResultCache;
+
+/**
+ * Caches the results of another {@link BicValidator}, so that the same BIC
+ * being validated over and over again is only validated once.
+ * <p>
+ * Results are keyed on the BIC with its spaces removed, which is all that the
+ * validators ever see of it.
+ * </p>
+ * <p>
+ * Traced requests always go to the validator, as the trace is the point of
+ * them, and their results are not cached. Every result is returned as a copy, with
+ * the BIC exactly as it was given, so that callers can't modify the cached
+ * result. The cache is cleared whenever a {@link ValidationDataChangedEvent}
+ * is published, and a result which was being produced at the time is not
+ * cached.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+@Service("cachingBicValidator")
+public class CachingBicValidator implements BicValidator, ApplicationListener<ValidationDataChangedEvent> {
+
+    private static Logger log = LoggerFactory.getLogger(CachingBicValidator.class);
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_TIME_TO_LIVE_MINUTES = 10;
+
+    private final BicValidator validator;
+    private final ValidationResultCache<BicValidationResult> cache;
+
+    @Autowired
+    public CachingBicValidator(@Qualifier("simpleBicValidator") BicValidator validator) {
+        this(validator, new ValidationResultCache<BicValidationResult>(
+                DEFAULT_MAX_SIZE, DEFAULT_TIME_TO_LIVE_MINUTES, TimeUnit.MINUTES));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param validator
+     *            The validator to pass cache misses to.
+     * @param cache
+     *            The cache, configured with whatever size and time to live
+     *            are appropriate.
+     */
+    public CachingBicValidator(BicValidator validator, ValidationResultCache<BicValidationResult> cache) {
+        this.validator = validator;
+        this.cache = cache;
+    }
+
+    @Override
+    public BicValidationResult validate(String bic) {
+        return validate(bic, false);
+    }
+
+    @Override
+    public BicValidationResult validate(String bic, boolean trace) {
+        if (trace || bic == null) {
+            return validator.validate(bic, trace);
+        }
+        String key = bic.replace(" ", "");
+        BicValidationResult result = cache.get(key);
+        if (result == null) {
+            // The data may change while this is being validated, in which
+            // case the result is returned but not cached.
+            long generation = cache.getGeneration();
+            result = validator.validate(bic, false);
+            cache.put(key, result, generation);
+        }
+        return copy(result, bic);
+    }
+
+    /**
+     * Discards every cached result.
+     */
+    @Override
+    public void onApplicationEvent(ValidationDataChangedEvent event) {
+        cache.invalidateAll();
+        log.info("Cleared cached BIC results: {}", event.getDescription());
+    }
+
+    public ValidationResultCache<BicValidationResult> getCache() {
+        return cache;
+    }
+
+    private static BicValidationResult copy(BicValidationResult result, String bic) {
+        BicValidationResult copy = new BicValidationResult(bic, result.isValid());
+        copy.addAnnotations(result.getAnnotations());
+        return copy;
+    }
+
+}
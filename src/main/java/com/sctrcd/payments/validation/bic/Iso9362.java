@@ -0,0 +1,131 @@
+package com.sctrcd.payments.validation.bic;
+
+import com.sctrcd.payments.validation.CountryCodeIndex;
+
+/**
+ * Checks BICs against the ISO 9362 structure, in the same way as the rules in
+ * <code>BicRules.drl</code>, but without a regular expression, upper-casing
+ * or a substring, so a check allocates nothing.
+ * <p>
+ * Each character is looked up in a table of ASCII character classes, and
+ * compared with the class allowed at its position: letters for the bank and
+ * country codes, and letters or digits for the location and branch codes.
+ * Anything outside ASCII fails, as it does against <code>[a-zA-Z]</code>.
+ * Spaces are skipped, as a <code>BicValidationRequest</code> strips them out
+ * before the rules see the BIC. The country code is then looked up in a
+ * {@link CountryCodeIndex}, which only contains upper-case codes, so as with
+ * the rules, a lower-case BIC is well structured but not in a real country.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public final class Iso9362 {
+
+    /**
+     * The outcome of checking a BIC, in the order the checks are made. Only
+     * the first failure is reported, as the rules only check the country of a
+     * well structured BIC.
+     */
+    public enum Result {
+        VALID, NOT_DEFINED, INVALID_STRUCTURE, INVALID_COUNTRY
+    }
+
+    public static final int SHORT_LENGTH = 8;
+    public static final int LONG_LENGTH = 11;
+    public static final int COUNTRY_OFFSET = 4;
+
+    private static final byte LETTER = 1;
+    private static final byte DIGIT = 2;
+    private static final byte LETTER_OR_DIGIT = LETTER | DIGIT;
+
+    private static final byte[] CHAR_CLASSES = new byte[128];
+
+    /**
+     * The character classes allowed at each position of an 11 character BIC,
+     * of which an 8 character BIC is a prefix.
+     */
+    private static final byte[] ALLOWED = {
+        LETTER, LETTER, LETTER, LETTER, // Bank
+        LETTER, LETTER, // Country
+        LETTER_OR_DIGIT, LETTER_OR_DIGIT, // Location
+        LETTER_OR_DIGIT, LETTER_OR_DIGIT, LETTER_OR_DIGIT // Branch
+    };
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++) {
+            CHAR_CLASSES[c] = LETTER;
+            CHAR_CLASSES[Character.toLowerCase(c)] = LETTER;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CHAR_CLASSES[c] = DIGIT;
+        }
+    }
+
+    private Iso9362() {
+    }
+
+    /**
+     * The same check as the rule "BIC follows ISO 9362 structure.", which
+     * matches <code>[a-zA-Z]{6}([0-9a-zA-Z]{2}|[0-9a-zA-Z]{5})</code>,
+     * ignoring spaces.
+     */
+    public static boolean isWellStructured(CharSequence bic) {
+        int position = 0;
+        for (int i = 0; i < bic.length(); i++) {
+            char c = bic.charAt(i);
+            if (c == ' ') {
+                continue;
+            }
+            if (position == LONG_LENGTH || c >= CHAR_CLASSES.length
+                    || (CHAR_CLASSES[c] & ALLOWED[position]) == 0) {
+                return false;
+            }
+            position++;
+        }
+        return position == SHORT_LENGTH || position == LONG_LENGTH;
+    }
+
+    /**
+     * Checks a BIC's structure, and then its country.
+     *
+     * @param countries
+     *            The countries a BIC may be in.
+     */
+    public static Result check(String bic, CountryCodeIndex countries) {
+        if (bic == null) {
+            return Result.NOT_DEFINED;
+        }
+        if (!isWellStructured(bic)) {
+            return Result.INVALID_STRUCTURE;
+        }
+        int i = indexOf(bic, COUNTRY_OFFSET);
+        int j = indexOf(bic, COUNTRY_OFFSET + 1);
+        if (!countries.contains(bic.charAt(i), bic.charAt(j))) {
+            return Result.INVALID_COUNTRY;
+        }
+        return Result.VALID;
+    }
+
+    /**
+     * @return The index in the string of the character at a position of the
+     *         BIC once spaces are removed.
+     */
+    private static int indexOf(String bic, int position) {
+        int i = 0;
+        while (true) {
+            if (bic.charAt(i) != ' ' && position-- == 0) {
+                return i;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * @return Whether the BIC is well structured, and in one of the countries
+     *         of {@link CountryCodeIndex#allCountries()}.
+     */
+    public static boolean isValid(String bic) {
+        return check(bic, CountryCodeIndex.allCountries()) == Result.VALID;
+    }
+
+}
@@ -1,74 +1,143 @@
 package com.sctrcd.payments.validation.bic;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-import org.drools.KnowledgeBase;
 import org.drools.builder.ResourceType;
 import org.drools.conf.EventProcessingOption;
-import org.drools.runtime.StatelessKnowledgeSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import com.sctrcd.drools.util.Activation;
 import com.sctrcd.drools.util.DroolsResource;
-import com.sctrcd.drools.util.DroolsUtil;
+import com.sctrcd.drools.util.KnowledgeBaseManager;
+import com.sctrcd.drools.util.KnowledgeBaseSwap;
+import com.sctrcd.drools.util.KnowledgeBaseSwapListener;
 import com.sctrcd.drools.util.ResourcePathType;
-import com.sctrcd.drools.util.TrackingAgendaEventListener;
-import com.sctrcd.drools.util.TrackingWorkingMemoryEventListener;
+import com.sctrcd.drools.util.RuleMetrics;
+import com.sctrcd.drools.util.RuleMetricsAgendaEventListener;
 import com.sctrcd.payments.enums.CountryEnum;
 import com.sctrcd.payments.facts.BicValidationRequest;
 import com.sctrcd.payments.facts.Country;
+import com.sctrcd.payments.validation.CountryCodeIndex;
+import com.sctrcd.payments.validation.StageLatencies;
 
 /**
  * 
  */
 @Service("ruleBasedBicValidator")
-public class RuleBasedBicValidator implements BicValidator {
+public class RuleBasedBicValidator implements BicValidator, KnowledgeBaseSwapListener {
 
-    private KnowledgeBase kbase;
+    private static Logger log = LoggerFactory.getLogger(RuleBasedBicValidator.class);
+    
+    private final KnowledgeBaseManager rules;
+    
+    private StageLatencies latencies = StageLatencies.getDefault();
+    
+    private final BicPreFilter preFilter = new BicPreFilter();
+    
+    /**
+     * Whether the pre-filter still agrees with the rules, which it only
+     * knows for the rules packaged with the application.
+     */
+    private volatile boolean preFiltered = true;
     
     public final List<Country> countries = new ArrayList<Country>();
     
     public RuleBasedBicValidator() {
-        this.kbase = DroolsUtil.createKnowledgeBase(
-                new DroolsResource[]{ 
-                        new DroolsResource("rules/payments/validation/BicRules.drl", 
-                                ResourcePathType.CLASSPATH, 
-                                ResourceType.DRL)
-                }, 
-                EventProcessingOption.CLOUD);
+        DroolsResource[] resources = new DroolsResource[]{ 
+                new DroolsResource("rules/payments/validation/BicRules.drl", 
+                        ResourcePathType.CLASSPATH, 
+                        ResourceType.DRL)
+        };
         for (CountryEnum c : CountryEnum.values()) {
             countries.add(new Country(c.isoCode, c.name));
         }
+        this.rules = new KnowledgeBaseManager("BIC rules", resources, EventProcessingOption.CLOUD, 
+                Collections.<String, Object> singletonMap("countryIndex", new CountryCodeIndex(countries)),
+                new RuleMetricsAgendaEventListener(RuleMetrics.getDefault()));
+        // Rule metrics are opt-in, so requests use the shared session unless
+        // a sample rate is set through getKnowledgeBaseManager().
+        this.rules.setListenerSampleRate(0);
+        this.rules.addSwapListener(this);
     }
         
 	@Override
 	public BicValidationResult validate(String bic) {
-	    StatelessKnowledgeSession ksession = kbase.newStatelessKnowledgeSession();
-	    
-	    ksession.setGlobal("countryList", countries);
-	    
-	    TrackingAgendaEventListener agendaEventListener = 
-	            new TrackingAgendaEventListener();
-	    TrackingWorkingMemoryEventListener workingMemoryEventListener = 
-	            new TrackingWorkingMemoryEventListener();
-	    ksession.addEventListener(agendaEventListener);
-	    ksession.addEventListener(workingMemoryEventListener);
-	    
+	    return validate(bic, false);
+	}
+	
+	@Override
+	public BicValidationResult validate(String bic, boolean trace) {
 	    BicValidationRequest request = new BicValidationRequest(bic); 
 	    
-	    List<Object> facts = new ArrayList<Object>();
-	    facts.add(request);
-	    
-		ksession.execute(facts);
+	    List<Activation> ruleTrace = null;
+	    long start = System.nanoTime();
+	    boolean rejected = preFiltered ? preFilter.reject(request) : preFilter.rejectMissing(request);
+	    latencies.recordSince(StageLatencies.BIC, StageLatencies.PRE_FILTER, start);
+	    if (rejected) {
+	        // Badly structured, so no rules need to fire.
+	        if (trace) {
+	            ruleTrace = Collections.emptyList();
+	        }
+	    } else {
+	        start = System.nanoTime();
+	        if (trace) {
+	            ruleTrace = rules.getExecutor().executeAndTrace(request);
+	        } else {
+	            rules.getExecutor().execute(request);
+	        }
+	        latencies.recordSince(StageLatencies.BIC, StageLatencies.RULES, start);
+	    }
 		
+	    start = System.nanoTime();
 		BicValidationResult result = new BicValidationResult();
 		result.setBic(bic);
 		result.addAnnotations(request.getAnnotations());
-		
-		ksession.removeEventListener(agendaEventListener);
-		ksession.removeEventListener(workingMemoryEventListener);
+		result.setRuleTrace(ruleTrace);
+		latencies.recordSince(StageLatencies.BIC, StageLatencies.RESULT, start);
 		
 		return result;
 	}
 	
+	/**
+	 * @return The manager holding the current rules, which can reload them
+	 *         when they change.
+	 */
+	public KnowledgeBaseManager getKnowledgeBaseManager() {
+	    return rules;
+	}
+
+	/**
+	 * The pre-filter makes the same checks as the rules packaged with the
+	 * application. Once other rules have been swapped in, it can't be relied
+	 * on to agree with them, so from then on every BIC goes to the rules,
+	 * except a missing one, which the rules can't handle.
+	 */
+	@Override
+	public void knowledgeBaseSwapped(KnowledgeBaseManager manager, KnowledgeBaseSwap swap) {
+	    if (preFiltered) {
+	        preFiltered = false;
+	        log.info("Bypassing the BIC pre-filter, as new rules have been swapped in.");
+	    }
+	}
+
+	/**
+	 * @return Whether obviously invalid BICs are rejected without running
+	 *         the rules.
+	 */
+	public boolean isPreFiltered() {
+	    return preFiltered;
+	}
+
+	public StageLatencies getStageLatencies() {
+	    return latencies;
+	}
+
+	public void setStageLatencies(StageLatencies latencies) {
+	    this.latencies = latencies;
+	}
+	
 }
@@ -2,8 +2,12 @@ package com.sctrcd.payments.validation.bic;
 
 import org.springframework.stereotype.Service;
 
-import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+import com.sctrcd.payments.enums.CountryEnum;
 import com.sctrcd.payments.facts.AnnotationLevel;
+import com.sctrcd.payments.facts.BicValidationRequest;
+import com.sctrcd.payments.facts.PaymentAttribute;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+import com.sctrcd.payments.validation.CountryCodeIndex;
 
 /**
  * A Business Identifier Code (BIC), also known as a BIC or SWIFT-BIC,
@@ -25,41 +29,76 @@ import com.sctrcd.payments.facts.AnnotationLevel;
  * </pre>   
  * Where an 8-digit code is given, it may be assumed that it
  * refers to the primary office.
+ * <p>
+ * The checks are made by {@link Iso9362}, and agree with those made by the
+ * rules in <code>BicRules.drl</code>.
+ * </p>
  */
 @Service("simpleBicValidator")
-public class SimpleBicValidator {
+public class SimpleBicValidator implements BicValidator {
+
+    public static final String INVALID_COUNTRY = "BIC doesn't contain a valid country ISO code.";
+
+    private final CountryCodeIndex countries;
+
+    private final BicPreFilter preFilter = new BicPreFilter();
 
     /**
-     * Private constructor to prevent instantiation. Methods are static.
+     * Default constructor permits the countries defined in the
+     * {@link CountryEnum} enum, as the rules do.
      */
     public SimpleBicValidator() {
+        this(CountryCodeIndex.allCountries());
+    }
+
+    public SimpleBicValidator(CountryCodeIndex countries) {
+        this.countries = countries;
     }
-    
+
     /**
-     * Validates that the BIC follows the ISO_9362 structure.
+     * Validates that the BIC follows the ISO_9362 structure, and is for a
+     * known country.
      */
     public static boolean isValid(String bic) {
-        int len = bic.length();
-        
-        if (len != 8 || len != 11) {
-            return false;
-        }
-        return bic.toUpperCase().matches("/[a-zA-Z]{6}([0-9a-zA-Z]{2}|[0-9a-zA-Z]{5})/");
+        return Iso9362.isValid(bic);
     }
-    
+
     /**
-     * Validates that the BIC follows the ISO_9362 structure.
+     * Validates the BIC with the same result as the {@link RuleBasedBicValidator},
+     * without running any rules. A valid BIC gets a result with no
+     * annotations, and an invalid one gets the annotation of the rule which
+     * would have rejected it.
      */
+    @Override
     public BicValidationResult validate(String bic) {
-        if (isValid(bic)) {
-            return new BicValidationResult(bic, true);
-        } else {
-            return new BicValidationResult(
-                    bic, true, new PaymentValidationAnnotation(
-                            "ISO_9362 check", 
-                            AnnotationLevel.REJECT, 
-                            "BIC is not valid."));
+        BicValidationResult result = new BicValidationResult(bic, true);
+        switch (Iso9362.check(bic, countries)) {
+        case VALID:
+            break;
+        case INVALID_COUNTRY:
+            result.addAnnotation(new PaymentValidationAnnotation(
+                    INVALID_COUNTRY,
+                    AnnotationLevel.REJECT,
+                    "The BIC does not contain a valid 2-character country code. '"
+                            + bic.replace(" ", "").substring(Iso9362.COUNTRY_OFFSET, Iso9362.COUNTRY_OFFSET + 2)
+                            + "' is not a country.",
+                    PaymentAttribute.bic));
+            break;
+        default:
+            BicValidationRequest request = new BicValidationRequest(bic);
+            preFilter.reject(request);
+            result.addAnnotations(request.getAnnotations());
         }
+        return result;
     }
-    
+
+    /**
+     * No rules are involved in this validation, so there is never anything to
+     * trace.
+     */
+    @Override
+    public BicValidationResult validate(String bic, boolean trace) {
+        return validate(bic);
+    }
+
 }
@@ -0,0 +1,318 @@
+package com.sctrcd.payments.validation.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sctrcd.payments.validation.BulkValidationEngine;
+import com.sctrcd.payments.validation.ChunkValidator;
+
+/**
+ * Validates every line of a file, writing a line of output for each one, in
+ * the same order, to another file.
+ * <p>
+ * The input file is memory-mapped and split into line-aligned chunks by a
+ * {@link LineChunker}. Each chunk is decoded, validated and encoded again by
+ * a task of a {@link BulkValidationEngine}, so all of that happens in
+ * parallel, and only the writing of the output happens on the calling thread.
+ * Only a couple of chunks per thread are in flight at a time, so files much
+ * larger than the heap can be validated.
+ * </p>
+ * <p>
+ * Progress is logged each second, and the throughput of the whole run is
+ * returned as a {@link Summary}.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class BulkFileValidator {
+
+    private static Logger log = LoggerFactory.getLogger(BulkFileValidator.class);
+
+    public static final Charset UTF8 = Charset.forName("UTF-8");
+    public static final int OUTPUT_BUFFER_BYTES = 1024 * 1024;
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+
+    private final ChunkValidator<String, String> lineValidator;
+    private int parallelism = BulkValidationEngine.DEFAULT_PARALLELISM;
+    private int chunkBytes = LineChunker.DEFAULT_CHUNK_BYTES;
+    private int mapBytes = LineChunker.DEFAULT_MAP_BYTES;
+    private boolean header;
+
+    /**
+     * @param lineValidator
+     *            Turns each chunk of input lines into as many output lines.
+     *            See {@link CsvLineValidators}.
+     */
+    public BulkFileValidator(ChunkValidator<String, String> lineValidator) {
+        this.lineValidator = lineValidator;
+    }
+
+    /**
+     * Validates each line of the input. Blank lines are skipped, and if the
+     * input has a header, it is copied to the output with the names of the
+     * result columns added.
+     *
+     * @return The number of lines validated and how long it took.
+     */
+    public Summary validate(File input, File output) throws IOException {
+        BulkValidationEngine engine = new BulkValidationEngine(parallelism, 1, parallelism * 2);
+        FileInputStream in = new FileInputStream(input);
+        FileOutputStream out = new FileOutputStream(output);
+        try {
+            FileChannel inChannel = in.getChannel();
+            ChannelWriter writer = new ChannelWriter(out.getChannel());
+            long start = 0;
+            if (header) {
+                byte[] line = firstLine(inChannel);
+                start = line.length;
+                String names = new String(line, UTF8).trim();
+                writer.write((names + "," + CsvLineValidators.RESULT_HEADER + "\n").getBytes(UTF8));
+            }
+
+            Summary summary = new Summary(System.currentTimeMillis());
+            long lastReport = summary.startMillis;
+            Iterator<ValidatedChunk> results = engine.validate(
+                    new LineChunker(inChannel, start, chunkBytes, mapBytes), new LinesOfChunk());
+            while (results.hasNext()) {
+                ValidatedChunk chunk = results.next();
+                writer.write(chunk.output);
+                summary.add(chunk.records, chunk.inputBytes);
+                long now = System.currentTimeMillis();
+                if (now - lastReport >= PROGRESS_INTERVAL_MILLIS) {
+                    lastReport = now;
+                    summary.finish(now);
+                    log.info("Progress: {}", summary);
+                }
+            }
+            writer.flush();
+            summary.finish(System.currentTimeMillis());
+            return summary;
+        } finally {
+            engine.shutdown();
+            try {
+                in.close();
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * @return The first line of the channel, including its newline.
+     */
+    private static byte[] firstLine(FileChannel channel) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = 0;
+        int read;
+        while ((read = channel.read(buffer, position)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    line.write(buffer.array(), 0, i + 1);
+                    return line.toByteArray();
+                }
+            }
+            line.write(buffer.array(), 0, read);
+            position += read;
+            buffer.clear();
+        }
+        return line.toByteArray();
+    }
+
+    /**
+     * Decodes a chunk of the input into lines, validates them and encodes the
+     * output lines, all on a thread of the engine.
+     */
+    private class LinesOfChunk implements ChunkValidator<ByteBuffer, ValidatedChunk> {
+
+        @Override
+        public List<ValidatedChunk> validate(List<ByteBuffer> chunks) {
+            List<ValidatedChunk> results = new ArrayList<ValidatedChunk>(chunks.size());
+            for (ByteBuffer chunk : chunks) {
+                int inputBytes = chunk.remaining();
+                List<String> lines = lines(UTF8.decode(chunk));
+                List<String> outputLines = lineValidator.validate(lines);
+                if (outputLines.size() != lines.size()) {
+                    throw new IllegalStateException("Expected " + lines.size()
+                            + " output lines but got " + outputLines.size());
+                }
+                StringBuilder sb = new StringBuilder(inputBytes + lines.size() * 16);
+                for (String line : outputLines) {
+                    sb.append(line).append('\n');
+                }
+                results.add(new ValidatedChunk(sb.toString().getBytes(UTF8), lines.size(), inputBytes));
+            }
+            return results;
+        }
+
+        private List<String> lines(CharBuffer chars) {
+            List<String> lines = new ArrayList<String>();
+            int start = 0;
+            int length = chars.length();
+            for (int i = 0; i <= length; i++) {
+                if (i == length || chars.charAt(i) == '\n') {
+                    int end = i;
+                    if (end > start && chars.charAt(end - 1) == '\r') {
+                        end--;
+                    }
+                    if (end > start) {
+                        String line = chars.subSequence(start, end).toString();
+                        if (!line.trim().isEmpty()) {
+                            lines.add(line);
+                        }
+                    }
+                    start = i + 1;
+                }
+            }
+            return lines;
+        }
+
+    }
+
+    private static class ValidatedChunk {
+        private final byte[] output;
+        private final int records;
+        private final int inputBytes;
+
+        private ValidatedChunk(byte[] output, int records, int inputBytes) {
+            this.output = output;
+            this.records = records;
+            this.inputBytes = inputBytes;
+        }
+    }
+
+    /**
+     * Collects output in a direct buffer, so that the channel is written in
+     * large blocks however the output is split.
+     */
+    private static class ChannelWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_BYTES);
+
+        private ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * How many records were validated, and how quickly.
+     */
+    public static class Summary {
+        private final long startMillis;
+        private long endMillis;
+        private long records;
+        private long bytes;
+
+        private Summary(long startMillis) {
+            this.startMillis = startMillis;
+            this.endMillis = startMillis;
+        }
+
+        private void add(long records, long bytes) {
+            this.records += records;
+            this.bytes += bytes;
+        }
+
+        private void finish(long endMillis) {
+            this.endMillis = endMillis;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedMillis() {
+            return endMillis - startMillis;
+        }
+
+        public double getRecordsPerSecond() {
+            return records * 1000.0 / Math.max(1, getElapsedMillis());
+        }
+
+        public double getMegabytesPerSecond() {
+            return bytes * 1000.0 / (1024 * 1024) / Math.max(1, getElapsedMillis());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d records (%.1f MB) in %d ms: %.0f records/s, %.1f MB/s",
+                    records, bytes / (1024.0 * 1024), getElapsedMillis(),
+                    getRecordsPerSecond(), getMegabytesPerSecond());
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getChunkBytes() {
+        return chunkBytes;
+    }
+
+    public void setChunkBytes(int chunkBytes) {
+        this.chunkBytes = chunkBytes;
+    }
+
+    public int getMapBytes() {
+        return mapBytes;
+    }
+
+    public void setMapBytes(int mapBytes) {
+        this.mapBytes = mapBytes;
+    }
+
+    public boolean isHeader() {
+        return header;
+    }
+
+    /**
+     * @param header
+     *            Whether the first line of the input is a header rather than
+     *            a record.
+     */
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.sctrcd.payments.validation.cli;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.sctrcd.payments.validation.ChunkValidator;
+import com.sctrcd.payments.validation.iban.SimpleIbanValidator;
+import com.sctrcd.payments.validation.payment.RuleBasedPaymentValidator;
+
+/**
+ * Validates a CSV extract of IBANs or payments from the command line, without
+ * starting the web application. For instance:
+ *
+ * <pre>
+ * java -cp ... com.sctrcd.payments.validation.cli.BulkValidationCli \
+ *     payment payments.csv results.csv --header --threads 8
+ * </pre>
+ *
+ * IBANs are validated by the {@link SimpleIbanValidator}, as checking the
+ * country, length and checksum needs no rules. Payments are validated by the
+ * {@link RuleBasedPaymentValidator}, a chunk of lines at a time. See
+ * {@link CsvLineValidators} for the format of each file.
+ *
+ * @author Stephen Masters
+ */
+public class BulkValidationCli {
+
+    private static final String USAGE = "Usage: BulkValidationCli (iban|payment) <input> <output>"
+            + " [--header] [--threads n] [--chunk-bytes n]";
+
+    public static void main(String[] args) {
+        try {
+            BulkFileValidator.Summary summary = run(args);
+            System.out.println("Validated " + summary);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Validation failed: " + e);
+            System.exit(1);
+        } catch (RuntimeException e) {
+            // Bad records are reported in the output, so this is a fault in
+            // the validators themselves.
+            System.err.println("Validation failed: " + e);
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Validates the file named by the arguments.
+     *
+     * @throws IllegalArgumentException
+     *             If the arguments are not understood.
+     */
+    public static BulkFileValidator.Summary run(String... args) throws IOException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Expected a record type, an input and an output.");
+        }
+        BulkFileValidator validator = new BulkFileValidator(lineValidator(args[0]));
+        File input = new File(args[1]);
+        File output = new File(args[2]);
+        if (!input.isFile()) {
+            throw new IllegalArgumentException("No such file: " + input);
+        }
+        for (int i = 3; i < args.length; i++) {
+            if ("--header".equals(args[i])) {
+                validator.setHeader(true);
+            } else if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                validator.setParallelism(positive(args[i], args[++i]));
+            } else if ("--chunk-bytes".equals(args[i]) && i + 1 < args.length) {
+                int chunkBytes = positive(args[i], args[++i]);
+                validator.setChunkBytes(chunkBytes);
+                validator.setMapBytes(Math.max(chunkBytes, validator.getMapBytes()));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        return validator.validate(input, output);
+    }
+
+    private static ChunkValidator<String, String> lineValidator(String type) {
+        if ("iban".equals(type)) {
+            return CsvLineValidators.ibans(new SimpleIbanValidator());
+        } else if ("payment".equals(type)) {
+            return CsvLineValidators.payments(new RuleBasedPaymentValidator());
+        }
+        throw new IllegalArgumentException("Unknown record type: " + type);
+    }
+
+    private static int positive(String option, String value) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+        throw new IllegalArgumentException(option + " must be a positive number: " + value);
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.sctrcd.payments.validation.cli;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sctrcd.payments.facts.Payment;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+import com.sctrcd.payments.validation.ChunkValidator;
+import com.sctrcd.payments.validation.iban.IbanValidationResult;
+import com.sctrcd.payments.validation.iban.IbanValidator;
+import com.sctrcd.payments.validation.payment.FxPaymentValidationResult;
+import com.sctrcd.payments.validation.payment.PaymentValidator;
+
+/**
+ * Validators which turn lines of a CSV extract into lines of output. Each
+ * output line is the input line, followed by <code>VALID</code> or
+ * <code>INVALID</code> and the messages of any annotations, so that the
+ * output can be loaded back alongside the input.
+ * <p>
+ * Fields are split on commas, without any support for quoting, as the
+ * extracts contain nothing but codes and numbers.
+ * </p>
+ * <p>
+ * A record which makes a validator throw is reported as invalid with
+ * {@link #NOT_VALIDATED}, so that one bad record can't stop a whole run.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public final class CsvLineValidators {
+
+    private static Logger log = LoggerFactory.getLogger(CsvLineValidators.class);
+
+    public static final String IBAN_HEADER = "iban";
+    public static final String PAYMENT_HEADER = "sellCurrency,buyCurrency,sellAmount,buyAmount,fixedLeg,rate,iban,bic";
+    public static final String RESULT_HEADER = "status,messages";
+    public static final String NOT_VALIDATED = "The record could not be validated.";
+
+    private CsvLineValidators() {
+    }
+
+    /**
+     * Validates lines whose first field is an IBAN.
+     */
+    public static ChunkValidator<String, String> ibans(final IbanValidator validator) {
+        return new ChunkValidator<String, String>() {
+            @Override
+            public List<String> validate(List<String> lines) {
+                List<String> output = new ArrayList<String>(lines.size());
+                for (String line : lines) {
+                    int comma = line.indexOf(',');
+                    String iban = (comma < 0 ? line : line.substring(0, comma)).trim();
+                    try {
+                        IbanValidationResult result = validator.validateIban(iban);
+                        output.add(format(line, result.isValid(), result.getAnnotations()));
+                    } catch (RuntimeException e) {
+                        log.warn("Unable to validate IBAN [{}], so reporting it as invalid.", iban, e);
+                        output.add(format(line, false, NOT_VALIDATED));
+                    }
+                }
+                return output;
+            }
+        };
+    }
+
+    /**
+     * Validates lines in the format of {@link #PAYMENT_HEADER}, as a single
+     * batch. A line which can't be parsed is reported as invalid without
+     * being passed to the validator. If the batch fails, each payment in it is
+     * validated on its own, so that only the payment which made it fail is
+     * reported as not validated.
+     */
+    public static ChunkValidator<String, String> payments(final PaymentValidator validator) {
+        return new ChunkValidator<String, String>() {
+            @Override
+            public List<String> validate(List<String> lines) {
+                String[] output = new String[lines.size()];
+                List<Payment> payments = new ArrayList<Payment>(lines.size());
+                int[] indexes = new int[lines.size()];
+                for (int i = 0; i < lines.size(); i++) {
+                    try {
+                        indexes[payments.size()] = i;
+                        payments.add(parsePayment(lines.get(i)));
+                    } catch (IllegalArgumentException e) {
+                        output[i] = format(lines.get(i), false, e.getMessage());
+                    }
+                }
+                List<FxPaymentValidationResult> results;
+                try {
+                    results = validator.validatePayments(payments);
+                } catch (RuntimeException e) {
+                    log.warn("Unable to validate a batch of {} payments, so validating them one at a time.",
+                            payments.size(), e);
+                    results = null;
+                }
+                for (int i = 0; i < payments.size(); i++) {
+                    String line = lines.get(indexes[i]);
+                    FxPaymentValidationResult result = results == null
+                            ? validateOne(validator, payments.get(i), line) : results.get(i);
+                    output[indexes[i]] = result == null
+                            ? format(line, false, NOT_VALIDATED)
+                            : format(line, result.isValid(), result.getAnnotations());
+                }
+                return Arrays.asList(output);
+            }
+        };
+    }
+
+    /**
+     * @return The result of validating the payment, or null if it could not
+     *         be validated.
+     */
+    private static FxPaymentValidationResult validateOne(PaymentValidator validator, Payment payment,
+            String line) {
+        try {
+            return validator.validatePayment(payment);
+        } catch (RuntimeException e) {
+            log.warn("Unable to validate payment [{}], so reporting it as invalid.", line, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param line
+     *            A line in the format of {@link #PAYMENT_HEADER}. Empty
+     *            fields are left as null.
+     * @throws IllegalArgumentException
+     *             If there are not enough fields, or a number or the fixed
+     *             leg can't be parsed.
+     */
+    public static Payment parsePayment(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length < 8) {
+            throw new IllegalArgumentException("Expected 8 fields but found " + fields.length);
+        }
+        Payment payment = new Payment();
+        payment.setSellCurrency(text(fields[0]));
+        payment.setBuyCurrency(text(fields[1]));
+        payment.setSellAmount(number(fields[2]));
+        payment.setBuyAmount(number(fields[3]));
+        String leg = text(fields[4]);
+        if (leg != null) {
+            try {
+                payment.setFixedLeg(Payment.Leg.valueOf(leg));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown fixed leg: " + leg);
+            }
+        }
+        payment.setRate(number(fields[5]));
+        payment.setIban(text(fields[6]));
+        payment.setBic(text(fields[7]));
+        return payment;
+    }
+
+    private static String text(String field) {
+        String trimmed = field.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static BigDecimal number(String field) {
+        String trimmed = text(field);
+        if (trimmed == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(trimmed);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + trimmed);
+        }
+    }
+
+    private static String format(String line, boolean valid, List<PaymentValidationAnnotation> annotations) {
+        StringBuilder messages = new StringBuilder();
+        if (annotations != null) {
+            for (PaymentValidationAnnotation annotation : annotations) {
+                if (messages.length() > 0) {
+                    messages.append("; ");
+                }
+                messages.append(annotation.getMessage());
+            }
+        }
+        return format(line, valid, messages.toString());
+    }
+
+    private static String format(String line, boolean valid, String messages) {
+        StringBuilder sb = new StringBuilder(line.length() + messages.length() + 12);
+        sb.append(line).append(',').append(valid ? "VALID" : "INVALID").append(',');
+        if (!messages.isEmpty()) {
+            sb.append('"').append(messages.replace("\"", "\"\"")).append('"');
+        }
+        return sb.toString();
+    }
+
+}
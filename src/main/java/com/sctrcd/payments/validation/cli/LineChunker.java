@@ -0,0 +1,138 @@
+package com.sctrcd.payments.validation.cli;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits a file into chunks of roughly the same size, each of which ends at
+ * the end of a line, by memory-mapping it rather than reading it. The chunks
+ * are views of the mapped file, so nothing is copied until they are decoded.
+ * <p>
+ * A mapping can't be larger than 2GB, so larger files are mapped a region at
+ * a time. A line which runs over the end of a region causes the region to be
+ * mapped again, starting at the start of the chunk. The chunks keep their
+ * region mapped until they are no longer referenced, so only hold on to as
+ * many as need to be in flight.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class LineChunker implements Iterator<ByteBuffer> {
+
+    public static final int DEFAULT_CHUNK_BYTES = 4 * 1024 * 1024;
+    public static final int DEFAULT_MAP_BYTES = 256 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int chunkBytes;
+    private final int mapBytes;
+
+    private MappedByteBuffer mapped;
+    private long mappedStart;
+    private long position;
+
+    /**
+     * Constructor.
+     *
+     * @param channel
+     *            The file to split.
+     * @param start
+     *            Where in the file to start, which should be the start of a
+     *            line.
+     * @param chunkBytes
+     *            The size of each chunk before it is extended to the end of
+     *            the line.
+     * @param mapBytes
+     *            The size of each region of the file to map. This must leave
+     *            room for a chunk and the rest of the line it ends in.
+     */
+    public LineChunker(FileChannel channel, long start, int chunkBytes, int mapBytes) throws IOException {
+        if (chunkBytes < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1: " + chunkBytes);
+        }
+        if (mapBytes < chunkBytes) {
+            throw new IllegalArgumentException("Mapped region of " + mapBytes
+                    + " bytes is smaller than a chunk of " + chunkBytes);
+        }
+        this.channel = channel;
+        this.size = channel.size();
+        this.chunkBytes = chunkBytes;
+        this.mapBytes = mapBytes;
+        this.position = start;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < size;
+    }
+
+    /**
+     * @return The next chunk, positioned at its start. It is a view of the
+     *         mapped file, so must not be modified.
+     * @throws IllegalStateException
+     *             If the file can't be mapped, or a chunk and the rest of
+     *             its last line don't fit in a mapped region.
+     */
+    @Override
+    public ByteBuffer next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            long end = Math.min(position + chunkBytes, size);
+            if (mapped == null || position < mappedStart || end > mappedStart + mapped.limit()) {
+                map(position);
+            }
+            end = endOfLine(end);
+
+            ByteBuffer chunk = mapped.duplicate();
+            chunk.limit((int) (end - mappedStart));
+            chunk.position((int) (position - mappedStart));
+            position = end;
+            return chunk.slice();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to map the file at " + position, e);
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return The position just after the first newline at or after the
+     *         byte before <code>end</code>, or the end of the file.
+     */
+    private long endOfLine(long end) throws IOException {
+        if (end == size) {
+            return end;
+        }
+        long p = end - 1;
+        while (p < size) {
+            if (p >= mappedStart + mapped.limit()) {
+                if (mappedStart == position) {
+                    throw new IllegalStateException("No end of line within " + mapBytes
+                            + " bytes of " + position);
+                }
+                map(position);
+                continue;
+            }
+            if (mapped.get((int) (p - mappedStart)) == '\n') {
+                return p + 1;
+            }
+            p++;
+        }
+        return size;
+    }
+
+    private void map(long start) throws IOException {
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(mapBytes, size - start));
+        mappedStart = start;
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.sctrcd.payments.validation.iban;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import com.sctrcd.payments.validation.ValidationDataChangedEvent;
+import com.sctrcd.payments.validation.ValidationResultCache;
+
+/**
+ * Caches the results of another {@link IbanValidator}, so that the same IBAN
+ * being validated over and over again only runs the rules once.
+ * <p>
+ * Results are keyed on the IBAN with its spaces removed, which is all that
+ * the rules ever see of it. It is not keyed on the fully sanitized IBAN,
+ * because the rules treat lower-case letters and hyphens differently to the
+ * IBAN they would be sanitized into.
+ * </p>
+ * <p>
+ * Traced requests always go to the rules, as the trace is the point of them,
+ * and their results are not cached. Every result is returned as a copy, with
+ * the IBAN exactly as it was given, so that callers can't modify the cached
+ * result. The cache is cleared whenever a {@link ValidationDataChangedEvent}
+ * is published, and a result which was being produced at the time is not
+ * cached.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+@Service("cachingIbanValidator")
+public class CachingIbanValidator implements IbanValidator, ApplicationListener<ValidationDataChangedEvent> {
+
+    private static Logger log = LoggerFactory.getLogger(CachingIbanValidator.class);
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_TIME_TO_LIVE_MINUTES = 10;
+
+    private final IbanValidator validator;
+    private final ValidationResultCache<IbanValidationResult> cache;
+
+    @Autowired
+    public CachingIbanValidator(@Qualifier("ruleBasedIbanValidator") IbanValidator validator) {
+        this(validator, new ValidationResultCache<IbanValidationResult>(
+                DEFAULT_MAX_SIZE, DEFAULT_TIME_TO_LIVE_MINUTES, TimeUnit.MINUTES));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param validator
+     *            The validator to pass cache misses to.
+     * @param cache
+     *            The cache, configured with whatever size and time to live
+     *            are appropriate.
+     */
+    public CachingIbanValidator(IbanValidator validator, ValidationResultCache<IbanValidationResult> cache) {
+        this.validator = validator;
+        this.cache = cache;
+    }
+
+    @Override
+    public IbanValidationResult validateIban(String iban) {
+        return validateIban(iban, false);
+    }
+
+    @Override
+    public IbanValidationResult validateIban(String iban, boolean trace) {
+        if (trace || iban == null) {
+            return validator.validateIban(iban, trace);
+        }
+        String key = iban.replace(" ", "");
+        IbanValidationResult result = cache.get(key);
+        if (result == null) {
+            // The data may change while this is being validated, in which
+            // case the result is returned but not cached.
+            long generation = cache.getGeneration();
+            result = validator.validateIban(iban, false);
+            cache.put(key, result, generation);
+        }
+        return copy(result, iban);
+    }
+
+    /**
+     * Discards every cached result.
+     */
+    @Override
+    public void onApplicationEvent(ValidationDataChangedEvent event) {
+        cache.invalidateAll();
+        log.info("Cleared cached IBAN results: {}", event.getDescription());
+    }
+
+    public ValidationResultCache<IbanValidationResult> getCache() {
+        return cache;
+    }
+
+    private static IbanValidationResult copy(IbanValidationResult result, String iban) {
+        IbanValidationResult copy = new IbanValidationResult(iban, result.isValid());
+        copy.addAnnotations(result.getAnnotations());
+        return copy;
+    }
+
+}
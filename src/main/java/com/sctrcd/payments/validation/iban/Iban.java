@@ -0,0 +1,146 @@
+package com.sctrcd.payments.validation.iban;
+
+/**
+ * An IBAN, sanitized once into its electronic format when it is created, so
+ * that everything which needs the upper-case letters and digits can share
+ * them rather than sanitizing the IBAN again.
+ * <p>
+ * The country code and check digits are split out when the IBAN is created,
+ * and the result of the MOD-97 check is cached the first time it is asked
+ * for. As with <code>String.hashCode()</code>, two threads may both calculate
+ * it, but they will get the same answer, so the IBAN is still immutable as
+ * far as anyone using it can tell. An
+ * {@link com.sctrcd.payments.facts.IbanValidationRequest} parses its IBAN
+ * into one of these, so the checksum is calculated once per request, however
+ * many times the rules re-evaluate the MOD-97 check.
+ * </p>
+ * <p>
+ * Two IBANs are equal if their electronic formats are equal, however they
+ * were originally written.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public final class Iban {
+
+    /**
+     * Marks the MOD-97 remainder as not yet calculated.
+     */
+    private static final int UNKNOWN = -2;
+
+    private final String original;
+    private final String value;
+    private final String countryCode;
+    private final String checkDigits;
+
+    private int remainder = UNKNOWN;
+
+    private Iban(String original) {
+        this.original = original;
+        this.value = IbanUtil.sanitize(original);
+        this.countryCode = value.length() < 2 ? null : value.substring(0, 2);
+        this.checkDigits = value.length() < 4 ? null : value.substring(2, 4);
+    }
+
+    /**
+     * @param iban
+     *            An IBAN in any format: with or without spaces or hyphens, in
+     *            upper or lower case.
+     * @return The IBAN, or null if it was null.
+     */
+    public static Iban valueOf(String iban) {
+        return iban == null ? null : new Iban(iban);
+    }
+
+    /**
+     * @return The IBAN exactly as it was given.
+     */
+    public String getOriginal() {
+        return original;
+    }
+
+    /**
+     * @return The electronic format of the IBAN, with upper-case letters and
+     *         digits only.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return Whether the IBAN was given in its electronic format, rather than
+     *         having to be sanitized into it.
+     */
+    public boolean isElectronicFormat() {
+        return original.equals(value);
+    }
+
+    /**
+     * @return The first two characters, or null if the IBAN is too short to
+     *         have a country code.
+     */
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    /**
+     * @return The third and fourth characters, or null if the IBAN is too
+     *         short to have check digits.
+     */
+    public String getCheckDigits() {
+        return checkDigits;
+    }
+
+    /**
+     * @return Everything after the check digits, which is the country's own
+     *         account identifier.
+     */
+    public String getBban() {
+        return value.length() < 4 ? "" : value.substring(4);
+    }
+
+    public int length() {
+        return value.length();
+    }
+
+    /**
+     * @return Whether the IBAN passes the MOD-97 check.
+     */
+    public boolean isMod97Valid() {
+        int r = remainder;
+        if (r == UNKNOWN) {
+            r = IbanMod97Check.remainder(value);
+            remainder = r;
+        }
+        return r == 1;
+    }
+
+    /**
+     * @return The IBAN in groups of four characters separated by spaces.
+     */
+    public String getPrintFormat() {
+        return IbanFormatter.printFormat(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        return obj instanceof Iban && value.equals(((Iban) obj).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+
+    /**
+     * @return The electronic format of the IBAN.
+     */
+    @Override
+    public String toString() {
+        return value;
+    }
+
+}
@@ -7,15 +7,28 @@ public class IbanFormatter {
 	 * after every fourth character.
 	 */
     public static String printFormat(String iban) {
-        String eFormat = IbanUtil.sanitize(iban);
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < eFormat.length(); i++) {
+        return printFormat(Iban.valueOf(iban));
+    }
+
+    /**
+     * As {@link #printFormat(String)}, for an IBAN which has already been
+     * sanitized.
+     */
+    public static String printFormat(Iban iban) {
+        String eFormat = iban.getValue();
+        int length = eFormat.length();
+        if (length == 0) {
+            return eFormat;
+        }
+        char[] chars = new char[length + (length - 1) / 4];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
             if (i % 4 == 0 && i != 0) {
-                sb.append(" ");
+                chars[count++] = ' ';
             }
-            sb.append(eFormat.charAt(i));
+            chars[count++] = eFormat.charAt(i);
         }
-        return sb.toString();
+        return new String(chars);
     }
 	
 }
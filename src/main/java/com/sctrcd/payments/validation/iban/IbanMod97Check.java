@@ -29,10 +29,25 @@ import java.math.BigInteger;
  * valid.
  * </p>
  * 
+ * <p>
+ * The check itself never builds the shuffled or numerized forms. The
+ * characters are folded into an <code>int</code> remainder as they are read,
+ * which is possible because (a * 10^n + b) mod 97 can be derived from a mod 97
+ * and b mod 97. The leading four characters are folded into their own
+ * remainder, which is appended to the remainder of the rest of the IBAN at the
+ * end, as though they had been moved there.
+ * </p>
+ * 
  * @author Stephen Masters
  */
 public class IbanMod97Check {
 	
+    /**
+     * The number of leading characters (country code and check digits) which
+     * are moved to the end of the IBAN before the remainder is calculated.
+     */
+    private static final int HEAD_LENGTH = 4;
+
 	/**
 	 * Default constructor is private to prevent instantiation.
 	 */
@@ -40,23 +55,90 @@ public class IbanMod97Check {
 	}
 
     /**
-	 * Performs the ISO mod-97 check based on the assumption that the IBAN arg
-	 * has extraneous characters removed and all letters are upper-case.
-	 */
+     * Performs the ISO mod-97 check. Letters may be upper or lower case, and
+     * any characters which are not letters or digits (spaces, hyphens, etc.)
+     * are skipped, in the same way as {@link IbanUtil#sanitize(String)} would
+     * strip them out.
+     * <p>
+     * This takes a <code>String</code> rather than a <code>CharSequence</code>
+     * because it is called from DRL, and the Eclipse compiler used by Drools
+     * cannot load <code>CharSequence</code> from newer JDKs. Use
+     * {@link #remainder(CharSequence)} for other character sequences.
+     * </p>
+     */
     public static boolean isValid(String iban) {
-		if (iban == null)
-			return false;
-        // If the checksum divided by 97 leaves a remainder of 1,
-        // the IBAN is valid.
-        String cleanIban = IbanUtil.sanitize(iban);
-    	// Shift first four characters to the end of the array.
-    	String shuffledIban = shuffle(cleanIban);
-    	// Convert to a numeric form.
-    	BigInteger checkSum = numerize(shuffledIban);
         // If the checksum divided by 97 leaves a remainder of 1,
         // the IBAN is valid.
-        return new BigInteger(checkSum.toString()).remainder(new BigInteger("97"))
-                .equals(BigInteger.ONE);
+        return remainder(iban) == 1;
+    }
+
+    /**
+     * Calculates the MOD-97 remainder of an IBAN in a single pass over its
+     * characters, without allocating anything.
+     *
+     * @param iban
+     *            The IBAN, which may contain separators and lower-case letters.
+     * @return The remainder, or -1 if the IBAN is null or has fewer than four
+     *         letters and digits.
+     */
+    public static int remainder(CharSequence iban) {
+        if (iban == null) {
+            return -1;
+        }
+
+        int significant = 0;
+        int headRemainder = 0;
+        int headMultiplier = 1;
+        int tailRemainder = 0;
+
+        for (int i = 0, len = iban.length(); i < len; i++) {
+            int value = valueOf(iban.charAt(i));
+            if (value < 0) {
+                continue;
+            }
+            if (significant < HEAD_LENGTH) {
+                // Letters expand to two digits, so shift the remainder
+                // further to make room for them.
+                if (value < 10) {
+                    headRemainder = (headRemainder * 10 + value) % 97;
+                    headMultiplier = (headMultiplier * 10) % 97;
+                } else {
+                    headRemainder = (headRemainder * 100 + value) % 97;
+                    headMultiplier = (headMultiplier * 100) % 97;
+                }
+            } else if (value < 10) {
+                tailRemainder = (tailRemainder * 10 + value) % 97;
+            } else {
+                tailRemainder = (tailRemainder * 100 + value) % 97;
+            }
+            significant++;
+        }
+
+        if (significant < HEAD_LENGTH) {
+            return -1;
+        }
+        // Append the head to the tail.
+        return (tailRemainder * headMultiplier + headRemainder) % 97;
+    }
+
+    /**
+     * The numeric value of a character in the MOD-97 alphabet. Digits are worth
+     * their own value, and letters (of either case) are worth 10 to 35.
+     *
+     * @return The value, or -1 if the character is neither a letter nor a
+     *         digit, and so should be ignored.
+     */
+    private static int valueOf(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 10;
+        }
+        return -1;
     }
 
 	/**
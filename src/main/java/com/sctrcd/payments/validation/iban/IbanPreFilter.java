@@ -0,0 +1,164 @@
+package com.sctrcd.payments.validation.iban;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.sctrcd.payments.facts.AnnotationLevel;
+import com.sctrcd.payments.facts.IbanValidationRequest;
+import com.sctrcd.payments.facts.PaymentAttribute;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+import com.sctrcd.payments.validation.CountryCodeIndex;
+
+/**
+ * Rejects IBANs which are obviously invalid before they get anywhere near the
+ * rule engine. An IBAN is obviously invalid if it is missing, it is shorter
+ * or longer than any country's IBAN, it is the wrong length for its country,
+ * it contains anything other than letters and digits, or it doesn't start with
+ * two letters and two digits.
+ * <p>
+ * The result must be the same as if the rules had been run, so that a
+ * client can't tell whether a request was short-circuited. So this applies
+ * the same checks as the rules in <code>IbanRules.drl</code>, using the same
+ * {@link Iban}, {@link CountryCodeIndex} and {@link IbanRegistry},
+ * and raises annotations with the same rule names and messages. If none of
+ * the checks fail, i.e. the only problem was a hyphen, which the checks
+ * ignore, the IBAN is passed on to the rules as normal.
+ * </p>
+ * <p>
+ * The rules can't handle a missing IBAN at all, so that gets an annotation of
+ * its own.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class IbanPreFilter {
+
+    public static final String NOT_DEFINED = "IBAN was not defined.";
+    public static final String FAILED_MOD97 = "IBAN failed the Mod-97 checksum test.";
+    public static final String INVALID_COUNTRY = "IBAN doesn't begin with a valid country ISO code.";
+    public static final String INVALID_STRUCTURE = "IBAN doesn't have the BBAN structure for its country.";
+
+    /**
+     * The maximum length of an IBAN, as defined by ISO 13616.
+     */
+    public static final int MAX_LENGTH = 34;
+
+    private final CountryCodeIndex countryIndex;
+    private final IbanRegistry registry;
+    private final int minLength;
+
+    public IbanPreFilter(CountryCodeIndex countryIndex, IbanRegistry registry) {
+        this.countryIndex = countryIndex;
+        this.registry = registry;
+        int shortest = MAX_LENGTH;
+        for (IbanStructure structure : registry.getStructures()) {
+            shortest = Math.min(shortest, structure.getLength());
+        }
+        this.minLength = shortest;
+    }
+
+    /**
+     * If the IBAN on a request is obviously invalid, annotates the request in
+     * the same way as the rules would, and rejects it.
+     *
+     * @return True if the request was rejected, in which case there is no need
+     *         to run the rules.
+     */
+    public boolean reject(IbanValidationRequest request) {
+        String iban = request.getIban();
+        if (iban == null) {
+            return rejectMissing(request);
+        }
+        if (!isObviouslyInvalid(iban)) {
+            return false;
+        }
+        List<PaymentValidationAnnotation> annotations = annotate(request, request.getParsedIban());
+        if (annotations.isEmpty()) {
+            return false;
+        }
+        reject(request, annotations);
+        return true;
+    }
+
+    /**
+     * Only rejects a request with no IBAN, which the rules can't handle at
+     * all, leaving every other check to the rules.
+     *
+     * @return True if the request was rejected.
+     */
+    public boolean rejectMissing(IbanValidationRequest request) {
+        if (request.getIban() != null) {
+            return false;
+        }
+        reject(request, Collections.singletonList(
+                annotation(request, NOT_DEFINED, "The IBAN was not defined.")));
+        return true;
+    }
+
+    private static void reject(IbanValidationRequest request, List<PaymentValidationAnnotation> annotations) {
+        for (PaymentValidationAnnotation annotation : annotations) {
+            request.addAnnotation(annotation);
+        }
+        request.setMostSevereAnnotation(AnnotationLevel.REJECT);
+        request.setValid(false);
+    }
+
+    /**
+     * @return Whether an IBAN, which has already had its spaces removed, is
+     *         the wrong length, contains anything but letters and digits, or
+     *         doesn't start with a country code and check digits.
+     */
+    boolean isObviouslyInvalid(String iban) {
+        int length = iban.length();
+        if (length < minLength || length > MAX_LENGTH) {
+            return true;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = iban.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z'))) {
+                return true;
+            }
+        }
+        // The country code must be letters and the check digits digits.
+        if (!Character.isLetter(iban.charAt(0)) || !Character.isLetter(iban.charAt(1))
+                || !Character.isDigit(iban.charAt(2)) || !Character.isDigit(iban.charAt(3))) {
+            return true;
+        }
+        IbanStructure structure = registry.getStructure(iban.substring(0, 2));
+        return structure != null && structure.getLength() != length;
+    }
+
+    /**
+     * Applies the same checks as the rules, in order of their salience.
+     */
+    private List<PaymentValidationAnnotation> annotate(IbanValidationRequest request, Iban iban) {
+        List<PaymentValidationAnnotation> annotations = new ArrayList<PaymentValidationAnnotation>(3);
+        if (!iban.isMod97Valid()) {
+            annotations.add(annotation(request, FAILED_MOD97, "The IBAN is not valid."));
+        }
+        String country = iban.getCountryCode();
+        if (!countryIndex.contains(country)) {
+            // An IBAN of less than two characters has no country code, so
+            // the whole of it is reported, as the rules do.
+            annotations.add(annotation(request, INVALID_COUNTRY,
+                    "The IBAN does not begin with a valid 2-character country code. '"
+                            + (country == null ? iban.getValue() : country) + "' is not a country."));
+        }
+        IbanStructure structure = registry.getStructure(country);
+        if (structure != null && !registry.matches(iban.getValue())) {
+            annotations.add(annotation(request, INVALID_STRUCTURE,
+                    "The IBAN doesn't follow the structure for '" + country + "', which is "
+                            + structure.getLength() + " characters with a BBAN of "
+                            + structure.getBbanFormat() + "."));
+        }
+        return annotations;
+    }
+
+    private static PaymentValidationAnnotation annotation(IbanValidationRequest request,
+            String ruleName, String message) {
+        return new PaymentValidationAnnotation(request, ruleName, AnnotationLevel.REJECT,
+                message, PaymentAttribute.iban);
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.sctrcd.payments.validation.iban;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The IBAN structure of every country which uses IBANs, loaded from a registry
+ * file on the classpath. The default registry is read from
+ * <code>iban/iban-registry.txt</code> the first time it is used, and each
+ * entry is compiled into an {@link IbanStructure}.
+ * <p>
+ * The structures are held in a 26x26 table indexed by the letters of the
+ * country code, in the same way as the
+ * {@link com.sctrcd.payments.validation.CountryCodeIndex}, so finding the
+ * structure for an IBAN doesn't involve any hashing or allocation. The
+ * registry is immutable once loaded, so can be shared by any number of
+ * validators and rule sessions.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public final class IbanRegistry {
+
+    private static Logger log = LoggerFactory.getLogger(IbanRegistry.class);
+
+    public static final String DEFAULT_RESOURCE = "iban/iban-registry.txt";
+
+    private static final int LETTERS = 26;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final IbanStructure[] structures = new IbanStructure[LETTERS * LETTERS];
+
+    private final List<IbanStructure> entries;
+
+    /**
+     * Holder for the default registry, so that it is loaded the first time it
+     * is used rather than whenever this class is loaded.
+     */
+    private static class DefaultHolder {
+        static final IbanRegistry INSTANCE = load(DEFAULT_RESOURCE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param entries
+     *            The structure for each country. There may only be one for
+     *            each country code.
+     */
+    public IbanRegistry(List<IbanStructure> entries) {
+        for (IbanStructure entry : entries) {
+            String code = entry.getCountryCode();
+            int index = indexOf(code.charAt(0), code.charAt(1));
+            if (index < 0) {
+                throw new IllegalArgumentException("Not an ISO 3166-1 alpha-2 country code: " + code);
+            }
+            if (structures[index] != null) {
+                throw new IllegalArgumentException("Duplicate IBAN structure for " + code);
+            }
+            structures[index] = entry;
+        }
+        this.entries = Collections.unmodifiableList(new ArrayList<IbanStructure>(entries));
+    }
+
+    /**
+     * @return The registry of every country in the SWIFT IBAN registry.
+     */
+    public static IbanRegistry getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Loads a registry from a classpath resource.
+     *
+     * @throws IllegalStateException
+     *             If the resource cannot be found or read, or any line of it is
+     *             not a valid entry.
+     */
+    public static IbanRegistry load(String resource) {
+        InputStream in = IbanRegistry.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalStateException("IBAN registry not found on classpath: " + resource);
+        }
+        try {
+            IbanRegistry registry = new IbanRegistry(parse(in, resource));
+            log.info("Loaded IBAN structures for {} countries from {}", registry.size(), resource);
+            return registry;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read IBAN registry: " + resource, e);
+        }
+    }
+
+    /**
+     * Reads the entries of a registry file. Each line holds a country code,
+     * the length of its IBANs and the BBAN format, separated by whitespace.
+     * Blank lines and lines starting with <code>#</code> are ignored.
+     */
+    static List<IbanStructure> parse(InputStream in, String resource) throws IOException {
+        List<IbanStructure> entries = new ArrayList<IbanStructure>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF8));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                try {
+                    if (fields.length != 3) {
+                        throw new IllegalArgumentException("Expected country code, length and BBAN format.");
+                    }
+                    entries.add(new IbanStructure(fields[0], Integer.parseInt(fields[1]), fields[2]));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException("Invalid IBAN registry entry at " + resource + " line "
+                            + lineNumber + ": " + line, e);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return entries;
+    }
+
+    /**
+     * @param countryCode
+     *            An upper-case ISO country code.
+     * @return The IBAN structure for the country, or null if the country
+     *         doesn't use IBANs.
+     */
+    public IbanStructure getStructure(String countryCode) {
+        if (countryCode == null || countryCode.length() != 2) {
+            return null;
+        }
+        int index = indexOf(countryCode.charAt(0), countryCode.charAt(1));
+        return index < 0 ? null : structures[index];
+    }
+
+    /**
+     * @return Whether the registry has a structure for the country.
+     */
+    public boolean isRegistered(String countryCode) {
+        return getStructure(countryCode) != null;
+    }
+
+    /**
+     * Checks an IBAN against the structure for the country it begins with.
+     * <p>
+     * This takes a <code>String</code> because it is called from DRL. See
+     * {@link IbanMod97Check#isValid(String)}.
+     * </p>
+     *
+     * @return Whether the IBAN has the length and structure of its country.
+     *         False if the country is not in the registry.
+     */
+    public boolean matches(String iban) {
+        if (iban == null || iban.length() < 2) {
+            return false;
+        }
+        int index = indexOf(Character.toUpperCase(iban.charAt(0)), Character.toUpperCase(iban.charAt(1)));
+        return index >= 0 && structures[index] != null && structures[index].matches(iban);
+    }
+
+    /**
+     * @return Every structure in the registry, in the order they were loaded.
+     */
+    public List<IbanStructure> getStructures() {
+        return entries;
+    }
+
+    /**
+     * @return The number of countries in the registry.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static int indexOf(char first, char second) {
+        int a = first - 'A';
+        int b = second - 'A';
+        if (a < 0 || a >= LETTERS || b < 0 || b >= LETTERS) {
+            return -1;
+        }
+        return a * LETTERS + b;
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.sctrcd.payments.validation.iban;
+
+/**
+ * The structure of an IBAN for one country, as defined in the SWIFT IBAN
+ * registry. The BBAN format, i.e. <code>4!a6!n8!n</code>, is compiled when the
+ * structure is created into the character class permitted at each position, so
+ * checking an IBAN is a single pass over its characters with no regular
+ * expression and no allocation.
+ * <p>
+ * In the same way as {@link IbanMod97Check}, letters may be upper or lower
+ * case, and any characters which are neither letters nor digits are skipped as
+ * separators.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public final class IbanStructure {
+
+    private static final byte DIGIT = 1;
+    private static final byte LETTER = 2;
+
+    /**
+     * The country code and the check digits at the start of every IBAN.
+     */
+    private static final int HEAD_LENGTH = 4;
+
+    private final String countryCode;
+    private final int length;
+    private final String bbanFormat;
+
+    /**
+     * The character classes permitted at each position of the IBAN.
+     */
+    private final byte[] classes;
+
+    /**
+     * Constructor.
+     *
+     * @param countryCode
+     *            The ISO country code which the IBAN begins with.
+     * @param length
+     *            The total length of the IBAN.
+     * @param bbanFormat
+     *            The structure of the BBAN in SWIFT notation.
+     * @throws IllegalArgumentException
+     *             If the format cannot be parsed, or does not add up to the
+     *             length of the IBAN.
+     */
+    public IbanStructure(String countryCode, int length, String bbanFormat) {
+        if (countryCode == null || countryCode.length() != 2) {
+            throw new IllegalArgumentException("Not a country code: " + countryCode);
+        }
+        this.countryCode = countryCode;
+        this.length = length;
+        this.bbanFormat = bbanFormat;
+        this.classes = compile(countryCode, length, bbanFormat);
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public String getBbanFormat() {
+        return bbanFormat;
+    }
+
+    /**
+     * Checks that an IBAN has the length and structure for this country. The
+     * country code itself is not checked, as the registry has already used it
+     * to find this structure.
+     *
+     * @return Whether every letter and digit of the IBAN is of the class
+     *         expected at its position, and there are exactly the right number
+     *         of them.
+     */
+    public boolean matches(CharSequence iban) {
+        if (iban == null) {
+            return false;
+        }
+        int position = 0;
+        for (int i = 0, len = iban.length(); i < len; i++) {
+            byte charClass = classOf(iban.charAt(i));
+            if (charClass == 0) {
+                continue;
+            }
+            if (position == length || (classes[position] & charClass) == 0) {
+                return false;
+            }
+            position++;
+        }
+        return position == length;
+    }
+
+    @Override
+    public String toString() {
+        return countryCode + " " + length + " " + bbanFormat;
+    }
+
+    private static byte classOf(char c) {
+        if (c >= '0' && c <= '9') {
+            return DIGIT;
+        }
+        if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) {
+            return LETTER;
+        }
+        return 0;
+    }
+
+    /**
+     * Parses a BBAN format in SWIFT notation into the character classes for
+     * every position of the IBAN, starting with the country code and check
+     * digits.
+     */
+    private static byte[] compile(String countryCode, int length, String bbanFormat) {
+        if (length <= HEAD_LENGTH) {
+            throw new IllegalArgumentException("IBAN length for " + countryCode + " is too short: " + length);
+        }
+        byte[] classes = new byte[length];
+        classes[0] = LETTER;
+        classes[1] = LETTER;
+        classes[2] = DIGIT;
+        classes[3] = DIGIT;
+
+        int position = HEAD_LENGTH;
+        int i = 0;
+        while (i < bbanFormat.length()) {
+            int count = 0;
+            while (i < bbanFormat.length() && Character.isDigit(bbanFormat.charAt(i))) {
+                count = count * 10 + (bbanFormat.charAt(i++) - '0');
+            }
+            // All fields in the IBAN registry are fixed length. Without the
+            // "!" a field could be shorter, which we don't support.
+            if (count == 0 || i >= bbanFormat.length() || bbanFormat.charAt(i++) != '!' || i >= bbanFormat.length()) {
+                throw new IllegalArgumentException("Invalid BBAN format for " + countryCode + ": " + bbanFormat);
+            }
+            byte charClass;
+            switch (bbanFormat.charAt(i++)) {
+            case 'n':
+                charClass = DIGIT;
+                break;
+            case 'a':
+                charClass = LETTER;
+                break;
+            case 'c':
+                charClass = DIGIT | LETTER;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid BBAN format for " + countryCode + ": " + bbanFormat);
+            }
+            if (position + count > length) {
+                throw new IllegalArgumentException("BBAN format for " + countryCode + " is longer than "
+                        + length + " characters: " + bbanFormat);
+            }
+            for (int j = 0; j < count; j++) {
+                classes[position++] = charClass;
+            }
+        }
+        if (position != length) {
+            throw new IllegalArgumentException("BBAN format for " + countryCode + " is shorter than "
+                    + length + " characters: " + bbanFormat);
+        }
+        return classes;
+    }
+
+}
@@ -19,9 +19,41 @@ public class IbanUtil {
 	 * unlikely that this will be correcting some complete nonsense into a valid
 	 * IBAN.
 	 * </p>
+	 * <p>
+	 * This is a single pass over the characters of the IBAN. Only the ASCII
+	 * letters and digits which an IBAN can contain are kept, whatever the
+	 * default locale. An IBAN which is already upper-case letters and digits
+	 * is returned as it is, without allocating anything. Where the same IBAN
+	 * is needed in more than one place, parse it into an {@link Iban} once
+	 * instead.
+	 * </p>
 	 */
     public static String sanitize(String iban) {
-    	return iban.toUpperCase().replaceAll("[^A-Z0-9]", "");
+        int length = iban.length();
+        int i = 0;
+        while (i < length && isElectronic(iban.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return iban;
+        }
+
+        char[] chars = new char[length];
+        iban.getChars(0, i, chars, 0);
+        int count = i;
+        for (; i < length; i++) {
+            char c = iban.charAt(i);
+            if (isElectronic(c)) {
+                chars[count++] = c;
+            } else if (c >= 'a' && c <= 'z') {
+                chars[count++] = (char) (c - ('a' - 'A'));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static boolean isElectronic(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
     }
 	
 }
@@ -4,4 +4,13 @@ public interface IbanValidator {
 
     public IbanValidationResult validateIban(String iban);
     
+    /**
+     * Validates an IBAN, optionally returning a trace of the rules which fired
+     * with the result.
+     * 
+     * @param iban The IBAN to validate.
+     * @param trace Whether to populate the rule trace on the result.
+     */
+    public IbanValidationResult validateIban(String iban, boolean trace);
+    
 }
@@ -1,83 +1,155 @@
 package com.sctrcd.payments.validation.iban;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.drools.KnowledgeBase;
 import org.drools.builder.ResourceType;
 import org.drools.conf.EventProcessingOption;
-import org.drools.runtime.StatelessKnowledgeSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import com.sctrcd.drools.util.Activation;
 import com.sctrcd.drools.util.DroolsResource;
-import com.sctrcd.drools.util.DroolsUtil;
+import com.sctrcd.drools.util.KnowledgeBaseManager;
+import com.sctrcd.drools.util.KnowledgeBaseSwap;
+import com.sctrcd.drools.util.KnowledgeBaseSwapListener;
 import com.sctrcd.drools.util.ResourcePathType;
-import com.sctrcd.drools.util.TrackingAgendaEventListener;
-import com.sctrcd.drools.util.TrackingWorkingMemoryEventListener;
+import com.sctrcd.drools.util.RuleMetrics;
+import com.sctrcd.drools.util.RuleMetricsAgendaEventListener;
 import com.sctrcd.payments.enums.CountryEnum;
 import com.sctrcd.payments.facts.Country;
+import com.sctrcd.payments.validation.CountryCodeIndex;
+import com.sctrcd.payments.validation.StageLatencies;
 import com.sctrcd.payments.facts.IbanValidationRequest;
 
 /**
  * 
  */
 @Service("ruleBasedIbanValidator")
-public class RuleBasedIbanValidator implements IbanValidator {
+public class RuleBasedIbanValidator implements IbanValidator, KnowledgeBaseSwapListener {
 
     private static Logger log = LoggerFactory.getLogger(RuleBasedIbanValidator.class);
     
-    private KnowledgeBase kbase;
+    private final KnowledgeBaseManager rules;
+    
+    private final IbanPreFilter preFilter;
+    
+    /**
+     * Whether the pre-filter still agrees with the rules, which it only
+     * knows for the rules packaged with the application.
+     */
+    private volatile boolean preFiltered = true;
+    
+    private StageLatencies latencies = StageLatencies.getDefault();
     
     public final List<Country> countries = new ArrayList<Country>();
     
     public RuleBasedIbanValidator() {
-        this.kbase = DroolsUtil.createKnowledgeBase(
-                new DroolsResource[]{ 
-                        new DroolsResource("rules/payments/validation/IbanRules.drl", 
-                                ResourcePathType.CLASSPATH, 
-                                ResourceType.DRL)
-                }, 
-                EventProcessingOption.CLOUD);
+        DroolsResource[] resources = new DroolsResource[]{ 
+                new DroolsResource("rules/payments/validation/IbanRules.drl", 
+                        ResourcePathType.CLASSPATH, 
+                        ResourceType.DRL)
+        };
         for (CountryEnum c : CountryEnum.values()) {
             countries.add(new Country(c.isoCode, c.name));
         }
+        CountryCodeIndex countryIndex = new CountryCodeIndex(countries);
+        IbanRegistry ibanRegistry = IbanRegistry.getDefault();
+        Map<String, Object> globals = new HashMap<String, Object>();
+        globals.put("countryIndex", countryIndex);
+        globals.put("ibanRegistry", ibanRegistry);
+        this.rules = new KnowledgeBaseManager("IBAN rules", resources, EventProcessingOption.CLOUD, 
+                globals, new RuleMetricsAgendaEventListener(RuleMetrics.getDefault()));
+        // Rule metrics are opt-in, so requests use the shared session unless
+        // a sample rate is set through getKnowledgeBaseManager().
+        this.rules.setListenerSampleRate(0);
+        this.rules.addSwapListener(this);
+        this.preFilter = new IbanPreFilter(countryIndex, ibanRegistry);
     }
         
 	@Override
 	public IbanValidationResult validateIban(String iban) {
-	    log.debug("Validating IBAN : " + iban + "\n");
-	    
-	    StatelessKnowledgeSession ksession = kbase.newStatelessKnowledgeSession();
-	    
-	    ksession.setGlobal("countryList", countries);
-	    
-	    TrackingAgendaEventListener agendaEventListener = 
-	            new TrackingAgendaEventListener();
-	    TrackingWorkingMemoryEventListener workingMemoryEventListener = 
-	            new TrackingWorkingMemoryEventListener();
-	    ksession.addEventListener(agendaEventListener);
-	    ksession.addEventListener(workingMemoryEventListener);
+	    return validateIban(iban, false);
+	}
+	
+	@Override
+	public IbanValidationResult validateIban(String iban, boolean trace) {
+	    log.debug("Validating IBAN : {}", iban);
 	    
 	    IbanValidationRequest request = new IbanValidationRequest(iban); 
 	    
-	    List<Object> facts = new ArrayList<Object>();
-	    facts.add(request);
-	    
-		ksession.execute(facts);
+	    List<Activation> ruleTrace = null;
+	    long start = System.nanoTime();
+	    boolean rejected = preFiltered ? preFilter.reject(request) : preFilter.rejectMissing(request);
+	    latencies.recordSince(StageLatencies.IBAN, StageLatencies.PRE_FILTER, start);
+	    if (rejected) {
+	        // Obviously invalid, so no rules need to fire.
+	        if (trace) {
+	            ruleTrace = Collections.emptyList();
+	        }
+	    } else {
+	        start = System.nanoTime();
+	        if (trace) {
+	            ruleTrace = rules.getExecutor().executeAndTrace(request);
+	        } else {
+	            rules.getExecutor().execute(request);
+	        }
+	        latencies.recordSince(StageLatencies.IBAN, StageLatencies.RULES, start);
+	    }
 		
+	    start = System.nanoTime();
 		IbanValidationResult result = new IbanValidationResult();
 		result.setValid(request.isValid());
 		result.setIban(iban);
 		result.addAnnotations(request.getAnnotations());
+		result.setRuleTrace(ruleTrace);
+		latencies.recordSince(StageLatencies.IBAN, StageLatencies.RESULT, start);
 		
-		ksession.removeEventListener(agendaEventListener);
-		ksession.removeEventListener(workingMemoryEventListener);
-		
-		log.debug("Validation complete for IBAN : " + iban + "\n");
+		log.debug("Validation complete for IBAN : {}", iban);
 		
 		return result;
 	}
 	
+	/**
+	 * @return The manager holding the current rules, which can reload them
+	 *         when they change.
+	 */
+	public KnowledgeBaseManager getKnowledgeBaseManager() {
+	    return rules;
+	}
+
+	/**
+	 * The pre-filter makes the same checks as the rules packaged with the
+	 * application. Once other rules have been swapped in, it can't be relied
+	 * on to agree with them, so from then on every IBAN goes to the rules,
+	 * except a missing one, which the rules can't handle.
+	 */
+	@Override
+	public void knowledgeBaseSwapped(KnowledgeBaseManager manager, KnowledgeBaseSwap swap) {
+	    if (preFiltered) {
+	        preFiltered = false;
+	        log.info("Bypassing the IBAN pre-filter, as new rules have been swapped in.");
+	    }
+	}
+
+	/**
+	 * @return Whether obviously invalid IBANs are rejected without running
+	 *         the rules.
+	 */
+	public boolean isPreFiltered() {
+	    return preFiltered;
+	}
+
+	public StageLatencies getStageLatencies() {
+	    return latencies;
+	}
+
+	public void setStageLatencies(StageLatencies latencies) {
+	    this.latencies = latencies;
+	}
+	
 }
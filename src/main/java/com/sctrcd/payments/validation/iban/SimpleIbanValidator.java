@@ -11,7 +11,8 @@ import com.sctrcd.payments.facts.AnnotationLevel;
 
 /**
  * This IBAN validator does no more than check that the country code is for a
- * valid country and that the IBAN passes a MOD-97 check.
+ * valid country, that the IBAN has the structure defined for that country in
+ * the {@link IbanRegistry}, and that the IBAN passes a MOD-97 check.
  * 
  * @see{Mod97IbanValidator for details of the MOD-97 check.
  * 
@@ -25,6 +26,8 @@ public class SimpleIbanValidator implements IbanValidator {
      */
     private final Map<String, CountryEnum> countryMap;
 
+    private final IbanRegistry registry;
+
     /**
      * Default constructor sets up the permitted countries based on all those
      * defined in the {@link CountryEnum} enum.
@@ -34,12 +37,13 @@ public class SimpleIbanValidator implements IbanValidator {
         for (CountryEnum c : CountryEnum.values()) {
             countryMap.put(c.isoCode, c);
         }
+        registry = IbanRegistry.getDefault();
     }
 
     /**
      * Validate an IBAN provided as a <code>String</code>.
-     * Check that the country code is for a valid country and that the IBAN
-     * passes a MOD-97 check.
+     * Check that the country code is for a valid country, that the IBAN has
+     * the structure for its country and that the IBAN passes a MOD-97 check.
      * 
      * @see{Mod97IbanValidator for details of the MOD-97 check.
      */
@@ -48,18 +52,32 @@ public class SimpleIbanValidator implements IbanValidator {
         
         if (iban == null) {
             result.addAnnotation(new PaymentValidationAnnotation("The IBAN  was not defined.", AnnotationLevel.REJECT, "The IBAN  was not defined."));
+            return result;
         }
-        if (countryMap.get(iban.substring(0, 2)) == null) {
+        Iban parsed = Iban.valueOf(iban);
+        String country = parsed.getCountryCode();
+        if (country == null || countryMap.get(country) == null) {
             // It's not a known country.
             result.addAnnotation(new PaymentValidationAnnotation("The country code on the IBAN is not valid.", AnnotationLevel.REJECT, "The country code on the IBAN is not valid."));
         }
+        if (registry.isRegistered(country) && !registry.matches(parsed.getValue())) {
+            result.addAnnotation(new PaymentValidationAnnotation("IBAN doesn't have the BBAN structure for its country.", AnnotationLevel.REJECT, "The IBAN doesn't follow the structure for its country."));
+        }
         // If the checksum divided by 97 leaves a remainder of 1,
         // the IBAN is valid.
-        if (!IbanMod97Check.isValid(IbanUtil.sanitize(iban))) {
+        if (!parsed.isMod97Valid()) {
             result.addAnnotation(new PaymentValidationAnnotation("Failed Mod-97 check", AnnotationLevel.REJECT, "The IBAN is not valid."));
         }
         
         return result;
     }
 
+    /**
+     * No rules are involved in this validation, so there is never anything to
+     * trace.
+     */
+    public IbanValidationResult validateIban(String iban, boolean trace) {
+        return validateIban(iban);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package com.sctrcd.payments.validation.iban;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Validates a stream of IBANs, writing an {@link IbanValidationResult} for
+ * each of them to an output stream as it goes. Neither the IBANs nor the
+ * results are ever held in memory all at once. They are read a chunk at a
+ * time, and the output is flushed after each chunk, so that the client starts
+ * receiving results while the rest of the request is still being read.
+ * <p>
+ * Two formats are supported:
+ * </p>
+ * <ul>
+ * <li>A JSON array of IBAN strings, which gives a JSON array of results.</li>
+ * <li>Plain text with an IBAN per line, which gives newline-delimited JSON,
+ * with a result per line. Blank lines are skipped.</li>
+ * </ul>
+ *
+ * @author Stephen Masters
+ */
+public class StreamingIbanValidator {
+
+    private static Logger log = LoggerFactory.getLogger(StreamingIbanValidator.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final IbanValidator validator;
+    private final int chunkSize;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public StreamingIbanValidator(IbanValidator validator) {
+        this(validator, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param validator
+     *            The validator to pass each IBAN to.
+     * @param chunkSize
+     *            The number of IBANs to read before validating them and
+     *            flushing the results.
+     */
+    public StreamingIbanValidator(IbanValidator validator, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1: " + chunkSize);
+        }
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads a JSON array of IBANs and writes a JSON array of results.
+     *
+     * @return The number of IBANs validated.
+     * @throws JsonParseException
+     *             If the input is not an array of strings. Any results for
+     *             IBANs before the problem will already have been written.
+     */
+    public int validateJson(InputStream in, OutputStream out) throws IOException {
+        JsonFactory factory = mapper.getFactory();
+        JsonParser parser = factory.createParser(in);
+        JsonGenerator generator = factory.createGenerator(out, JsonEncoding.UTF8);
+        try {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException("Expected an array of IBANs.",
+                        parser.getCurrentLocation());
+            }
+            generator.writeStartArray();
+
+            List<String> chunk = new ArrayList<String>(chunkSize);
+            int count = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.VALUE_STRING) {
+                    throw new JsonParseException("Expected an IBAN string but found " + token,
+                            parser.getCurrentLocation());
+                }
+                chunk.add(parser.getText());
+                if (chunk.size() == chunkSize) {
+                    count += writeChunk(chunk, generator, false);
+                }
+            }
+            count += writeChunk(chunk, generator, false);
+
+            generator.writeEndArray();
+            return count;
+        } finally {
+            generator.close();
+            parser.close();
+        }
+    }
+
+    /**
+     * Reads IBANs from the lines of UTF-8 text and writes a line of JSON for
+     * each result.
+     *
+     * @return The number of IBANs validated.
+     */
+    public int validateLines(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF8));
+        JsonGenerator generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        // Each result is followed by a newline, so don't separate them with
+        // the default space as well.
+        generator.setRootValueSeparator(null);
+        try {
+            List<String> chunk = new ArrayList<String>(chunkSize);
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String iban = line.trim();
+                if (iban.length() == 0) {
+                    continue;
+                }
+                chunk.add(iban);
+                if (chunk.size() == chunkSize) {
+                    count += writeChunk(chunk, generator, true);
+                }
+            }
+            count += writeChunk(chunk, generator, true);
+            return count;
+        } finally {
+            generator.close();
+            reader.close();
+        }
+    }
+
+    /**
+     * Validates a chunk of IBANs, writes the results and flushes them to the
+     * client, then clears the chunk ready for the next one.
+     *
+     * @return The number of IBANs in the chunk.
+     */
+    private int writeChunk(List<String> chunk, JsonGenerator generator, boolean newlines)
+            throws IOException {
+        for (String iban : chunk) {
+            generator.writeObject(validator.validateIban(iban));
+            if (newlines) {
+                generator.writeRaw('\n');
+            }
+        }
+        generator.flush();
+
+        int size = chunk.size();
+        chunk.clear();
+        if (log.isDebugEnabled()) {
+            log.debug("Validated a chunk of {} IBANs.", size);
+        }
+        return size;
+    }
+
+}
@@ -1,9 +1,29 @@
 package com.sctrcd.payments.validation.payment;
 
+import java.util.Collection;
+import java.util.List;
+
 import com.sctrcd.payments.facts.Payment;
 
 public interface PaymentValidator {
 	
 	public FxPaymentValidationResult validatePayment(Payment payment);
+	
+	/**
+	 * Validates a payment, optionally returning a trace of the rules which
+	 * fired with the result.
+	 * 
+	 * @param payment The payment to validate.
+	 * @param trace Whether to populate the rule trace on the result.
+	 */
+	public FxPaymentValidationResult validatePayment(Payment payment, boolean trace);
+	
+	/**
+	 * Validates a batch of payments.
+	 * 
+	 * @param payments The payments to validate.
+	 * @return A result for each payment, in the same order as the payments.
+	 */
+	public List<FxPaymentValidationResult> validatePayments(Collection<Payment> payments);
     
 }
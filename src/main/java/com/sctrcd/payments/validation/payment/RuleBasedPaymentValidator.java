@@ -1,22 +1,32 @@
 package com.sctrcd.payments.validation.payment;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.drools.KnowledgeBase;
 import org.drools.builder.ResourceType;
 import org.drools.conf.EventProcessingOption;
-import org.drools.runtime.StatelessKnowledgeSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import com.sctrcd.drools.util.Activation;
 import com.sctrcd.drools.util.DroolsResource;
-import com.sctrcd.drools.util.DroolsUtil;
+import com.sctrcd.drools.util.KnowledgeBaseManager;
 import com.sctrcd.drools.util.ResourcePathType;
-import com.sctrcd.drools.util.TrackingAgendaEventListener;
-import com.sctrcd.drools.util.TrackingWorkingMemoryEventListener;
+import com.sctrcd.drools.util.RuleMetrics;
+import com.sctrcd.drools.util.RuleMetricsAgendaEventListener;
+import com.sctrcd.drools.util.StatelessSessionExecutor;
 import com.sctrcd.payments.enums.CountryEnum;
+import com.sctrcd.payments.facts.AnnotationLevel;
 import com.sctrcd.payments.facts.Country;
+import com.sctrcd.payments.validation.CountryCodeIndex;
+import com.sctrcd.payments.validation.StageLatencies;
+import com.sctrcd.payments.validation.iban.IbanRegistry;
 import com.sctrcd.payments.facts.Payment;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
 import com.sctrcd.payments.facts.PaymentValidationRequest;
 
 /**
@@ -25,57 +35,177 @@ import com.sctrcd.payments.facts.PaymentValidationRequest;
 @Service("ruleBasedPaymentValidator")
 public class RuleBasedPaymentValidator implements PaymentValidator {
 
-    private KnowledgeBase kbase;
+    private static Logger log = LoggerFactory.getLogger(RuleBasedPaymentValidator.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 100;
+
+    public static final String NOT_VALIDATED = "Payment could not be validated.";
+    
+    private final KnowledgeBaseManager rules;
+    
+    private StageLatencies latencies = StageLatencies.getDefault();
+    
+    /**
+     * The number of payments inserted into each session when validating a
+     * batch of payments.
+     */
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
     
     public final List<Country> countries = new ArrayList<Country>();
     
     public RuleBasedPaymentValidator() {
-        this.kbase = DroolsUtil.createKnowledgeBase(
-                new DroolsResource[]{ 
-                        new DroolsResource("rules/payments/validation/IbanRules.drl", 
-                                ResourcePathType.CLASSPATH, 
-                                ResourceType.DRL),
-                        new DroolsResource("rules/payments/validation/BicRules.drl", 
-                                ResourcePathType.CLASSPATH, 
-                                ResourceType.DRL),
-                        new DroolsResource("rules/payments/validation/PaymentRules.drl", 
-                                ResourcePathType.CLASSPATH, 
-                                ResourceType.DRL)
-                }, 
-                EventProcessingOption.CLOUD);
+        DroolsResource[] resources = new DroolsResource[]{ 
+                new DroolsResource("rules/payments/validation/IbanRules.drl", 
+                        ResourcePathType.CLASSPATH, 
+                        ResourceType.DRL),
+                new DroolsResource("rules/payments/validation/BicRules.drl", 
+                        ResourcePathType.CLASSPATH, 
+                        ResourceType.DRL),
+                new DroolsResource("rules/payments/validation/PaymentRules.drl", 
+                        ResourcePathType.CLASSPATH, 
+                        ResourceType.DRL)
+        };
         for (CountryEnum c : CountryEnum.values()) {
             countries.add(new Country(c.isoCode, c.name));
         }
+        Map<String, Object> globals = new HashMap<String, Object>();
+        globals.put("countryIndex", new CountryCodeIndex(countries));
+        globals.put("ibanRegistry", IbanRegistry.getDefault());
+        this.rules = new KnowledgeBaseManager("Payment rules", resources, EventProcessingOption.CLOUD, 
+                globals, new RuleMetricsAgendaEventListener(RuleMetrics.getDefault()));
+        // Rule metrics are opt-in, so requests use the shared session unless
+        // a sample rate is set through getKnowledgeBaseManager().
+        this.rules.setListenerSampleRate(0);
     }
     
 	@Override
 	public FxPaymentValidationResult validatePayment(Payment payment) {
-	    StatelessKnowledgeSession ksession = kbase.newStatelessKnowledgeSession();
-	    
-	    ksession.setGlobal("countryList", countries);
-	    
-	    TrackingAgendaEventListener agendaEventListener = 
-	            new TrackingAgendaEventListener();
-	    TrackingWorkingMemoryEventListener workingMemoryEventListener = 
-	            new TrackingWorkingMemoryEventListener();
-	    ksession.addEventListener(agendaEventListener);
-	    ksession.addEventListener(workingMemoryEventListener);
-	    
+	    return validatePayment(payment, false);
+	}
+	
+	@Override
+	public FxPaymentValidationResult validatePayment(Payment payment, boolean trace) {
 	    PaymentValidationRequest request = new PaymentValidationRequest(payment);
 	    request.setPayment(payment);
 	    
-	    List<Object> facts = new ArrayList<Object>();
-	    facts.add(request);
-	    
-		ksession.execute(facts);
+	    List<Activation> ruleTrace = null;
+	    long start = System.nanoTime();
+	    if (trace) {
+	        ruleTrace = rules.getExecutor().executeAndTrace(request);
+	    } else {
+	        rules.getExecutor().execute(request);
+	    }
+	    latencies.recordSince(StageLatencies.PAYMENT, StageLatencies.RULES, start);
 		
+	    start = System.nanoTime();
 		FxPaymentValidationResult result = new FxPaymentValidationResult();
 		result.addAnnotations(request.getAnnotations());
-		
-		ksession.removeEventListener(agendaEventListener);
-		ksession.removeEventListener(workingMemoryEventListener);
+		result.setRuleTrace(ruleTrace);
+		latencies.recordSince(StageLatencies.PAYMENT, StageLatencies.RESULT, start);
 		
 		return result;
 	}
 	
+	/**
+	 * Validates a batch of payments, inserting a chunk of them at a time into
+	 * the same session. The rules tie every annotation to the request it was
+	 * raised for, so each payment still gets only its own annotations. The
+	 * whole batch is validated against the same rules, even if new rules are
+	 * swapped in part way through.
+	 * 
+	 * @return A result for each payment, in the order of the payments.
+	 */
+	@Override
+	public List<FxPaymentValidationResult> validatePayments(Collection<Payment> payments) {
+	    StatelessSessionExecutor executor = rules.getExecutor();
+	    List<FxPaymentValidationResult> results = new ArrayList<FxPaymentValidationResult>(payments.size());
+	    List<PaymentValidationRequest> chunk = new ArrayList<PaymentValidationRequest>(
+	            Math.min(chunkSize, payments.size()));
+	    
+	    for (Payment payment : payments) {
+	        chunk.add(new PaymentValidationRequest(payment));
+	        if (chunk.size() == chunkSize) {
+	            validateChunk(executor, chunk, results);
+	        }
+	    }
+	    validateChunk(executor, chunk, results);
+	    
+	    return results;
+	}
+	
+	private void validateChunk(StatelessSessionExecutor executor, List<PaymentValidationRequest> chunk,
+	        List<FxPaymentValidationResult> results) {
+	    if (chunk.isEmpty()) {
+	        return;
+	    }
+	    long start = System.nanoTime();
+	    try {
+	        executor.execute(chunk);
+	    } catch (RuntimeException e) {
+	        // One payment which makes the rules fail shouldn't fail the rest
+	        // of the chunk, so validate each of them on its own.
+	        log.warn("Validation failed for a chunk of {} payments, so validating them one at a time.",
+	                chunk.size(), e);
+	        validateEach(executor, chunk);
+	    }
+	    latencies.recordSince(StageLatencies.PAYMENT_BATCH, StageLatencies.RULES, start);
+	    
+	    start = System.nanoTime();
+	    for (PaymentValidationRequest request : chunk) {
+	        FxPaymentValidationResult result = new FxPaymentValidationResult();
+	        result.addAnnotations(request.getAnnotations());
+	        results.add(result);
+	    }
+	    latencies.recordSince(StageLatencies.PAYMENT_BATCH, StageLatencies.RESULT, start);
+	    chunk.clear();
+	}
+	
+	/**
+	 * Replaces each request of a chunk which failed with a fresh one, as the
+	 * failed execution may have left annotations on it, and validates it in a
+	 * session of its own. A payment which still makes the rules fail is
+	 * rejected.
+	 */
+	private static void validateEach(StatelessSessionExecutor executor, List<PaymentValidationRequest> chunk) {
+	    for (int i = 0; i < chunk.size(); i++) {
+	        PaymentValidationRequest request = new PaymentValidationRequest(chunk.get(i).getPayment());
+	        try {
+	            executor.execute(request);
+	        } catch (RuntimeException e) {
+	            log.warn("Unable to validate a payment, so rejecting it.", e);
+	            request = new PaymentValidationRequest(request.getPayment());
+	            request.addAnnotation(new PaymentValidationAnnotation(request, NOT_VALIDATED,
+	                    AnnotationLevel.REJECT, "The payment could not be validated.", null));
+	        }
+	        chunk.set(i, request);
+	    }
+	}
+	
+	public int getChunkSize() {
+	    return chunkSize;
+	}
+	
+	public void setChunkSize(int chunkSize) {
+	    if (chunkSize < 1) {
+	        throw new IllegalArgumentException("Chunk size must be at least 1: " + chunkSize);
+	    }
+	    this.chunkSize = chunkSize;
+	}
+	
+	/**
+	 * @return The manager holding the current rules, which can reload them
+	 *         when they change.
+	 */
+	public KnowledgeBaseManager getKnowledgeBaseManager() {
+	    return rules;
+	}
+
+	public StageLatencies getStageLatencies() {
+	    return latencies;
+	}
+
+	public void setStageLatencies(StageLatencies latencies) {
+	    this.latencies = latencies;
+	}
+	
 }
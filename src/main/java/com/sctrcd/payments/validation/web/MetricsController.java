@@ -0,0 +1,200 @@
+package com.sctrcd.payments.validation.web;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import com.sctrcd.drools.util.KnowledgeBaseSwap;
+import com.sctrcd.drools.util.RuleMetrics;
+import com.sctrcd.drools.util.RuleTiming;
+import com.sctrcd.payments.validation.RuleReloadService;
+import com.sctrcd.payments.validation.StageLatencies;
+import com.sctrcd.payments.validation.StageTiming;
+import com.sctrcd.payments.validation.ValidationExecutor;
+import com.sctrcd.payments.validation.ValidationExecutorMetrics;
+
+/**
+ * Exposes metrics about how the validation services are performing, for
+ * monitoring rather than for clients.
+ *
+ * @author Stephen Masters
+ */
+@Controller("metricsController")
+public class MetricsController {
+
+    @Autowired(required = true)
+    private ValidationExecutor validationExecutor;
+
+    @Autowired(required = true)
+    private RuleReloadService ruleReloadService;
+
+    private RuleMetrics ruleMetrics = RuleMetrics.getDefault();
+
+    private StageLatencies stageLatencies = StageLatencies.getDefault();
+
+    /**
+     * Whether the rules can be reloaded over HTTP. Off by default, as there
+     * is nothing to stop anyone who can reach the admin URLs from asking.
+     */
+    private volatile boolean reloadEnabled = false;
+
+    /**
+     * @return The queue depth, thread usage and queue wait times of the
+     *         executor which runs asynchronous validations.
+     */
+    @RequestMapping(value = "/admin/metrics/executor", method = RequestMethod.GET, produces = "application/json")
+    public @ResponseBody
+    ValidationExecutorMetrics executorMetrics() {
+        return validationExecutor.getMetrics();
+    }
+
+    /**
+     * @return How many times each rule has fired and how long its consequence
+     *         took, with the rules which have taken the most time in total
+     *         first.
+     */
+    @RequestMapping(value = "/admin/metrics/rules", method = RequestMethod.GET, produces = "application/json")
+    public @ResponseBody
+    List<RuleTiming> ruleMetrics() {
+        return ruleMetrics.getRuleTimings();
+    }
+
+    /**
+     * Clears the rule metrics, for instance before starting a load test.
+     */
+    @RequestMapping(value = "/admin/metrics/rules", method = RequestMethod.DELETE)
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void resetRuleMetrics() {
+        ruleMetrics.reset();
+    }
+
+    /**
+     * @return The proportion of executions of the rules which record rule
+     *         metrics.
+     */
+    @RequestMapping(value = "/admin/metrics/rules/sampleRate", method = RequestMethod.GET, produces = "application/json")
+    public @ResponseBody
+    double ruleMetricsSampleRate() {
+        return ruleReloadService.getRuleMetricsSampleRate();
+    }
+
+    /**
+     * Records rule metrics for a proportion of the executions of every
+     * validator's rules, which is zero until this is called. Those executions
+     * get a session of their own rather than the shared session, so keep the
+     * rate low under production load.
+     *
+     * @param rate
+     *            Between 0 and 1, or the client gets a 400.
+     */
+    @RequestMapping(value = "/admin/metrics/rules/sampleRate", method = RequestMethod.PUT)
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void setRuleMetricsSampleRate(@RequestParam("rate") double rate) {
+        ruleReloadService.setRuleMetricsSampleRate(rate);
+    }
+
+    /**
+     * A sample rate outside 0 to 1 is the client's mistake.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public void handleIllegalArgument() {
+    }
+
+    /**
+     * @return The latency percentiles of each stage of each kind of
+     *         validation request.
+     */
+    @RequestMapping(value = "/admin/metrics/stages", method = RequestMethod.GET, produces = "application/json")
+    public @ResponseBody
+    List<StageTiming> stageMetrics() {
+        return stageLatencies.getStageTimings();
+    }
+
+    /**
+     * Clears the stage latencies.
+     */
+    @RequestMapping(value = "/admin/metrics/stages", method = RequestMethod.DELETE)
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void resetStageMetrics() {
+        stageLatencies.reset();
+    }
+
+    /**
+     * @return The most recent reloads of the rules, oldest first, with how
+     *         long each took to compile and whether it was swapped in.
+     */
+    @RequestMapping(value = "/admin/metrics/reloads", method = RequestMethod.GET, produces = "application/json")
+    public @ResponseBody
+    List<KnowledgeBaseSwap> reloadMetrics() {
+        return ruleReloadService.getHistory();
+    }
+
+    /**
+     * Queues a reload of all of the rules, rather than waiting for them to be
+     * checked, and whether or not they have changed. The rules are compiled
+     * on the reload thread, not the request thread, and the result appears
+     * in the {@link #reloadMetrics() reloads}.
+     *
+     * @throws ReloadDisabledException
+     *             Unless reloading has been enabled, which gets the client a
+     *             403.
+     */
+    @RequestMapping(value = "/admin/rules/reload", method = RequestMethod.POST)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void reloadRules() {
+        if (!reloadEnabled) {
+            throw new ReloadDisabledException("Reloading the rules over HTTP is disabled.");
+        }
+        ruleReloadService.requestReloadAll();
+    }
+
+    public ValidationExecutor getValidationExecutor() {
+        return validationExecutor;
+    }
+
+    public void setValidationExecutor(ValidationExecutor validationExecutor) {
+        this.validationExecutor = validationExecutor;
+    }
+
+    public RuleReloadService getRuleReloadService() {
+        return ruleReloadService;
+    }
+
+    public void setRuleReloadService(RuleReloadService ruleReloadService) {
+        this.ruleReloadService = ruleReloadService;
+    }
+
+    public boolean isReloadEnabled() {
+        return reloadEnabled;
+    }
+
+    public void setReloadEnabled(boolean reloadEnabled) {
+        this.reloadEnabled = reloadEnabled;
+    }
+
+    public RuleMetrics getRuleMetrics() {
+        return ruleMetrics;
+    }
+
+    public void setRuleMetrics(RuleMetrics ruleMetrics) {
+        this.ruleMetrics = ruleMetrics;
+    }
+
+    public StageLatencies getStageLatencies() {
+        return stageLatencies;
+    }
+
+    public void setStageLatencies(StageLatencies stageLatencies) {
+        this.stageLatencies = stageLatencies;
+    }
+
+}
@@ -1,5 +1,12 @@
 package com.sctrcd.payments.validation.web;
 
+import java.io.IOException;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.servlet.ModelAndView;
 
 import com.sctrcd.payments.facts.Payment;
@@ -15,6 +22,22 @@ public interface PaymentValidationController {
     
 	IbanValidationResult validateIban(String iban);
 	
+	IbanValidationResult validateIban(String iban, boolean trace);
+	
+	void validateIbanBatch(HttpServletRequest request, HttpServletResponse response) throws IOException;
+	
 	FxPaymentValidationResult validatePayment(Payment payment);
+	
+	FxPaymentValidationResult validatePayment(Payment payment, boolean trace);
+	
+	List<FxPaymentValidationResult> validatePayments(List<Payment> payments);
+	
+	DeferredResult<BicValidationResult> validateBicAsync(String bic);
+	
+	DeferredResult<IbanValidationResult> validateIbanAsync(String iban, boolean trace);
+	
+	DeferredResult<FxPaymentValidationResult> validatePaymentAsync(Payment payment, boolean trace);
+	
+	DeferredResult<List<FxPaymentValidationResult>> validatePaymentsAsync(List<Payment> payments);
 
 }
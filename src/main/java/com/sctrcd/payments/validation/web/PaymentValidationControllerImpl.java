@@ -1,21 +1,37 @@
 package com.sctrcd.payments.validation.web;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.servlet.ModelAndView;
 
 import com.sctrcd.payments.facts.Payment;
+import com.sctrcd.payments.validation.StageLatencies;
+import com.sctrcd.payments.validation.ValidationExecutor;
 import com.sctrcd.payments.validation.bic.BicValidationResult;
-import com.sctrcd.payments.validation.bic.SimpleBicValidator;
+import com.sctrcd.payments.validation.bic.BicValidator;
 import com.sctrcd.payments.validation.iban.IbanValidationResult;
 import com.sctrcd.payments.validation.iban.IbanValidator;
+import com.sctrcd.payments.validation.iban.StreamingIbanValidator;
 import com.sctrcd.payments.validation.payment.FxPaymentValidationResult;
 import com.sctrcd.payments.validation.payment.PaymentValidator;
 
@@ -31,18 +47,43 @@ public class PaymentValidationControllerImpl implements
     private PaymentValidator paymentValidator;
 
     @Autowired(required = true)
-    @Qualifier("ruleBasedIbanValidator")
+    @Qualifier("cachingIbanValidator")
     private IbanValidator ibanValidator;
 
+    /**
+     * Batches of IBANs bypass the cache, as a large batch would evict all of
+     * the entries cached for single requests, and every chunk would contend
+     * for the cache.
+     */
+    @Autowired(required = true)
+    @Qualifier("ruleBasedIbanValidator")
+    private IbanValidator batchIbanValidator;
+
+    @Autowired(required = true)
+    @Qualifier("cachingBicValidator")
+    private BicValidator bicValidator;
+
     @Autowired(required = true)
-    private SimpleBicValidator bicValidator;
+    private ValidationExecutor validationExecutor;
+
+    private StageLatencies stageLatencies = StageLatencies.getDefault();
+
+    /**
+     * The proportion of requests, between 0 and 1, which return a rule trace
+     * even though they did not ask for one. Zero by default, so tracing only
+     * happens when a request has the <code>trace=true</code> parameter.
+     */
+    private volatile double traceSampleRate = 0;
 
     @Override
+    @TimedPipeline(StageLatencies.BIC)
     @RequestMapping(value = "/bic/validate/{bic}", method = RequestMethod.GET, produces = "application/json")
     public @ResponseBody
     BicValidationResult validateBic(@PathVariable String bic) {
+        long start = System.nanoTime();
         BicValidationResult result = bicValidator.validate(bic);
-        log.debug("Validated IBAN: " + result.toString());
+        stageLatencies.recordSince(StageLatencies.BIC, StageLatencies.VALIDATE, start);
+        log.debug("Validated BIC: {}", result);
         return result;
     }
 
@@ -54,28 +95,209 @@ public class PaymentValidationControllerImpl implements
     }
 
     @Override
+    public IbanValidationResult validateIban(String iban) {
+        return validateIban(iban, false);
+    }
+
+    @Override
+    @TimedPipeline(StageLatencies.IBAN)
     @RequestMapping(value = "/iban/validate/{iban}", method = RequestMethod.GET, produces = "application/json")
     public @ResponseBody
-    IbanValidationResult validateIban(@PathVariable String iban) {
-        IbanValidationResult result = ibanValidator.validateIban(iban);
-        log.debug("Validated IBAN: " + result.toString());
+    IbanValidationResult validateIban(@PathVariable String iban,
+            @RequestParam(value = "trace", required = false, defaultValue = "false") boolean trace) {
+        long start = System.nanoTime();
+        IbanValidationResult result = ibanValidator.validateIban(iban, isTraced(trace));
+        stageLatencies.recordSince(StageLatencies.IBAN, StageLatencies.VALIDATE, start);
+        log.debug("Validated IBAN: {}", result);
         return result;
     }
 
+    /**
+     * Validates a batch of IBANs, streaming the results back as they are
+     * produced. A JSON array of IBANs gets a JSON array of results back, and
+     * plain text with an IBAN per line gets newline-delimited JSON back.
+     */
+    @Override
+    @TimedPipeline(StageLatencies.IBAN_BATCH)
+    @RequestMapping(value = "/iban/validate", method = RequestMethod.POST, 
+            consumes = { "application/json", "text/plain" })
+    public void validateIbanBatch(HttpServletRequest request, HttpServletResponse response) 
+            throws IOException {
+        StreamingIbanValidator streamingValidator = new StreamingIbanValidator(batchIbanValidator);
+        int count;
+        if (MediaType.APPLICATION_JSON.includes(MediaType.parseMediaType(request.getContentType()))) {
+            response.setContentType("application/json;charset=UTF-8");
+            count = streamingValidator.validateJson(request.getInputStream(), response.getOutputStream());
+        } else {
+            response.setContentType("application/x-ndjson;charset=UTF-8");
+            count = streamingValidator.validateLines(request.getInputStream(), response.getOutputStream());
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Validated batch of {} IBANs.", count);
+        }
+    }
+
+    @Override
+    public FxPaymentValidationResult validatePayment(Payment payment) {
+        return validatePayment(payment, false);
+    }
+
     @Override
+    @TimedPipeline(StageLatencies.PAYMENT)
     @RequestMapping(value = "/payment/validate", method = RequestMethod.GET, headers = "Accept=application/json")
     public @ResponseBody
-    FxPaymentValidationResult validatePayment(Payment payment) {
-        FxPaymentValidationResult result = paymentValidator.validatePayment(payment);
-        log.debug("Validated payment: " + result.toString());
+    FxPaymentValidationResult validatePayment(Payment payment,
+            @RequestParam(value = "trace", required = false, defaultValue = "false") boolean trace) {
+        long start = System.nanoTime();
+        FxPaymentValidationResult result = paymentValidator.validatePayment(payment, isTraced(trace));
+        stageLatencies.recordSince(StageLatencies.PAYMENT, StageLatencies.VALIDATE, start);
+        log.debug("Validated payment: {}", result);
         return result;
     }
 
-    public SimpleBicValidator getBicValidator() {
+    /**
+     * Validates a JSON array of payments, returning an array of results in the
+     * same order.
+     */
+    @Override
+    @TimedPipeline(StageLatencies.PAYMENT_BATCH)
+    @RequestMapping(value = "/payment/validate", method = RequestMethod.POST, 
+            consumes = "application/json", produces = "application/json")
+    public @ResponseBody
+    List<FxPaymentValidationResult> validatePayments(@RequestBody List<Payment> payments) {
+        long start = System.nanoTime();
+        List<FxPaymentValidationResult> results = paymentValidator.validatePayments(payments);
+        stageLatencies.recordSince(StageLatencies.PAYMENT_BATCH, StageLatencies.VALIDATE, start);
+        if (log.isDebugEnabled()) {
+            log.debug("Validated batch of {} payments.", results.size());
+        }
+        return results;
+    }
+
+    /**
+     * As {@link #validateBic(String)}, but on a validation thread, so that the
+     * request thread is free to handle other requests in the meantime.
+     */
+    @Override
+    @TimedPipeline(StageLatencies.BIC)
+    @RequestMapping(value = "/async/bic/validate/{bic}", method = RequestMethod.GET, produces = "application/json")
+    public @ResponseBody
+    DeferredResult<BicValidationResult> validateBicAsync(@PathVariable final String bic) {
+        return defer(StageLatencies.BIC, new Callable<BicValidationResult>() {
+            @Override
+            public BicValidationResult call() {
+                return bicValidator.validate(bic);
+            }
+        });
+    }
+
+    /**
+     * As {@link #validateIban(String, boolean)}, but on a validation thread.
+     */
+    @Override
+    @TimedPipeline(StageLatencies.IBAN)
+    @RequestMapping(value = "/async/iban/validate/{iban}", method = RequestMethod.GET, produces = "application/json")
+    public @ResponseBody
+    DeferredResult<IbanValidationResult> validateIbanAsync(@PathVariable final String iban,
+            @RequestParam(value = "trace", required = false, defaultValue = "false") boolean trace) {
+        final boolean traced = isTraced(trace);
+        return defer(StageLatencies.IBAN, new Callable<IbanValidationResult>() {
+            @Override
+            public IbanValidationResult call() {
+                return ibanValidator.validateIban(iban, traced);
+            }
+        });
+    }
+
+    /**
+     * As {@link #validatePayment(Payment, boolean)}, but on a validation
+     * thread.
+     */
+    @Override
+    @TimedPipeline(StageLatencies.PAYMENT)
+    @RequestMapping(value = "/async/payment/validate", method = RequestMethod.GET, headers = "Accept=application/json")
+    public @ResponseBody
+    DeferredResult<FxPaymentValidationResult> validatePaymentAsync(final Payment payment,
+            @RequestParam(value = "trace", required = false, defaultValue = "false") boolean trace) {
+        final boolean traced = isTraced(trace);
+        return defer(StageLatencies.PAYMENT, new Callable<FxPaymentValidationResult>() {
+            @Override
+            public FxPaymentValidationResult call() {
+                return paymentValidator.validatePayment(payment, traced);
+            }
+        });
+    }
+
+    /**
+     * As {@link #validatePayments(List)}, but on a validation thread. The
+     * whole batch is one validation, so it only takes up one place in the
+     * queue.
+     */
+    @Override
+    @TimedPipeline(StageLatencies.PAYMENT_BATCH)
+    @RequestMapping(value = "/async/payment/validate", method = RequestMethod.POST, 
+            consumes = "application/json", produces = "application/json")
+    public @ResponseBody
+    DeferredResult<List<FxPaymentValidationResult>> validatePaymentsAsync(
+            @RequestBody final List<Payment> payments) {
+        return defer(StageLatencies.PAYMENT_BATCH, new Callable<List<FxPaymentValidationResult>>() {
+            @Override
+            public List<FxPaymentValidationResult> call() {
+                return paymentValidator.validatePayments(payments);
+            }
+        });
+    }
+
+    /**
+     * Queues a validation on the {@link ValidationExecutor}, returning a
+     * result which Spring MVC will write to the response once the validation
+     * has run. The validation is timed as the {@link StageLatencies#VALIDATE}
+     * stage of the pipeline.
+     * 
+     * @throws ValidationUnavailableException
+     *             If the queue is full, which gets the client a 503.
+     */
+    private <T> DeferredResult<T> defer(final String pipeline, final Callable<T> validation) {
+        final DeferredResult<T> deferred = new DeferredResult<T>();
+        try {
+            validationExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long start = System.nanoTime();
+                        T result = validation.call();
+                        stageLatencies.recordSince(pipeline, StageLatencies.VALIDATE, start);
+                        deferred.setResult(result);
+                    } catch (Exception e) {
+                        log.error("Validation failed.", e);
+                        deferred.setErrorResult(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Rejected validation: {}", validationExecutor.getMetrics());
+            throw new ValidationUnavailableException("The validation queue is full.", e);
+        }
+        return deferred;
+    }
+
+    /**
+     * Decides whether a request should be traced. It is if it asked to be, or
+     * if it is picked by the sample rate.
+     */
+    private boolean isTraced(boolean requested) {
+        if (requested) {
+            return true;
+        }
+        double rate = traceSampleRate;
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    public BicValidator getBicValidator() {
         return bicValidator;
     }
 
-    public void setBicValidator(SimpleBicValidator bicValidator) {
+    public void setBicValidator(BicValidator bicValidator) {
         this.bicValidator = bicValidator;
     }
 
@@ -87,6 +309,42 @@ public class PaymentValidationControllerImpl implements
         this.ibanValidator = ibanValidator;
     }
 
+    public IbanValidator getBatchIbanValidator() {
+        return batchIbanValidator;
+    }
+
+    public void setBatchIbanValidator(IbanValidator batchIbanValidator) {
+        this.batchIbanValidator = batchIbanValidator;
+    }
+
+    public double getTraceSampleRate() {
+        return traceSampleRate;
+    }
+
+    public void setTraceSampleRate(double traceSampleRate) {
+        if (traceSampleRate < 0 || traceSampleRate > 1) {
+            throw new IllegalArgumentException(
+                    "The trace sample rate must be between 0 and 1: " + traceSampleRate);
+        }
+        this.traceSampleRate = traceSampleRate;
+    }
+
+    public ValidationExecutor getValidationExecutor() {
+        return validationExecutor;
+    }
+
+    public void setValidationExecutor(ValidationExecutor validationExecutor) {
+        this.validationExecutor = validationExecutor;
+    }
+
+    public StageLatencies getStageLatencies() {
+        return stageLatencies;
+    }
+
+    public void setStageLatencies(StageLatencies stageLatencies) {
+        this.stageLatencies = stageLatencies;
+    }
+
     public PaymentValidator getPaymentValidator() {
         return paymentValidator;
     }
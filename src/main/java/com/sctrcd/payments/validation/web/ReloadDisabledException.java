@@ -0,0 +1,21 @@
+package com.sctrcd.payments.validation.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when the rules are asked to be reloaded over HTTP, but that hasn't
+ * been enabled. Clients get a 403.
+ *
+ * @author Stephen Masters
+ */
+@ResponseStatus(value = HttpStatus.FORBIDDEN, reason = "Reloading the rules over HTTP is disabled.")
+public class ReloadDisabledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ReloadDisabledException(String message) {
+        super(message);
+    }
+
+}
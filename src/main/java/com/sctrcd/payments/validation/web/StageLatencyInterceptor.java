@@ -0,0 +1,74 @@
+package com.sctrcd.payments.validation.web;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.sctrcd.payments.validation.StageLatencies;
+
+/**
+ * Records the {@link StageLatencies#REQUEST} stage for handler methods
+ * annotated with {@link TimedPipeline}, from the dispatcher handing the
+ * request over until the response has been written.
+ * <p>
+ * The pipeline is also left on the request as an attribute, so that later
+ * stages which don't know which handler they are working for, such as the
+ * {@link TimedMappingJackson2HttpMessageConverter}, can record against it.
+ * </p>
+ * <p>
+ * An asynchronous request is dispatched twice, once to start it and once to
+ * write the result. The start time is only set on the first, and the
+ * latency is recorded on completion of the second, so it covers the time
+ * spent waiting for a validation thread as well.
+ * </p>
+ *
+ * @author Stephen Masters
+ */
+public class StageLatencyInterceptor extends HandlerInterceptorAdapter {
+
+    public static final String PIPELINE_ATTRIBUTE = StageLatencyInterceptor.class.getName() + ".pipeline";
+    private static final String START_ATTRIBUTE = StageLatencyInterceptor.class.getName() + ".start";
+
+    private final StageLatencies latencies;
+
+    public StageLatencyInterceptor() {
+        this(StageLatencies.getDefault());
+    }
+
+    public StageLatencyInterceptor(StageLatencies latencies) {
+        this.latencies = latencies;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String pipeline = pipelineOf(handler);
+        if (pipeline != null) {
+            request.setAttribute(PIPELINE_ATTRIBUTE, pipeline);
+            if (request.getAttribute(START_ATTRIBUTE) == null) {
+                request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+            Object handler, Exception ex) {
+        Object pipeline = request.getAttribute(PIPELINE_ATTRIBUTE);
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (pipeline != null && start != null) {
+            latencies.recordSince((String) pipeline, StageLatencies.REQUEST, (Long) start);
+        }
+    }
+
+    private static String pipelineOf(Object handler) {
+        if (!(handler instanceof HandlerMethod)) {
+            return null;
+        }
+        TimedPipeline timed = ((HandlerMethod) handler).getMethodAnnotation(TimedPipeline.class);
+        return timed == null ? null : timed.value();
+    }
+
+}
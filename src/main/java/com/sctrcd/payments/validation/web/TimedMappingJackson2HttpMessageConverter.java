@@ -0,0 +1,55 @@
+package com.sctrcd.payments.validation.web;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.sctrcd.payments.validation.StageLatencies;
+
+/**
+ * Writes JSON in the same way as the standard converter, recording how long
+ * it took as the {@link StageLatencies#SERIALIZE} stage of the pipeline which
+ * the {@link StageLatencyInterceptor} left on the current request. Responses
+ * to requests which aren't in a pipeline are written without being timed.
+ *
+ * @author Stephen Masters
+ */
+public class TimedMappingJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final StageLatencies latencies;
+
+    public TimedMappingJackson2HttpMessageConverter() {
+        this(StageLatencies.getDefault());
+    }
+
+    public TimedMappingJackson2HttpMessageConverter(StageLatencies latencies) {
+        this.latencies = latencies;
+    }
+
+    @Override
+    protected void writeInternal(Object object, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        String pipeline = currentPipeline();
+        if (pipeline == null) {
+            super.writeInternal(object, outputMessage);
+            return;
+        }
+        long start = System.nanoTime();
+        super.writeInternal(object, outputMessage);
+        latencies.recordSince(pipeline, StageLatencies.SERIALIZE, start);
+    }
+
+    private static String currentPipeline() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        return (String) attributes.getAttribute(StageLatencyInterceptor.PIPELINE_ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+    }
+
+}
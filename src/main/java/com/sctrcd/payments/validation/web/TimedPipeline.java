@@ -0,0 +1,28 @@
+package com.sctrcd.payments.validation.web;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.sctrcd.payments.validation.StageLatencies;
+
+/**
+ * Marks a request handler method whose requests should have their latency
+ * recorded by the {@link StageLatencyInterceptor}, and names the
+ * {@link StageLatencies} pipeline to record them under.
+ *
+ * @author Stephen Masters
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TimedPipeline {
+
+    /**
+     * The pipeline, such as {@link StageLatencies#IBAN}.
+     */
+    String value();
+
+}
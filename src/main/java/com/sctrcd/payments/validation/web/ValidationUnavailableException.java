@@ -0,0 +1,21 @@
+package com.sctrcd.payments.validation.web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when there is no room to queue another validation. Clients get a
+ * 503, and should try again later.
+ *
+ * @author Stephen Masters
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Too many validations in progress.")
+public class ValidationUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ValidationUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.sctrcd.beans;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+import com.sctrcd.payments.facts.AnnotationLevel;
+import com.sctrcd.payments.facts.PaymentAttribute;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+
+public class CompiledBeanMatcherTest {
+
+    private final BeanMatcher matcher = new BeanMatcher();
+
+    @Test
+    public void shouldMatchTypedValues() {
+        CompiledBeanMatcher compiled = matcher.compile(
+                new BeanPropertyFilter("level", AnnotationLevel.REJECT),
+                new BeanPropertyFilter("attribute", PaymentAttribute.iban));
+        assertTrue(compiled.matches(annotation("Rule", AnnotationLevel.REJECT)));
+        assertFalse(compiled.matches(annotation("Rule", AnnotationLevel.WARN)));
+    }
+
+    @Test
+    public void shouldMatchStringValuesOfAnyType() {
+        CompiledBeanMatcher compiled = matcher.compile(new String[] { "RuleName=Rule", "level=REJECT" });
+        assertTrue(compiled.matches(annotation("Rule", AnnotationLevel.REJECT)));
+        assertFalse(compiled.matches(annotation("Other", AnnotationLevel.REJECT)));
+
+        assertTrue(matcher.compile(new BeanPropertyFilter("value", "1.50")).matches(
+                new ValueBean(new BigDecimal("1.50"))));
+    }
+
+    @Test
+    public void shouldNotMatchMissingProperties() {
+        CompiledBeanMatcher compiled = matcher.compile(new BeanPropertyFilter("uncle", "Bob"));
+        assertFalse(compiled.matches(annotation("Rule", AnnotationLevel.REJECT)));
+        assertFalse(compiled.matches(new ValueBean(BigDecimal.ONE)));
+    }
+
+    @Test
+    public void shouldMatchNullsOnlyToNulls() {
+        CompiledBeanMatcher nullValue = matcher.compile(new BeanPropertyFilter("value", null));
+        assertTrue(nullValue.matches(new ValueBean(null)));
+        assertFalse(nullValue.matches(new ValueBean(BigDecimal.ONE)));
+        assertFalse(matcher.compile(new BeanPropertyFilter("value", "1")).matches(new ValueBean(null)));
+    }
+
+    @Test
+    public void shouldNotMatchWhenGetterThrows() {
+        assertFalse(matcher.compile(new BeanPropertyFilter("broken", "x")).matches(new ValueBean(null)));
+    }
+
+    @Test
+    public void shouldMatchBeansOfDifferentClasses() {
+        CompiledBeanMatcher compiled = matcher.compile(new BeanPropertyFilter("value", "1"));
+        assertTrue(compiled.matches(new ValueBean(BigDecimal.ONE)));
+        assertTrue(compiled.matches(new OtherValueBean("1")));
+        assertFalse(compiled.matches(new OtherValueBean("2")));
+        assertFalse(compiled.matches(new ValueBean(BigDecimal.TEN)));
+        assertFalse(compiled.matches(annotation("Rule", AnnotationLevel.REJECT)));
+        assertTrue(compiled.matches(new ValueBean(BigDecimal.ONE)));
+    }
+
+    @Test
+    public void shouldMatchAnythingWithNoFilters() {
+        assertTrue(matcher.compile().matches(new Object()));
+    }
+
+    private static PaymentValidationAnnotation annotation(String ruleName, AnnotationLevel level) {
+        return new PaymentValidationAnnotation(ruleName, level, "Message", PaymentAttribute.iban);
+    }
+
+    private static class ValueBean {
+        private final BigDecimal value;
+        ValueBean(BigDecimal value) {
+            this.value = value;
+        }
+        public BigDecimal getValue() {
+            return value;
+        }
+        public String getBroken() {
+            throw new IllegalStateException("Broken");
+        }
+    }
+
+    private static class OtherValueBean {
+        private final String value;
+        OtherValueBean(String value) {
+            this.value = value;
+        }
+        public String getValue() {
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.sctrcd.drools.util;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.drools.definition.rule.Rule;
+import org.drools.event.rule.AfterActivationFiredEvent;
+import org.junit.Test;
+
+public class ConcurrentTrackingAgendaEventListenerTest {
+
+    @Test
+    public void shouldCountFiringsOfEachRule() {
+        ConcurrentTrackingAgendaEventListener listener = new ConcurrentTrackingAgendaEventListener();
+        listener.afterActivationFired(firedEvent(new String("A rule")));
+        listener.afterActivationFired(firedEvent(new String("A rule")));
+        listener.afterActivationFired(firedEvent("Another rule"));
+
+        assertTrue(listener.isRuleFired("A rule"));
+        assertFalse(listener.isRuleFired("Not a rule"));
+        assertEquals(2, listener.getFiredCount("A rule"));
+        assertEquals(1, listener.getFiredCount("Another rule"));
+
+        List<Activation> activations = listener.getActivationList();
+        assertEquals(3, activations.size());
+        assertEquals("Another rule", activations.get(2).getRuleName());
+        assertSame("The rule name should be reused.",
+                activations.get(0).getRuleName(), activations.get(1).getRuleName());
+
+        listener.reset();
+        assertFalse(listener.isRuleFired("A rule"));
+        assertTrue(listener.getActivationList().isEmpty());
+        assertEquals("No activations occurred.", listener.activationsToString());
+    }
+
+    @Test
+    public void shouldTrackFiringsFromManyThreads() throws Exception {
+        final ConcurrentTrackingAgendaEventListener listener = new ConcurrentTrackingAgendaEventListener();
+        final int threads = 4;
+        final int firings = 5000;
+        final AfterActivationFiredEvent[] events = new AfterActivationFiredEvent[10];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = firedEvent("Rule " + i);
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < firings; i++) {
+                        listener.afterActivationFired(events[i % events.length]);
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * firings, listener.getActivationList().size());
+        for (int i = 0; i < events.length; i++) {
+            assertEquals(threads * firings / events.length, listener.getFiredCount("Rule " + i));
+        }
+    }
+
+    private static AfterActivationFiredEvent firedEvent(String ruleName) {
+        Rule rule = mock(Rule.class);
+        when(rule.getName()).thenReturn(ruleName);
+        org.drools.runtime.rule.Activation activation = mock(org.drools.runtime.rule.Activation.class);
+        when(activation.getRule()).thenReturn(rule);
+        AfterActivationFiredEvent event = mock(AfterActivationFiredEvent.class);
+        when(event.getActivation()).thenReturn(activation);
+        return event;
+    }
+
+}
@@ -2,14 +2,58 @@ package com.sctrcd.drools.util;
 
 import static org.junit.Assert.*;
 
+import java.util.Collection;
+
+import org.drools.KnowledgeBaseFactory;
+import org.drools.runtime.StatefulKnowledgeSession;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
+import com.sctrcd.beans.BeanPropertyFilter;
+import com.sctrcd.payments.facts.AnnotationLevel;
+import com.sctrcd.payments.facts.Country;
+import com.sctrcd.payments.facts.PaymentAttribute;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+
 public class FactFinderTest {
 
+    private final FactFinder finder = new FactFinder();
+    private StatefulKnowledgeSession session;
+
+    @Before
+    public void setUp() {
+        session = KnowledgeBaseFactory.newKnowledgeBase().newStatefulKnowledgeSession();
+        for (int i = 0; i < 100; i++) {
+            session.insert(new PaymentValidationAnnotation("Rule " + (i % 10),
+                    i % 2 == 0 ? AnnotationLevel.REJECT : AnnotationLevel.WARN, "Message", PaymentAttribute.iban));
+        }
+        session.insert(new Country("GB", "United Kingdom"));
+    }
+
+    @After
+    public void tearDown() {
+        session.dispose();
+    }
+
     @Test
     public void shouldFindFactsBasedOnSimpleName() {
-        FactFinder finder = new FactFinder();
-        
+        Collection<Object> facts = finder.findFacts(session, "PaymentValidationAnnotation",
+                new BeanPropertyFilter("ruleName", "Rule 3"));
+        assertEquals(10, facts.size());
+        for (Object fact : facts) {
+            assertEquals("Rule 3", ((PaymentValidationAnnotation) fact).getRuleName());
+        }
+
+        assertEquals(50, finder.findFacts(session, "PaymentValidationAnnotation",
+                new BeanPropertyFilter("level", "REJECT")).size());
+        assertEquals(100, finder.findFacts(session, "PaymentValidationAnnotation").size());
+        assertEquals(1, finder.findFacts(session, "Country", new BeanPropertyFilter("isoCode", "GB")).size());
+    }
+
+    @Test
+    public void shouldNotFindFactsWithoutTheProperty() {
+        assertTrue(finder.findFacts(session, "Country", new BeanPropertyFilter("ruleName", "Rule 3")).isEmpty());
     }
 
 }
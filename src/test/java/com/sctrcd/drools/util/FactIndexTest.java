@@ -0,0 +1,139 @@
+package com.sctrcd.drools.util;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.List;
+
+import org.drools.KnowledgeBaseFactory;
+import org.drools.builder.ResourceType;
+import org.drools.runtime.StatefulKnowledgeSession;
+import org.drools.runtime.rule.FactHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sctrcd.beans.BeanPropertyFilter;
+import com.sctrcd.payments.facts.AnnotationLevel;
+import com.sctrcd.payments.facts.Country;
+import com.sctrcd.payments.facts.PaymentAttribute;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+
+/**
+ * Unit tests for the {@link FactIndex}, checking that it keeps up with the
+ * session, and finds the same facts as scanning the session would.
+ *
+ * @author Stephen Masters
+ */
+public class FactIndexTest {
+
+    private static final String ANNOTATION = "PaymentValidationAnnotation";
+
+    private StatefulKnowledgeSession session;
+    private FactIndex index;
+
+    @Before
+    public void setUp() {
+        session = KnowledgeBaseFactory.newKnowledgeBase().newStatefulKnowledgeSession();
+        session.insert(new Country("GB", "United Kingdom"));
+        index = FactIndex.attach(session);
+        for (int i = 0; i < 100; i++) {
+            session.insert(annotation("Rule " + (i % 10), i % 2 == 0 ? AnnotationLevel.REJECT : AnnotationLevel.WARN));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        session.dispose();
+    }
+
+    @Test
+    public void shouldIndexFactsByClass() {
+        assertEquals(101, index.size());
+        assertEquals(100, index.getFacts(ANNOTATION).size());
+        assertEquals(100, index.getFacts(PaymentValidationAnnotation.class).size());
+        assertEquals(1, index.getFacts("Country").size());
+        assertTrue(index.getFacts("Payment").isEmpty());
+    }
+
+    @Test
+    public void shouldFindTheSameFactsAsTheSession() {
+        index.addPropertyIndex(ANNOTATION, "ruleName");
+        index.addPropertyIndex(PaymentValidationAnnotation.class, "level");
+        assertSameAsSession(new BeanPropertyFilter("ruleName", "Rule 3"));
+        assertSameAsSession(new BeanPropertyFilter("level", AnnotationLevel.REJECT));
+        assertSameAsSession(new BeanPropertyFilter("level", "WARN"), new BeanPropertyFilter("ruleName", "Rule 3"));
+        assertSameAsSession(new BeanPropertyFilter("ruleName", "Rule 99"));
+        assertSameAsSession(new BeanPropertyFilter("uncle", "Bob"));
+        assertSameAsSession();
+    }
+
+    @Test
+    public void shouldFollowUpdatesAndRetractions() {
+        index.addPropertyIndex(Country.class, "isoCode");
+        Country country = new Country("FR", "France");
+        FactHandle handle = session.insert(country);
+        assertEquals(1, index.findFacts("Country", new BeanPropertyFilter("isoCode", "FR")).size());
+
+        country.setIsoCode("DE");
+        country.setName("Germany");
+        session.update(handle, country);
+        assertTrue(index.findFacts("Country", new BeanPropertyFilter("isoCode", "FR")).isEmpty());
+        assertEquals(1, index.findFacts("Country", new BeanPropertyFilter("isoCode", "DE")).size());
+
+        session.retract(handle);
+        assertTrue(index.findFacts("Country", new BeanPropertyFilter("isoCode", "DE")).isEmpty());
+        assertEquals(101, index.size());
+    }
+
+    @Test
+    public void shouldIndexPropertiesDeclaredBeforeFactsArrive() {
+        FactIndex empty = new FactIndex();
+        empty.addPropertyIndex(ANNOTATION, "ruleName");
+        StatefulKnowledgeSession other = KnowledgeBaseFactory.newKnowledgeBase().newStatefulKnowledgeSession();
+        try {
+            other.addEventListener(empty);
+            other.insert(annotation("Rule 1", AnnotationLevel.REJECT));
+            other.insert(annotation("Rule 2", AnnotationLevel.REJECT));
+            assertEquals(1, empty.findFacts(ANNOTATION, new BeanPropertyFilter("ruleName", "Rule 2")).size());
+        } finally {
+            other.dispose();
+        }
+    }
+
+    @Test
+    public void shouldBeUsedByTheFactFinderForAKnowledgeEnvironment() {
+        KnowledgeEnvironment kenv = new KnowledgeEnvironment(new DroolsResource[] {
+                new DroolsResource("sctrcd/drools/util/KnowledgeEnvironmentTest.drl",
+                        ResourcePathType.CLASSPATH, ResourceType.DRL) });
+        assertNull("Facts should only be indexed on request.", kenv.getFactIndex());
+        kenv.insert(annotation("Rule 1", AnnotationLevel.REJECT));
+
+        kenv.setIndexFacts(true);
+        kenv.getFactIndex().addPropertyIndex(ANNOTATION, "ruleName");
+        kenv.insert(annotation("Rule 2", AnnotationLevel.REJECT));
+        assertEquals(2, kenv.getFactIndex().size());
+        assertEquals(1, new FactFinder().findFacts(kenv, ANNOTATION,
+                new BeanPropertyFilter("ruleName", "Rule 1")).size());
+        kenv.retractAll();
+        assertEquals(0, kenv.getFactIndex().size());
+
+        kenv.setIndexFacts(false);
+        assertNull(kenv.getFactIndex());
+        kenv.insert(annotation("Rule 1", AnnotationLevel.REJECT));
+        assertEquals(1, new FactFinder().findFacts(kenv, ANNOTATION,
+                new BeanPropertyFilter("ruleName", "Rule 1")).size());
+    }
+
+    private void assertSameAsSession(BeanPropertyFilter... filters) {
+        List<Object> indexed = index.findFacts(ANNOTATION, filters);
+        List<Object> scanned = (List<Object>) new FactFinder().findFacts(session, ANNOTATION, filters);
+        assertEquals(new HashSet<Object>(scanned), new HashSet<Object>(indexed));
+        assertEquals(scanned.size(), indexed.size());
+    }
+
+    private static PaymentValidationAnnotation annotation(String ruleName, AnnotationLevel level) {
+        return new PaymentValidationAnnotation(ruleName, level, "Message", PaymentAttribute.iban);
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.sctrcd.drools.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.drools.builder.ResourceType;
+import org.drools.conf.EventProcessingOption;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sctrcd.drools.util.KnowledgeEnvironmentTest.Message;
+
+/**
+ * Unit tests for the {@link KnowledgeBaseManager}, reloading a DRL file which
+ * the tests rewrite.
+ *
+ * @author Stephen Masters
+ */
+public class KnowledgeBaseManagerTest {
+
+    private File drl;
+    private KnowledgeBaseManager manager;
+    private final List<KnowledgeBaseSwap> swaps = new ArrayList<KnowledgeBaseSwap>();
+
+    @Before
+    public void setUp() throws IOException {
+        drl = File.createTempFile("KnowledgeBaseManagerTest", ".drl");
+        writeRule("Hello", 1000);
+        manager = new KnowledgeBaseManager(new KnowledgeBaseRegistry(), "Test rules",
+                new DroolsResource[] {
+                        new DroolsResource(drl.getAbsolutePath(), ResourcePathType.FILE, ResourceType.DRL)
+                },
+                EventProcessingOption.CLOUD, Collections.<String, Object> emptyMap());
+        manager.addSwapListener(new KnowledgeBaseSwapListener() {
+            @Override
+            public void knowledgeBaseSwapped(KnowledgeBaseManager manager, KnowledgeBaseSwap swap) {
+                swaps.add(swap);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        drl.delete();
+    }
+
+    @Test
+    public void shouldNotReloadUnmodifiedRules() {
+        assertNull(manager.reloadIfModified());
+        assertEquals("Hello", fire(manager.getExecutor()));
+        assertTrue(swaps.isEmpty());
+    }
+
+    @Test
+    public void shouldSwapInModifiedRules() throws IOException {
+        StatelessSessionExecutor before = manager.getExecutor();
+        writeRule("Goodbye", 2000);
+
+        KnowledgeBaseSwap swap = manager.reloadIfModified();
+        assertNotNull(swap);
+        assertTrue(swap.isSwapped());
+        assertEquals(1, swap.getRuleCount());
+        assertEquals(Collections.singletonList(swap), swaps);
+        assertSame(swap, manager.getLastSwap());
+
+        assertEquals("Goodbye", fire(manager.getExecutor()));
+        // Anything still holding the old executor keeps the old rules.
+        assertEquals("Hello", fire(before));
+
+        assertNull(manager.reloadIfModified());
+    }
+
+    @Test
+    public void shouldKeepOldRulesWhenReloadFails() throws IOException {
+        StatelessSessionExecutor before = manager.getExecutor();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(drl), "UTF-8");
+        try {
+            writer.write("package com.sctrcd.drools.util\n\nrule \"Broken\"\nwhen\n    Nonsense(\nthen\nend\n");
+        } finally {
+            writer.close();
+        }
+        drl.setLastModified(drl.lastModified() + 2000);
+
+        KnowledgeBaseSwap swap = manager.reloadIfModified();
+        assertFalse(swap.isSwapped());
+        assertNotNull(swap.getError());
+        assertSame(before, manager.getExecutor());
+        assertTrue(swaps.isEmpty());
+
+        // The broken rules are not compiled again until they change again.
+        assertNull(manager.reloadIfModified());
+    }
+
+    private String fire(StatelessSessionExecutor executor) {
+        Message message = new KnowledgeEnvironmentTest().new Message("Nothing");
+        executor.execute(message);
+        return message.getText();
+    }
+
+    /**
+     * Writes a rule which sets the text of a message, and moves the last
+     * modified time on, as file systems may only record it to the second.
+     */
+    private void writeRule(String text, long modifiedOffset) throws IOException {
+        long previous = drl.lastModified();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(drl), "UTF-8");
+        try {
+            writer.write("package com.sctrcd.drools.util\n\n"
+                    + "import com.sctrcd.drools.util.KnowledgeEnvironmentTest.Message\n\n"
+                    + "rule \"Say something\"\n"
+                    + "    lock-on-active true\n"
+                    + "when\n"
+                    + "    $msg : Message()\n"
+                    + "then\n"
+                    + "    modify( $msg ) { setText(\"" + text + "\") }\n"
+                    + "end\n");
+        } finally {
+            writer.close();
+        }
+        drl.setLastModified(previous + modifiedOffset);
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.sctrcd.drools.util;
+
+import static org.junit.Assert.*;
+
+import org.drools.KnowledgeBase;
+import org.drools.builder.ResourceType;
+import org.drools.conf.EventProcessingOption;
+import org.drools.runtime.StatelessKnowledgeSession;
+import org.junit.Test;
+
+import com.sctrcd.drools.util.KnowledgeEnvironmentTest.Message;
+
+/**
+ *
+ * @author Stephen Masters
+ */
+public class KnowledgeBaseRegistryTest {
+
+    private static final DroolsResource[] RESOURCES = new DroolsResource[] {
+        new DroolsResource("sctrcd/drools/util/KnowledgeEnvironmentTest.drl",
+                ResourcePathType.CLASSPATH, ResourceType.DRL)
+    };
+
+    @Test
+    public void shouldCompileEachResourceOnce() {
+        KnowledgeBaseRegistry registry = new KnowledgeBaseRegistry();
+        KnowledgeBase first = registry.createKnowledgeBase(RESOURCES, EventProcessingOption.CLOUD);
+        KnowledgeBase second = registry.createKnowledgeBase(RESOURCES, EventProcessingOption.CLOUD);
+
+        assertNotSame(first, second);
+        assertEquals(1, registry.getCompilationReports().size());
+
+        CompilationReport report = registry.getCompilationReports().get(0);
+        assertEquals(1, report.getPackageCount());
+        assertEquals(1, report.getRuleCount());
+        assertTrue(report.getSerializedBytes() > 0);
+    }
+
+    /**
+     * Each knowledge base gets its own copy of the compiled packages, so rules
+     * in both should still fire.
+     */
+    @Test
+    public void shouldBuildIndependentKnowledgeBases() {
+        KnowledgeBaseRegistry registry = new KnowledgeBaseRegistry();
+        KnowledgeBase first = registry.createKnowledgeBase(RESOURCES, EventProcessingOption.CLOUD);
+        KnowledgeBase second = registry.createKnowledgeBase(RESOURCES, EventProcessingOption.CLOUD);
+
+        for (KnowledgeBase kbase : new KnowledgeBase[] { first, second }) {
+            StatelessKnowledgeSession ksession = kbase.newStatelessKnowledgeSession();
+            Message message = new KnowledgeEnvironmentTest().new Message("Hello Droolers!");
+            ksession.execute(message);
+            assertEquals("Hello, World!", message.getText());
+        }
+    }
+
+    @Test
+    public void shouldCompileAgainAfterClear() {
+        KnowledgeBaseRegistry registry = new KnowledgeBaseRegistry();
+        registry.createKnowledgeBase(RESOURCES, EventProcessingOption.CLOUD);
+        registry.clear();
+        assertEquals(0, registry.getCompilationReports().size());
+        registry.createKnowledgeBase(RESOURCES, EventProcessingOption.CLOUD);
+        assertEquals(1, registry.getCompilationReports().size());
+    }
+
+    /**
+     * A refresh replaces the compiled resource, which is then used by the
+     * knowledge bases created after it, rather than being compiled again.
+     */
+    @Test
+    public void shouldReplaceCompiledResourceOnRefresh() {
+        KnowledgeBaseRegistry registry = new KnowledgeBaseRegistry();
+        registry.createKnowledgeBase(RESOURCES, EventProcessingOption.CLOUD);
+        CompilationReport original = registry.getCompilationReports().get(0);
+
+        registry.refreshKnowledgeBase(RESOURCES, EventProcessingOption.CLOUD);
+        assertEquals(1, registry.getCompilationReports().size());
+        CompilationReport refreshed = registry.getCompilationReports().get(0);
+        assertNotSame(original, refreshed);
+
+        registry.createKnowledgeBase(RESOURCES, EventProcessingOption.CLOUD);
+        assertSame(refreshed, registry.getCompilationReports().get(0));
+    }
+
+}
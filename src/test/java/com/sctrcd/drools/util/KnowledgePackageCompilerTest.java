@@ -0,0 +1,89 @@
+package com.sctrcd.drools.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+import org.drools.KnowledgeBase;
+import org.drools.builder.ResourceType;
+import org.drools.conf.EventProcessingOption;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sctrcd.drools.util.KnowledgeEnvironmentTest.Message;
+
+/**
+ * Unit tests for the {@link KnowledgePackageCompiler}.
+ *
+ * @author Stephen Masters
+ */
+public class KnowledgePackageCompilerTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("KnowledgePackageCompilerTest", "");
+        dir.delete();
+        new File(dir, "rules").mkdirs();
+        copy("sctrcd/drools/util/KnowledgeEnvironmentTest.drl", new File(dir, "rules/Hello.drl"));
+    }
+
+    @After
+    public void tearDown() {
+        new File(dir, "rules/Hello.drl").delete();
+        new File(dir, "rules/Hello.pkg").delete();
+        new File(dir, "rules").delete();
+        dir.delete();
+    }
+
+    @Test
+    public void shouldCompileDrlIntoLoadablePackage() throws IOException {
+        List<CompilationReport> reports = KnowledgePackageCompiler.compileAll(dir);
+        assertEquals(1, reports.size());
+        assertEquals(1, reports.get(0).getRuleCount());
+
+        File pkg = new File(dir, "rules/Hello.pkg");
+        assertTrue(pkg.exists());
+        assertEquals(pkg.length(), reports.get(0).getSerializedBytes());
+        assertTrue("Allocation should be measured.", reports.get(0).getAllocatedBytes() > 0);
+
+        KnowledgeBase kbase = DroolsUtil.createKnowledgeBase(
+                new DroolsResource[] {
+                        new DroolsResource(pkg.getPath(), ResourcePathType.FILE, ResourceType.PKG)
+                },
+                EventProcessingOption.CLOUD);
+        Message message = new KnowledgeEnvironmentTest().new Message("Goodbye");
+        new StatelessSessionExecutor(kbase, Collections.<String, Object> emptyMap()).execute(message);
+        assertEquals("Hello, World!", message.getText());
+    }
+
+    @Test
+    public void shouldDerivePackagePath() {
+        assertEquals("rules/payments/validation/IbanRules.pkg",
+                KnowledgePackageCompiler.pkgPath("rules/payments/validation/IbanRules.drl"));
+    }
+
+    private static void copy(String resource, File target) throws IOException {
+        InputStream in = KnowledgePackageCompilerTest.class.getClassLoader().getResourceAsStream(resource);
+        OutputStream out = new FileOutputStream(target);
+        try {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+}
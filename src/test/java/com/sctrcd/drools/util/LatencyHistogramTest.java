@@ -0,0 +1,82 @@
+package com.sctrcd.drools.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link LatencyHistogram}.
+ *
+ * @author Stephen Masters
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldBeEmptyToStartWith() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean(TimeUnit.NANOSECONDS));
+        assertEquals(0, histogram.getPercentile(99, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void shouldRecordCountTotalAndMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(3000);
+        histogram.record(-5);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(4000, histogram.getTotal(TimeUnit.NANOSECONDS));
+        assertEquals(3000, histogram.getMax(TimeUnit.NANOSECONDS));
+        assertEquals(1333, histogram.getMean(TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Percentiles are the top of the bucket they fall in, but never more than
+     * the maximum.
+     */
+    @Test
+    public void shouldReportPercentilesByBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(1000000);
+
+        assertEquals(103, histogram.getPercentile(50, TimeUnit.NANOSECONDS));
+        assertEquals(103, histogram.getPercentile(99, TimeUnit.NANOSECONDS));
+        assertEquals(1000000, histogram.getPercentile(100, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Every latency should go in the lowest bucket which can hold it, and that
+     * bucket should be within a sixteenth of it.
+     */
+    @Test
+    public void shouldKeepBucketsWithinOneSixteenth() {
+        long[] latencies = { 0, 15, 16, 17, 100, 1000, 999999, 123456789, Long.MAX_VALUE };
+        for (long latency : latencies) {
+            int bucket = LatencyHistogram.bucketOf(latency);
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(latency <= upper);
+            assertTrue(upper - latency <= latency / 16);
+            if (bucket > 0) {
+                assertTrue(LatencyHistogram.upperBoundOf(bucket - 1) < latency);
+            }
+        }
+    }
+
+    @Test
+    public void shouldReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax(TimeUnit.NANOSECONDS));
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.sctrcd.drools.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.drools.KnowledgeBase;
+import org.drools.builder.ResourceType;
+import org.drools.conf.EventProcessingOption;
+import org.junit.Test;
+
+import com.sctrcd.drools.util.KnowledgeEnvironmentTest.Message;
+
+/**
+ * Unit tests for the {@link RuleMetricsAgendaEventListener}, attached to the
+ * sampled executions of a {@link StatelessSessionExecutor}.
+ *
+ * @author Stephen Masters
+ */
+public class RuleMetricsAgendaEventListenerTest {
+
+    @Test
+    public void shouldCountRuleFirings() {
+        RuleMetrics metrics = new RuleMetrics();
+        KnowledgeBase kbase = new KnowledgeBaseRegistry().createKnowledgeBase(
+                new DroolsResource[] {
+                        new DroolsResource("sctrcd/drools/util/KnowledgeEnvironmentTest.drl",
+                                ResourcePathType.CLASSPATH, ResourceType.DRL)
+                },
+                EventProcessingOption.CLOUD);
+        StatelessSessionExecutor executor = new StatelessSessionExecutor(kbase,
+                Collections.<String, Object> emptyMap(), new RuleMetricsAgendaEventListener(metrics));
+
+        KnowledgeEnvironmentTest test = new KnowledgeEnvironmentTest();
+        for (int i = 0; i < 3; i++) {
+            executor.execute(test.new Message("Goodbye"));
+        }
+        executor.executeAndTrace(test.new Message("Goodbye"));
+
+        List<RuleTiming> timings = metrics.getRuleTimings();
+        assertEquals(1, timings.size());
+        RuleTiming timing = timings.get(0);
+        assertEquals("com.sctrcd.drools.util", timing.getPackageName());
+        assertEquals("Say hello", timing.getRuleName());
+        assertEquals(4, timing.getFireCount());
+        assertTrue(timing.getMaxMicros() >= timing.getMeanMicros());
+    }
+
+    @Test
+    public void shouldOnlyCountSampledExecutions() {
+        RuleMetrics metrics = new RuleMetrics();
+        KnowledgeBase kbase = new KnowledgeBaseRegistry().createKnowledgeBase(
+                new DroolsResource[] {
+                        new DroolsResource("sctrcd/drools/util/KnowledgeEnvironmentTest.drl",
+                                ResourcePathType.CLASSPATH, ResourceType.DRL)
+                },
+                EventProcessingOption.CLOUD);
+        StatelessSessionExecutor executor = new StatelessSessionExecutor(kbase,
+                Collections.<String, Object> emptyMap(), new RuleMetricsAgendaEventListener(metrics));
+        executor.setListenerSampleRate(0);
+
+        KnowledgeEnvironmentTest test = new KnowledgeEnvironmentTest();
+        for (int i = 0; i < 3; i++) {
+            executor.execute(test.new Message("Goodbye"));
+        }
+        executor.executeAndTrace(test.new Message("Goodbye"));
+        assertTrue(metrics.getRuleTimings().isEmpty());
+
+        executor.setListenerSampleRate(1);
+        executor.execute(test.new Message("Goodbye"));
+        assertEquals(1, metrics.getLatency("com.sctrcd.drools.util", "Say hello").getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectSampleRateAboveOne() {
+        KnowledgeBase kbase = new KnowledgeBaseRegistry().createKnowledgeBase(
+                new DroolsResource[] {
+                        new DroolsResource("sctrcd/drools/util/KnowledgeEnvironmentTest.drl",
+                                ResourcePathType.CLASSPATH, ResourceType.DRL)
+                },
+                EventProcessingOption.CLOUD);
+        new StatelessSessionExecutor(kbase).setListenerSampleRate(1.5);
+    }
+
+    @Test
+    public void shouldSortByTotalTime() {
+        RuleMetrics metrics = new RuleMetrics();
+        metrics.record("p", "Cheap", 1000);
+        metrics.record("p", "Expensive", 1000000);
+        metrics.record("p", "Cheap", 1000);
+
+        List<RuleTiming> timings = metrics.getRuleTimings();
+        assertEquals("Expensive", timings.get(0).getRuleName());
+        assertEquals(2, metrics.getLatency("p", "Cheap").getCount());
+
+        metrics.reset();
+        assertTrue(metrics.getRuleTimings().isEmpty());
+    }
+
+}
@@ -2,11 +2,18 @@ package com.sctrcd.drools.util;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
+import org.drools.KnowledgeBase;
+import org.drools.KnowledgeBaseFactory;
 import org.drools.builder.ResourceType;
+import org.drools.common.InternalFactHandle;
 import org.drools.event.rule.ObjectInsertedEvent;
 import org.drools.runtime.KnowledgeRuntime;
+import org.drools.runtime.StatefulKnowledgeSession;
 import org.drools.runtime.rule.FactHandle;
 import org.junit.Before;
 import org.junit.Test;
@@ -132,4 +139,127 @@ public class TrackingWorkingMemoryEventListenerTest {
         log.info(sb.toString());
     }
 
+    @Test
+    public void shouldKeepOnlyTheMostRecentEventsWhenBounded() {
+        TrackingWorkingMemoryEventListener listener = new TrackingWorkingMemoryEventListener(5, true);
+        kenv.addEventListener(listener);
+
+        FactHandle productHandle = kenv.insert(new Product("Book", 20));
+        kenv.insert(new Customer("Jimbo"));
+        kenv.fireAllRules();
+
+        assertTrue(listener.isBounded());
+        assertEquals(2, listener.getInsertionCount());
+        assertEquals(11, listener.getUpdateCount());
+        assertEquals(13 - 5, listener.getDroppedEventCount());
+        assertTrue("The Drools events should not be kept.", listener.getAllEvents().isEmpty());
+        assertTrue(listener.getUpdates().isEmpty());
+
+        List<TrackedEvent> events = listener.getTrackedEvents();
+        assertEquals(5, events.size());
+        TrackedEvent last = events.get(4);
+        assertEquals(TrackedEvent.Type.UPDATED, last.getType());
+        assertEquals(Product.class, last.getFactClass());
+        assertEquals(((InternalFactHandle) productHandle).getId(), last.getHandleId());
+        assertEquals("10", last.getSnapshot().get("count"));
+        assertEquals("11", events.get(3).getSnapshot().get("count"));
+        assertEquals(5, listener.getFactChanges().size());
+    }
+
+    @Test
+    public void shouldNotSnapshotUnlessAsked() {
+        TrackingWorkingMemoryEventListener listener = new TrackingWorkingMemoryEventListener(100, false);
+        kenv.addEventListener(listener);
+        kenv.insert(new Product("Book", 12));
+        kenv.fireAllRules();
+
+        assertEquals(3, listener.getTrackedEvents().size());
+        assertEquals(0, listener.getDroppedEventCount());
+        assertFalse(listener.getTrackedEvents().get(2).hasSnapshot());
+        assertTrue(listener.getFactChanges().isEmpty());
+    }
+
+    @Test
+    public void shouldNotChangeSnapshotsWhenPropertiesChangeLater() {
+        StatefulKnowledgeSession session = KnowledgeBaseFactory.newKnowledgeBase().newStatefulKnowledgeSession();
+        try {
+            TrackingWorkingMemoryEventListener listener = new TrackingWorkingMemoryEventListener(10, true);
+            session.addEventListener(listener);
+            Basket basket = new Basket();
+            FactHandle handle = session.insert(basket);
+            basket.getItems().add("Book");
+            session.update(handle, basket);
+            basket.getItems().add("Pen");
+
+            assertEquals("[Book]", listener.getTrackedEvents().get(1).getSnapshot().get("items"));
+        } finally {
+            session.dispose();
+        }
+    }
+
+    @Test
+    public void shouldTrackEventsFromManyThreads() throws Exception {
+        final TrackingWorkingMemoryEventListener listener = new TrackingWorkingMemoryEventListener();
+        final KnowledgeBase kbase = KnowledgeBaseFactory.newKnowledgeBase();
+        final int threads = 4;
+        final int insertions = 2000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    StatefulKnowledgeSession session = kbase.newStatefulKnowledgeSession();
+                    session.addEventListener(listener);
+                    try {
+                        start.await();
+                        for (int i = 0; i < insertions; i++) {
+                            session.update(session.insert(new Customer("Customer " + i)), new Customer("Updated"));
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    } finally {
+                        session.dispose();
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * insertions, listener.getInsertionCount());
+        assertEquals(threads * insertions, listener.getInsertions().size());
+        assertEquals(threads * insertions, listener.getUpdates().size());
+        assertEquals(threads * insertions * 2, listener.getAllEvents().size());
+        assertEquals(threads * insertions, listener.getFactChanges().size());
+    }
+
+    @Test
+    public void shouldBoundTheKnowledgeEnvironmentTracking() {
+        kenv.setTrackingCapacity(3);
+        kenv.insert(new Product("Book", 20));
+        kenv.fireAllRules();
+
+        TrackingWorkingMemoryEventListener listener = kenv.getWorkingMemoryEventListener();
+        assertTrue(listener.isBounded());
+        assertEquals(3, listener.getTrackedEvents().size());
+        assertEquals(10, listener.getUpdateCount());
+
+        kenv.clearListeners();
+        assertTrue(kenv.getWorkingMemoryEventListener().isBounded());
+    }
+
+    public static class Basket {
+
+        private final List<String> items = new ArrayList<String>();
+
+        public List<String> getItems() {
+            return items;
+        }
+
+    }
+
 }
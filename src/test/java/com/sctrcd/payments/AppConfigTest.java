@@ -11,8 +11,11 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.AnnotationConfigContextLoader;
 
 import com.sctrcd.payments.config.PaymentAppConfig;
+import com.sctrcd.payments.validation.RuleReloadService;
 import com.sctrcd.payments.validation.iban.IbanValidator;
+import com.sctrcd.payments.validation.iban.RuleBasedIbanValidator;
 import com.sctrcd.payments.validation.payment.PaymentValidator;
+import com.sctrcd.payments.validation.payment.RuleBasedPaymentValidator;
 import com.sctrcd.payments.validation.web.PaymentValidationController;
 
 /**
@@ -40,11 +43,29 @@ public class AppConfigTest {
     @Qualifier("paymentValidationController")
     private PaymentValidationController paymentValidationcontroller;
 
+    @Autowired(required = true)
+    @Qualifier("ruleReloadService")
+    private RuleReloadService ruleReloadService;
+
     @Test
     public void shouldInjectBeans() {
+        assertNotNull(ruleReloadService);
         assertNotNull(paymentValidator);
         assertNotNull(ibanValidator);
         assertNotNull(paymentValidationcontroller);
     }
 
+    @Test
+    public void shouldSetRuleMetricsSampleRateOfEveryValidator() {
+        try {
+            ruleReloadService.setRuleMetricsSampleRate(0.5);
+            assertEquals(0.5, ((RuleBasedIbanValidator) ibanValidator)
+                    .getKnowledgeBaseManager().getListenerSampleRate(), 0);
+            assertEquals(0.5, ((RuleBasedPaymentValidator) paymentValidator)
+                    .getKnowledgeBaseManager().getListenerSampleRate(), 0);
+        } finally {
+            ruleReloadService.setRuleMetricsSampleRate(0);
+        }
+    }
+
 }
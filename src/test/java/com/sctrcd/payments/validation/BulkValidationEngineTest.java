@@ -0,0 +1,136 @@
+package com.sctrcd.payments.validation;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.sctrcd.payments.validation.iban.IbanValidationResult;
+import com.sctrcd.payments.validation.iban.SimpleIbanValidator;
+
+/**
+ * Unit tests for the {@link BulkValidationEngine} and the
+ * {@link BulkValidationService} which uses it.
+ *
+ * @author Stephen Masters
+ */
+public class BulkValidationEngineTest {
+
+    private final BulkValidationEngine engine = new BulkValidationEngine(4, 3, 12);
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void shouldReturnResultsInInputOrder() {
+        List<Integer> inputs = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            inputs.add(i);
+        }
+        List<Integer> results = engine.validateAll(inputs, new ChunkValidator<Integer, Integer>() {
+            @Override
+            public List<Integer> validate(List<Integer> chunk) {
+                // Make later chunks finish first.
+                sleep(chunk.get(0) % 7 == 0 ? 5 : 0);
+                List<Integer> squares = new ArrayList<Integer>();
+                for (Integer i : chunk) {
+                    squares.add(i * i);
+                }
+                return squares;
+            }
+        });
+        assertEquals(1000, results.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i * i), results.get(i));
+        }
+    }
+
+    @Test
+    public void shouldLimitInputsInFlight() {
+        final AtomicInteger read = new AtomicInteger();
+        Iterator<Integer> inputs = new Iterator<Integer>() {
+            public boolean hasNext() {
+                return read.get() < 100;
+            }
+            public Integer next() {
+                return read.getAndIncrement();
+            }
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        Iterator<Integer> results = engine.validate(inputs, new ChunkValidator<Integer, Integer>() {
+            @Override
+            public List<Integer> validate(List<Integer> chunk) {
+                return chunk;
+            }
+        });
+        assertEquals(12, read.get());
+
+        int taken = 0;
+        while (results.hasNext()) {
+            assertEquals(Integer.valueOf(taken), results.next());
+            taken++;
+            assertTrue(read.get() - taken <= 12);
+        }
+        assertEquals(100, taken);
+    }
+
+    @Test
+    public void shouldThrowValidationFailureWhenReached() {
+        Iterator<String> results = engine.validate(Arrays.asList("a", "b", "c", "boom"),
+                new ChunkValidator<String, String>() {
+                    @Override
+                    public List<String> validate(List<String> chunk) {
+                        if (chunk.contains("boom")) {
+                            throw new IllegalStateException("boom");
+                        }
+                        return chunk;
+                    }
+                });
+        assertEquals("a", results.next());
+        assertEquals("b", results.next());
+        assertEquals("c", results.next());
+        try {
+            results.next();
+            fail("Expected the validation failure.");
+        } catch (IllegalStateException e) {
+            // Joining from outside the pool may wrap the original exception
+            // in a copy of itself.
+            assertTrue(e.getMessage(), e.getMessage().endsWith("boom"));
+        }
+    }
+
+    @Test
+    public void shouldValidateIbansInOrder() {
+        BulkValidationService service = new BulkValidationService(engine);
+        service.setIbanValidator(new SimpleIbanValidator());
+        List<String> ibans = Arrays.asList(
+                "GB29NWBK60161331926819", "GB28NWBK60161331926819", "DE89370400440532013000",
+                "FR1420041010050500013M02606", "XX00000000000000");
+        Iterator<IbanValidationResult> results = service.validateIbans(ibans);
+        for (String iban : ibans) {
+            IbanValidationResult result = results.next();
+            assertEquals(iban, result.getIban());
+            assertEquals(iban, new SimpleIbanValidator().validateIban(iban).isValid(), result.isValid());
+        }
+        assertFalse(results.hasNext());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
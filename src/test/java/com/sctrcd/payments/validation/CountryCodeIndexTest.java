@@ -0,0 +1,88 @@
+package com.sctrcd.payments.validation;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.sctrcd.payments.enums.CountryEnum;
+import com.sctrcd.payments.facts.Country;
+
+/**
+ *
+ * @author Stephen Masters
+ */
+public class CountryCodeIndexTest {
+
+    private CountryCodeIndex index = CountryCodeIndex.allCountries();
+
+    @Test
+    public void shouldContainEveryCountry() {
+        for (CountryEnum country : CountryEnum.values()) {
+            assertTrue(country.isoCode, index.contains(country.isoCode));
+        }
+    }
+
+    /**
+     * Every other pair of letters should be missing, which checks that no two
+     * codes share a bit.
+     */
+    @Test
+    public void shouldNotContainAnythingElse() {
+        Set<String> isoCodes = new HashSet<String>();
+        for (CountryEnum country : CountryEnum.values()) {
+            isoCodes.add(country.isoCode);
+        }
+        int found = 0;
+        for (char a = 'A'; a <= 'Z'; a++) {
+            for (char b = 'A'; b <= 'Z'; b++) {
+                String code = new String(new char[] { a, b });
+                assertEquals(code, isoCodes.contains(code), index.contains(code));
+                if (index.contains(code)) {
+                    found++;
+                }
+            }
+        }
+        assertEquals(index.size(), found);
+    }
+
+    @Test
+    public void shouldRejectMalformedCodes() {
+        assertFalse(index.contains(null));
+        assertFalse(index.contains(""));
+        assertFalse(index.contains("G"));
+        assertFalse(index.contains("GBR"));
+        assertFalse(index.contains("gb"));
+        assertFalse(index.contains("G1"));
+        assertFalse(index.contains("@["));
+    }
+
+    @Test
+    public void shouldCheckCodeAtOffset() {
+        assertTrue(index.containsAt("HLFXESMM", 4));
+        assertFalse(index.containsAt("HLFXEXMM", 4));
+        assertFalse(index.containsAt("HLFXE", 4));
+        assertFalse(index.containsAt("HLFXES", -1));
+        assertTrue(index.containsAt("GB29NWBK60161331926819", 0));
+    }
+
+    @Test
+    public void shouldBuildFromCountries() {
+        CountryCodeIndex small = new CountryCodeIndex(Arrays.asList(
+                new Country("GB", "United Kingdom"),
+                new Country("ES", "Spain"),
+                new Country("GB", "United Kingdom")));
+        assertEquals(2, small.size());
+        assertTrue(small.contains("GB"));
+        assertFalse(small.contains("FR"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRefuseToIndexInvalidCode() {
+        new CountryCodeIndex(Arrays.asList(new Country("gb", "United Kingdom")));
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.sctrcd.payments.validation;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link StageLatencies}.
+ *
+ * @author Stephen Masters
+ */
+public class StageLatenciesTest {
+
+    @Test
+    public void shouldListStagesInTheOrderRequestsPassThroughThem() {
+        StageLatencies latencies = new StageLatencies();
+        latencies.record(StageLatencies.IBAN, StageLatencies.SERIALIZE, 1000);
+        latencies.record(StageLatencies.IBAN, StageLatencies.RULES, 50000);
+        latencies.record(StageLatencies.IBAN, StageLatencies.REQUEST, 60000);
+        latencies.record(StageLatencies.BIC, StageLatencies.REQUEST, 40000);
+
+        List<StageTiming> timings = latencies.getStageTimings();
+        assertEquals(4, timings.size());
+        assertEquals("bic.request", name(timings.get(0)));
+        assertEquals("iban.request", name(timings.get(1)));
+        assertEquals("iban.rules", name(timings.get(2)));
+        assertEquals("iban.serialize", name(timings.get(3)));
+    }
+
+    @Test
+    public void shouldReportPercentiles() {
+        StageLatencies latencies = new StageLatencies();
+        for (int i = 0; i < 999; i++) {
+            latencies.record(StageLatencies.IBAN, StageLatencies.RULES, 10000);
+        }
+        latencies.record(StageLatencies.IBAN, StageLatencies.RULES, 5000000);
+
+        StageTiming timing = latencies.getStageTimings().get(0);
+        assertEquals(1000, timing.getCount());
+        assertEquals(10, timing.getP50Micros());
+        assertEquals(10, timing.getP99Micros());
+        assertEquals(10, timing.getP999Micros());
+        assertEquals(5000, timing.getMaxMicros());
+    }
+
+    @Test
+    public void shouldReset() {
+        StageLatencies latencies = new StageLatencies();
+        latencies.record(StageLatencies.IBAN, StageLatencies.RULES, 1000);
+        latencies.reset();
+
+        assertTrue(latencies.getStageTimings().isEmpty());
+        assertNull(latencies.getLatency(StageLatencies.IBAN, StageLatencies.RULES));
+    }
+
+    private static String name(StageTiming timing) {
+        return timing.getPipeline() + "." + timing.getStage();
+    }
+
+}
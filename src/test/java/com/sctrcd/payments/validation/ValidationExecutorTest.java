@@ -0,0 +1,97 @@
+package com.sctrcd.payments.validation;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ValidationExecutor}.
+ *
+ * @author Stephen Masters
+ */
+public class ValidationExecutorTest {
+
+    ValidationExecutor executor = new ValidationExecutor(1, 1);
+
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * Occupies the only thread until the test releases it.
+     */
+    Runnable blocking = new Runnable() {
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    };
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.destroy();
+    }
+
+    @Test
+    public final void shouldRunValidation() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, executor.getMetrics().getRejected());
+    }
+
+    @Test
+    public final void shouldRejectWhenQueueIsFull() throws Exception {
+        executor.execute(blocking);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        executor.execute(blocking);
+
+        try {
+            executor.execute(blocking);
+            fail("The queue should have been full.");
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+
+        ValidationExecutorMetrics metrics = executor.getMetrics();
+        assertEquals(1, metrics.getQueueDepth());
+        assertEquals(1, metrics.getQueueCapacity());
+        assertEquals(1, metrics.getActiveThreads());
+        assertEquals(1, metrics.getRejected());
+    }
+
+    @Test
+    public final void shouldRecordQueueWaitTime() throws Exception {
+        executor.execute(blocking);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        Thread.sleep(20);
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertTrue(executor.getMetrics().getMaxWaitMicros() >= TimeUnit.MILLISECONDS.toMicros(20));
+    }
+
+}
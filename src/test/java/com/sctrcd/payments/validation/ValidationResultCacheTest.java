@@ -0,0 +1,113 @@
+package com.sctrcd.payments.validation;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.sctrcd.payments.validation.iban.IbanValidationResult;
+
+/**
+ * Unit tests for the {@link ValidationResultCache}.
+ *
+ * @author Stephen Masters
+ */
+public class ValidationResultCacheTest {
+
+    /**
+     * A cache whose clock only moves when a test moves it.
+     */
+    static class ManualClockCache extends ValidationResultCache<IbanValidationResult> {
+        long now = 0;
+
+        ManualClockCache(int maxSize, long timeToLive, TimeUnit unit) {
+            super(maxSize, timeToLive, unit);
+        }
+
+        @Override
+        protected long nanoTime() {
+            return now;
+        }
+    }
+
+    @Test
+    public final void shouldReturnCachedResult() {
+        ValidationResultCache<IbanValidationResult> cache = new ManualClockCache(10, 1, TimeUnit.MINUTES);
+        IbanValidationResult result = new IbanValidationResult("GB82WEST12345698765432", true);
+
+        assertNull(cache.get("GB82WEST12345698765432"));
+        cache.put("GB82WEST12345698765432", result);
+
+        assertSame(result, cache.get("GB82WEST12345698765432"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public final void shouldEvictLeastRecentlyUsed() {
+        ValidationResultCache<IbanValidationResult> cache = new ManualClockCache(2, 1, TimeUnit.MINUTES);
+        cache.put("A", new IbanValidationResult("A", false));
+        cache.put("B", new IbanValidationResult("B", false));
+
+        // Using A makes B the least recently used.
+        assertNotNull(cache.get("A"));
+        cache.put("C", new IbanValidationResult("C", false));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNotNull(cache.get("A"));
+        assertNull(cache.get("B"));
+        assertNotNull(cache.get("C"));
+    }
+
+    @Test
+    public final void shouldExpireOldResults() {
+        ManualClockCache cache = new ManualClockCache(10, 1, TimeUnit.SECONDS);
+        cache.put("A", new IbanValidationResult("A", false));
+
+        cache.now = TimeUnit.MILLISECONDS.toNanos(999);
+        cache.put("B", new IbanValidationResult("B", false));
+        assertNotNull(cache.get("A"));
+
+        cache.now = TimeUnit.SECONDS.toNanos(1);
+        assertNull(cache.get("A"));
+        assertEquals(1, cache.getExpiries());
+
+        cache.now = TimeUnit.MILLISECONDS.toNanos(1999);
+        assertEquals(1, cache.removeExpired());
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getExpiries());
+    }
+
+    @Test
+    public final void shouldInvalidateAll() {
+        ValidationResultCache<IbanValidationResult> cache = new ManualClockCache(10, 1, TimeUnit.MINUTES);
+        cache.put("A", new IbanValidationResult("A", false));
+        cache.put("B", new IbanValidationResult("B", false));
+
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get("A"));
+    }
+
+    @Test
+    public final void shouldNotPutResultsFromBeforeInvalidation() {
+        ValidationResultCache<IbanValidationResult> cache = new ManualClockCache(10, 1, TimeUnit.MINUTES);
+        long generation = cache.getGeneration();
+        cache.invalidateAll();
+
+        assertFalse(cache.put("GB82WEST12345698765432", new IbanValidationResult("GB82WEST12345698765432", true), generation));
+        assertNull(cache.get("GB82WEST12345698765432"));
+        assertTrue(cache.put("GB82WEST12345698765432", new IbanValidationResult("GB82WEST12345698765432", true),
+                cache.getGeneration()));
+        assertNotNull(cache.get("GB82WEST12345698765432"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void shouldRequirePositiveSize() {
+        new ValidationResultCache<IbanValidationResult>(0, 1, TimeUnit.MINUTES);
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.sctrcd.payments.validation.bic;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.drools.KnowledgeBase;
+import org.drools.builder.ResourceType;
+import org.drools.conf.EventProcessingOption;
+import org.junit.Test;
+
+import com.sctrcd.drools.util.DroolsResource;
+import com.sctrcd.drools.util.KnowledgeBaseRegistry;
+import com.sctrcd.drools.util.ResourcePathType;
+import com.sctrcd.drools.util.StatelessSessionExecutor;
+import com.sctrcd.payments.facts.BicValidationRequest;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+import com.sctrcd.payments.validation.CountryCodeIndex;
+
+/**
+ * Checks that whenever the {@link BicPreFilter} rejects a BIC, it gives the
+ * same result as the rules would have.
+ *
+ * @author Stephen Masters
+ */
+public class BicPreFilterTest {
+
+    private static final String[] junk = {
+        "",
+        "HLFX",
+        "HLFXESM",
+        "HLFXESMM1",
+        "HLFXESMM12",
+        "HLFXESMM1234",
+        "1234ESMM123",
+        "HLFXE5MM",
+        "HLFX-ESMM",
+        "HLFXESMM!23",
+        "ÄLFXESMM"
+    };
+
+    private BicPreFilter preFilter = new BicPreFilter();
+    private StatelessSessionExecutor rules;
+
+    public BicPreFilterTest() {
+        KnowledgeBase kbase = KnowledgeBaseRegistry.getDefault().createKnowledgeBase(
+                new DroolsResource[] {
+                        new DroolsResource("rules/payments/validation/BicRules.drl",
+                                ResourcePathType.CLASSPATH,
+                                ResourceType.DRL)
+                },
+                EventProcessingOption.CLOUD);
+        rules = new StatelessSessionExecutor(kbase,
+                Collections.<String, Object> singletonMap("countryIndex", CountryCodeIndex.allCountries()));
+    }
+
+    @Test
+    public void shouldNotRejectWellStructuredBics() {
+        String[] bics = { "HLFXESMM", "HLFXESMM123", "hlfxesmmXXX", "HLFX ESMM", "HLFXEXMM" };
+        for (String bic : bics) {
+            assertFalse(bic, preFilter.reject(new BicValidationRequest(bic)));
+        }
+    }
+
+    @Test
+    public void shouldAnnotateInTheSameWayAsTheRules() {
+        for (String bic : junk) {
+            BicValidationRequest filtered = new BicValidationRequest(bic);
+            assertTrue(bic, preFilter.reject(filtered));
+
+            BicValidationRequest executed = new BicValidationRequest(bic);
+            rules.execute(executed);
+
+            assertEquals(bic, describe(executed.getAnnotations()), describe(filtered.getAnnotations()));
+        }
+    }
+
+    @Test
+    public void shouldRejectMissingBic() {
+        BicValidationRequest request = new BicValidationRequest(null);
+        assertTrue(preFilter.reject(request));
+        assertEquals(BicPreFilter.NOT_DEFINED, request.getAnnotations().get(0).getRuleName());
+    }
+
+    private static List<String> describe(List<PaymentValidationAnnotation> annotations) {
+        List<String> descriptions = new ArrayList<String>();
+        for (PaymentValidationAnnotation annotation : annotations) {
+            descriptions.add(annotation.getRuleName() + " | " + annotation.getLevel() + " | "
+                    + annotation.getMessage() + " | " + annotation.getAttribute());
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+
+}
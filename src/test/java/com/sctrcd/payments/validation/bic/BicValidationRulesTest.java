@@ -20,6 +20,7 @@ import com.sctrcd.drools.util.TrackingWorkingMemoryEventListener;
 import com.sctrcd.payments.enums.CountryEnum;
 import com.sctrcd.payments.facts.BicValidationRequest;
 import com.sctrcd.payments.facts.Country;
+import com.sctrcd.payments.validation.CountryCodeIndex;
 import com.sctrcd.payments.facts.PaymentValidationAnnotation;
 import com.sctrcd.payments.validation.bic.BicValidationResult;
 
@@ -69,7 +70,7 @@ public class BicValidationRulesTest {
     @Before
     public void setup() {
         ksession = kbase.newStatelessKnowledgeSession();
-        ksession.setGlobal("countryList", countries);
+        ksession.setGlobal("countryIndex", new CountryCodeIndex(countries));
     }
     
     @Test
@@ -114,6 +115,9 @@ public class BicValidationRulesTest {
         assertFalse("There should not be any annotations if there is no expected message.", 
                     (expectedRules == null || expectedRules.length == 0) && annotations.size() > 0);
         
+        assertFalse("Annotations should be added to the request if rules fired.", 
+                    expectedRules.length > 0 && annotations.isEmpty());
+        
         System.out.println(agendaEventListener.activationsToString());
         
         for (String ruleName : expectedRules) {
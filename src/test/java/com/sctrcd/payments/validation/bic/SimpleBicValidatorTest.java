@@ -0,0 +1,117 @@
+package com.sctrcd.payments.validation.bic;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.drools.KnowledgeBase;
+import org.drools.builder.ResourceType;
+import org.drools.conf.EventProcessingOption;
+import org.junit.Test;
+
+import com.sctrcd.drools.util.DroolsResource;
+import com.sctrcd.drools.util.KnowledgeBaseRegistry;
+import com.sctrcd.drools.util.ResourcePathType;
+import com.sctrcd.drools.util.StatelessSessionExecutor;
+import com.sctrcd.payments.facts.BicValidationRequest;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+import com.sctrcd.payments.validation.CountryCodeIndex;
+
+/**
+ * Checks that the {@link SimpleBicValidator} gives the same result as the
+ * rules in <code>BicRules.drl</code>, for hand-picked BICs and for random
+ * variations on them. The rules are run directly rather than through the
+ * {@link RuleBasedBicValidator}, as its {@link BicPreFilter} makes the same
+ * {@link Iso9362} checks as the validator under test.
+ *
+ * @author Stephen Masters
+ */
+public class SimpleBicValidatorTest {
+
+    private static final List<String> bics = Arrays.asList(
+        "HLFXESMM", "HLFXESMM123", "HLFXESMMXXX", "DEUTDEFF500", "NWBKGB2L",
+        "hlfxesmm", "hlfxESmm", "HLFXesMM", "HLFXEXMM", "HLFXXXMM",
+        "", "HLFX", "HLFXESM", "HLFXESMM1", "HLFXESMM12", "HLFXESMM1234",
+        "1234ESMM123", "HLFXE5MM", "HLFX-ESMM", "HLFX ESMM", " HLFX ES MM ", "HLFX XX MM",
+        "HLFXESMM!23",
+        "ÄLFXESMM", "HLFXESMMÄÄÄ", "HLFXİSMM");
+
+    private static final String ALPHABET = "ABCDEGHLMSXZabgz0129 -!Ä";
+
+    private final SimpleBicValidator simple = new SimpleBicValidator();
+    private final StatelessSessionExecutor rules;
+
+    public SimpleBicValidatorTest() {
+        KnowledgeBase kbase = KnowledgeBaseRegistry.getDefault().createKnowledgeBase(
+                new DroolsResource[] {
+                        new DroolsResource("rules/payments/validation/BicRules.drl",
+                                ResourcePathType.CLASSPATH,
+                                ResourceType.DRL)
+                },
+                EventProcessingOption.CLOUD);
+        rules = new StatelessSessionExecutor(kbase,
+                Collections.<String, Object> singletonMap("countryIndex", CountryCodeIndex.allCountries()));
+    }
+
+    @Test
+    public void shouldAgreeWithTheRules() {
+        for (String bic : bics) {
+            assertSameResult(bic);
+        }
+    }
+
+    @Test
+    public void shouldAgreeWithTheRulesForRandomVariations() {
+        Random random = new Random(9362);
+        for (int i = 0; i < 2000; i++) {
+            char[] chars = bics.get(random.nextInt(5)).toCharArray();
+            int changes = 1 + random.nextInt(2);
+            for (int j = 0; j < changes; j++) {
+                chars[random.nextInt(chars.length)] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            }
+            assertSameResult(new String(chars));
+        }
+    }
+
+    @Test
+    public void shouldRejectMissingBic() {
+        BicValidationResult result = simple.validate(null);
+        assertFalse(result.isValid());
+        assertEquals(BicPreFilter.NOT_DEFINED, result.getAnnotations().get(0).getRuleName());
+    }
+
+    @Test
+    public void shouldCheckStructureAndCountry() {
+        assertTrue(SimpleBicValidator.isValid("HLFXESMM"));
+        assertTrue(SimpleBicValidator.isValid("HLFXESMM123"));
+        assertFalse(SimpleBicValidator.isValid("HLFXESM"));
+        assertFalse(SimpleBicValidator.isValid("HLFXE5MM"));
+        assertFalse(SimpleBicValidator.isValid("HLFXXXMM"));
+        assertFalse(SimpleBicValidator.isValid(null));
+    }
+
+    private void assertSameResult(String bic) {
+        BicValidationRequest expected = new BicValidationRequest(bic);
+        rules.execute(expected);
+        boolean expectedValid = expected.getAnnotations().isEmpty();
+        BicValidationResult actual = simple.validate(bic);
+        assertEquals(bic, expectedValid, actual.isValid());
+        assertEquals(bic, describe(expected.getAnnotations()), describe(actual.getAnnotations()));
+        assertEquals(bic, expectedValid, SimpleBicValidator.isValid(bic));
+    }
+
+    private static List<String> describe(List<PaymentValidationAnnotation> annotations) {
+        List<String> descriptions = new ArrayList<String>();
+        for (PaymentValidationAnnotation annotation : annotations) {
+            descriptions.add(annotation.getRuleName() + " | " + annotation.getLevel() + " | "
+                    + annotation.getMessage() + " | " + annotation.getAttribute());
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.sctrcd.payments.validation.cli;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sctrcd.payments.facts.Payment;
+import com.sctrcd.payments.validation.ChunkValidator;
+import com.sctrcd.payments.validation.iban.IbanValidationResult;
+import com.sctrcd.payments.validation.iban.IbanValidator;
+import com.sctrcd.payments.validation.iban.SimpleIbanValidator;
+import com.sctrcd.payments.validation.payment.FxPaymentValidationResult;
+import com.sctrcd.payments.validation.payment.RuleBasedPaymentValidator;
+
+/**
+ * Unit tests for the {@link BulkFileValidator} and the
+ * {@link BulkValidationCli}, validating files of IBANs and payments.
+ *
+ * @author Stephen Masters
+ */
+public class BulkFileValidatorTest {
+
+    private static final String[] IBANS = {
+            "GB29NWBK60161331926819", "GB28NWBK60161331926819", "DE89370400440532013000",
+            "FR1420041010050500013M02606", "XX00000000000000"
+    };
+
+    private File input;
+    private File output;
+
+    @Before
+    public void setUp() throws IOException {
+        input = File.createTempFile("BulkFileValidatorTest", ".csv");
+        output = File.createTempFile("BulkFileValidatorTest", ".out.csv");
+    }
+
+    @After
+    public void tearDown() {
+        input.delete();
+        output.delete();
+    }
+
+    @Test
+    public void shouldValidateEveryLineInOrder() throws IOException {
+        StringBuilder sb = new StringBuilder("iban,reference\r\n");
+        for (int i = 0; i < 2000; i++) {
+            sb.append(IBANS[i % IBANS.length]).append(',').append(i).append("\r\n");
+            if (i % 100 == 0) {
+                sb.append("\r\n");
+            }
+        }
+        write(sb.toString());
+
+        BulkFileValidator validator = new BulkFileValidator(CsvLineValidators.ibans(new SimpleIbanValidator()));
+        validator.setHeader(true);
+        validator.setParallelism(3);
+        validator.setChunkBytes(100);
+        validator.setMapBytes(1000);
+        BulkFileValidator.Summary summary = validator.validate(input, output);
+
+        assertEquals(2000, summary.getRecords());
+        List<String> lines = read();
+        assertEquals(2001, lines.size());
+        assertEquals("iban,reference,status,messages", lines.get(0));
+        for (int i = 0; i < 2000; i++) {
+            String iban = IBANS[i % IBANS.length];
+            boolean valid = new SimpleIbanValidator().validateIban(iban).isValid();
+            String line = lines.get(i + 1);
+            assertTrue(line, line.startsWith(iban + "," + i + "," + (valid ? "VALID," : "INVALID,")));
+        }
+    }
+
+    @Test
+    public void shouldValidatePaymentsFromTheCommandLine() throws IOException {
+        write(CsvLineValidators.PAYMENT_HEADER + "\n"
+                + ",,,,,,GB29NWBK60161331926819,\n"
+                + ",,,,,,ES9502170100 17,\n"
+                + "GBP,EUR,ten,,,,,\n"
+                + "GBP,EUR\n");
+
+        BulkFileValidator.Summary summary = BulkValidationCli.run("payment",
+                input.getAbsolutePath(), output.getAbsolutePath(), "--header", "--threads", "2");
+
+        assertEquals(4, summary.getRecords());
+        List<String> lines = read();
+        assertEquals(CsvLineValidators.PAYMENT_HEADER + "," + CsvLineValidators.RESULT_HEADER, lines.get(0));
+        assertEquals(",,,,,,GB29NWBK60161331926819,,VALID,", lines.get(1));
+        assertTrue(lines.get(2), lines.get(2).startsWith(",,,,,,ES9502170100 17,,INVALID,\""));
+        assertEquals("GBP,EUR,ten,,,,,,INVALID,\"Not a number: ten\"", lines.get(3));
+        assertEquals("GBP,EUR,INVALID,\"Expected 8 fields but found 2\"", lines.get(4));
+    }
+
+    @Test
+    public void shouldReportMalformedIbansWithoutFailingTheRun() throws IOException {
+        write("iban,reference\n"
+                + "GB29NWBK60161331926819,1\n"
+                + "X,2\n"
+                + ",3\n"
+                + "BOOM,4\n"
+                + "DE89370400440532013000,5\n");
+
+        IbanValidator failing = new SimpleIbanValidator() {
+            @Override
+            public IbanValidationResult validateIban(String iban) {
+                if ("BOOM".equals(iban)) {
+                    throw new IllegalStateException("Validator failed");
+                }
+                return super.validateIban(iban);
+            }
+        };
+        BulkFileValidator validator = new BulkFileValidator(CsvLineValidators.ibans(failing));
+        validator.setHeader(true);
+        BulkFileValidator.Summary summary = validator.validate(input, output);
+
+        assertEquals(5, summary.getRecords());
+        List<String> lines = read();
+        assertEquals("GB29NWBK60161331926819,1,VALID,", lines.get(1));
+        assertTrue(lines.get(2), lines.get(2).startsWith("X,2,INVALID,\""));
+        assertTrue(lines.get(3), lines.get(3).startsWith(",3,INVALID,\""));
+        assertEquals("BOOM,4,INVALID,\"" + CsvLineValidators.NOT_VALIDATED + "\"", lines.get(4));
+        assertEquals("DE89370400440532013000,5,VALID,", lines.get(5));
+    }
+
+    @Test
+    public void shouldReportShortIbansInPaymentsWithoutFailingTheRun() throws IOException {
+        write(CsvLineValidators.PAYMENT_HEADER + "\n"
+                + ",,,,,,GB29NWBK60161331926819,\n"
+                + ",,,,,,X,\n"
+                + ",,,,,,DE89370400440532013000,\n");
+
+        BulkFileValidator.Summary summary = BulkValidationCli.run("payment",
+                input.getAbsolutePath(), output.getAbsolutePath(), "--header");
+
+        assertEquals(3, summary.getRecords());
+        List<String> lines = read();
+        assertEquals(",,,,,,GB29NWBK60161331926819,,VALID,", lines.get(1));
+        assertTrue(lines.get(2), lines.get(2).startsWith(",,,,,,X,,INVALID,\""));
+        assertEquals(",,,,,,DE89370400440532013000,,VALID,", lines.get(3));
+    }
+
+    @Test
+    public void shouldValidatePaymentsOneAtATimeIfTheBatchFails() {
+        ChunkValidator<String, String> validator = CsvLineValidators.payments(new RuleBasedPaymentValidator() {
+            @Override
+            public List<FxPaymentValidationResult> validatePayments(Collection<Payment> payments) {
+                throw new IllegalStateException("Batch failed");
+            }
+
+            @Override
+            public FxPaymentValidationResult validatePayment(Payment payment) {
+                if ("BOOM".equals(payment.getIban())) {
+                    throw new IllegalStateException("Payment failed");
+                }
+                return super.validatePayment(payment);
+            }
+        });
+
+        List<String> lines = validator.validate(Arrays.asList(
+                ",,,,,,GB29NWBK60161331926819,", ",,,,,,BOOM,", "GBP,EUR"));
+
+        assertEquals(",,,,,,GB29NWBK60161331926819,,VALID,", lines.get(0));
+        assertEquals(",,,,,,BOOM,,INVALID,\"" + CsvLineValidators.NOT_VALIDATED + "\"", lines.get(1));
+        assertEquals("GBP,EUR,INVALID,\"Expected 8 fields but found 2\"", lines.get(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownRecordTypes() throws IOException {
+        BulkValidationCli.run("cheque", input.getAbsolutePath(), output.getAbsolutePath());
+    }
+
+    private void write(String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(input);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private List<String> read() throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(output), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.sctrcd.payments.validation.cli;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link LineChunker}, using chunks and mapped regions
+ * small enough that lines cross both.
+ *
+ * @author Stephen Masters
+ */
+public class LineChunkerTest {
+
+    private File file;
+    private String content;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("LineChunkerTest", ".txt");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sb.append("line-").append(i).append('\n');
+        }
+        sb.append("last line without a newline");
+        content = sb.toString();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void shouldSplitOnLineEnds() throws IOException {
+        for (int chunkBytes = 1; chunkBytes <= 40; chunkBytes += 3) {
+            for (int mapBytes = 70; mapBytes <= 200; mapBytes += 37) {
+                StringBuilder joined = new StringBuilder();
+                FileInputStream in = new FileInputStream(file);
+                try {
+                    LineChunker chunker = new LineChunker(in.getChannel(), 0, chunkBytes, mapBytes);
+                    while (chunker.hasNext()) {
+                        String chunk = string(chunker.next());
+                        assertTrue(chunk, chunk.endsWith("\n") || content.endsWith(chunk));
+                        joined.append(chunk);
+                    }
+                } finally {
+                    in.close();
+                }
+                assertEquals(content, joined.toString());
+            }
+        }
+    }
+
+    @Test
+    public void shouldStartPartWayThrough() throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            LineChunker chunker = new LineChunker(in.getChannel(), 7, 1, 64);
+            assertEquals("line-1\n", string(chunker.next()));
+            assertEquals("line-2\n", string(chunker.next()));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailWhenNoLineEndsWithinTheMappedRegion() throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            LineChunker chunker = new LineChunker(channel, channel.size() - 27, 2, 8);
+            chunker.next();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String string(ByteBuffer buffer) {
+        return BulkFileValidator.UTF8.decode(buffer).toString();
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.sctrcd.payments.validation.iban;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.sctrcd.payments.validation.ValidationDataChangedEvent;
+import com.sctrcd.payments.validation.ValidationResultCache;
+
+/**
+ * Unit tests for the {@link CachingIbanValidator}.
+ *
+ * @author Stephen Masters
+ */
+public class CachingIbanValidatorTest {
+
+    /**
+     * Counts how many times it is asked to validate an IBAN.
+     */
+    static class CountingIbanValidator implements IbanValidator {
+        final IbanValidator validator = new SimpleIbanValidator();
+        int calls = 0;
+
+        @Override
+        public IbanValidationResult validateIban(String iban) {
+            return validateIban(iban, false);
+        }
+
+        @Override
+        public IbanValidationResult validateIban(String iban, boolean trace) {
+            calls++;
+            return validator.validateIban(iban, trace);
+        }
+    }
+
+    CountingIbanValidator delegate = new CountingIbanValidator();
+    CachingIbanValidator validator = new CachingIbanValidator(delegate,
+            new ValidationResultCache<IbanValidationResult>(100, 1, TimeUnit.MINUTES));
+
+    @Test
+    public final void shouldValidateEachIbanOnce() {
+        IbanValidationResult first = validator.validateIban("GB82 WEST 1234 5698 7654 32");
+        IbanValidationResult second = validator.validateIban("GB82WEST12345698765432");
+
+        assertEquals(1, delegate.calls);
+        assertTrue(first.isValid());
+        assertTrue(second.isValid());
+        assertEquals("GB82 WEST 1234 5698 7654 32", first.getIban());
+        assertEquals("GB82WEST12345698765432", second.getIban());
+        assertEquals(1, validator.getCache().getHits());
+    }
+
+    @Test
+    public final void shouldNotShareResults() {
+        IbanValidationResult first = validator.validateIban("GB82WEST12345698765432");
+        first.setValid(false);
+
+        assertTrue(validator.validateIban("GB82WEST12345698765432").isValid());
+    }
+
+    @Test
+    public final void shouldNotCacheTracedRequests() {
+        validator.validateIban("GB82WEST12345698765432", true);
+        validator.validateIban("GB82WEST12345698765432", true);
+
+        assertEquals(2, delegate.calls);
+        assertEquals(0, validator.getCache().size());
+    }
+
+    @Test
+    public final void shouldClearCacheWhenDataChanges() {
+        validator.validateIban("GB82WEST12345698765432");
+        validator.onApplicationEvent(new ValidationDataChangedEvent(this, "Test"));
+        validator.validateIban("GB82WEST12345698765432");
+
+        assertEquals(2, delegate.calls);
+    }
+
+    /**
+     * Data which changes while an IBAN is being validated may have been read
+     * before it changed, so the result shouldn't be cached.
+     */
+    @Test
+    public final void shouldNotCacheResultsFromBeforeDataChanged() {
+        final CachingIbanValidator[] caching = new CachingIbanValidator[1];
+        caching[0] = new CachingIbanValidator(new CountingIbanValidator() {
+            @Override
+            public IbanValidationResult validateIban(String iban, boolean trace) {
+                IbanValidationResult result = super.validateIban(iban, trace);
+                if (calls == 1) {
+                    caching[0].onApplicationEvent(new ValidationDataChangedEvent(this, "Test"));
+                }
+                return result;
+            }
+        }, new ValidationResultCache<IbanValidationResult>(100, 1, TimeUnit.MINUTES));
+
+        assertTrue(caching[0].validateIban("GB82WEST12345698765432").isValid());
+        assertEquals(0, caching[0].getCache().size());
+        caching[0].validateIban("GB82WEST12345698765432");
+        assertEquals(1, caching[0].getCache().size());
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.sctrcd.payments.validation.iban;
+
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+public class IbanMod97CheckTest {
+
+    @Test
+    public void shouldAgreeWithBigIntegerRemainder() {
+        for (String iban : SimpleIbanValidatorTest.validIbans) {
+            assertEquals(iban, bigIntegerRemainder(iban), IbanMod97Check.remainder(iban));
+        }
+        for (String iban : SimpleIbanValidatorTest.invalidIbans) {
+            assertEquals(iban, bigIntegerRemainder(iban), IbanMod97Check.remainder(iban));
+        }
+    }
+
+    @Test
+    public void shouldIgnoreSeparatorsAndCase() {
+        assertTrue(IbanMod97Check.isValid("GB29NWBK60161331926819"));
+        assertTrue(IbanMod97Check.isValid("GB29 NWBK 6016 1331 9268 19"));
+        assertTrue(IbanMod97Check.isValid("gb29-nwbk-6016-1331-9268-19"));
+        assertFalse(IbanMod97Check.isValid("GB29 NWBK 6016 1331 9268 20"));
+    }
+
+    @Test
+    public void shouldRejectTooShortOrMissingIban() {
+        assertFalse(IbanMod97Check.isValid(null));
+        assertFalse(IbanMod97Check.isValid(""));
+        assertFalse(IbanMod97Check.isValid("GB2"));
+        assertFalse(IbanMod97Check.isValid(" - - "));
+        assertEquals(-1, IbanMod97Check.remainder("G B 2"));
+    }
+
+    private int bigIntegerRemainder(String iban) {
+        BigInteger checkSum = IbanMod97Check.numerize(
+                IbanMod97Check.shuffle(IbanUtil.sanitize(iban)));
+        return checkSum.remainder(BigInteger.valueOf(97)).intValue();
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.sctrcd.payments.validation.iban;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.drools.KnowledgeBase;
+import org.drools.builder.ResourceType;
+import org.drools.conf.EventProcessingOption;
+import org.junit.Test;
+
+import com.sctrcd.drools.util.DroolsResource;
+import com.sctrcd.drools.util.KnowledgeBaseRegistry;
+import com.sctrcd.drools.util.ResourcePathType;
+import com.sctrcd.drools.util.StatelessSessionExecutor;
+import com.sctrcd.payments.facts.IbanValidationRequest;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
+import com.sctrcd.payments.validation.CountryCodeIndex;
+
+/**
+ * Checks that whenever the {@link IbanPreFilter} rejects an IBAN, it gives the
+ * same result as the rules would have.
+ *
+ * @author Stephen Masters
+ */
+public class IbanPreFilterTest {
+
+    private static final String[] junk = {
+        "",
+        "G",
+        "GB",
+        "GB29",
+        "GB29 NWBK",
+        "GB29NWBK6016133192681",
+        "GB29NWBK601613319268190",
+        "GB29-NWBK-6016-1331-9268-19",
+        "GB29NWBK60161331926819!",
+        "XX29NWBK60161331926819",
+        "1234567890123456789012",
+        "GB29NWBK60161331926819GB29NWBK60161331926819",
+        "<script>alert(1)</script>",
+        "ES23 0217 0099 47"
+    };
+
+    private CountryCodeIndex countryIndex = CountryCodeIndex.allCountries();
+    private IbanPreFilter preFilter = new IbanPreFilter(countryIndex, IbanRegistry.getDefault());
+    private StatelessSessionExecutor rules;
+
+    public IbanPreFilterTest() {
+        KnowledgeBase kbase = KnowledgeBaseRegistry.getDefault().createKnowledgeBase(
+                new DroolsResource[] {
+                        new DroolsResource("rules/payments/validation/IbanRules.drl",
+                                ResourcePathType.CLASSPATH,
+                                ResourceType.DRL)
+                },
+                EventProcessingOption.CLOUD);
+        Map<String, Object> globals = new HashMap<String, Object>();
+        globals.put("countryIndex", countryIndex);
+        globals.put("ibanRegistry", IbanRegistry.getDefault());
+        rules = new StatelessSessionExecutor(kbase, globals);
+    }
+
+    @Test
+    public void shouldNotRejectValidIbans() {
+        for (String iban : SimpleIbanValidatorTest.validIbans) {
+            assertFalse(iban, preFilter.reject(new IbanValidationRequest(iban)));
+        }
+    }
+
+    @Test
+    public void shouldRejectJunk() {
+        // The separators are ignored by every check, so these pass, and the
+        // unknown country is well formed, so is left to the rules.
+        List<String> passed = Arrays.asList(
+                "GB29-NWBK-6016-1331-9268-19",
+                "GB29NWBK60161331926819!",
+                "XX29NWBK60161331926819");
+        for (String iban : junk) {
+            assertEquals(iban, !passed.contains(iban), preFilter.reject(new IbanValidationRequest(iban)));
+        }
+    }
+
+    @Test
+    public void shouldAnnotateInTheSameWayAsTheRules() {
+        List<String> ibans = new ArrayList<String>();
+        Collections.addAll(ibans, junk);
+        Collections.addAll(ibans, SimpleIbanValidatorTest.invalidIbans);
+        Collections.addAll(ibans, SimpleIbanValidatorTest.structurallyInvalidIbans);
+
+        for (String iban : ibans) {
+            IbanValidationRequest filtered = new IbanValidationRequest(iban);
+            if (!preFilter.reject(filtered)) {
+                continue;
+            }
+            IbanValidationRequest executed = new IbanValidationRequest(iban);
+            rules.execute(executed);
+
+            assertEquals(iban, executed.isValid(), filtered.isValid());
+            assertEquals(iban, executed.getMostSevereAnnotation(), filtered.getMostSevereAnnotation());
+            assertEquals(iban, describe(executed.getAnnotations()), describe(filtered.getAnnotations()));
+        }
+    }
+
+    @Test
+    public void shouldRejectMissingIban() {
+        IbanValidationRequest request = new IbanValidationRequest(null);
+        assertTrue(preFilter.reject(request));
+        assertFalse(request.isValid());
+        assertEquals(IbanPreFilter.NOT_DEFINED, request.getAnnotations().get(0).getRuleName());
+    }
+
+    static List<String> describe(List<PaymentValidationAnnotation> annotations) {
+        List<String> descriptions = new ArrayList<String>();
+        for (PaymentValidationAnnotation annotation : annotations) {
+            descriptions.add(annotation.getRuleName() + " | " + annotation.getLevel() + " | "
+                    + annotation.getMessage() + " | " + annotation.getAttribute());
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.sctrcd.payments.validation.iban;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Stephen Masters
+ */
+public class IbanRegistryTest {
+
+    private IbanRegistry registry = IbanRegistry.getDefault();
+
+    @Test
+    public void shouldLoadEveryCountry() {
+        assertTrue(registry.size() > 80);
+        for (IbanStructure structure : registry.getStructures()) {
+            assertSame(structure, registry.getStructure(structure.getCountryCode()));
+        }
+        assertEquals(22, registry.getStructure("GB").getLength());
+        assertEquals("4!a6!n8!n", registry.getStructure("GB").getBbanFormat());
+        assertFalse(registry.isRegistered("US"));
+        assertFalse(registry.isRegistered("gb"));
+        assertFalse(registry.isRegistered(null));
+    }
+
+    @Test
+    public void shouldMatchValidIbans() {
+        for (String iban : SimpleIbanValidatorTest.validIbans) {
+            assertTrue(iban, registry.matches(iban));
+        }
+    }
+
+    @Test
+    public void shouldNotMatchIbansWithInvalidStructure() {
+        for (String iban : SimpleIbanValidatorTest.structurallyInvalidIbans) {
+            assertFalse(iban, registry.matches(iban));
+        }
+        // Too long.
+        assertFalse(registry.matches("GB29NWBK603161331926819"));
+        // Letter in the check digits.
+        assertFalse(registry.matches("GB2ANWBK60161331926819"));
+        // Not a country that uses IBANs.
+        assertFalse(registry.matches("US29NWBK60161331926819"));
+        assertFalse(registry.matches(null));
+        assertFalse(registry.matches("G"));
+    }
+
+    @Test
+    public void shouldIgnoreSeparatorsAndCase() {
+        assertTrue(registry.matches("GB29 NWBK 6016 1331 9268 19"));
+        assertTrue(registry.matches("gb29-nwbk-6016-1331-9268-19"));
+    }
+
+    @Test
+    public void shouldCompileMixedCharacterClasses() {
+        IbanStructure structure = new IbanStructure("IT", 27, "1!a5!n5!n12!c");
+        assertTrue(structure.matches("IT60X0542811101000000123456"));
+        assertTrue(structure.matches("IT60X054281110100000012345A"));
+        assertFalse(structure.matches("IT6000542811101000000123456"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRefuseFormatWhichDoesNotAddUpToLength() {
+        new IbanStructure("GB", 22, "4!a6!n7!n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRefuseVariableLengthFields() {
+        new IbanStructure("GB", 22, "4!a6!n8n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRefuseDuplicateCountries() {
+        new IbanRegistry(Arrays.asList(
+                new IbanStructure("GB", 22, "4!a6!n8!n"),
+                new IbanStructure("GB", 22, "4!a6!n8!n")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldReportInvalidLine() throws Exception {
+        IbanRegistry.parse(new ByteArrayInputStream("# Comment\nGB 22 4!a6!n8!x\n".getBytes("UTF-8")), "test");
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.sctrcd.payments.validation.iban;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class IbanTest {
+
+    @Test
+    public void shouldSanitizeOnCreation() {
+        Iban iban = Iban.valueOf("gb29 nwbk-6016 1331 9268 19");
+        assertEquals("GB29NWBK60161331926819", iban.getValue());
+        assertEquals("gb29 nwbk-6016 1331 9268 19", iban.getOriginal());
+        assertFalse(iban.isElectronicFormat());
+        assertTrue(Iban.valueOf("GB29NWBK60161331926819").isElectronicFormat());
+    }
+
+    @Test
+    public void shouldSplitOutParts() {
+        Iban iban = Iban.valueOf("GB29NWBK60161331926819");
+        assertEquals("GB", iban.getCountryCode());
+        assertEquals("29", iban.getCheckDigits());
+        assertEquals("NWBK60161331926819", iban.getBban());
+        assertEquals(22, iban.length());
+    }
+
+    @Test
+    public void shouldHandleShortIbans() {
+        Iban iban = Iban.valueOf("G");
+        assertNull(iban.getCountryCode());
+        assertNull(iban.getCheckDigits());
+        assertEquals("", iban.getBban());
+        assertFalse(iban.isMod97Valid());
+    }
+
+    @Test
+    public void shouldReturnNullForNull() {
+        assertNull(Iban.valueOf(null));
+    }
+
+    @Test
+    public void shouldCheckMod97() {
+        Iban valid = Iban.valueOf("GB29NWBK60161331926819");
+        assertTrue(valid.isMod97Valid());
+        assertTrue(valid.isMod97Valid());
+        Iban invalid = Iban.valueOf("GB28NWBK60161331926819");
+        assertFalse(invalid.isMod97Valid());
+        assertFalse(invalid.isMod97Valid());
+    }
+
+    @Test
+    public void shouldBeEqualWhateverTheFormat() {
+        Iban electronic = Iban.valueOf("GB29NWBK60161331926819");
+        Iban print = Iban.valueOf("GB29 NWBK 6016 1331 9268 19");
+        assertEquals(electronic, print);
+        assertEquals(electronic.hashCode(), print.hashCode());
+        assertFalse(electronic.equals(Iban.valueOf("GB28NWBK60161331926819")));
+    }
+
+    @Test
+    public void shouldFormatForPrint() {
+        assertEquals("GB29 NWBK 6016 1331 9268 19",
+                Iban.valueOf("gb29nwbk60161331926819").getPrintFormat());
+        assertEquals("GB29 NWBK 6016 1331 9268 19",
+                IbanFormatter.printFormat("GB29NWBK60161331926819"));
+    }
+
+}
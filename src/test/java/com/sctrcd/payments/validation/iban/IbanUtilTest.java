@@ -2,6 +2,8 @@ package com.sctrcd.payments.validation.iban;
 
 import static org.junit.Assert.*;
 
+import java.util.Locale;
+
 import org.junit.Test;
 
 import com.sctrcd.payments.validation.iban.IbanUtil;
@@ -18,4 +20,22 @@ public class IbanUtilTest {
 		assertEquals("ANIBAN12340", IbanUtil.sanitize("an??-ib@-%a*n1^234(0!"));
 	}
 
+	@Test
+	public void shouldReturnSameInstanceWhenAlreadySanitized() {
+	    String iban = "GB29NWBK60161331926819";
+	    assertSame(iban, IbanUtil.sanitize(iban));
+	}
+
+	@Test
+	public void shouldSanitizeIndependentlyOfLocale() {
+	    Locale locale = Locale.getDefault();
+	    try {
+	        // In Turkish, "i".toUpperCase() is a dotted capital I.
+	        Locale.setDefault(new Locale("tr", "TR"));
+	        assertEquals("ANIBAN12340", IbanUtil.sanitize("an iban12340"));
+	    } finally {
+	        Locale.setDefault(locale);
+	    }
+	}
+
 }
@@ -19,6 +19,7 @@ import com.sctrcd.drools.util.TrackingAgendaEventListener;
 import com.sctrcd.drools.util.TrackingWorkingMemoryEventListener;
 import com.sctrcd.payments.enums.CountryEnum;
 import com.sctrcd.payments.facts.Country;
+import com.sctrcd.payments.validation.CountryCodeIndex;
 import com.sctrcd.payments.facts.IbanValidationRequest;
 import com.sctrcd.payments.facts.PaymentValidationAnnotation;
 import com.sctrcd.payments.validation.iban.IbanValidationResult;
@@ -46,7 +47,8 @@ public class IbanValidationRulesTest {
     @Before
     public void setup() {
         ksession = kbase.newStatelessKnowledgeSession();
-        ksession.setGlobal("countryList", countries);
+        ksession.setGlobal("countryIndex", new CountryCodeIndex(countries));
+        ksession.setGlobal("ibanRegistry", IbanRegistry.getDefault());
     }
     
     @Test
@@ -69,7 +71,22 @@ public class IbanValidationRulesTest {
         ibanShouldValidateAsExpected("GB29 NWBK 6016 1331 9268 20", "IBAN failed the Mod-97 checksum test.");
         // Passes the Mod-97 check, but replaced letter in bank code with
         // number, so that it is GB and does not have correct BBAN structure.
-        ibanShouldValidateAsExpected("GB29 NWB0 6016 1331 9268 19", "IBAN is for UK, but doesn't have BBAN structure.");
+        ibanShouldValidateAsExpected("GB29 NWB0 6016 1331 9268 19", "IBAN doesn't have the BBAN structure for its country.");
+    }
+
+    @Test
+    public void shouldValidateStructureForCountry() {
+        ibanShouldValidateAsExpected("FR14 2004 1010 0505 0001 3M02 606");
+        // Passes the Mod-97 check, but is too short for a Spanish IBAN.
+        ibanShouldValidateAsExpected("ES23 0217 0099 47", "IBAN doesn't have the BBAN structure for its country.");
+    }
+    
+    @Test
+    public void shouldCheckCountryOfSanitizedIban() {
+        // The checksum and structure already allowed for lower case, and now
+        // the country code does too.
+        ibanShouldValidateAsExpected("gb29 nwbk 6016 1331 9268 19");
+        ibanShouldValidateAsExpected("X", "IBAN doesn't begin with a valid country ISO code.");
     }
     
     public void ibanShouldValidateAsExpected(String iban, String... expectedRules) {
@@ -1,9 +1,18 @@
 package com.sctrcd.payments.validation.iban;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
+import com.sctrcd.drools.util.DroolsUtil;
 import com.sctrcd.payments.facts.AnnotationLevel;
 import com.sctrcd.payments.facts.PaymentAttribute;
+import com.sctrcd.payments.validation.StageLatencies;
 import com.sctrcd.payments.validation.ValidationTestHelper;
 import com.sctrcd.payments.validation.iban.IbanMod97Check;
 import com.sctrcd.payments.validation.iban.IbanUtil;
@@ -50,4 +59,102 @@ public class RuleBasedIbanValidatorTest {
         }
     }
     
+    @Test
+    public final void shouldRejectIbansWithInvalidStructure() {
+        for (String iban : SimpleIbanValidatorTest.structurallyInvalidIbans) {
+            IbanValidationResult result = validator.validateIban(IbanUtil.sanitize(iban));
+
+            assertFalse(result.isValid());
+            ValidationTestHelper.assertAtLeastOneRejectionForAttribute(result.getAnnotations(), PaymentAttribute.iban);
+        }
+    }
+    
+    @Test
+    public final void shouldRejectJunkWithoutFiringRules() {
+        IbanValidationResult result = validator.validateIban(null);
+        assertFalse(result.isValid());
+        
+        result = validator.validateIban("<script>", true);
+        assertFalse(result.isValid());
+        ValidationTestHelper.assertAtLeastOneRejectionForAttribute(result.getAnnotations(), PaymentAttribute.iban);
+        assertTrue(result.getRuleTrace().isEmpty());
+    }
+    
+    /**
+     * New rules might not agree with the pre-filter, so once they are swapped
+     * in, everything but a missing IBAN goes to the rules.
+     */
+    @Test
+    public final void shouldBypassPreFilterOnceRulesAreReloaded() {
+        RuleBasedIbanValidator reloaded = new RuleBasedIbanValidator();
+        assertTrue(reloaded.isPreFiltered());
+        assertTrue(reloaded.getKnowledgeBaseManager().reload().isSwapped());
+        assertFalse(reloaded.isPreFiltered());
+
+        assertFalse(reloaded.validateIban(null).isValid());
+
+        String invalid = "ES050 217009945";
+        IbanValidationResult result = reloaded.validateIban(IbanUtil.sanitize(invalid), true);
+        assertFalse(result.isValid());
+        assertFalse(result.getRuleTrace().isEmpty());
+        assertEquals(validator.validateIban(IbanUtil.sanitize(invalid)).getAnnotations().size(),
+                result.getAnnotations().size());
+    }
+    
+    @Test
+    public final void shouldOnlyTraceRulesWhenAsked() {
+        assertNull(validator.validateIban("GB29NWBK60161331926819").getRuleTrace());
+        
+        IbanValidationResult result = validator.validateIban("GB29NWBK60161331926810", true);
+        assertFalse(result.isValid());
+        assertNotNull(result.getRuleTrace());
+        assertTrue(DroolsUtil.ruleFired(result.getRuleTrace(), "IBAN failed the Mod-97 checksum test."));
+    }
+    
+    /**
+     * The validator shares a single session between threads, so hammer it
+     * from several at once and make sure each IBAN still gets its own result.
+     */
+    @Test
+    public final void shouldValidateConcurrently() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 20; i++) {
+                for (final String iban : SimpleIbanValidatorTest.validIbans) {
+                    futures.add(pool.submit(new Callable<Boolean>() {
+                        public Boolean call() {
+                            return validator.validateIban(IbanUtil.sanitize(iban)).isValid();
+                        }
+                    }));
+                }
+                for (final String iban : SimpleIbanValidatorTest.invalidIbans) {
+                    futures.add(pool.submit(new Callable<Boolean>() {
+                        public Boolean call() {
+                            return !validator.validateIban(IbanUtil.sanitize(iban)).isValid();
+                        }
+                    }));
+                }
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void shouldRecordIntoInjectedStageLatencies() {
+        StageLatencies latencies = new StageLatencies();
+        RuleBasedIbanValidator timed = new RuleBasedIbanValidator();
+        timed.setStageLatencies(latencies);
+
+        timed.validateIban("GB29NWBK60161331926819");
+
+        for (String stage : new String[] { StageLatencies.PRE_FILTER, StageLatencies.RULES, StageLatencies.RESULT }) {
+            assertEquals(stage, 1, latencies.getLatency(StageLatencies.IBAN, stage).getCount());
+        }
+    }
+    
 }
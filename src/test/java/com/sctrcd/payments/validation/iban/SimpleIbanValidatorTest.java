@@ -20,7 +20,6 @@ public class SimpleIbanValidatorTest {
        	"BG29FINV915010EUR0IKFF",
         "ES5702170302862100282783",
         "SK3211000000002612890189",
-        "ES23 0217 0099 47",
         "LU36 0029 1524 6005 0000",
         "AD12 0001 2030 2003 5910 0100",
         "AT61 1904 3002 3457 3201",
@@ -72,6 +71,15 @@ public class SimpleIbanValidatorTest {
         "TN59 1421 7207 1007 0712 9648"
 	};
 	
+	/**
+	 * These pass the Mod-97 check, but don't have the length or BBAN structure
+	 * for their country.
+	 */
+	public static final String[] structurallyInvalidIbans = {
+        "ES23 0217 0099 47",
+        "GB18 NWB0 6016 1331 9268 19"
+	};
+	
 	IbanValidator validator = new SimpleIbanValidator();
 
     @Test
@@ -91,4 +99,13 @@ public class SimpleIbanValidatorTest {
             assertFalse(result.isValid());
         }
     }
+    
+    @Test
+    public final void shouldRejectIbansWithInvalidStructure() {
+        for (String iban : SimpleIbanValidatorTest.structurallyInvalidIbans) {
+            assertTrue(IbanMod97Check.isValid(iban));
+            ValidationResult result = validator.validateIban(iban);
+            assertFalse(result.isValid());
+        }
+    }
 }
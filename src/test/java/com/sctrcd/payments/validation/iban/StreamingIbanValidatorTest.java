@@ -0,0 +1,82 @@
+package com.sctrcd.payments.validation.iban;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 
+ * @author Stephen Masters
+ */
+public class StreamingIbanValidatorTest {
+
+    private ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Uses a chunk size which doesn't divide the number of IBANs exactly, so
+     * that the final partial chunk is exercised.
+     */
+    private StreamingIbanValidator validator = new StreamingIbanValidator(new SimpleIbanValidator(), 3);
+
+    @Test
+    public void shouldValidateJsonArray() throws Exception {
+        String[] ibans = SimpleIbanValidatorTest.validIbans;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int count = validator.validateJson(toStream(mapper.writeValueAsString(ibans)), out);
+
+        assertEquals(ibans.length, count);
+        JsonNode results = mapper.readTree(out.toByteArray());
+        assertTrue(results.isArray());
+        assertEquals(ibans.length, results.size());
+        for (int i = 0; i < ibans.length; i++) {
+            assertEquals(ibans[i], results.get(i).get("iban").asText());
+            assertTrue(results.get(i).get("valid").asBoolean());
+        }
+    }
+
+    @Test
+    public void shouldValidateEmptyJsonArray() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, validator.validateJson(toStream("[]"), out));
+        assertEquals("[]", out.toString("UTF-8"));
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void shouldRejectJsonWhichIsNotAnArrayOfStrings() throws Exception {
+        validator.validateJson(toStream("[\"GB29NWBK60161331926819\", 42]"), new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void shouldValidateLinesAsNewlineDelimitedJson() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (String iban : SimpleIbanValidatorTest.invalidIbans) {
+            sb.append(iban).append("\r\n\n");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int count = validator.validateLines(toStream(sb.toString()), out);
+
+        String[] lines = out.toString("UTF-8").split("\n");
+        assertEquals(SimpleIbanValidatorTest.invalidIbans.length, count);
+        assertEquals(count, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode result = mapper.readTree(lines[i]);
+            assertEquals(SimpleIbanValidatorTest.invalidIbans[i], result.get("iban").asText());
+            assertFalse(result.get("valid").asBoolean());
+        }
+    }
+
+    private ByteArrayInputStream toStream(String s) throws IOException {
+        return new ByteArrayInputStream(s.getBytes("UTF-8"));
+    }
+
+}
@@ -1,9 +1,15 @@
 package com.sctrcd.payments.validation.payment;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.junit.Test;
 
 import com.sctrcd.payments.facts.Payment;
 import com.sctrcd.payments.facts.PaymentAttribute;
+import com.sctrcd.payments.facts.PaymentValidationAnnotation;
 import com.sctrcd.payments.validation.ValidationTestHelper;
 import com.sctrcd.payments.validation.payment.FxPaymentValidationResult;
 import com.sctrcd.payments.validation.payment.PaymentValidator;
@@ -89,4 +95,100 @@ public class RuleBasedPaymentValidatorTest {
         ValidationTestHelper.assertAtLeastOneRejectionForAttribute(result.getAnnotations(), PaymentAttribute.bic);
     }
     
+    /**
+     * Validates a batch in chunks which share a session, and checks that each
+     * payment gets the same annotations as it would if validated on its own.
+     * The batch includes the same invalid IBAN twice, to make sure that both
+     * payments are rejected for it.
+     */
+    @Test
+    public final void shouldValidateBatchWithAnnotationsSplitPerPayment() {
+        String[][] ibansAndBics = {
+            { "LU36 0029 1524 6005 0000", null },
+            { "ES95 0217 0100 17", null },
+            { null, "HLFXESMM" },
+            { null, "HLFXESM" },
+            { "GB29 NWBK 6016 1331 9268 19", "HLFXEXMM" },
+            { "ES95 0217 0100 17", "HLFXESMM" },
+            { "GB29 NWBK 6016 1331 9268 19", "HLFXESMM" }
+        };
+        List<Payment> payments = new ArrayList<Payment>();
+        for (String[] ibanAndBic : ibansAndBics) {
+            Payment payment = new Payment();
+            payment.setIban(ibanAndBic[0]);
+            payment.setBic(ibanAndBic[1]);
+            payments.add(payment);
+        }
+        
+        RuleBasedPaymentValidator batchValidator = new RuleBasedPaymentValidator();
+        batchValidator.setChunkSize(3);
+        List<FxPaymentValidationResult> results = batchValidator.validatePayments(payments);
+        
+        assertEquals(payments.size(), results.size());
+        for (int i = 0; i < payments.size(); i++) {
+            FxPaymentValidationResult expected = validator.validatePayment(payments.get(i));
+            FxPaymentValidationResult actual = results.get(i);
+            assertEquals("Payment " + i, expected.isValid(), actual.isValid());
+            assertEquals("Payment " + i, ruleNames(expected), ruleNames(actual));
+        }
+        assertTrue(results.get(0).isValid());
+        assertFalse(results.get(1).isValid());
+        assertFalse(results.get(5).isValid());
+        assertTrue(results.get(6).isValid());
+    }
+    
+    /**
+     * An IBAN too short to have a country code used to make the rules fail
+     * for every payment in the chunk.
+     */
+    @Test
+    public final void shouldRejectShortIbansInABatch() {
+        List<Payment> payments = new ArrayList<Payment>();
+        for (String iban : new String[] { "GB29 NWBK 6016 1331 9268 19", "X", "", "LU36 0029 1524 6005 0000" }) {
+            Payment payment = new Payment();
+            payment.setIban(iban);
+            payments.add(payment);
+        }
+
+        List<FxPaymentValidationResult> results = validator.validatePayments(payments);
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isValid());
+        assertFalse(results.get(1).isValid());
+        ValidationTestHelper.assertAtLeastOneRejectionForAttribute(results.get(1).getAnnotations(), PaymentAttribute.iban);
+        assertFalse(results.get(2).isValid());
+        assertTrue(results.get(3).isValid());
+    }
+
+    @Test
+    public final void shouldOnlyRejectThePaymentWhichMakesTheRulesFail() {
+        List<Payment> payments = new ArrayList<Payment>();
+        Payment valid = new Payment();
+        valid.setIban("GB29 NWBK 6016 1331 9268 19");
+        payments.add(valid);
+        payments.add(new Payment() {
+            @Override
+            public String getIban() {
+                throw new IllegalStateException("Broken payment");
+            }
+        });
+        payments.add(valid);
+
+        List<FxPaymentValidationResult> results = validator.validatePayments(payments);
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isValid());
+        assertFalse(results.get(1).isValid());
+        assertEquals(RuleBasedPaymentValidator.NOT_VALIDATED, results.get(1).getAnnotations().get(0).getRuleName());
+        assertTrue(results.get(2).isValid());
+    }
+
+    private Set<String> ruleNames(FxPaymentValidationResult result) {
+        Set<String> ruleNames = new HashSet<String>();
+        for (PaymentValidationAnnotation annotation : result.getAnnotations()) {
+            ruleNames.add(annotation.getRuleName());
+        }
+        return ruleNames;
+    }
+    
 }
@@ -0,0 +1,61 @@
+package com.sctrcd.payments.validation.web;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.sctrcd.payments.validation.RuleReloadService;
+
+/**
+ * Unit tests for the {@link MetricsController}.
+ *
+ * @author Stephen Masters
+ */
+public class MetricsControllerTest {
+
+    @Test
+    public void shouldRefuseToReloadRulesUnlessEnabled() throws Exception {
+        RuleReloadService reloadService = mock(RuleReloadService.class);
+        MetricsController controller = new MetricsController();
+        controller.setRuleReloadService(reloadService);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        mockMvc.perform(post("/admin/rules/reload")).andExpect(status().isForbidden());
+        verify(reloadService, never()).requestReloadAll();
+        verify(reloadService, never()).reloadAll();
+    }
+
+    @Test
+    public void shouldQueueReloadOfRules() throws Exception {
+        RuleReloadService reloadService = mock(RuleReloadService.class);
+        MetricsController controller = new MetricsController();
+        controller.setRuleReloadService(reloadService);
+        controller.setReloadEnabled(true);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        mockMvc.perform(post("/admin/rules/reload")).andExpect(status().isAccepted());
+        verify(reloadService).requestReloadAll();
+        verify(reloadService, never()).reloadAll();
+    }
+
+    @Test
+    public void shouldSetRuleMetricsSampleRate() throws Exception {
+        RuleReloadService reloadService = mock(RuleReloadService.class);
+        doThrow(new IllegalArgumentException("Too high")).when(reloadService).setRuleMetricsSampleRate(2);
+        MetricsController controller = new MetricsController();
+        controller.setRuleReloadService(reloadService);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        mockMvc.perform(put("/admin/metrics/rules/sampleRate").param("rate", "0.01"))
+                .andExpect(status().isNoContent());
+        verify(reloadService).setRuleMetricsSampleRate(0.01);
+        mockMvc.perform(put("/admin/metrics/rules/sampleRate").param("rate", "2"))
+                .andExpect(status().isBadRequest());
+    }
+
+}
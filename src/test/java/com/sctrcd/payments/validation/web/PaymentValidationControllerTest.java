@@ -1,19 +1,40 @@
 package com.sctrcd.payments.validation.web;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.servlet.ModelAndView;
 
 import com.sctrcd.payments.config.PaymentAppConfig;
 import com.sctrcd.payments.facts.Payment;
+import com.sctrcd.payments.validation.StageLatencies;
+import com.sctrcd.payments.validation.ValidationExecutor;
 import com.sctrcd.payments.validation.iban.IbanValidationResult;
+import com.sctrcd.payments.validation.iban.IbanValidator;
+import com.sctrcd.payments.validation.iban.SimpleIbanValidator;
 import com.sctrcd.payments.validation.payment.FxPaymentValidationResult;
 import com.sctrcd.payments.validation.payment.RuleBasedPaymentValidatorTest;
 import com.sctrcd.payments.validation.web.PaymentValidationController;
@@ -26,12 +47,22 @@ public class PaymentValidationControllerTest {
     @Qualifier("paymentValidationController")
     private PaymentValidationController controller;
 
+    @Autowired(required = true)
+    @Qualifier("ruleBasedIbanValidator")
+    private IbanValidator ruleBasedIbanValidator;
+
     @Test
     public void shouldProvideForm() {
         ModelAndView mav = controller.validator();
         assertEquals("iban/validator", mav.getViewName());
     }
 
+    @Test
+    public void shouldValidateBatchesOfIbansWithoutTheCache() {
+        assertSame(ruleBasedIbanValidator,
+                ((PaymentValidationControllerImpl) controller).getBatchIbanValidator());
+    }
+
     @Test
     public void shouldValidateIban() {
         String iban = "ES23 0217 0099 47";
@@ -60,4 +91,149 @@ public class PaymentValidationControllerTest {
         assertNotNull(result);
     }
 
+    @Test
+    public void shouldStreamBatchOfIbansAsNewlineDelimitedJson() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/iban/validate");
+        request.setContentType("text/plain");
+        request.setContent("GB29NWBK60161331926819\nGB29NWBK60161331926810\n".getBytes("UTF-8"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.validateIbanBatch(request, response);
+
+        assertEquals("application/x-ndjson;charset=UTF-8", response.getContentType());
+        String[] lines = response.getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"valid\":true"));
+        assertTrue(lines[1].contains("\"valid\":false"));
+    }
+
+
+    @Test
+    public void shouldValidateIbanAsynchronously() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        MvcResult result = mockMvc.perform(get("/async/iban/validate/{iban}", "GB29NWBK60161331926819"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        awaitConcurrentResult(result);
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"valid\":true")));
+    }
+
+    @Test
+    public void shouldRespondServiceUnavailableWhenQueueIsFull() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        PaymentValidationControllerImpl blocked = new PaymentValidationControllerImpl();
+        blocked.setIbanValidator(new IbanValidator() {
+            @Override
+            public IbanValidationResult validateIban(String iban) {
+                return validateIban(iban, false);
+            }
+
+            @Override
+            public IbanValidationResult validateIban(String iban, boolean trace) {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new IbanValidationResult(iban, true);
+            }
+        });
+        ValidationExecutor executor = new ValidationExecutor(1, 1);
+        blocked.setValidationExecutor(executor);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(blocked).build();
+
+        try {
+            // One validation running, and one waiting in the queue.
+            mockMvc.perform(get("/async/iban/validate/{iban}", "GB29NWBK60161331926819"))
+                    .andExpect(request().asyncStarted());
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            mockMvc.perform(get("/async/iban/validate/{iban}", "GB29NWBK60161331926819"))
+                    .andExpect(request().asyncStarted());
+
+            mockMvc.perform(get("/async/iban/validate/{iban}", "GB29NWBK60161331926819"))
+                    .andExpect(status().isServiceUnavailable());
+            assertEquals(1, executor.getMetrics().getRejected());
+        } finally {
+            release.countDown();
+            executor.destroy();
+        }
+    }
+
+    @Test
+    public void shouldRecordLatencyOfEachStage() throws Exception {
+        StageLatencies latencies = new StageLatencies();
+        PaymentValidationControllerImpl timed = new PaymentValidationControllerImpl();
+        timed.setIbanValidator(new SimpleIbanValidator());
+        timed.setStageLatencies(latencies);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(timed)
+                .addInterceptors(new StageLatencyInterceptor(latencies))
+                .setMessageConverters(new TimedMappingJackson2HttpMessageConverter(latencies))
+                .build();
+
+        mockMvc.perform(get("/iban/validate/{iban}", "GB29NWBK60161331926819"))
+                .andExpect(status().isOk());
+
+        for (String stage : new String[] { StageLatencies.REQUEST, StageLatencies.VALIDATE, StageLatencies.SERIALIZE }) {
+            assertEquals(stage, 1, latencies.getLatency(StageLatencies.IBAN, stage).getCount());
+        }
+    }
+
+    /**
+     * An asynchronous request is dispatched twice, but should only be
+     * recorded once.
+     */
+    @Test
+    public void shouldRecordLatencyOfAsynchronousRequestOnce() throws Exception {
+        StageLatencies latencies = new StageLatencies();
+        ValidationExecutor executor = new ValidationExecutor(1, 10);
+        PaymentValidationControllerImpl timed = new PaymentValidationControllerImpl();
+        timed.setIbanValidator(new SimpleIbanValidator());
+        timed.setValidationExecutor(executor);
+        timed.setStageLatencies(latencies);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(timed)
+                .addInterceptors(new StageLatencyInterceptor(latencies))
+                .setMessageConverters(new TimedMappingJackson2HttpMessageConverter(latencies))
+                .build();
+
+        try {
+            MvcResult result = mockMvc.perform(get("/async/iban/validate/{iban}", "GB29NWBK60161331926819"))
+                    .andExpect(request().asyncStarted())
+                    .andExpect(request().asyncResult(notNullValue()))
+                    .andReturn();
+            awaitConcurrentResult(result);
+            mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        } finally {
+            executor.destroy();
+        }
+
+        for (String stage : new String[] { StageLatencies.REQUEST, StageLatencies.VALIDATE, StageLatencies.SERIALIZE }) {
+            assertEquals(stage, 1, latencies.getLatency(StageLatencies.IBAN, stage).getCount());
+        }
+    }
+
+    /**
+     * In spring-test 3.2, <code>asyncResult()</code> can see the result before
+     * it has been handed to the {@link WebAsyncManager}, in which case an
+     * <code>asyncDispatch</code> straight afterwards calls the handler again
+     * rather than writing the result. Fails the test if the result isn't
+     * there within 5 seconds.
+     */
+    private static void awaitConcurrentResult(MvcResult result) throws InterruptedException {
+        WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(result.getRequest());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!asyncManager.hasConcurrentResult()) {
+            if (System.currentTimeMillis() >= deadline) {
+                fail("The asynchronous result was not ready within 5 seconds.");
+            }
+            Thread.sleep(1);
+        }
+    }
+
 }